@@ -3,6 +3,7 @@ package com.topcoder.shared.ejb.EmailServices;
 import javax.ejb.EJBObject;
 import java.rmi.RemoteException;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -274,6 +275,21 @@ public interface EmailJob extends EJBObject {
      */
     Object[] getJobDetailResults(int jobId, int firstRecordOffset, int lastRecordOffset) throws RemoteException;
 
+    /**
+     * Returns a page of the job's detail records, ordered by jobDetailId.
+     * Pass 0 as afterJobDetailId to get the first page, then the id of the last
+     * record of a page to get the next one.  Like the other detail methods, it
+     * reads the archived records if the job has been archived.
+     *
+     * @param jobId
+     * @param afterJobDetailId
+     * @param maxRecords
+     * @return     a List of up to maxRecords EmailJobDetail with ids greater than
+     *             afterJobDetailId, empty when there are no more records.
+     * @throws RemoteException
+     */
+    List getJobDetailRecords(int jobId, int afterJobDetailId, int maxRecords) throws RemoteException;
+
     /**
      * Returns the jobDetailReason for a jobDetailId.
      *
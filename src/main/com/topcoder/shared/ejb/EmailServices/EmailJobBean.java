@@ -1,14 +1,17 @@
 package com.topcoder.shared.ejb.EmailServices;
 
 import com.topcoder.shared.ejb.BaseEJB;
+import com.topcoder.shared.email.JobNotifier;
 import com.topcoder.shared.util.ApplicationServer;
 import com.topcoder.shared.util.DBMS;
 import com.topcoder.shared.util.IdGeneratorClient;
 import com.topcoder.shared.util.logging.Logger;
 
 import javax.ejb.EJBException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -103,7 +106,9 @@ public class EmailJobBean extends BaseEJB {
                               String fromAddress,
                               String fromPersonal,
                               String subject) throws EJBException {
-        return createJob(templateId, listId, commandId, jobGroupId, startAfter, stopBefore, fromAddress, fromPersonal, subject, JOB_TYPE_EMAIL_PRE);
+        int jobId = createJob(templateId, listId, commandId, jobGroupId, startAfter, stopBefore, fromAddress, fromPersonal, subject, JOB_TYPE_EMAIL_PRE);
+        JobNotifier.notifyJob(jobId, startAfter);
+        return jobId;
     }
 
     /**
@@ -355,6 +360,8 @@ public class EmailJobBean extends BaseEJB {
             ApplicationServer.close(ctx);
         }
 
+        // the job is ready once its detail record is there
+        JobNotifier.notifyJob(jobId, startAfter);
         return jobId;
     }
 
@@ -477,6 +484,9 @@ public class EmailJobBean extends BaseEJB {
             DBMS.close(conn);
             ApplicationServer.close(ctx);
         }
+        if (rowsUpdated > 0) {
+            JobNotifier.notifyJob(jobId, getStartAfterDate(jobId));
+        }
     }
 
     /**
@@ -774,6 +784,86 @@ public class EmailJobBean extends BaseEJB {
         return arrRet;
     }
 
+    /**
+     * @param jobId
+     * @param afterJobDetailId
+     * @param maxRecords
+     * @return
+     * @throws EJBException
+     */
+    public List getJobDetailRecords(int jobId, int afterJobDetailId, int maxRecords) throws EJBException {
+        javax.naming.Context ctx = null;
+        java.sql.Connection conn = null;
+        java.sql.PreparedStatement ps = null;
+        List ret = new ArrayList(maxRecords);
+
+        log.debug("getJobDetailRecords requested for jobId " + jobId
+                + " after " + afterJobDetailId + " (max " + maxRecords + ")");
+
+        try {
+            conn = DBMS.getConnection();
+
+            ps = conn.prepareStatement(getJobDetailRecordsQuery("sched_job_detail"));
+            readJobDetailRecords(ps, jobId, afterJobDetailId, maxRecords, ret);
+            DBMS.close(ps);
+
+            if (ret.size() == 0) {
+                // maybe the job has been archived, check there...
+                ps = conn.prepareStatement(getJobDetailRecordsQuery("archive_sched_job_detail"));
+                readJobDetailRecords(ps, jobId, afterJobDetailId, maxRecords, ret);
+            }
+        } catch (Exception dberr) {
+            String err = "Failed to getJobDetailRecords for jobId " + jobId + " after " + afterJobDetailId;
+            log.error(err, dberr);
+            throw new EJBException(err, dberr);
+        } finally {
+            DBMS.close(ps);
+            DBMS.close(conn);
+            ApplicationServer.close(ctx);
+        }
+
+        return ret;
+    }
+
+    private String getJobDetailRecordsQuery(String table) {
+        StringBuffer sqlStmt = new StringBuffer(300);
+        sqlStmt.append(" SELECT");
+        sqlStmt.append(" sched_job_detail_id");
+        sqlStmt.append(",");
+        sqlStmt.append(" sched_job_detail_status_id");
+        sqlStmt.append(",");
+        sqlStmt.append(" data");
+        sqlStmt.append(",");
+        sqlStmt.append(" reason");
+        sqlStmt.append(" FROM");
+        sqlStmt.append(" " + table);
+        sqlStmt.append(" WHERE");
+        sqlStmt.append(" sched_job_id = ?");
+        sqlStmt.append(" AND");
+        sqlStmt.append(" sched_job_detail_id > ?");
+        sqlStmt.append(" ORDER BY");
+        sqlStmt.append(" sched_job_detail_id");
+        return sqlStmt.toString();
+    }
+
+    private void readJobDetailRecords(java.sql.PreparedStatement ps, int jobId, int afterJobDetailId,
+                                      int maxRecords, List ret) throws java.sql.SQLException {
+        java.sql.ResultSet rs = null;
+        try {
+            ps.setInt(1, jobId);
+            ps.setInt(2, afterJobDetailId);
+            ps.setMaxRows(maxRecords);
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                byte[] bytes = rs.getBytes(3);
+                ret.add(new EmailJobDetail(rs.getInt(1), rs.getInt(2),
+                        bytes == null ? null : new String(bytes), rs.getString(4)));
+            }
+        } finally {
+            DBMS.close(rs);
+        }
+    }
+
     /**
      * @param jobId
      * @param jobDetailId
@@ -1346,6 +1436,7 @@ public class EmailJobBean extends BaseEJB {
         validateJobIsUpdatable(jobId);
         setField("sched_job", "sched_job_id", jobId,
                 "start_after_date", 0, null, startAfterDate);
+        JobNotifier.notifyJob(jobId, startAfterDate);
     }
 
     /**
@@ -0,0 +1,47 @@
+package com.topcoder.shared.ejb.EmailServices;
+
+import java.io.Serializable;
+
+/**
+ * A job detail record: one recipient of an email job, with its data and the
+ * status of its email.
+ *
+ * @version $Revision$
+ * @see EmailJob#getJobDetailRecords(int, int, int)
+ */
+public class EmailJobDetail implements Serializable {
+    private final int detailId;
+    private final int statusId;
+    private final String data;
+    private final String reason;
+
+    public EmailJobDetail(int detailId, int statusId, String data, String reason) {
+        this.detailId = detailId;
+        this.statusId = statusId;
+        this.data = data;
+        this.reason = reason;
+    }
+
+    public int getDetailId() {
+        return detailId;
+    }
+
+    /**
+     * @return one of the EmailServer.MSG_ constants
+     */
+    public int getStatusId() {
+        return statusId;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public String toString() {
+        return "EmailJobDetail[" + detailId + ", " + statusId + "]";
+    }
+}
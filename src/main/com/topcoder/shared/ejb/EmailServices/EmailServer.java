@@ -140,6 +140,28 @@ public interface EmailServer extends EJBObject {
      */
     public int addDetailRecord(int jobId, String data) throws RemoteException;
 
+    /**
+     * Adds a detail record with a status of NONE to the job for each member of the
+     * list.  The members are copied in the database, in batches.
+     *
+     * @param jobId
+     * @param listId
+     * @return     the number of detail records added
+     * @throws RemoteException
+     */
+    public int addDetailRecordsFromList(int jobId, int listId) throws RemoteException;
+
+    /**
+     * Adds a detail record with a status of NONE to the job for each data, as a
+     * single batch.
+     *
+     * @param jobId
+     * @param data
+     * @return     the number of detail records added
+     * @throws RemoteException
+     */
+    public int addDetailRecords(int jobId, String[] data) throws RemoteException;
+
     /**
      * Changes the status of a job detail record to the requested status.
      * @param jobId
@@ -150,6 +172,18 @@ public interface EmailServer extends EJBObject {
      */
     public void setDetailStatus(int jobId, int detailId, int status, String reason) throws RemoteException;
 
+    /**
+     * Changes the status of several job detail records at once.  The arrays are
+     * parallel, the updates are sent to the database as a single batch.
+     * @param jobId
+     * @param detailIds
+     * @param statuses
+     * @param reasons
+     * @return     the number of records updated
+     * @throws RemoteException
+     */
+    public int setDetailStatuses(int jobId, int[] detailIds, int[] statuses, String[] reasons) throws RemoteException;
+
     /**
      * Marks the job as having been built so we don't try to build it again.
      * @param jobId
@@ -159,11 +193,23 @@ public interface EmailServer extends EJBObject {
 
     /**
      * Moves the job's detail records from the detail table to the archive table.
+     * The records are moved in chunks that are committed separately, so running
+     * jobs aren't blocked while a large job is archived.
      * @param jobId
      * @throws RemoteException
      */
     public void archiveDetail(int jobId) throws RemoteException;
 
+    /**
+     * Deletes the archived detail records inserted before the given date, in
+     * chunks that are committed separately.
+     * @param before
+     * @param maxRecords   the maximum number of records to delete
+     * @return     the number of records deleted, less than maxRecords when there are no more
+     * @throws RemoteException
+     */
+    public int purgeArchivedDetail(Date before, int maxRecords) throws RemoteException;
+
     /**
      * Returns the next scheduler id from the database.
      *
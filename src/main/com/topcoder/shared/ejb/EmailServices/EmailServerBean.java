@@ -22,6 +22,16 @@ public class EmailServerBean extends BaseEJB {
      */
     public static final int SCHEDULER_SEQUENCE_ID = 74;
 
+    /**
+     * The number of detail records inserted per batch when a job is built.
+     */
+    private static final int DETAIL_BATCH_SIZE = 500;
+
+    /**
+     * The number of detail records moved or purged per transaction.
+     */
+    private static final int ARCHIVE_CHUNK_SIZE = 1000;
+
     /**
      *
      */
@@ -312,6 +322,149 @@ public class EmailServerBean extends BaseEJB {
         return id;
     }
 
+    /**
+     * @param jobId
+     * @param listId
+     * @return
+     * @throws EJBException
+     */
+    public int addDetailRecordsFromList(int jobId, int listId) throws EJBException {
+        javax.naming.Context ctx = null;
+        java.sql.Connection listConn = null;
+        java.sql.PreparedStatement listPs = null;
+        java.sql.ResultSet rs = null;
+        java.sql.Connection conn = null;
+        java.sql.PreparedStatement ps = null;
+        StringBuffer sqlStmt = new StringBuffer(500);
+        int rows = 0;
+
+        log.debug("addDetailRecordsFromList (jobId " + jobId + ", listId " + listId + ")");
+
+        try {
+            listConn = DBMS.getConnection();
+            conn = getConnection();
+
+            sqlStmt.setLength(0);
+            sqlStmt.append(" SELECT");
+            sqlStmt.append(" data");
+            sqlStmt.append(" FROM");
+            sqlStmt.append(" email_list_detail");
+            sqlStmt.append(" WHERE");
+            sqlStmt.append(" email_list_id = ?");
+            listPs = listConn.prepareStatement(sqlStmt.toString());
+            listPs.setInt(1, listId);
+            rs = listPs.executeQuery();
+
+            ps = prepareDetailInsert(conn);
+            int pending = 0;
+            while (rs.next()) {
+                byte[] bytes = rs.getBytes(1);
+                addDetailInsert(ps, jobId, bytes == null ? new byte[0] : bytes);
+                if (++pending == DETAIL_BATCH_SIZE) {
+                    rows += executeBatch(ps);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                rows += executeBatch(ps);
+            }
+            log.info("addDetailRecordsFromList added " + rows + " records to job " + jobId);
+        } catch (Exception dberr) {
+            String err = "Failed to add detail records from list " + listId + " to job " + jobId;
+            log.error(err, dberr);
+            throw new EJBException(err, dberr);
+        } finally {
+            DBMS.close(rs);
+            DBMS.close(listPs);
+            DBMS.close(listConn);
+            DBMS.close(ps);
+            DBMS.close(conn);
+            ApplicationServer.close(ctx);
+        }
+        return rows;
+    }
+
+    /**
+     * @param jobId
+     * @param data
+     * @return
+     * @throws EJBException
+     */
+    public int addDetailRecords(int jobId, String[] data) throws EJBException {
+        javax.naming.Context ctx = null;
+        java.sql.Connection conn = null;
+        java.sql.PreparedStatement ps = null;
+        int rows = 0;
+
+        log.debug("addDetailRecords (jobId " + jobId + ", " + data.length + " records)");
+
+        if (data.length == 0) {
+            return 0;
+        }
+
+        try {
+            conn = getConnection();
+            ps = prepareDetailInsert(conn);
+            for (int i = 0; i < data.length; i++) {
+                addDetailInsert(ps, jobId, data[i].getBytes());
+            }
+            rows = executeBatch(ps);
+        } catch (Exception dberr) {
+            String err = "Failed to add detail records to job " + jobId;
+            log.error(err, dberr);
+            throw new EJBException(err, dberr);
+        } finally {
+            DBMS.close(ps);
+            DBMS.close(conn);
+            ApplicationServer.close(ctx);
+        }
+        return rows;
+    }
+
+    private java.sql.PreparedStatement prepareDetailInsert(java.sql.Connection conn) throws java.sql.SQLException {
+        StringBuffer sqlStmt = new StringBuffer(200);
+        sqlStmt.append(" INSERT INTO");
+        sqlStmt.append(" sched_job_detail (");
+        sqlStmt.append(" sched_job_id");
+        sqlStmt.append(",");
+        sqlStmt.append(" sched_job_detail_id");
+        sqlStmt.append(",");
+        sqlStmt.append(" sched_job_detail_status_id");
+        sqlStmt.append(",");
+        sqlStmt.append(" data");
+        sqlStmt.append(") VALUES (?,?,?,?)");
+        return conn.prepareStatement(sqlStmt.toString());
+    }
+
+    /**
+     * Adds a new detail record to the batch of the statement.  The ids generator reserves
+     * ids by blocks, so most ids don't need a trip to the database.
+     */
+    private void addDetailInsert(java.sql.PreparedStatement ps, int jobId, byte[] data) throws Exception {
+        ps.setInt(1, jobId);
+        ps.setInt(2, (int) IdGeneratorClient.getSeqId("SCHED_JOB_DETAIL_SEQ"));
+        ps.setInt(3, EmailServer.MSG_NONE);
+        ps.setBytes(4, data);
+        ps.addBatch();
+    }
+
+    /**
+     * Executes the batch of the statement and returns the number of rows it changed.
+     * Drivers that can't tell how many rows a statement changed count as one.
+     */
+    private int executeBatch(java.sql.PreparedStatement ps) throws java.sql.SQLException {
+        int[] counts = ps.executeBatch();
+        int ret = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == java.sql.Statement.SUCCESS_NO_INFO) {
+                ret++;
+            } else if (counts[i] > 0) {
+                ret += counts[i];
+            }
+        }
+        return ret;
+    }
+
     /**
      * @param jobId
      * @param detailId
@@ -368,6 +521,67 @@ public class EmailServerBean extends BaseEJB {
         }
     }
 
+    /**
+     * @param jobId
+     * @param detailIds
+     * @param statuses
+     * @param reasons
+     * @return
+     * @throws EJBException
+     */
+    public int setDetailStatuses(int jobId, int[] detailIds, int[] statuses, String[] reasons) throws EJBException {
+        javax.naming.Context ctx = null;
+        java.sql.Connection conn = null;
+        java.sql.PreparedStatement ps = null;
+        StringBuffer sqlStmt = new StringBuffer(500);
+        int rows = 0;
+
+        log.debug("setDetailStatuses (jobId " + jobId + ", " + detailIds.length + " records)");
+
+        if (detailIds.length == 0) {
+            return 0;
+        }
+
+        try {
+            conn = getConnection();
+
+            sqlStmt.setLength(0);
+            sqlStmt.append(" UPDATE");
+            sqlStmt.append(" sched_job_detail");
+            sqlStmt.append(" SET");
+            sqlStmt.append(" sched_job_detail_status_id = ?");
+            sqlStmt.append(",");
+            sqlStmt.append(" reason = ?");
+            sqlStmt.append(" WHERE");
+            sqlStmt.append(" sched_job_id = ?");
+            sqlStmt.append(" AND");
+            sqlStmt.append(" sched_job_detail_id = ?");
+            ps = conn.prepareStatement(sqlStmt.toString());
+            for (int i = 0; i < detailIds.length; i++) {
+                ps.setInt(1, statuses[i]);
+                ps.setString(2, reasons[i]);
+                ps.setInt(3, jobId);
+                ps.setInt(4, detailIds[i]);
+                ps.addBatch();
+            }
+            rows = executeBatch(ps);
+            if (rows < detailIds.length) {
+                log.warn("setDetailStatuses updated " + rows + " of " + detailIds.length
+                        + " records for job " + jobId + "."
+                        + " Most likely some job detail records do not exist.");
+            }
+        } catch (Exception dberr) {
+            String err = "Failed to update job detail statuses";
+            log.error(err, dberr);
+            throw new EJBException(err, dberr);
+        } finally {
+            DBMS.close(ps);
+            DBMS.close(conn);
+            ApplicationServer.close(ctx);
+        }
+        return rows;
+    }
+
     /**
      * @param jobId
      * @throws EJBException
@@ -420,17 +634,26 @@ public class EmailServerBean extends BaseEJB {
     }
 
     /**
+     * Moves the detail records of the job to the archive table in chunks of
+     * ARCHIVE_CHUNK_SIZE records, each in its own transaction, so the detail
+     * table is only locked for a short time.  The chunks are moved from the
+     * highest detail id down: a reader paging through the detail table by
+     * ascending detail id, then falling back to the archive table, sees every
+     * record once while the job is being archived.
+     *
      * @param jobId
      * @throws EJBException
      */
     public void archiveDetail(int jobId) throws EJBException {
         javax.naming.Context ctx = null;
-        javax.sql.DataSource ds = null;
         java.sql.Connection conn = null;
-        java.sql.PreparedStatement ps = null;
+        java.sql.PreparedStatement psSelect = null;
+        java.sql.PreparedStatement psInsert = null;
+        java.sql.PreparedStatement psDelete = null;
         java.sql.ResultSet rs = null;
         StringBuffer sqlStmt = new StringBuffer(500);
-        int rows;
+        int rows = 0;
+        int chunks = 0;
 
         log.debug("archiveDetail (jobId " + jobId + ")");
 
@@ -440,6 +663,20 @@ public class EmailServerBean extends BaseEJB {
 
             java.sql.Timestamp now = new java.sql.Timestamp(new Date().getTime());
 
+            sqlStmt.setLength(0);
+            sqlStmt.append(" SELECT");
+            sqlStmt.append(" sched_job_detail_id");
+            sqlStmt.append(" FROM");
+            sqlStmt.append(" sched_job_detail");
+            sqlStmt.append(" WHERE");
+            sqlStmt.append(" sched_job_id = ?");
+            sqlStmt.append(" AND");
+            sqlStmt.append(" sched_job_detail_id < ?");
+            sqlStmt.append(" ORDER BY");
+            sqlStmt.append(" sched_job_detail_id DESC");
+            psSelect = conn.prepareStatement(sqlStmt.toString());
+            psSelect.setMaxRows(ARCHIVE_CHUNK_SIZE);
+
             sqlStmt.setLength(0);
             sqlStmt.append(" INSERT INTO");
             sqlStmt.append(" archive_sched_job_detail (sched_job_id, sched_job_detail_id, sched_job_detail_status_id, data, reason, insert_date)");
@@ -448,47 +685,164 @@ public class EmailServerBean extends BaseEJB {
             sqlStmt.append(" sched_job_detail");
             sqlStmt.append(" WHERE");
             sqlStmt.append(" sched_job_id = ?");
-            ps = conn.prepareStatement(sqlStmt.toString());
-            ps.setInt(1, jobId);
-            rows = ps.executeUpdate();
+            sqlStmt.append(" AND");
+            sqlStmt.append(" sched_job_detail_id BETWEEN ? AND ?");
+            psInsert = conn.prepareStatement(sqlStmt.toString());
+
+            sqlStmt.setLength(0);
+            sqlStmt.append(" DELETE FROM");
+            sqlStmt.append(" sched_job_detail");
+            sqlStmt.append(" WHERE");
+            sqlStmt.append(" sched_job_id = ?");
+            sqlStmt.append(" AND");
+            sqlStmt.append(" sched_job_detail_id BETWEEN ? AND ?");
+            psDelete = conn.prepareStatement(sqlStmt.toString());
+
+            int below = Integer.MAX_VALUE;
+            for (; ;) {
+                // find the range of the next chunk
+                psSelect.setInt(1, jobId);
+                psSelect.setInt(2, below);
+                rs = psSelect.executeQuery();
+                int high = 0;
+                int low = 0;
+                int count = 0;
+                for (; rs.next(); count++) {
+                    low = rs.getInt(1);
+                    if (count == 0) high = low;
+                }
+                DBMS.close(rs);
+                rs = null;
+                conn.commit();
+                if (count == 0) {
+                    break;
+                }
+
+                psInsert.setInt(1, jobId);
+                psInsert.setInt(2, low);
+                psInsert.setInt(3, high);
+                int irows = psInsert.executeUpdate();
+                psDelete.setInt(1, jobId);
+                psDelete.setInt(2, low);
+                psDelete.setInt(3, high);
+                int drows = psDelete.executeUpdate();
+                if (drows != irows) {
+                    conn.rollback();
+                    log.debug("The delete did not modify the same number of rows"
+                            + " that the insert added (" + irows + " inserted, "
+                            + drows + " deleted). Transaction rolled back.");
+                    throw new Exception("Mismatched insert/delete count."
+                            + " Transaction rolled back (" + irows + " inserted, "
+                            + drows + " deleted, detail ids " + low + " to " + high + ")");
+                }
+                conn.commit();
+                rows += irows;
+                chunks++;
+                below = low;
+                if (count < ARCHIVE_CHUNK_SIZE) {
+                    break;
+                }
+            }
             if (rows == 0) {
-                conn.rollback();  // not that this will do anything...
                 log.debug("The update had no effect."
                         + " Most likely the job detail record do not exist or"
                         + " have already been archived.");
                 throw new Exception("The update command affected "
                         + rows + " rows.");
             }
-            DBMS.close(ps);
+            log.debug("archived " + rows + " detail records of job " + jobId + " in " + chunks + " chunks");
+        } catch (Exception dberr) {
+            String err = "Failed to archive detail records";
+            log.error(err, dberr);
+            throw new EJBException(err, dberr);
+        } finally {
+            DBMS.close(rs);
+            DBMS.close(psSelect);
+            DBMS.close(psInsert);
+            DBMS.close(psDelete);
+            DBMS.close(conn);
+            ApplicationServer.close(ctx);
+        }
+    }
+
+    /**
+     * Deletes the archived detail records inserted before the given date, in
+     * chunks of ARCHIVE_CHUNK_SIZE records that are each committed on their own.
+     *
+     * @param before
+     * @param maxRecords   the maximum number of records to delete
+     * @return     the number of records deleted
+     * @throws EJBException
+     */
+    public int purgeArchivedDetail(Date before, int maxRecords) throws EJBException {
+        javax.naming.Context ctx = null;
+        java.sql.Connection conn = null;
+        java.sql.PreparedStatement psSelect = null;
+        java.sql.PreparedStatement psDelete = null;
+        java.sql.ResultSet rs = null;
+        StringBuffer sqlStmt = new StringBuffer(500);
+        int rows = 0;
+
+        log.debug("purgeArchivedDetail (before " + before + ", max " + maxRecords + ")");
+
+        try {
+            conn = DBMS.getTransConnection();
+            conn.setAutoCommit(false);
+
+            sqlStmt.setLength(0);
+            sqlStmt.append(" SELECT");
+            sqlStmt.append(" sched_job_id");
+            sqlStmt.append(",");
+            sqlStmt.append(" sched_job_detail_id");
+            sqlStmt.append(" FROM");
+            sqlStmt.append(" archive_sched_job_detail");
+            sqlStmt.append(" WHERE");
+            sqlStmt.append(" insert_date < ?");
+            psSelect = conn.prepareStatement(sqlStmt.toString());
 
             sqlStmt.setLength(0);
             sqlStmt.append(" DELETE FROM");
-            sqlStmt.append(" sched_job_detail");
+            sqlStmt.append(" archive_sched_job_detail");
             sqlStmt.append(" WHERE");
             sqlStmt.append(" sched_job_id = ?");
-            ps = conn.prepareStatement(sqlStmt.toString());
-            ps.setInt(1, jobId);
-            int drows = ps.executeUpdate();
-            if (drows != rows) {
-                conn.rollback();
-                log.debug("The delete did not modify the same number of rows"
-                        + " that the insert added (" + rows + " inserted, "
-                        + drows + " deleted). Transaction rolled back.");
-                throw new Exception("Mismatched insert/delete count."
-                        + " Transaction rolled back (" + rows + " inserted, "
-                        + drows + " deleted)");
+            sqlStmt.append(" AND");
+            sqlStmt.append(" sched_job_detail_id = ?");
+            psDelete = conn.prepareStatement(sqlStmt.toString());
+
+            while (rows < maxRecords) {
+                int chunk = Math.min(ARCHIVE_CHUNK_SIZE, maxRecords - rows);
+                psSelect.setTimestamp(1, new java.sql.Timestamp(before.getTime()));
+                psSelect.setMaxRows(chunk);
+                rs = psSelect.executeQuery();
+                int count = 0;
+                for (; rs.next(); count++) {
+                    psDelete.setInt(1, rs.getInt(1));
+                    psDelete.setInt(2, rs.getInt(2));
+                    psDelete.addBatch();
+                }
+                DBMS.close(rs);
+                rs = null;
+                if (count > 0) {
+                    rows += executeBatch(psDelete);
+                }
+                conn.commit();
+                if (count < chunk) {
+                    break;
+                }
             }
-            conn.commit();
+            log.debug("purged " + rows + " archived detail records");
         } catch (Exception dberr) {
-            String err = "Failed to archive detail records";
+            String err = "Failed to purge archived detail records";
             log.error(err, dberr);
             throw new EJBException(err, dberr);
         } finally {
             DBMS.close(rs);
-            DBMS.close(ps);
+            DBMS.close(psSelect);
+            DBMS.close(psDelete);
             DBMS.close(conn);
             ApplicationServer.close(ctx);
         }
+        return rows;
     }
 
     /**
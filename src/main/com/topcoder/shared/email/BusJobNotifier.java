@@ -0,0 +1,76 @@
+package com.topcoder.shared.email;
+
+import com.topcoder.shared.messagebus.BusFactory;
+import com.topcoder.shared.messagebus.BusListener;
+import com.topcoder.shared.messagebus.BusMessage;
+import com.topcoder.shared.messagebus.BusPublisher;
+import com.topcoder.shared.util.VMUtil;
+
+import java.util.Date;
+
+/**
+ * A JobNotifier that sends the notifications through the message bus, so the
+ * schedulers running in other VMs receive them.  The bus must be configured
+ * with a topic for the <code>EmailJobCfg</code> key, and a mapper for the
+ * <code>EmailJob</code> messages, as busconfig.xml does.
+ *
+ * @version  $Revision$
+ */
+public class BusJobNotifier extends JobNotifier {
+    /**
+     * The configuration key of the publisher and listener in the bus configuration.
+     */
+    public static final String BUS_CONFIG_KEY = "EmailJobCfg";
+    public static final String MESSAGE_TYPE = "EmailJob";
+    public static final String BODY_TYPE = "emailjobs:JobScheduled";
+    private static final String MODULE_NAME = "EmailJobNotifier";
+
+    private final InProcessJobNotifier local = new InProcessJobNotifier();
+    private BusPublisher publisher = null;
+    private BusListener listener = null;
+
+    /**
+     * Publishes the notification on the bus, the listeners of this VM receive it from the bus.
+     * @param jobId
+     * @param startAfter
+     * @throws Exception
+     */
+    public void publish(int jobId, long startAfter) throws Exception {
+        BusMessage message = new BusMessage();
+        message.setMessageOriginVM(VMUtil.getVMInstanceId());
+        message.setMessageOriginModule(MODULE_NAME);
+        message.setMessageType(MESSAGE_TYPE);
+        message.setMessageDate(new Date());
+        message.setMessageBodyType(BODY_TYPE);
+        message.setMessageBody(new JobScheduledEvent(jobId, startAfter));
+        getPublisher().publish(message);
+    }
+
+    public synchronized void addListener(Listener l) throws Exception {
+        if (listener == null) {
+            BusListener busListener = BusFactory.getFactory().createListener(BUS_CONFIG_KEY, MODULE_NAME);
+            busListener.setHandler(new BusListener.Handler() {
+                public void handle(BusMessage message) {
+                    if (message.getMessageBody() instanceof JobScheduledEvent) {
+                        JobScheduledEvent event = (JobScheduledEvent) message.getMessageBody();
+                        local.publish(event.getJobId(), event.getStartAfter());
+                    }
+                }
+            });
+            busListener.start();
+            listener = busListener;
+        }
+        local.addListener(l);
+    }
+
+    public void removeListener(Listener l) {
+        local.removeListener(l);
+    }
+
+    private synchronized BusPublisher getPublisher() throws Exception {
+        if (publisher == null) {
+            publisher = BusFactory.getFactory().createPublisher(BUS_CONFIG_KEY, MODULE_NAME);
+        }
+        return publisher;
+    }
+}
@@ -1,11 +1,18 @@
 package com.topcoder.shared.email;
 
 import com.topcoder.shared.ejb.EmailServices.*;
-import com.topcoder.shared.util.StageQueue;
+import com.topcoder.shared.util.Stage;
+import com.topcoder.shared.util.TokenBucket;
 import com.topcoder.shared.util.logging.Logger;
 
 import javax.naming.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The EmailJobScheduler is responsible for periodically checking
@@ -15,7 +22,15 @@ import java.util.*;
  * remains resident until it is requested that it stop.
  *
  * Email jobs are run in separate threads from the scheduler, so
- * multiple jobs may be processed in parallel.
+ * multiple jobs may be processed in parallel.  The emails of a job are
+ * sent on a worker pool shared by all jobs, so a job isn't limited by the
+ * time taken to send a single email.
+ *
+ * If a {@link JobNotifier} is configured, the scheduler is woken up as soon
+ * as a job is created or rescheduled, and polls the database at the
+ * fallback_polling_interval_msec instead.  It defaults to the
+ * polling_interval_msec, so a lost notification doesn't delay a job longer
+ * than without notifications; raise it once notifications are known to arrive.
  *
  * @author   Eric Ellingson
  * @version  $Revision$
@@ -27,17 +42,40 @@ public class EmailJobScheduler {
     private String contextFactory = "org.jnp.interfaces.NamingContextFactory";
     private String contextProvider = "t3://172.16.20.140:8020";
     private int pollingInterval_msec = 60000;   // how often to recheck the database for new work
+    private int fallbackPollingInterval_msec = 60000;   // how often to recheck the database when jobs are notified
     private int maxWorkerThreads = 10;          // how many different tasks to run simultaneously
     private int maxEmailsPerSec = 100;          // throttle limiter on how many emails to push send in one second
+    private int maxSendThreads = 20;            // how many emails to send simultaneously, for all jobs
+    private int maxSendThreadsPerJob = 10;      // how many emails of a single job to send simultaneously
+    private int maxEmailsPerSecPerRelay = 0;    // throttle limiter on how many emails all jobs push to the SMTP relay in one second, 0 for no limit
     private int jobTimeout_msec = 300000;       // minimum amount of time to wait before taking over a previously scheduled task
+    private int archiveRetentionDays = 0;       // how long to keep the archived detail records of jobs, 0 to keep them forever
 
     // the following are state variables that keep track of the current state of the scheduler
     private long schedulerId = 0;                // used to mark tasks as being worked on, read from the database
     private int timeoutFrac = 1;
     private final int HISTORY_SIZE = 10;
+    private static final long DRAIN_TIMEOUT_MSEC = 30000;  // how long to wait for running jobs when the scheduler stops
+    private static final long MIN_CHECK_INTERVAL_MSEC = 1000;  // notifications arriving closer than this are handled by a single check
+    private static final long PURGE_INTERVAL_MSEC = 3600000;   // how often to purge expired archived detail records
+    private static final int PURGE_MAX_RECORDS = 20000;        // how many archived detail records to purge per check
     private long history[] = new long[HISTORY_SIZE];
     private boolean stopRequested = false;
     private Thread waitThread = null;
+    private Stage jobStage = null;
+    private ThreadPoolExecutor sendPool = null;
+    private TokenBucket relayLimiter = null;
+    private JobNotifier notifier = null;
+    private final TreeSet wakeTimes = new TreeSet();    // the start times of the notified jobs
+    private long lastCheckTime = 0;
+    private long lastPurgeTime = 0;
+    private volatile boolean jobsWaiting = false;       // there were more ready jobs than threads at the last check
+    private final JobNotifier.Listener jobListener = new JobNotifier.Listener() {
+        public void jobScheduled(int jobId, long startAfter) {
+            log.debug("Notified of job " + jobId);
+            wakeAt(startAfter);
+        }
+    };
 
     private static Logger log = Logger.getLogger(EmailJobScheduler.class);
 
@@ -78,6 +116,27 @@ public class EmailJobScheduler {
          * Last chance to cleanup before exiting.
          */
         shutdown();
+        release();
+    }
+
+    /**
+     * This function releases the threads and the notification listener
+     * that are kept throughout the life-cycle of the scheduler.
+     */
+    public void release() {
+        if (notifier != null) {
+            notifier.removeListener(jobListener);
+            notifier = null;
+        }
+        if (jobStage != null) {
+            // running jobs that don't complete in time are interrupted, they reset their status to ready
+            jobStage.shutdown(DRAIN_TIMEOUT_MSEC);
+            jobStage = null;
+        }
+        if (sendPool != null) {
+            sendPool.shutdown();
+            sendPool = null;
+        }
     }
 
     /**
@@ -91,12 +150,40 @@ public class EmailJobScheduler {
     }
 
     /**
-     * This function pauses for the configured polling interval.
+     * This function pauses for the configured polling interval, or until
+     * a notified job can start.
      */
     public void pause() {
+        long now = System.currentTimeMillis();
+        long pollTime = now + (notifier == null ? pollingInterval_msec : fallbackPollingInterval_msec);
+        long minTime = lastCheckTime + MIN_CHECK_INTERVAL_MSEC;
         try {
-            waitThread.sleep(pollingInterval_msec);
-        } catch (Exception ignore) {
+            synchronized (wakeTimes) {
+                for (; !stopRequested; now = System.currentTimeMillis()) {
+                    long wakeTime = pollTime;
+                    if (!wakeTimes.isEmpty()) {
+                        wakeTime = Math.min(wakeTime, Math.max(minTime, ((Long) wakeTimes.first()).longValue()));
+                    }
+                    if (now >= wakeTime) {
+                        break;
+                    }
+                    wakeTimes.wait(wakeTime - now);
+                }
+                // the check that follows picks up all the jobs that can start by now
+                wakeTimes.headSet(new Long(now + 1)).clear();
+            }
+        } catch (InterruptedException ignore) {
+        }
+    }
+
+    /**
+     * Wakes the scheduler up at the given time, or as soon as possible if it has passed.
+     * @param time
+     */
+    private void wakeAt(long time) {
+        synchronized (wakeTimes) {
+            wakeTimes.add(new Long(time));
+            wakeTimes.notifyAll();
         }
     }
 
@@ -107,9 +194,18 @@ public class EmailJobScheduler {
     public void startup() {
         stopRequested = false;
         waitThread = Thread.currentThread();
-        StageQueue.start(maxWorkerThreads);
+        // the stage is kept when the profile changes, so running jobs are not affected
+        if (jobStage == null) {
+            // jobs are only queued when there are idle threads, the queue is just some slack
+            jobStage = new Stage("EmailJobs", maxWorkerThreads, maxWorkerThreads, Stage.REJECT_ABORT);
+        } else {
+            jobStage.setThreads(maxWorkerThreads);
+        }
+        startSendPool();
+        startNotifier();
         Arrays.fill(history, 0);
         timeoutFrac = 0;
+        lastCheckTime = 0;
         log.info("Started EmailJobScheduler");
     }
 
@@ -132,6 +228,8 @@ public class EmailJobScheduler {
                 contextProvider);
         int newPollingInterval = readConfig(resource, "polling_interval_msec",
                 pollingInterval_msec);
+        int newFallbackPollingInterval = readConfig(resource, "fallback_polling_interval_msec",
+                fallbackPollingInterval_msec);
         int newWorkerThreads = readConfig(resource, "max_worker_threads",
                 maxWorkerThreads);
         int newMaxEmailsPerSec = readConfig(resource,
@@ -139,6 +237,15 @@ public class EmailJobScheduler {
                 maxEmailsPerSec);
         int newJobTimeout_msec = readConfig(resource, "job_timeout_msec",
                 jobTimeout_msec);
+        int newSendThreads = readConfig(resource, "max_send_threads",
+                maxSendThreads);
+        int newSendThreadsPerJob = readConfig(resource, "max_send_threads_per_job",
+                maxSendThreadsPerJob);
+        int newMaxEmailsPerSecPerRelay = readConfig(resource,
+                "max_emails_per_second_per_relay",
+                maxEmailsPerSecPerRelay);
+        int newArchiveRetentionDays = readConfig(resource, "archive_retention_days",
+                archiveRetentionDays);
 
         // force values into a resonable range or warn for values that don't seem right.
         if (newPollingInterval < 1000)
@@ -153,6 +260,9 @@ public class EmailJobScheduler {
             log.warn(msg);
         }
 
+        if (newFallbackPollingInterval < newPollingInterval)
+            newFallbackPollingInterval = newPollingInterval;
+
         if (newJobTimeout_msec < newPollingInterval)
             newJobTimeout_msec = newPollingInterval;
 
@@ -178,13 +288,33 @@ public class EmailJobScheduler {
         if (newMaxEmailsPerSec < 1)
             newMaxEmailsPerSec = 1;
 
+        if (newSendThreads < 1)
+            newSendThreads = 1;
+
+        if (newSendThreadsPerJob < 1)
+            newSendThreadsPerJob = 1;
+
+        if (newSendThreadsPerJob > newSendThreads)
+            newSendThreadsPerJob = newSendThreads;
+
+        if (newMaxEmailsPerSecPerRelay < 0)
+            newMaxEmailsPerSecPerRelay = 0;
+
+        if (newArchiveRetentionDays < 0)
+            newArchiveRetentionDays = 0;
+
         if (!configRead
                 || !newContextFactory.equals(contextFactory)
                 || !newContextProvider.equals(contextProvider)
                 || newWorkerThreads != maxWorkerThreads
                 || newPollingInterval != pollingInterval_msec
+                || newFallbackPollingInterval != fallbackPollingInterval_msec
                 || newMaxEmailsPerSec != maxEmailsPerSec
-                || newJobTimeout_msec != jobTimeout_msec) {
+                || newJobTimeout_msec != jobTimeout_msec
+                || newSendThreads != maxSendThreads
+                || newSendThreadsPerJob != maxSendThreadsPerJob
+                || newMaxEmailsPerSecPerRelay != maxEmailsPerSecPerRelay
+                || newArchiveRetentionDays != archiveRetentionDays) {
             // profile changed
             if (configRead)
                 shutdown();
@@ -193,15 +323,25 @@ public class EmailJobScheduler {
             contextProvider = newContextProvider;
             maxWorkerThreads = newWorkerThreads;
             pollingInterval_msec = newPollingInterval;
+            fallbackPollingInterval_msec = newFallbackPollingInterval;
             maxEmailsPerSec = newMaxEmailsPerSec;
             jobTimeout_msec = newJobTimeout_msec;
+            maxSendThreads = newSendThreads;
+            maxSendThreadsPerJob = newSendThreadsPerJob;
+            maxEmailsPerSecPerRelay = newMaxEmailsPerSecPerRelay;
+            archiveRetentionDays = newArchiveRetentionDays;
             log.info("Email configuration updated.");
             log.info("Email context_factory: " + contextFactory);
             log.info("Email context_provider: " + contextProvider);
             log.info("Email polling_interval_msec: " + pollingInterval_msec);
+            log.info("Email fallback_polling_interval_msec: " + fallbackPollingInterval_msec);
             log.info("Email max_worker_threads: " + maxWorkerThreads);
             log.info("Email max_emails_per_second_per_job: " + maxEmailsPerSec);
             log.info("Email job_timeout_msec: " + jobTimeout_msec);
+            log.info("Email max_send_threads: " + maxSendThreads);
+            log.info("Email max_send_threads_per_job: " + maxSendThreadsPerJob);
+            log.info("Email max_emails_per_second_per_relay: " + maxEmailsPerSecPerRelay);
+            log.info("Email archive_retention_days: " + archiveRetentionDays);
             startup();
         }
     }
@@ -214,6 +354,31 @@ public class EmailJobScheduler {
         return maxEmailsPerSec;
     }
 
+    /**
+     * Access member for EmailJobScheduler to get the pool the emails are sent on
+     * @return
+     */
+    public ExecutorService getSendPool() {
+        return sendPool;
+    }
+
+    /**
+     * Access member for EmailJobScheduler to get the maxSendThreadsPerJob config variable
+     * @return
+     */
+    public int getMaxSendThreadsPerJob() {
+        return maxSendThreadsPerJob;
+    }
+
+    /**
+     * Access member for EmailJobScheduler to get the rate limiter shared by all jobs
+     * sending to the SMTP relay
+     * @return     the limiter, or null if the relay isn't limited
+     */
+    public TokenBucket getRelayLimiter() {
+        return relayLimiter;
+    }
+
     /**
      * Access member for EmailJobScheduler to get the current schedulerId
      * @return
@@ -324,9 +489,11 @@ public class EmailJobScheduler {
 
             schedulerId = email.getSchedulerId();
 
-            // update history
+            // update history, checks are not evenly spaced when jobs are notified
+            long now = System.currentTimeMillis();
             long clearId = history[0];
-            timeoutFrac += pollingInterval_msec;
+            timeoutFrac += lastCheckTime == 0 ? pollingInterval_msec : (int) Math.min(now - lastCheckTime, jobTimeout_msec);
+            lastCheckTime = now;
             int historyInc = jobTimeout_msec / HISTORY_SIZE;
             if (historyInc < 1) historyInc = 1;
             for (; timeoutFrac >= historyInc; timeoutFrac -= historyInc) {
@@ -353,7 +520,9 @@ public class EmailJobScheduler {
                 email.setJobStatus(jobId, email.INCOMPLETE);
             }
 
-            int newJobs = StageQueue.available();
+            int newJobs = jobStage.available();
+            log.debug(jobStage.toString());
+            jobsWaiting = false;
 
             jobs = email.getJobs(email.READY, email.INRANGE);
             jobItr = jobs.iterator();
@@ -364,10 +533,17 @@ public class EmailJobScheduler {
                 if (email.acquireJob(jobId, schedulerId)) {
                     log.debug("Preparing to queue job " + jobId);
                     email.setJobStatus(jobId, email.ACTIVE);
-                    StageQueue.addTask(createTask(ctx, jobId));
+                    if (!queueTask(ctx, jobId)) {
+                        email.setJobStatus(jobId, email.READY);
+                        jobsWaiting = true;
+                        break;
+                    }
                     newJobs--;
                 }
             }
+            if (newJobs < 0 && jobItr.hasNext()) {
+                jobsWaiting = true;
+            }
 
             jobs = email.getJobs(email.ACTIVE, email.INRANGE);
             jobItr = jobs.iterator();
@@ -379,7 +555,10 @@ public class EmailJobScheduler {
                 if (controlId < clearId) {
                     if (email.acquireJob(jobId, schedulerId, controlId)) {
                         log.debug("Preparing to re-queue job " + jobId);
-                        StageQueue.addTask(createTask(ctx, jobId));
+                        if (!queueTask(ctx, jobId)) {
+                            // it will time out again and be picked up later
+                            break;
+                        }
                         newJobs--;
                     }
                 }
@@ -391,6 +570,8 @@ public class EmailJobScheduler {
                 email.clearJobControlIds(clearId);
             }
 
+            purgeArchive(email, now);
+
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
@@ -403,6 +584,59 @@ public class EmailJobScheduler {
         }
     }
 
+    /**
+     * Purges the archived detail records older than archive_retention_days.
+     * Each check purges at most PURGE_MAX_RECORDS records, the purge goes on
+     * at the next check until there are no more.
+     * @param email
+     * @param now
+     * @throws Exception
+     */
+    private void purgeArchive(EmailServer email, long now) throws Exception {
+        if (archiveRetentionDays == 0 || now - lastPurgeTime < PURGE_INTERVAL_MSEC) {
+            return;
+        }
+        Date before = new Date(now - archiveRetentionDays * 86400000L);
+        int rows = email.purgeArchivedDetail(before, PURGE_MAX_RECORDS);
+        log.debug("Purged " + rows + " archived detail records before " + before);
+        if (rows < PURGE_MAX_RECORDS) {
+            lastPurgeTime = now;
+        }
+    }
+
+    /**
+     * Creates the task of the job and queues it.  When the task ends, the
+     * scheduler is woken up if there are jobs waiting for a thread.
+     * @param ctx
+     * @param jobId
+     * @return     false if the queue is full
+     * @throws Exception
+     */
+    private boolean queueTask(Context ctx, int jobId) throws Exception {
+        final Runnable task = createTask(ctx, jobId);
+        try {
+            jobStage.submit(new Runnable() {
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        if (jobsWaiting) {
+                            wakeAt(System.currentTimeMillis());
+                        }
+                    }
+                }
+
+                public String toString() {
+                    return task.toString();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("Could not queue job " + jobId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Lookup a task type and create an object to put into the queue.
      * @param ctx
@@ -431,6 +665,60 @@ public class EmailJobScheduler {
         }
     }
 
+    /**
+     * This function creates the pool the emails are sent on, or resizes it if
+     * it is already running.  The pool is kept when the profile changes, since
+     * running jobs are still using it.
+     */
+    private void startSendPool() {
+        if (sendPool == null) {
+            sendPool = new ThreadPoolExecutor(maxSendThreads, maxSendThreads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue(), new ThreadFactory() {
+                private int count = 0;
+
+                public synchronized Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "EmailSender." + count++);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        } else if (maxSendThreads > sendPool.getMaximumPoolSize()) {
+            sendPool.setMaximumPoolSize(maxSendThreads);
+            sendPool.setCorePoolSize(maxSendThreads);
+        } else {
+            sendPool.setCorePoolSize(maxSendThreads);
+            sendPool.setMaximumPoolSize(maxSendThreads);
+        }
+
+        if (maxEmailsPerSecPerRelay == 0) {
+            relayLimiter = null;
+        } else if (relayLimiter == null) {
+            relayLimiter = new TokenBucket(maxEmailsPerSecPerRelay, maxEmailsPerSecPerRelay);
+        } else {
+            relayLimiter.setRate(maxEmailsPerSecPerRelay, maxEmailsPerSecPerRelay);
+        }
+    }
+
+    /**
+     * This function starts listening for job notifications, if a notifier
+     * is configured.  Without one, the scheduler polls at the polling_interval_msec.
+     */
+    private void startNotifier() {
+        if (notifier == null) {
+            JobNotifier newNotifier = JobNotifier.getNotifier();
+            if (newNotifier != null) {
+                try {
+                    newNotifier.addListener(jobListener);
+                    notifier = newNotifier;
+                    log.info("Listening for job notifications");
+                } catch (Exception e) {
+                    log.error("Failed to listen for job notifications, polling every "
+                            + pollingInterval_msec + " msec", e);
+                }
+            }
+        }
+    }
+
     /**
      * This function shuts down resources that are used
      * throughout the life-cycle of the scheduler.
@@ -438,7 +726,6 @@ public class EmailJobScheduler {
     public void shutdown() {
         log.info("Shutting down EmailJobScheduler");
         if (waitThread == Thread.currentThread()) waitThread = null;
-        StageQueue.stop();
     }
 
 }
@@ -0,0 +1,254 @@
+package com.topcoder.shared.email;
+
+import com.topcoder.shared.util.TCSEmailMessage;
+import com.topcoder.shared.util.logging.Logger;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.*;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The EmailRenderer merges email templates with member data.
+ *
+ * Templates are compiled once and cached by template id.  The template data is used as
+ * modification stamp, so a template changed in the database is compiled again the next
+ * time it is used.  Each thread keeps the transformer of the last template it used, so
+ * sending a job only creates one transformer per sending thread.
+ *
+ * The recipient address (member/email_address) is read while the member data is
+ * transformed, instead of parsing the data a second time.
+ *
+ * @version  $Revision$
+ */
+final class EmailRenderer {
+
+    private static Logger log = Logger.getLogger(EmailRenderer.class);
+
+    private static final String MEMBER = "member";
+    private static final String EMAIL_ADDRESS = "email_address";
+
+    private static final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+    private static final SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+
+    static {
+        parserFactory.setNamespaceAware(true);
+    }
+
+    /**
+     * template id -> CompiledTemplate
+     */
+    private static final ConcurrentHashMap templates = new ConcurrentHashMap();
+    private static final AtomicLong compileCount = new AtomicLong(0);
+
+    private static final ThreadLocal transformers = new ThreadLocal();
+    private static final ThreadLocal readers = new ThreadLocal();
+
+    private EmailRenderer() {
+    }
+
+    /**
+     * Merges the template with the member data and fills in the TO address and the
+     * body of the message.
+     *
+     * @param message
+     * @param templateId
+     * @param templateXSL
+     * @param memberXML
+     * @throws Exception if the transformation failed or the data has no email address
+     */
+    static void render(TCSEmailMessage message, int templateId, String templateXSL, String memberXML)
+            throws Exception {
+        RecipientFilter filter = new RecipientFilter(getReader());
+        String body = transform(templateId, templateXSL, new SAXSource(filter, new InputSource(new StringReader(memberXML))));
+        String emailAddress = filter.getRecipient();
+        if (emailAddress == null) {
+            throw new Exception("Failed to parse TO address : no " + MEMBER + "/" + EMAIL_ADDRESS + " in " + memberXML);
+        }
+        message.setToAddress(emailAddress, TCSEmailMessage.TO);
+        message.setBody(body);
+    }
+
+    /**
+     * Merges the template with the data.
+     *
+     * @param templateId
+     * @param templateXSL
+     * @param dataXML
+     * @return the result of the transformation
+     * @throws TransformerException
+     */
+    static String render(int templateId, String templateXSL, String dataXML) throws TransformerException {
+        return transform(templateId, templateXSL, new StreamSource(new StringReader(dataXML)));
+    }
+
+    /**
+     * Returns the member/email_address of the member data, without building a document.
+     *
+     * @param memberXML
+     * @return the address, <code>null</code> if there is none
+     * @throws Exception if the data could not be parsed
+     */
+    static String getRecipient(String memberXML) throws Exception {
+        RecipientFilter filter = new RecipientFilter(getReader());
+        try {
+            filter.parse(new InputSource(new StringReader(memberXML)));
+        } catch (SAXException e) {
+            readers.set(null);
+            Exception x = e.getException() != null ? e.getException() : e;
+            throw new Exception("Failed to parse to address : " + x.toString());
+        }
+        return filter.getRecipient();
+    }
+
+    /**
+     * @return the number of times a template was compiled since the class was loaded
+     */
+    static long getCompileCount() {
+        return compileCount.get();
+    }
+
+    /**
+     * Discards all the compiled templates.
+     */
+    static void clear() {
+        templates.clear();
+    }
+
+    private static String transform(int templateId, String templateXSL, Source source) throws TransformerException {
+        Transformer transformer = getTransformer(getTemplates(templateId, templateXSL));
+        StringWriter msg = new StringWriter();
+        try {
+            transformer.transform(source, new StreamResult(msg));
+        } catch (TransformerException e) {
+            // don't reuse a transformer left in an unknown state
+            transformers.set(null);
+            readers.set(null);
+            throw e;
+        } catch (RuntimeException e) {
+            transformers.set(null);
+            readers.set(null);
+            throw e;
+        }
+        return msg.toString();
+    }
+
+    private static Templates getTemplates(int templateId, String templateXSL) throws TransformerConfigurationException {
+        Integer key = new Integer(templateId);
+        CompiledTemplate compiled = (CompiledTemplate) templates.get(key);
+        if (compiled == null || !compiled.data.equals(templateXSL)) {
+            // Two threads may compile the same template at the same time, the last one wins
+            compiled = new CompiledTemplate(templateXSL,
+                    transformerFactory.newTemplates(new StreamSource(new StringReader(templateXSL))));
+            compileCount.incrementAndGet();
+            templates.put(key, compiled);
+            log.debug("Compiled template " + templateId);
+        }
+        return compiled.templates;
+    }
+
+    private static Transformer getTransformer(Templates compiled) throws TransformerConfigurationException {
+        ThreadTransformer current = (ThreadTransformer) transformers.get();
+        if (current == null || current.templates != compiled) {
+            Transformer transformer = compiled.newTransformer();
+            transformer.setOutputProperty(OutputKeys.ENCODING, "utf-8");
+            current = new ThreadTransformer(compiled, transformer);
+            transformers.set(current);
+        }
+        return current.transformer;
+    }
+
+    private static XMLReader getReader() throws Exception {
+        XMLReader reader = (XMLReader) readers.get();
+        if (reader == null) {
+            reader = parserFactory.newSAXParser().getXMLReader();
+            readers.set(reader);
+        }
+        return reader;
+    }
+
+    /**
+     * A compiled template and the data it was compiled from.
+     */
+    private static final class CompiledTemplate {
+        private final String data;
+        private final Templates templates;
+
+        private CompiledTemplate(String data, Templates templates) {
+            this.data = data;
+            this.templates = templates;
+        }
+    }
+
+    private static final class ThreadTransformer {
+        private final Templates templates;
+        private final Transformer transformer;
+
+        private ThreadTransformer(Templates templates, Transformer transformer) {
+            this.templates = templates;
+            this.transformer = transformer;
+        }
+    }
+
+    /**
+     * Passes the parse events through, keeping the text of the first email_address
+     * element found in a member element.
+     */
+    private static final class RecipientFilter extends XMLFilterImpl {
+        private int memberDepth = 0;
+        private boolean inAddress = false;
+        private boolean found = false;
+        private StringBuffer address = null;
+
+        private RecipientFilter(XMLReader parent) {
+            super(parent);
+        }
+
+        private String getRecipient() {
+            return address == null ? null : address.toString();
+        }
+
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            String name = name(localName, qName);
+            if (MEMBER.equals(name)) {
+                memberDepth++;
+            } else if (!found && memberDepth > 0 && EMAIL_ADDRESS.equals(name)) {
+                inAddress = true;
+                address = new StringBuffer(40);
+            }
+            super.startElement(uri, localName, qName, atts);
+        }
+
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            String name = name(localName, qName);
+            if (MEMBER.equals(name)) {
+                memberDepth--;
+            } else if (inAddress && EMAIL_ADDRESS.equals(name)) {
+                inAddress = false;
+                found = true;
+            }
+            super.endElement(uri, localName, qName);
+        }
+
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (inAddress) {
+                address.append(ch, start, length);
+            }
+            super.characters(ch, start, length);
+        }
+
+        private static String name(String localName, String qName) {
+            return localName == null || localName.length() == 0 ? qName : localName;
+        }
+    }
+}
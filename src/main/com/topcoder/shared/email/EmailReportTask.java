@@ -2,16 +2,9 @@ package com.topcoder.shared.email;
 
 import com.topcoder.shared.ejb.EmailServices.*;
 import com.topcoder.shared.util.logging.Logger;
-import org.w3c.dom.*;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 import javax.naming.Context;
-import javax.xml.parsers.*;
 import javax.xml.transform.*;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
-import java.io.*;
 import java.util.*;
 
 /**
@@ -74,7 +67,7 @@ public class EmailReportTask extends EmailTask implements Runnable {
             int templateId = job.getTemplateId(jobId);
             String reportXML = getReportData();
             String templateXSL = template.getData(templateId);
-            String newTemplateXSL = mergeData(templateXSL, reportXML, server);
+            String newTemplateXSL = mergeData(templateId, templateXSL, reportXML, server);
             // add template to database
             Map groupMap = templateGroup.getGroups();
             int groupId = -1;
@@ -123,6 +116,7 @@ public class EmailReportTask extends EmailTask implements Runnable {
 
     /**
      * This function assembles the template and the report data.
+     * @param templateId
      * @param templateXSL
      * @param memberXML
      * @param server
@@ -130,37 +124,9 @@ public class EmailReportTask extends EmailTask implements Runnable {
      * @throws TransformerConfigurationException
      * @throws Exception
      */
-    private String mergeData(String templateXSL, String memberXML, EmailServer server)
+    private String mergeData(int templateId, String templateXSL, String memberXML, EmailServer server)
             throws TransformerConfigurationException, Exception {
-        Reader memberReader = null;
-        Reader templateReader = null;
-
-        try {
-            TransformerFactory tFactory = TransformerFactory.newInstance();
-            // Get the XML input document and the stylesheet, both in the servlet
-            // engine document directory.
-            memberReader = new StringReader(memberXML);
-            templateReader = new StringReader(templateXSL);
-            Source memberSource = new StreamSource(memberReader);
-            Source templateSource = new StreamSource(templateReader);
-            // Generate the transformer.
-            Transformer transformer = tFactory.newTransformer(templateSource);
-            // Perform the transformation, sending the output to the response.
-            transformer.setOutputProperty(OutputKeys.ENCODING, "utf-8");
-            StringWriter msg = new StringWriter();
-            Result xmlResult = new StreamResult(msg);
-            transformer.transform(memberSource, xmlResult);
-            return msg.toString();
-        } finally {
-            try {
-                if (memberReader != null) memberReader.close();
-            } catch (Exception e) {
-            }
-            try {
-                if (templateReader != null) templateReader.close();
-            } catch (Exception e) {
-            }
-        }
+        return EmailRenderer.render(templateId, templateXSL, memberXML);
     }
 
     /**
@@ -171,12 +137,9 @@ public class EmailReportTask extends EmailTask implements Runnable {
     private int getSourceId() throws Exception {
         EmailJob job = ((EmailJobHome) ctx.lookup("com.topcoder.shared.ejb.EmailServices.EmailJobHome")).create();
 
-        Map map = job.getJobDetailResults(jobId);
-        Set key = map.keySet();
-        if (key.isEmpty()) throw new Exception("Missing detail record for source job id");
-        Iterator itr = key.iterator();
-        int detailId = ((Integer) itr.next()).intValue();
-        String detailData = job.getJobDetailData(jobId, detailId);
+        List details = job.getJobDetailRecords(jobId, 0, 1);
+        if (details.isEmpty()) throw new Exception("Missing detail record for source job id");
+        String detailData = ((EmailJobDetail) details.get(0)).getData();
         return Integer.parseInt(detailData);
     }
 
@@ -237,13 +200,10 @@ public class EmailReportTask extends EmailTask implements Runnable {
         list[FAILED] = new StringBuffer(1000);
         list[OTHER] = new StringBuffer(1000);
 
-        Map map = job.getJobDetailResults(sourceId);
-        Set key = map.keySet();
-        Iterator itr = key.iterator();
-        for (; itr.hasNext();) {
-            Object obj = itr.next();
-            int detailId = ((Integer) obj).intValue();
-            int status = ((Integer) map.get(obj)).intValue();
+        JobDetailReader details = new JobDetailReader(job, sourceId);
+        while (details.hasNext()) {
+            EmailJobDetail detail = details.next();
+            int status = detail.getStatusId();
             if (status == EmailServer.MSG_SENT)
                 status = SENT;
             else if (status == EmailServer.MSG_FAILED)
@@ -252,11 +212,9 @@ public class EmailReportTask extends EmailTask implements Runnable {
                 status = OTHER;
 
             count[status]++;
-            String data = job.getJobDetailData(sourceId, detailId);
-            list[status].append(parseData(data));
+            list[status].append(parseData(detail.getData()));
             if (status != SENT) {
-                String reason = job.getJobDetailReason(sourceId, detailId);
-                list[status].append(" - " + reason);
+                list[status].append(" - " + detail.getReason());
             }
             list[status].append("\n");
         }
@@ -323,43 +281,11 @@ public class EmailReportTask extends EmailTask implements Runnable {
      * @throws Exception
      */
     private String parseData(String data) throws Exception {
-        String ret = null;
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        Reader reader = null;
-        try {
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            reader = new StringReader(data);
-            InputSource source = new InputSource(reader);
-            Document document = builder.parse(source);
-
-            NodeList nodes = document.getElementsByTagName("member");
-            nodes = ((Element) (nodes.item(0))).getElementsByTagName("email_address");
-            String emailAddress = ((Text) (((Element) (nodes.item(0))).getFirstChild())).getData();
-            return emailAddress;
-        } catch (SAXException sxe) {
-            // Error generated during parsing
-            Exception x = sxe;
-            if (sxe.getException() != null)
-                x = sxe.getException();
-            x.printStackTrace();
-            throw new Exception("Failed to parse to address : " + x.toString());
-        } catch (ParserConfigurationException pce) {
-            // Parser with specified options can't be built
-            pce.printStackTrace();
-            throw new Exception("Failed to parse to address : " + pce.toString());
-        } catch (IOException ioe) {
-            // I/O error
-            ioe.printStackTrace();
-            throw new Exception("Failed to parse to address : " + ioe.toString());
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new Exception("Failed to parse TO address : " + e.toString());
-        } finally {
-            try {
-                if (reader != null) reader.close();
-            } catch (Exception e) {
-            }
+        String emailAddress = EmailRenderer.getRecipient(data);
+        if (emailAddress == null) {
+            throw new Exception("Failed to parse TO address : no email address in " + data);
         }
+        return emailAddress;
     }
 
 }
@@ -24,6 +24,11 @@ abstract class EmailTask implements Runnable {
     protected Context ctx;
     protected EmailJobScheduler scheduler;
 
+    /**
+     * Set by the keepAlive thread when the task should stop working on the job.
+     */
+    private volatile boolean jobLost = false;
+
     /**
      * Creates a new object.  The object will be able to send a set of emails
      * when the run method is called (probably from a new thread).
@@ -75,6 +80,26 @@ abstract class EmailTask implements Runnable {
 
     abstract void doWork();
 
+    /*
+     * checkJob is called every second by the keepAlive thread.  It returns
+     * false if the task should stop working on the job, eg: because the job
+     * was assigned to another scheduler.
+     *
+     * Tasks that want more checks (like the status of the job) override it,
+     * so that the checks are done outside of their main loop.
+     */
+    protected boolean checkJob(EmailServer server) throws RemoteException {
+        return verifyJob(server);
+    }
+
+    /*
+     * isJobLost returns true once the keepAlive thread found the task should
+     * stop working on the job.
+     */
+    protected boolean isJobLost() {
+        return jobLost;
+    }
+
     /*
      * verifyJob checks the database to see if the task is still
      * assigned to this scheduler, and if so, it may update the
@@ -122,8 +147,15 @@ abstract class EmailTask implements Runnable {
             for (; keepgoing;) {
                 try {
                     sleep(1000);
-                    if (!task.verifyJob(server)) return;
+                    if (!task.checkJob(server)) {
+                        task.jobLost = true;
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    return;
                 } catch (Exception e) {
+                    log.warn("Failed to check job " + task.jobId + ", stopping (" + e.toString() + ")");
+                    task.jobLost = true;
                     return;
                 }
             }
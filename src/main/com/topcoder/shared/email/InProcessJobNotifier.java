@@ -0,0 +1,38 @@
+package com.topcoder.shared.email;
+
+import com.topcoder.shared.util.logging.Logger;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A JobNotifier that delivers the notifications to the listeners of this VM,
+ * in the publishing thread.  It is used when the EJBs and the scheduler run in
+ * the same VM, and for testing.
+ *
+ * @version  $Revision$
+ */
+public class InProcessJobNotifier extends JobNotifier {
+    private static Logger log = Logger.getLogger(InProcessJobNotifier.class);
+
+    private final List listeners = new CopyOnWriteArrayList();
+
+    public void publish(int jobId, long startAfter) {
+        for (Iterator it = listeners.iterator(); it.hasNext();) {
+            try {
+                ((Listener) it.next()).jobScheduled(jobId, startAfter);
+            } catch (RuntimeException e) {
+                log.error("Job listener failed on job " + jobId, e);
+            }
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+}
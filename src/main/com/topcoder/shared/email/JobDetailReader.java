@@ -0,0 +1,59 @@
+package com.topcoder.shared.email;
+
+import com.topcoder.shared.ejb.EmailServices.EmailJob;
+import com.topcoder.shared.ejb.EmailServices.EmailJobDetail;
+
+import java.rmi.RemoteException;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the detail records of a job in pages, so a job costs one call to
+ * the EmailJob bean per page instead of one per recipient.
+ *
+ * @version  $Revision$
+ */
+final class JobDetailReader {
+    static final int DEFAULT_PAGE_SIZE = 500;
+
+    private final EmailJob job;
+    private final int jobId;
+    private final int pageSize;
+    private List page = Collections.EMPTY_LIST;
+    private int index = 0;
+    private int lastDetailId = 0;
+    private boolean lastPage = false;
+
+    JobDetailReader(EmailJob job, int jobId) {
+        this(job, jobId, DEFAULT_PAGE_SIZE);
+    }
+
+    JobDetailReader(EmailJob job, int jobId, int pageSize) {
+        this.job = job;
+        this.jobId = jobId;
+        this.pageSize = pageSize;
+    }
+
+    boolean hasNext() throws RemoteException {
+        if (index < page.size()) {
+            return true;
+        }
+        if (lastPage) {
+            return false;
+        }
+        page = job.getJobDetailRecords(jobId, lastDetailId, pageSize);
+        index = 0;
+        lastPage = page.size() < pageSize;
+        return !page.isEmpty();
+    }
+
+    EmailJobDetail next() throws RemoteException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        EmailJobDetail detail = (EmailJobDetail) page.get(index++);
+        lastDetailId = detail.getDetailId();
+        return detail;
+    }
+}
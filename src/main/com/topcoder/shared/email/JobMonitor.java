@@ -15,6 +15,8 @@ import java.util.*;
  * The JobMonitor will poll the database and report on the current
  * email jobs that are waiting to be run, are being run, or
  * have finished but are still within their scheduled timeframe.
+ * If a {@link JobNotifier} is configured, the report is also refreshed
+ * when a job is created or rescheduled.
  *
  * The JobMonitor is not intended to be a production quality item,
  * but may still be useful for what it is.
@@ -25,6 +27,9 @@ import java.util.*;
 
 public class JobMonitor {
 
+    private static final long POLL_INTERVAL_MSEC = 5000;
+    private static final long NOTIFIED_POLL_INTERVAL_MSEC = 30000;
+
 
     /**
      *
@@ -32,6 +37,16 @@ public class JobMonitor {
      */
     public static void main(String[] args) {
         Context ctx = null;
+        final Object refresh = new Object();
+        JobNotifier.Listener listener = new JobNotifier.Listener() {
+            public void jobScheduled(int jobId, long startAfter) {
+                synchronized (refresh) {
+                    refresh.notifyAll();
+                }
+            }
+        };
+        JobNotifier notifier = JobNotifier.getNotifier();
+        long interval = POLL_INTERVAL_MSEC;
         ResourceBundle resource = ResourceBundle.getBundle("Email");
         String contextFactory = resource.getString("context_factory");
         String contextProvider = resource.getString("context_provider");
@@ -43,6 +58,10 @@ public class JobMonitor {
 
         try {
 
+            if (notifier != null) {
+                notifier.addListener(listener);
+                interval = NOTIFIED_POLL_INTERVAL_MSEC;
+            }
             ctx = new InitialContext(ht);
 //            EmailJob job = ((EmailJobHome) ctx.lookup("com.topcoder.shared.ejb.EmailServices.EmailJobHome")).create();
             EmailServer svr = ((EmailServerHome) ctx.lookup("com.topcoder.shared.ejb.EmailServices.EmailServerHome")).create();
@@ -74,7 +93,9 @@ public class JobMonitor {
                 page.println("--CURRENT INCOMPLETE--");
                 printJobs(page, ctx, svr.INCOMPLETE, svr.INRANGE);
                 System.out.print(pageStr.toString());
-                Thread.sleep(5000);
+                synchronized (refresh) {
+                    refresh.wait(interval);
+                }
 
             }
 
@@ -84,6 +105,9 @@ public class JobMonitor {
 
         } finally {
 
+            if (notifier != null) {
+                notifier.removeListener(listener);
+            }
             if (ctx != null) {
                 try {
                     ctx.close();
@@ -0,0 +1,105 @@
+package com.topcoder.shared.email;
+
+import com.topcoder.shared.util.logging.Logger;
+
+import java.util.Date;
+import java.util.ResourceBundle;
+
+/**
+ * The JobNotifier tells the schedulers that an email job was created or
+ * rescheduled, so they can pick it up without waiting for their next poll.
+ *
+ * Notifications are only a hint: the schedulers still compete for the job
+ * through <code>EmailServer.acquireJob</code>, and keep polling the database
+ * at a long interval in case a notification is lost.
+ *
+ * The notifier is configured with {@link #configure(JobNotifier)}, or with the
+ * <code>job_notifier_class</code> entry of the Email resource file.  If there
+ * is none, jobs are only found by polling.
+ *
+ * @version  $Revision$
+ */
+public abstract class JobNotifier {
+    private static Logger log = Logger.getLogger(JobNotifier.class);
+
+    private static JobNotifier notifier = null;
+    private static boolean configured = false;
+
+    /**
+     * Sets the notifier used by the EJBs and the schedulers of this VM.
+     * @param notifier     the notifier, or null to disable notifications
+     */
+    public static synchronized void configure(JobNotifier notifier) {
+        JobNotifier.notifier = notifier;
+        configured = true;
+    }
+
+    /**
+     * @return     the notifier of this VM, or null if there is none
+     */
+    public static synchronized JobNotifier getNotifier() {
+        if (!configured) {
+            configured = true;
+            String className = null;
+            try {
+                className = ResourceBundle.getBundle("Email").getString("job_notifier_class");
+            } catch (Exception ignore) {
+            }
+            if (className != null && className.trim().length() > 0) {
+                try {
+                    notifier = (JobNotifier) Class.forName(className.trim()).newInstance();
+                    log.info("Using job notifier " + className);
+                } catch (Exception e) {
+                    log.error("Failed to create job notifier " + className + ", jobs will only be polled", e);
+                }
+            }
+        }
+        return notifier;
+    }
+
+    /**
+     * Tells the schedulers that a job is ready to run from <code>startAfter</code>.
+     * Failures are logged and ignored, the job will be found by polling.
+     * @param jobId
+     * @param startAfter   the start date of the job, null if it can start now
+     */
+    public static void notifyJob(int jobId, Date startAfter) {
+        JobNotifier n = getNotifier();
+        if (n != null) {
+            try {
+                n.publish(jobId, startAfter == null ? 0 : startAfter.getTime());
+            } catch (Exception e) {
+                log.warn("Failed to notify job " + jobId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Sends the notification to the listeners of all the VMs.
+     * @param jobId
+     * @param startAfter   the time the job can start from, in millis
+     * @throws Exception
+     */
+    public abstract void publish(int jobId, long startAfter) throws Exception;
+
+    /**
+     * Adds a listener for the notifications.
+     * @param listener
+     * @throws Exception if the notifier can't listen for notifications
+     */
+    public abstract void addListener(Listener listener) throws Exception;
+
+    public abstract void removeListener(Listener listener);
+
+    /**
+     * Receives the notifications.  It is called from the notifier's threads,
+     * so it should only record the notification.
+     */
+    public interface Listener {
+        /**
+         * @param jobId
+         * @param startAfter   the time the job can start from, in millis
+         */
+        void jobScheduled(int jobId, long startAfter);
+    }
+}
@@ -0,0 +1,53 @@
+package com.topcoder.shared.email;
+
+import com.topcoder.shared.netCommon.CSReader;
+import com.topcoder.shared.netCommon.CSWriter;
+import com.topcoder.shared.netCommon.CustomSerializable;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+/**
+ * The body of the job notifications sent by the {@link BusJobNotifier}.
+ *
+ * @version  $Revision$
+ */
+public class JobScheduledEvent implements Serializable, CustomSerializable {
+    private int jobId;
+    private long startAfter;
+
+    public JobScheduledEvent() {
+    }
+
+    /**
+     * @param jobId
+     * @param startAfter   the time the job can start from, in millis
+     */
+    public JobScheduledEvent(int jobId, long startAfter) {
+        this.jobId = jobId;
+        this.startAfter = startAfter;
+    }
+
+    public int getJobId() {
+        return jobId;
+    }
+
+    public long getStartAfter() {
+        return startAfter;
+    }
+
+    public void customReadObject(CSReader reader) throws IOException, ObjectStreamException {
+        this.jobId = reader.readInt();
+        this.startAfter = reader.readLong();
+    }
+
+    public void customWriteObject(CSWriter writer) throws IOException {
+        writer.writeInt(this.jobId);
+        writer.writeLong(this.startAfter);
+    }
+
+    public String toString() {
+        return "JobScheduledEvent[" + jobId + "," + startAfter + "]";
+    }
+}
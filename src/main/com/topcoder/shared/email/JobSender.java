@@ -0,0 +1,90 @@
+package com.topcoder.shared.email;
+
+import com.topcoder.shared.util.TokenBucket;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The JobSender runs the sends of a job on the scheduler's worker pool.
+ *
+ * Up to <code>maxInFlight</code> sends of the job run at the same time, so a job is limited
+ * by its rate and not by the latency of the mail server.  Each send takes a token from the
+ * job's bucket, then from the relay's bucket, which is shared by all the jobs of the scheduler.
+ *
+ * @version  $Revision$
+ */
+final class JobSender {
+    private final Executor pool;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final TokenBucket jobLimiter;
+    private final TokenBucket relayLimiter;
+
+    /**
+     * @param pool         the worker pool
+     * @param maxInFlight  the number of sends of the job that can run at the same time
+     * @param jobLimiter   the rate limiter of the job
+     * @param relayLimiter the rate limiter of the relay, <code>null</code> if the relay isn't limited
+     */
+    JobSender(Executor pool, int maxInFlight, TokenBucket jobLimiter, TokenBucket relayLimiter) {
+        this.pool = pool;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.inFlight = new Semaphore(this.maxInFlight);
+        this.jobLimiter = jobLimiter;
+        this.relayLimiter = relayLimiter;
+    }
+
+    /**
+     * Waits for a free slot and for the rate limiters, then runs the send on the pool.
+     * If the pool doesn't take it (eg: it was shut down), the send runs in the calling thread.
+     *
+     * @throws InterruptedException if the thread was interrupted while waiting, the send didn't run
+     */
+    void submit(final Runnable send) throws InterruptedException {
+        inFlight.acquire();
+        boolean submitted = false;
+        try {
+            jobLimiter.acquire();
+            if (relayLimiter != null) {
+                relayLimiter.acquire();
+            }
+            Runnable task = new Runnable() {
+                public void run() {
+                    try {
+                        send.run();
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+            };
+            // from here the task releases the slot
+            submitted = true;
+            try {
+                pool.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        } finally {
+            if (!submitted) {
+                inFlight.release();
+            }
+        }
+    }
+
+    /**
+     * Waits until all the sends submitted have completed.
+     */
+    void awaitIdle() {
+        inFlight.acquireUninterruptibly(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    /**
+     * @return the number of sends running or waiting in the pool
+     */
+    int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+}
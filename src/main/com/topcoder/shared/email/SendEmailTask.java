@@ -6,20 +6,13 @@ import com.topcoder.shared.ejb.EmailServices.*;
 import com.topcoder.shared.util.DBMS;
 import com.topcoder.shared.util.EmailEngine;
 import com.topcoder.shared.util.TCSEmailMessage;
+import com.topcoder.shared.util.TokenBucket;
 import com.topcoder.shared.util.sql.InformixSimpleDataSource;
 import com.topcoder.shared.util.logging.Logger;
-import org.w3c.dom.*;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 import javax.ejb.CreateException;
 import javax.naming.Context;
 import javax.naming.NamingException;
-import javax.xml.parsers.*;
-import javax.xml.transform.*;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
-import java.io.*;
 import java.rmi.RemoteException;
 import java.util.*;
 
@@ -39,6 +32,18 @@ public class SendEmailTask extends EmailTask implements Runnable {
 
     private static Logger log = Logger.getLogger(SendEmailTask.class);
 
+    /**
+     * The number of detail records sent to the EmailServer at once when a job is
+     * built from a command.
+     */
+    private static final int DETAIL_BATCH_SIZE = 500;
+
+    /**
+     * The job bean, set while the emails are being sent so the keepAlive thread
+     * can check the status of the job.
+     */
+    private volatile EmailJob job = null;
+
     /**
      * Creates a new object.  The object will be able to send a set of emails
      * when the run method is called (probably from a new thread).
@@ -60,25 +65,29 @@ public class SendEmailTask extends EmailTask implements Runnable {
      * clearing the data source if successful.
      *
      * Then it scans the detail records, sending an email for each record it finds.
+     * The emails are sent in parallel on the scheduler's worker pool, at the rate
+     * allowed for the job and for the relay.  The status of the job and its assignment
+     * to this scheduler are checked by the keepAlive thread, so the sending loop
+     * doesn't have to stop for them.
      */
     public void doWork() {
         boolean incomplete = true;
+        DetailStatusBatch statusUpdates = null;
+        JobSender sender = null;
         try {
             EmailJob job = ((EmailJobHome) ctx.lookup("com.topcoder.shared.ejb.EmailServices.EmailJobHome")).create();
             //EmailList list = ((EmailListHome) ctx.lookup("com.topcoder.shared.ejb.EmailServices.EmailList")).create();
             EmailTemplate template = ((EmailTemplateHome) ctx.lookup("com.topcoder.shared.ejb.EmailServices.EmailTemplateHome")).create();
             EmailServer server = ((EmailServerHome) ctx.lookup("com.topcoder.shared.ejb.EmailServices.EmailServerHome")).create();
 
-            long lastCheck = new Date().getTime();
             int jobType = job.getJobTypeId(jobId);
-            int status = job.getStatusId(jobId);
-            int templateId = job.getTemplateId(jobId);
+            final int templateId = job.getTemplateId(jobId);
             int listId = job.getListId(jobId);
             int commandId = job.getCommandId(jobId);
-            String fromAddress = job.getFromAddress(jobId);
-            String fromPersonal = job.getFromPersonal(jobId);
-            String subject = job.getSubject(jobId);
-            String templateXSL = template.getData(templateId);
+            final String fromAddress = job.getFromAddress(jobId);
+            final String fromPersonal = job.getFromPersonal(jobId);
+            final String subject = job.getSubject(jobId);
+            final String templateXSL = template.getData(templateId);
 
             // The jobThrottle limits how many emails will be sent per second.
             int jobThrottle = scheduler.getMaxEmailsPerSecond();
@@ -90,9 +99,8 @@ public class SendEmailTask extends EmailTask implements Runnable {
                 return;
             }
 
-            TCSEmailMessage message = new TCSEmailMessage();
-            message.setFromAddress(fromAddress, fromPersonal);
-            message.setSubject(subject);
+            // fail now rather than for each email if the sender is invalid
+            new TCSEmailMessage().setFromAddress(fromAddress, fromPersonal);
 
             /* Email jobs have two stages. The first stage builds the job from
              * a list resource (either a static list or a command query).
@@ -111,77 +119,54 @@ public class SendEmailTask extends EmailTask implements Runnable {
              * For each receipient that hasn't been sent an email, fetch the
              * receipient's data from the database and send them an email.
              */
-            Map results = job.getJobDetailResults(jobId);
-            Set detailIds = results.keySet();
-            Iterator detailItr = detailIds.iterator();
-            for (int cycleCount = 0; detailItr.hasNext(); cycleCount++) {
-                if (cycleCount >= jobThrottle) {
-                    long now = new Date().getTime();
-                    long sleepTime = 0;
-                    if (lastCheck < now) sleepTime = now - lastCheck;
-                    if (sleepTime > 1000) sleepTime = 1000; // sleepTime should *NEVER* be more than a second, so just in case the clock got changed, limit it to a 1 second wait.
-                    try {
-                        Thread.sleep(sleepTime);
-                    } catch (InterruptedException e) {
-                        // since catching the exception clears the status. Re-interrupt the thread.
-                        Thread.currentThread().interrupt();
-                    }
-                    cycleCount = 0; // this should also get set to zero in the following check, but to be safe set it here also.
-                }
-
+            JobDetailReader details = new JobDetailReader(job, jobId);
+            statusUpdates = new DetailStatusBatch(server, jobId);
+            sender = new JobSender(scheduler.getSendPool(), scheduler.getMaxSendThreadsPerJob(),
+                    new TokenBucket(jobThrottle, jobThrottle), scheduler.getRelayLimiter());
+            // from now on the keepAlive thread also checks the job status
+            this.job = job;
+            long lastFlush = System.currentTimeMillis();
+            while (details.hasNext()) {
                 // Check if the thread has been asked to stop.
                 if (Thread.currentThread().isInterrupted()) {
+                    sender.awaitIdle();
+                    statusUpdates.flush();
                     server.setJobStatus(jobId, server.READY);
                     incomplete = false;
                     return;
                 }
 
-                // every so often check some items to see if we need to change
-                // what we are doing (like, has the job has been canceled...)
-                long now = new Date().getTime();
-                if (lastCheck + 1000 < now) {
-                    lastCheck = now;
-                    status = job.getStatusId(jobId);
-                    if (status != server.ACTIVE) {
-                        incomplete = false;
-                        return;
-                    }
-                    cycleCount = 0;
+                // the job has been canceled, paused or assigned to another scheduler
+                if (isJobLost()) {
+                    incomplete = false;
+                    return;
+                }
 
-                    // verify that the job is still scheduled for this instance...
-                    if (!verifyJob(server)) {
-                        incomplete = false;
-                        return;
-                    }
+                long now = System.currentTimeMillis();
+                if (lastFlush + 1000 < now || statusUpdates.size() >= DetailStatusBatch.SIZE) {
+                    lastFlush = now;
+                    statusUpdates.flush();
                 }
 
-                Object key = detailItr.next();
-                int detailId = 0;
+                final EmailJobDetail detail = details.next();
+                if (detail.getStatusId() != server.MSG_NONE) {
+                    // no work to do
+                    continue;
+                }
+                final DetailStatusBatch updates = statusUpdates;
                 try {
-                    // check the status of the next receipient and send an email if necessary
-                    detailId = ((Integer) key).intValue();
-                    int detailStatus = ((Integer) results.get(key)).intValue();
-                    if (detailStatus == server.MSG_NONE) {
-                        String memberXML = job.getJobDetailData(jobId, detailId);
-                        sendMessage(message, templateXSL, memberXML);
-                        server.setDetailStatus(jobId, detailId, server.MSG_SENT, "Sent");
-                        log.info("Job " + jobId + ", Detail " + detailId
-                                + ": sent to ("
-                                + message.getToAddress(TCSEmailMessage.TO)[0]
-                                + ")");
-                    } else {
-                        // no work to do, don't count this receipient in the cycleCount
-                        cycleCount--;
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    log.warn("Failed to send email to " + key + " (" + e.toString() + ")");
-                    if (detailId != 0) {
-                        // mark as failed for unknown reasons
-                        server.setDetailStatus(jobId, detailId, server.MSG_FAILED, e.toString());
-                    }
+                    sender.submit(new Runnable() {
+                        public void run() {
+                            send(detail, fromAddress, fromPersonal, subject, templateId, templateXSL, updates);
+                        }
+                    });
+                } catch (InterruptedException e) {
+                    // since catching the exception clears the status. Re-interrupt the thread.
+                    Thread.currentThread().interrupt();
                 }
             }
+            sender.awaitIdle();
+            statusUpdates.flush();
             server.setJobStatus(jobId, server.COMPLETE);
             incomplete = false;
 
@@ -190,6 +175,18 @@ public class SendEmailTask extends EmailTask implements Runnable {
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
+            this.job = null;
+            if (sender != null) {
+                sender.awaitIdle();
+            }
+            if (statusUpdates != null) {
+                // record what was sent, so it isn't sent again when the job is resumed
+                try {
+                    statusUpdates.flush();
+                } catch (Exception e) {
+                    log.error("Failed to update the status of job " + jobId + " details", e);
+                }
+            }
             if (incomplete && ctx != null) {
                 try {
                     EmailServer server = ((EmailServerHome) ctx.lookup("com.topcoder.shared.ejb.EmailServices.EmailServerHome")).create();
@@ -202,93 +199,64 @@ public class SendEmailTask extends EmailTask implements Runnable {
 
 
     /**
-     * This function assembles and sends a single email for an email job.
-     * @param message
+     * Besides checking the job is still assigned to this scheduler, checks that the
+     * job is still active while the emails are being sent (it may have been canceled).
+     * @param server
+     * @return
+     * @throws RemoteException
+     */
+    protected boolean checkJob(EmailServer server) throws RemoteException {
+        if (!verifyJob(server)) {
+            return false;
+        }
+        EmailJob job = this.job;
+        return job == null || job.getStatusId(jobId) == EmailServer.ACTIVE;
+    }
+
+    /**
+     * This function sends the email of a job detail record and records the result.
+     * It runs on the scheduler's worker pool.
+     * @param detail
+     * @param fromAddress
+     * @param fromPersonal
+     * @param subject
+     * @param templateId
      * @param templateXSL
-     * @param memberXML
-     * @throws TransformerConfigurationException
-     * @throws Exception
+     * @param statusUpdates
      */
-    private void sendMessage(TCSEmailMessage message, String templateXSL, String memberXML)
-            throws TransformerConfigurationException, Exception {
-        Reader memberReader = null;
-        Reader templateReader = null;
+    private void send(EmailJobDetail detail, String fromAddress, String fromPersonal, String subject,
+                      int templateId, String templateXSL, DetailStatusBatch statusUpdates) {
+        int detailId = detail.getDetailId();
         try {
-            TransformerFactory tFactory = TransformerFactory.newInstance();
-            // Get the XML input document and the stylesheet, both in the servlet
-            // engine document directory.
-            memberReader = new StringReader(memberXML);
-            templateReader = new StringReader(templateXSL);
-            Source memberSource = new StreamSource(memberReader);
-            Source templateSource = new StreamSource(templateReader);
-            // Generate the transformer.
-            Transformer transformer = tFactory.newTransformer(templateSource);
-            transformer.setOutputProperty(OutputKeys.ENCODING, "utf-8");
-            // Perform the transformation, sending the output to the response.
-            StringWriter msg = new StringWriter();
-            Result xmlResult = new StreamResult(msg);
-            transformer.transform(memberSource, xmlResult);
-            parseEmail(message, memberXML);
-            message.setBody(msg.toString());
-            EmailEngine.send(message);
-        } finally {
-            try {
-                if (memberReader != null) memberReader.close();
-            } catch (Exception e) {
-            }
-            try {
-                if (templateReader != null) templateReader.close();
-            } catch (Exception e) {
-            }
+            TCSEmailMessage message = new TCSEmailMessage();
+            message.setFromAddress(fromAddress, fromPersonal);
+            message.setSubject(subject);
+            sendMessage(message, templateId, templateXSL, detail.getData());
+            statusUpdates.add(detailId, EmailServer.MSG_SENT, "Sent");
+            log.info("Job " + jobId + ", Detail " + detailId
+                    + ": sent to ("
+                    + message.getToAddress(TCSEmailMessage.TO)[0]
+                    + ")");
+        } catch (Exception e) {
+            e.printStackTrace();
+            log.warn("Failed to send email to " + detailId + " (" + e.toString() + ")");
+            // mark as failed for unknown reasons
+            statusUpdates.add(detailId, EmailServer.MSG_FAILED, e.toString());
         }
     }
 
     /**
-     * This function parses the source XML data and fills in the appropriate message
-     * fields (like the TO address).
+     * This function assembles and sends a single email for an email job.
      * @param message
+     * @param templateId
+     * @param templateXSL
      * @param memberXML
      * @throws Exception
      */
-    private void parseEmail(TCSEmailMessage message, String memberXML)
+    private void sendMessage(TCSEmailMessage message, int templateId, String templateXSL, String memberXML)
             throws Exception {
-        //String ret = null;
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        Reader reader = null;
-        try {
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            reader = new StringReader(memberXML);
-            InputSource source = new InputSource(reader);
-            Document document = builder.parse(source);
-
-            NodeList nodes = document.getElementsByTagName("member");
-            nodes = ((Element) (nodes.item(0))).getElementsByTagName("email_address");
-            String emailAddress = ((Text) (((nodes.item(0))).getFirstChild())).getData();
-            message.setToAddress(emailAddress, TCSEmailMessage.TO);
-        } catch (SAXException sxe) {
-            // Error generated during parsing
-            Exception x = sxe;
-            if (sxe.getException() != null)
-                x = sxe.getException();
-            x.printStackTrace();
-            throw new Exception("Failed to parse to address : " + x.toString());
-        } catch (ParserConfigurationException pce) {
-            // Parser with specified options can't be built
-            pce.printStackTrace();
-            throw new Exception("Failed to parse to address : " + pce.toString());
-        } catch (IOException ioe) {
-            // I/O error
-            ioe.printStackTrace();
-            throw new Exception("Failed to parse to address : " + ioe.toString());
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new Exception("Failed to parse TO address : " + e.toString());
-        } finally {
-            try {
-                if (reader != null) reader.close();
-            } catch (Exception e) {
-            }
-        }
+        EmailRenderer.render(message, templateId, templateXSL, memberXML);
+        EmailEngine.send(message);
     }
 
     /**
@@ -305,37 +273,17 @@ public class SendEmailTask extends EmailTask implements Runnable {
     private void buildDetailFromList(Context ctx, int jobId, int listId)
             throws NamingException, RemoteException, CreateException {
         //EmailJob job = ((EmailJobHome) ctx.lookup("com.topcoder.shared.ejb.EmailServices.EmailJob")).create();
-        EmailList list = ((EmailListHome) ctx.lookup("com.topcoder.shared.ejb.EmailServices.EmailListHome")).create();
         EmailServer server = ((EmailServerHome) ctx.lookup("com.topcoder.shared.ejb.EmailServices.EmailServerHome")).create();
-        long lastCheck = new Date().getTime();
 
         server.clearDetailRecords(jobId);
 
         if (!verifyJob(server)) return;
 
-        Set members = list.getMembers(listId);
-        Iterator memberItr = members.iterator();
-        for (; memberItr.hasNext();) {
-            Object memberIdObj = memberItr.next();
-            int memberId = 0;
+        // the members are copied by the EmailServer in batches, without coming through here
+        int count = server.addDetailRecordsFromList(jobId, listId);
+        log.info("Job " + jobId + ": added " + count + " members of list " + listId);
 
-            long now = new Date().getTime();
-            if (lastCheck + 1000 < now) {
-                lastCheck = now;
-                if (!verifyJob(server)) {
-                    return;
-                }
-            }
-            try {
-                // add each list member to the job
-                memberId = ((Integer) memberIdObj).intValue();
-                String memberData = list.getData(listId, memberId);
-                server.addDetailRecord(jobId, memberData);
-            } catch (Exception e) {
-                e.printStackTrace();
-                log.warn("Failed to add member " + memberIdObj);
-            }
-        }
+        if (!verifyJob(server)) return;
         server.setJobType(jobId, EmailServer.EMAIL_JOB_TYPE_POST);
     }
 
@@ -393,10 +341,15 @@ public class SendEmailTask extends EmailTask implements Runnable {
             if (!verifyJob(server)) return;
             listMap = dai.getData(dataRequest);
         }
+        List batch = new ArrayList(DETAIL_BATCH_SIZE);
         Iterator listItr = listMap.values().iterator();
         for (; listItr.hasNext();) {
             ResultSetContainer results = (ResultSetContainer) (listItr.next());
             for (int row = 0; row < results.getRowCount(); row++) {
+                if (batch.size() == DETAIL_BATCH_SIZE) {
+                    server.addDetailRecords(jobId, (String[]) batch.toArray(new String[batch.size()]));
+                    batch.clear();
+                }
                 long now = new Date().getTime();
                 if (lastCheck + 1000 < now) {
                     lastCheck = now;
@@ -419,14 +372,83 @@ public class SendEmailTask extends EmailTask implements Runnable {
                     }
                     memberData.append("</member>");
 
-                    server.addDetailRecord(jobId, memberData.toString());
+                    batch.add(memberData.toString());
                 } catch (Exception e) {
                     e.printStackTrace();
                     log.warn("Failed to add member " + row + ": " + memberData.toString());
                 }
             }
         }
+        if (!batch.isEmpty()) {
+            server.addDetailRecords(jobId, (String[]) batch.toArray(new String[batch.size()]));
+        }
+        if (!verifyJob(server)) return;
         server.setJobType(jobId, EmailServer.EMAIL_JOB_TYPE_POST);
     }
+
+    /**
+     * Collects the status of the sent emails, from the worker threads, and sends them
+     * to the EmailServer in batches instead of updating the detail records one by one.
+     * Flushing is left to the job's thread, so workers never wait for the EmailServer.
+     */
+    private static final class DetailStatusBatch {
+        private static final int SIZE = 100;
+
+        private final EmailServer server;
+        private final int jobId;
+        private List pending = new ArrayList(SIZE);
+
+        private DetailStatusBatch(EmailServer server, int jobId) {
+            this.server = server;
+            this.jobId = jobId;
+        }
+
+        private synchronized void add(int detailId, int status, String reason) {
+            pending.add(new Object[]{new Integer(detailId), new Integer(status), reason});
+        }
+
+        private synchronized int size() {
+            return pending.size();
+        }
+
+        /**
+         * Sends the collected statuses.  If it fails they are kept, to be sent again on
+         * the next flush.
+         */
+        private void flush() throws RemoteException {
+            List batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList(SIZE);
+            }
+            int[] ids = new int[batch.size()];
+            int[] statuses = new int[batch.size()];
+            String[] reasons = new String[batch.size()];
+            for (int i = 0; i < ids.length; i++) {
+                Object[] update = (Object[]) batch.get(i);
+                ids[i] = ((Integer) update[0]).intValue();
+                statuses[i] = ((Integer) update[1]).intValue();
+                reasons[i] = (String) update[2];
+            }
+            try {
+                server.setDetailStatuses(jobId, ids, statuses, reasons);
+            } catch (RemoteException e) {
+                synchronized (this) {
+                    batch.addAll(pending);
+                    pending = batch;
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    batch.addAll(pending);
+                    pending = batch;
+                }
+                throw e;
+            }
+        }
+    }
 }
 
@@ -0,0 +1,212 @@
+/*
+ * BatchingBusPublisher
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.topcoder.shared.util.logging.Logger;
+
+/**
+ * A BusPublisher that publishes messages in batches.<p>
+ *
+ * Published messages are added to a bounded buffer, blocking while it is full, and a
+ * sender thread publishes them through a {@link BusBatchPublisher} in batches of up to
+ * <code>maxBatchSize</code> messages. A batch is sent when it is full or when <code>maxDelay</code>
+ * milliseconds have passed since its first message was taken, whatever happens first.<p>
+ *
+ * Since messages are published asynchronously, {@link #publish(BusMessage)} does not report
+ * failures. A batch that fails is retried once, and then dropped. Publishers needing to know their
+ * messages were published must call {@link #flush()}.<p>
+ *
+ * Listeners receive the messages one by one, in the order they were published.
+ *
+ * @version $Id$
+ */
+public class BatchingBusPublisher implements BusPublisher {
+    /**
+     * How long to wait for a message before checking whether we were closed, in millis.
+     */
+    private static final long POLL_TIME = 100;
+    private final Logger log = Logger.getLogger(getClass());
+    private final BusBatchPublisher publisher;
+    private final int maxBatchSize;
+    private final long maxDelay;
+    private final BlockingQueue<BusMessage> buffer;
+    private final Thread sender;
+    private volatile boolean running = true;
+    private long pending = 0;
+    private long failed = 0;
+    private long reportedFailed = 0;
+
+    /**
+     * Creates the publisher and starts its sender thread.
+     *
+     * @param name Name used for the sender thread
+     * @param publisher The publisher sending the batches, closed when this publisher is closed
+     * @param maxBatchSize Max number of messages per batch
+     * @param maxDelay Max time to wait for a batch to fill, in millis
+     * @param bufferSize Max number of messages waiting to be sent
+     */
+    public BatchingBusPublisher(String name, BusBatchPublisher publisher, int maxBatchSize, long maxDelay, int bufferSize) {
+        this.publisher = publisher;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelay = Math.max(0, maxDelay);
+        this.buffer = new ArrayBlockingQueue<BusMessage>(Math.max(1, bufferSize));
+        this.sender = new Thread(name) {
+            public void run() {
+                runSender();
+            }
+        };
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /**
+     * Adds the message to the next batch, waiting for room in the buffer if it is full.
+     *
+     * @throws BusException If the publisher is closed or the thread was interrupted
+     */
+    public void publish(BusMessage message) throws BusException {
+        if (!running) {
+            throw new BusException("The publisher is closed");
+        }
+        synchronized (this) {
+            pending++;
+        }
+        try {
+            buffer.put(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            done(1, true);
+            throw new BusException("Interrupted while waiting for room in the buffer", e);
+        }
+        if (!running && buffer.remove(message)) {
+            // closed while we were adding it, the sender may be gone already
+            done(1, true);
+            throw new BusException("The publisher is closed");
+        }
+    }
+
+    /**
+     * Waits until every message published so far has been sent, or dropped because it
+     * couldn't be.
+     *
+     * @throws BusException If any message was dropped since the last flush
+     */
+    public void flush() throws BusException {
+        long dropped;
+        synchronized (this) {
+            try {
+                while (pending > 0 && sender.isAlive()) {
+                    wait(POLL_TIME);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BusException("Interrupted while flushing", e);
+            }
+            dropped = failed - reportedFailed;
+            reportedFailed = failed;
+        }
+        if (dropped > 0) {
+            throw new BusException(dropped+" messages could not be published");
+        }
+    }
+
+    /**
+     * @return The number of messages dropped because they couldn't be sent
+     */
+    public synchronized long getFailedCount() {
+        return failed;
+    }
+
+    /**
+     * Stops taking messages, sends the ones in the buffer and closes the underlying publisher.
+     */
+    public void close() {
+        running = false;
+        try {
+            sender.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        publisher.close();
+    }
+
+    private void runSender() {
+        List<BusMessage> batch = new ArrayList<BusMessage>(maxBatchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                BusMessage first = buffer.poll(POLL_TIME, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                // keep going until closed
+                continue;
+            }
+            fill(batch);
+            done(batch.size(), send(batch));
+            batch.clear();
+        }
+    }
+
+    /**
+     * Takes messages into the batch until it is full or <code>maxDelay</code> has passed.
+     */
+    private void fill(List<BusMessage> batch) {
+        long deadline = System.currentTimeMillis() + maxDelay;
+        try {
+            while (batch.size() < maxBatchSize) {
+                if (buffer.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                    continue;
+                }
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0 || !running) {
+                    return;
+                }
+                BusMessage message = buffer.poll(wait, TimeUnit.MILLISECONDS);
+                if (message == null) {
+                    return;
+                }
+                batch.add(message);
+            }
+        } catch (InterruptedException e) {
+            // send what we have
+        }
+    }
+
+    private boolean send(List<BusMessage> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (batch.size() == 1) {
+                    publisher.publish(batch.get(0));
+                } else {
+                    publisher.publish(batch);
+                }
+                return true;
+            } catch (Exception e) {
+                if (attempt == 2) {
+                    log.error("Dropped "+batch.size()+" messages, they couldn't be published", e);
+                    return false;
+                }
+                log.warn("Could not publish a batch of "+batch.size()+" messages, retrying", e);
+            }
+        }
+    }
+
+    private synchronized void done(int count, boolean sent) {
+        pending -= count;
+        if (!sent) {
+            failed += count;
+        }
+        notifyAll();
+    }
+}
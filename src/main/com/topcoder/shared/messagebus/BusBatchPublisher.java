@@ -0,0 +1,26 @@
+/*
+ * BusBatchPublisher
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus;
+
+import java.util.List;
+
+
+/**
+ * A BusPublisher able to publish many messages at once.<p>
+ * 
+ * Listeners receive the messages of a batch one by one, in the same order, 
+ * exactly as if they were published one at a time.
+ * 
+ * @version $Id$
+ */
+public interface BusBatchPublisher extends BusPublisher {
+    /**
+     * Publish the messages into the bus. Either all of them are published or none is.
+     * @param messages The messages to publish.
+     * @throws BusException If the messages could not be published
+     */
+    void publish(List<BusMessage> messages) throws BusException;
+}
@@ -46,6 +46,10 @@ public class BusMessage {
      * The id of the message who this message is in response of
      */
     private String messageCorrelationId;
+    /**
+     * The time in millis after which the message is no longer useful, 0 if it never expires
+     */
+    private long messageDeadline;
 
     public String getMessageVersion() {
         return messageVersion;
@@ -102,6 +106,18 @@ public class BusMessage {
     public void setMessageCorrelationId(String messageCorrelationId) {
         this.messageCorrelationId = messageCorrelationId;
     }
+    public long getMessageDeadline() {
+        return messageDeadline;
+    }
+    public void setMessageDeadline(long messageDeadline) {
+        this.messageDeadline = messageDeadline;
+    }
+    /**
+     * @return <code>true</code> if the message has a deadline and it has passed
+     */
+    public boolean isExpired() {
+        return messageDeadline != 0 && messageDeadline <= System.currentTimeMillis();
+    }
     public String toString() {
         StringBuilder sb = new StringBuilder(100);
         sb.append(this.getClass().getSimpleName()).append("[")
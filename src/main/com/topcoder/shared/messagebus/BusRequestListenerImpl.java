@@ -6,6 +6,7 @@
 package com.topcoder.shared.messagebus;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.topcoder.shared.util.concurrent.DirectExecutor;
 import com.topcoder.shared.util.logging.Logger;
@@ -21,6 +22,9 @@ public class BusRequestListenerImpl implements BusRequestListener {
     private BusPublisher producer;
     private Handler handler;
     private Executor runner = new DirectExecutor();
+    private volatile OrderedDispatcher dispatcher;
+    private OrderedDispatcher.KeyExtractor keyExtractor;
+    private final AtomicLong skipped = new AtomicLong(0);
     
     
     public BusRequestListenerImpl(BusListener listener, BusPublisher producer) throws BusException {
@@ -28,11 +32,17 @@ public class BusRequestListenerImpl implements BusRequestListener {
         this.listener = listener;
         this.listener.setHandler(new BusListener.Handler() {
             public void handle(final BusMessage message) {
-                runner.execute(new Runnable() {
+                Runnable task = new Runnable() {
                     public void run() {
                         processIncomingRequest(message);
                     }
-                });
+                };
+                OrderedDispatcher d = dispatcher;
+                if (d != null) {
+                    d.execute(keyExtractor.getKey(message), task);
+                } else {
+                    runner.execute(task);
+                }
             }
         }); 
     }
@@ -46,6 +56,13 @@ public class BusRequestListenerImpl implements BusRequestListener {
     }
     
     protected void processIncomingRequest(final BusMessage message) {
+        if (message.isExpired()) {
+            skipped.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug("Skipping expired request: "+message.getMessageId());
+            }
+            return;
+        }
         handler.handle(message, new ResponseMessageHolder() {
             private boolean resultSet = false;
             public void setResponse(BusMessage result) {
@@ -69,12 +86,34 @@ public class BusRequestListenerImpl implements BusRequestListener {
         log.debug("Stop BusRequestListenerImpl");
         producer.close();
         listener.stop();
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
     }
 
     public void setHandler(Handler h) throws BusException {
         this.handler = h;
     }
 
+    /**
+     * Processes the requests through a dispatcher instead of the runner, keeping the order
+     * of requests with the same key. The listener delivery thread blocks while the dispatcher is full.
+     * 
+     * @param dispatcher The dispatcher, shut down when this listener is stopped
+     * @param keyExtractor Extracts the ordering key of each request, eg: the round id
+     */
+    public void setDispatcher(OrderedDispatcher dispatcher, OrderedDispatcher.KeyExtractor keyExtractor) {
+        this.keyExtractor = keyExtractor;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * @return The number of requests skipped because their deadline had passed when they were processed
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
     public Executor setRunner(Executor runner) {
         Executor old = this.runner;
         this.runner = runner;
@@ -25,4 +25,18 @@ public interface BusRequestPublisher  extends BusPublisher {
      * @throws BusException If the message could not be sent.
  */
     Future<BusMessage> request(BusMessage message) throws BusException;
+
+    /**
+     * Sends a bus message as a request message that must be answered within the given time<p>
+     * 
+     * The deadline travels with the request, so listeners can skip it once it has passed. If the
+     * response does not arrive in time, the returned Future fails with a {@link java.util.concurrent.TimeoutException}
+     * as cause, and late responses are dropped. Cancelling the Future drops the response too.
+     * 
+     * @param message The message sent as a request
+     * @param timeout Max time to wait for the response, in millis
+     * @return A future that will provide the response message as soon as the response message arrives.
+     * @throws BusException If the message could not be sent.
+     */
+    Future<BusMessage> request(BusMessage message, long timeout) throws BusException;
 }
@@ -7,17 +7,34 @@ package com.topcoder.shared.messagebus;
 
 import java.util.concurrent.Future;
 
-import com.topcoder.shared.util.concurrent.FutureImplManager;
 import com.topcoder.shared.util.logging.Logger;
 
 /**
+ * Requests are kept pending until their response arrives or their deadline passes, whatever
+ * happens first. Requests sent without a timeout are given up after {@link #setMaxPendingTime(long)} millis,
+ * so requests whose response never arrives don't pile up.
+ * 
  * @author Diego Belfer (mural)
  * @version $Id$
  */
 public class BusRequestPublisherImpl implements BusRequestPublisher {
     //FIXME DOC
+    /**
+     * Time covered by each bucket of the timer wheel, in millis.
+     */
+    private static final long TICK = 100;
+    /**
+     * Number of buckets of the timer wheel, it takes about 50 seconds to go around it.
+     */
+    private static final int WHEEL_SIZE = 512;
+    /**
+     * Default max time requests without timeout wait for their response, in millis.
+     */
+    public static final long DEFAULT_MAX_PENDING_TIME = 10 * 60 * 1000;
     private Logger log = Logger.getLogger(getClass());
-    private FutureImplManager<String, BusMessage> futures = new FutureImplManager();
+    private PendingRequests futures = new PendingRequests("BusRequestPublisher-reaper", TICK, WHEEL_SIZE);
+    private volatile long defaultTimeout = 0;
+    private volatile long maxPendingTime = DEFAULT_MAX_PENDING_TIME;
     private BusPublisher producer;
     private BusListener  listener;
     
@@ -38,22 +55,87 @@ public class BusRequestPublisherImpl implements BusRequestPublisher {
             log.info("Receive message without correlated ID: "+message);
             return;
         }
-        futures.setValue(correlatedId, message);
+        if (!futures.complete(correlatedId, message) && log.isDebugEnabled()) {
+            log.debug("Dropped response without pending request: "+correlatedId);
+        }
     }
 
     public void close() {
         log.debug("Closing BusRequestPublisher");
         try { producer.close(); } catch (Exception e) { log.error(e,e); }
         try { listener.stop(); } catch (Exception e) { log.error(e,e); }
+        futures.close();
     }
     
     public Future<BusMessage> request(BusMessage message) throws BusException {
+        long timeout = defaultTimeout;
+        if (timeout > 0) {
+            return request(message, timeout);
+        }
+        return send(message, System.currentTimeMillis() + maxPendingTime);
+    }
+
+    public Future<BusMessage> request(BusMessage message, long timeout) throws BusException {
+        long deadline = System.currentTimeMillis() + timeout;
+        message.setMessageDeadline(deadline);
+        return send(message, deadline);
+    }
+
+    private Future<BusMessage> send(BusMessage message, long deadline) throws BusException {
         listener.start();
-        producer.publish(message);
-        return futures.newFuture(message.getMessageId());
+        futures.beginPublish();
+        try {
+            producer.publish(message);
+            return futures.register(message.getMessageId(), deadline);
+        } finally {
+            futures.endPublish();
+        }
     }
     
     public void publish(BusMessage message) throws BusException {
         producer.publish(message);
     }
+
+    /**
+     * Sets the timeout of requests sent through {@link #request(BusMessage)}, 0 for no timeout.
+     */
+    public void setDefaultTimeout(long defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    /**
+     * Sets the max time requests without timeout wait for their response, in millis.
+     * Their futures fail with a {@link java.util.concurrent.TimeoutException} as cause after that.
+     */
+    public void setMaxPendingTime(long maxPendingTime) {
+        this.maxPendingTime = maxPendingTime;
+    }
+
+    /**
+     * Sets the name the requests are reported with to the metrics sink, usually the name of the request destination.
+     */
+    public void setChannelName(String channelName) {
+        futures.setChannelName(channelName);
+    }
+
+    /**
+     * @return The number of requests waiting for a response
+     */
+    public int getPendingCount() {
+        return futures.size();
+    }
+
+    /**
+     * @return The number of requests given up because their response did not arrive in time
+     */
+    public long getExpiredCount() {
+        return futures.getExpiredCount();
+    }
+
+    /**
+     * @return The number of responses dropped because their request was not pending
+     */
+    public long getDroppedResponseCount() {
+        return futures.getDroppedCount();
+    }
 }
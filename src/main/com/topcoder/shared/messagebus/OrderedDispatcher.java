@@ -0,0 +1,148 @@
+/*
+ * OrderedDispatcher
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.topcoder.shared.util.logging.Logger;
+
+/**
+ * Runs tasks on a fixed number of worker lanes, keeping the order of tasks with the same key.<p>
+ * 
+ * Each key is hashed to a lane, and each lane runs its tasks one at a time in the order they
+ * were submitted, so tasks of the same key (eg: a round id or a coder id) are never run concurrently
+ * or out of order, while tasks of different keys run in parallel. Tasks without key are spread 
+ * over all lanes.<p>
+ * 
+ * At most <code>maxPending</code> tasks can be queued or running. When the limit is reached 
+ * {@link #execute(Object, Runnable)} blocks until a task finishes, so a listener dispatching from
+ * its delivery thread stops consuming messages until the workers catch up. 
+ * 
+ * @version $Id$
+ */
+public class OrderedDispatcher {
+    private static final Runnable STOP = new Runnable() {
+        public void run() {
+        }
+    };
+    private final Logger log = Logger.getLogger(getClass());
+    private final Lane[] lanes;
+    private final int maxPending;
+    private final Semaphore permits;
+    private final AtomicInteger nextLane = new AtomicInteger(0);
+    private volatile boolean stopped = false;
+
+    /**
+     * Extracts the ordering key of a message.
+     */
+    public interface KeyExtractor {
+        /**
+         * @param message The message
+         * @return The key, or <code>null</code> if the message doesn't need to be ordered
+         */
+        Object getKey(BusMessage message);
+    }
+
+    /**
+     * Creates the dispatcher and starts its workers.
+     * 
+     * @param name Name used for the worker threads
+     * @param workers Number of workers
+     * @param maxPending Max number of tasks queued or running
+     */
+    public OrderedDispatcher(String name, int workers, int maxPending) {
+        this.maxPending = Math.max(1, maxPending);
+        this.permits = new Semaphore(this.maxPending);
+        this.lanes = new Lane[Math.max(1, workers)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(name+"-"+i);
+            lanes[i].start();
+        }
+    }
+
+    /**
+     * Queues the task on the lane of the key, waiting while <code>maxPending</code> tasks are pending.
+     * 
+     * @param key The ordering key, <code>null</code> if the task doesn't need to be ordered
+     * @param task The task to run
+     * 
+     * @throws RejectedExecutionException If the dispatcher was shut down
+     */
+    public void execute(Object key, Runnable task) {
+        if (stopped) {
+            throw new RejectedExecutionException("Dispatcher was shut down");
+        }
+        permits.acquireUninterruptibly();
+        if (stopped) {
+            permits.release();
+            throw new RejectedExecutionException("Dispatcher was shut down");
+        }
+        int index;
+        if (key == null) {
+            index = nextLane.getAndIncrement();
+        } else {
+            int h = key.hashCode();
+            index = h ^ (h >>> 16);
+        }
+        lanes[(index & Integer.MAX_VALUE) % lanes.length].queue.add(task);
+    }
+
+    /**
+     * @return The number of tasks queued or running
+     */
+    public int getPendingCount() {
+        return Math.max(0, maxPending - permits.availablePermits());
+    }
+
+    /**
+     * Stops accepting tasks. Workers finish the tasks already queued and then end.
+     * Threads blocked in {@link #execute(Object, Runnable)} are released and their tasks rejected.
+     */
+    public void shutdown() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        for (Lane lane : lanes) {
+            lane.queue.add(STOP);
+        }
+        permits.release(maxPending);
+    }
+
+    private class Lane extends Thread {
+        private BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+
+        private Lane(String name) {
+            super(name);
+            setDaemon(true);
+        }
+
+        public void run() {
+            while (true) {
+                Runnable task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (task == STOP) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    log.error("Exception thrown by dispatched task", e);
+                } finally {
+                    permits.release();
+                }
+            }
+        }
+    }
+}
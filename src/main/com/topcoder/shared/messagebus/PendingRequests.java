@@ -0,0 +1,336 @@
+/*
+ * PendingRequests
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus;
+
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.topcoder.shared.messagebus.metrics.BusMetrics;
+import com.topcoder.shared.util.logging.Logger;
+
+/**
+ * The requests waiting for a response, keyed by the id of the request message.<p>
+ *
+ * Every request has a deadline, tracked in a hashed timer wheel: a ring of buckets, one per tick,
+ * visited by a reaper thread as time goes by. Requests still pending when the bucket of their deadline
+ * is visited are failed with a {@link TimeoutException} and removed. Registering, completing and cancelling
+ * a request take constant time; the wheel skips requests already done and discards them when it visits them.<p>
+ *
+ * Responses matching no pending request, ie: late responses, responses to cancelled requests or to other
+ * requesters listening on the same destination, are dropped after a single lookup. Since the id of a request
+ * is only known once it was published, responses arriving while requests are being published are kept
+ * for a tick, in case they belong to one of them.
+ *
+ * @version $Id$
+ */
+class PendingRequests {
+    private final Logger log = Logger.getLogger(getClass());
+    private final ConcurrentHashMap<String, RequestFuture> pending = new ConcurrentHashMap<String, RequestFuture>();
+    private final ConcurrentHashMap<String, EarlyResponse> early = new ConcurrentHashMap<String, EarlyResponse>();
+    private final AtomicInteger publishing = new AtomicInteger(0);
+    private final AtomicLong expired = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final ConcurrentLinkedQueue<RequestFuture>[] wheel;
+    private final long tick;
+    private final Thread reaper;
+    private volatile boolean running = true;
+    private volatile String channelName = "requests";
+
+    /**
+     * Creates the pending requests and starts the reaper thread.
+     *
+     * @param name Name used for the reaper thread
+     * @param tick The time covered by each bucket of the wheel, in millis
+     * @param wheelSize The number of buckets of the wheel
+     */
+    PendingRequests(String name, long tick, int wheelSize) {
+        this.tick = Math.max(1, tick);
+        this.wheel = new ConcurrentLinkedQueue[Math.max(1, wheelSize)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<RequestFuture>();
+        }
+        this.reaper = new Thread(name) {
+            public void run() {
+                runReaper();
+            }
+        };
+        this.reaper.setDaemon(true);
+        this.reaper.start();
+    }
+
+    /**
+     * Sets the name the requests are reported with to the metrics sink.
+     */
+    void setChannelName(String channelName) {
+        this.channelName = channelName;
+    }
+
+    /**
+     * Must be called before publishing a request, and followed by {@link #endPublish()}
+     * once the request was registered or could not be published.
+     */
+    void beginPublish() {
+        publishing.incrementAndGet();
+    }
+
+    void endPublish() {
+        publishing.decrementAndGet();
+    }
+
+    /**
+     * Registers a published request.
+     *
+     * @param id The id of the request message
+     * @param deadline The time in millis after which the request fails
+     * @return The future that will provide the response
+     */
+    Future<BusMessage> register(String id, long deadline) {
+        RequestFuture future = new RequestFuture(id, deadline);
+        if (!running) {
+            future.fail(new BusException("The requester is closed"));
+            return future;
+        }
+        pending.put(id, future);
+        if (deadline <= System.currentTimeMillis()) {
+            expire(future);
+        } else {
+            //Visited after the deadline tick, so the deadline has always passed when the bucket is visited
+            wheel[(int) ((deadline / tick + 1) % wheel.length)].offer(future);
+        }
+        EarlyResponse response = early.remove(id);
+        if (response != null && pending.remove(id, future)) {
+            future.complete(response.message);
+        }
+        return future;
+    }
+
+    /**
+     * Completes the request the response correlates to.
+     *
+     * @return <code>true</code> if the response completed a pending request
+     */
+    boolean complete(String id, BusMessage response) {
+        RequestFuture future = pending.remove(id);
+        if (future == null && publishing.get() > 0) {
+            early.put(id, new EarlyResponse(response));
+            //The request may have been registered before the response was kept
+            future = pending.remove(id);
+            if (future == null) {
+                return false;
+            }
+            early.remove(id);
+        }
+        if (future == null) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return future.complete(response);
+    }
+
+    /**
+     * Stops the reaper and fails all pending requests.
+     */
+    void close() {
+        running = false;
+        reaper.interrupt();
+        for (Iterator<RequestFuture> it = pending.values().iterator(); it.hasNext();) {
+            RequestFuture future = it.next();
+            it.remove();
+            future.fail(new BusException("The requester was closed"));
+        }
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i].clear();
+        }
+        early.clear();
+    }
+
+    /**
+     * @return The number of requests waiting for a response
+     */
+    int size() {
+        return pending.size();
+    }
+
+    /**
+     * @return The number of requests failed because their deadline passed
+     */
+    long getExpiredCount() {
+        return expired.get();
+    }
+
+    /**
+     * @return The number of responses dropped because they matched no pending request
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void runReaper() {
+        long lastTick = System.currentTimeMillis() / tick;
+        while (running) {
+            try {
+                Thread.sleep(tick - System.currentTimeMillis() % tick);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            long now = System.currentTimeMillis();
+            long nowTick = now / tick;
+            //If we fell behind a whole turn, visiting every bucket once is enough
+            long first = Math.max(lastTick + 1, nowTick - wheel.length + 1);
+            for (long t = first; t <= nowTick; t++) {
+                reap(wheel[(int) (t % wheel.length)], now);
+            }
+            lastTick = nowTick;
+            if (!early.isEmpty()) {
+                for (Iterator<EarlyResponse> it = early.values().iterator(); it.hasNext();) {
+                    if (it.next().time + tick < now) {
+                        it.remove();
+                        dropped.incrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    private void reap(ConcurrentLinkedQueue<RequestFuture> bucket, long now) {
+        for (Iterator<RequestFuture> it = bucket.iterator(); it.hasNext();) {
+            RequestFuture future = it.next();
+            if (future.isDone()) {
+                it.remove();
+            } else if (future.deadline <= now) {
+                it.remove();
+                expire(future);
+            }
+        }
+    }
+
+    private void expire(RequestFuture future) {
+        if (pending.remove(future.id, future) && !future.isDone()) {
+            expired.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug("Request expired: "+future.id);
+            }
+            future.fail(new TimeoutException("No response received for request "+future.id));
+        }
+    }
+
+    private static class EarlyResponse {
+        private final BusMessage message;
+        private final long time = System.currentTimeMillis();
+
+        private EarlyResponse(BusMessage message) {
+            this.message = message;
+        }
+    }
+
+    /**
+     * The future of a request. Cancelling it removes the request, so its response is dropped on arrival.
+     */
+    private class RequestFuture implements Future<BusMessage> {
+        private static final int PENDING = 0;
+        private static final int COMPLETED = 1;
+        private static final int FAILED = 2;
+        private static final int CANCELLED = 3;
+        private final String id;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile BusMessage value;
+        private volatile Exception failure;
+        /**
+         * When the request started, in nanos. 0 if it is not measured
+         */
+        private final long start;
+        private final String channel = channelName;
+
+        private RequestFuture(String id, long deadline) {
+            this.id = id;
+            this.deadline = deadline;
+            if (BusMetrics.isEnabled()) {
+                BusMetrics.getSink().requestStarted(channel);
+                this.start = System.nanoTime();
+            } else {
+                this.start = 0;
+            }
+        }
+
+        private boolean complete(BusMessage response) {
+            if (!state.compareAndSet(PENDING, COMPLETED)) {
+                return false;
+            }
+            value = response;
+            done.countDown();
+            ended(true);
+            return true;
+        }
+
+        private boolean fail(Exception e) {
+            if (!state.compareAndSet(PENDING, FAILED)) {
+                return false;
+            }
+            failure = e;
+            done.countDown();
+            ended(false);
+            return true;
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            pending.remove(id, this);
+            done.countDown();
+            ended(false);
+            return true;
+        }
+
+        private void ended(boolean completed) {
+            if (start != 0) {
+                BusMetrics.getSink().requestEnded(channel, System.nanoTime() - start, completed);
+            }
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isDone() {
+            return state.get() != PENDING;
+        }
+
+        public BusMessage get() throws InterruptedException, ExecutionException {
+            done.await();
+            return report();
+        }
+
+        public BusMessage get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return report();
+        }
+
+        private BusMessage report() throws ExecutionException {
+            switch (state.get()) {
+                case COMPLETED:
+                    return value;
+                case CANCELLED:
+                    throw new CancellationException();
+                default:
+                    throw new ExecutionException(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * InVMBusFactory
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.invm;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.jms.InvalidSelectorException;
+
+import com.topcoder.shared.messagebus.BusException;
+import com.topcoder.shared.messagebus.BusFactory;
+import com.topcoder.shared.messagebus.BusFactoryException;
+import com.topcoder.shared.messagebus.BusListener;
+import com.topcoder.shared.messagebus.BusPollListener;
+import com.topcoder.shared.messagebus.BusPublisher;
+import com.topcoder.shared.messagebus.BusRequestListener;
+import com.topcoder.shared.messagebus.BusRequestListenerImpl;
+import com.topcoder.shared.messagebus.BusRequestPublisher;
+import com.topcoder.shared.messagebus.BusRequestPublisherImpl;
+import com.topcoder.shared.messagebus.jms.ConfigurationNotFoundException;
+import com.topcoder.shared.messagebus.jms.JMSBusConfiguration;
+import com.topcoder.shared.messagebus.jms.JMSChannelConfiguration;
+import com.topcoder.shared.messagebus.jms.mapper.MessageMapperProvider;
+
+/**
+ * Bus factory implementation delivering messages inside the VM, without a broker.<p>
+ *
+ * It uses the same configuration as the JMS factories, so components can be moved to the
+ * in-VM bus when they run in the same VM, and tests can run without a broker. Channels keep
+ * their JMS semantics: topic messages are received by every listener, queue messages by a
+ * single listener in turns, and selectors and noLocal are honored.<p>
+ *
+ * Listeners receive copies of the published messages sharing the body with them. When
+ * <code>roundTrip</code> is set, bodies are mapped to JMS messages and back with the
+ * configured mappers instead, so they are checked to survive serialization.<p>
+ *
+ * Provider properties, producer pooling, dispatching and batching settings
+ * don't apply and are ignored.
+ *
+ * @version $Id$
+ */
+public class InVMBusFactory extends BusFactory {
+    private final ConcurrentHashMap<String, InVMDestination> destinations = new ConcurrentHashMap<String, InVMDestination>();
+    private final ConcurrentHashMap<String, Object> sharedConnections = new ConcurrentHashMap<String, Object>();
+    private final JMSBusConfiguration configuration;
+    private final InVMMessageMapper mapper;
+    private final boolean roundTrip;
+
+    public InVMBusFactory(JMSBusConfiguration configuration) {
+        this(configuration, false);
+    }
+
+    /**
+     * @param configuration The bus configuration
+     * @param roundTrip <code>true</code> if messages must be serialized and deserialized on their way
+     *                  to listeners
+     */
+    public InVMBusFactory(JMSBusConfiguration configuration, boolean roundTrip) {
+        this.configuration = configuration;
+        this.mapper = new InVMMessageMapper(new MessageMapperProvider(configuration.getMappers()));
+        this.roundTrip = roundTrip;
+    }
+
+    public BusPublisher createPublisher(String configurationKey, String moduleName) throws BusFactoryException {
+        JMSChannelConfiguration cfg = resolveConfiguration("publisher", configurationKey, moduleName);
+        return new InVMPublisher(getDestination(cfg), getConnection(cfg));
+    }
+
+    public BusListener createListener(String configurationKey, String moduleName) throws BusFactoryException {
+        JMSChannelConfiguration cfg = resolveConfiguration("listener", configurationKey, moduleName);
+        try {
+            return new InVMListener(getDestination(cfg), InVMMessageMapper.parseSelector(cfg.getSelectorString()),
+                    cfg.isNoLocal(), getConnection(cfg));
+        } catch (InvalidSelectorException e) {
+            throw new BusFactoryException("Invalid configuration. Invalid selector="+cfg.getSelectorString(), e);
+        }
+    }
+
+    public BusPollListener createPollListener(String configurationKey, String moduleName) {
+        return null;
+    }
+
+    public BusRequestPublisher createRequestPublisher(String configurationKey, String moduleName) throws BusFactoryException {
+        BusListener listener = createListener(configurationKey, moduleName);
+        BusPublisher publisher = createPublisher(configurationKey, moduleName);
+        try {
+            BusRequestPublisherImpl requester = new BusRequestPublisherImpl(publisher, listener);
+            JMSChannelConfiguration cfg = resolveConfiguration("publisher", configurationKey, moduleName);
+            requester.setDefaultTimeout(cfg.getRequestTimeout());
+            requester.setChannelName(cfg.getDestinationName());
+            return requester;
+        } catch (BusException e) {
+            throw new BusFactoryException("Could not create Request Publisher", e);
+        }
+    }
+
+    public BusRequestListener createRequestListener(String configurationKey, String moduleName) throws BusFactoryException {
+        BusListener listener = createListener(configurationKey, moduleName);
+        BusPublisher publisher = createPublisher(configurationKey, moduleName);
+        try {
+            return new BusRequestListenerImpl(listener, publisher);
+        } catch (BusException e) {
+            throw new BusFactoryException("Could not create Request Listener", e);
+        }
+    }
+
+    /**
+     * Stops every listener and drops the messages waiting in queues.
+     */
+    public void release() {
+        for (InVMDestination destination : destinations.values()) {
+            destination.close();
+        }
+        destinations.clear();
+        sharedConnections.clear();
+    }
+
+    private JMSChannelConfiguration resolveConfiguration(String type, String configurationKey, String moduleName) throws BusFactoryException {
+        try {
+            return configuration.getChannelForConnector(type, configurationKey, moduleName);
+        } catch (ConfigurationNotFoundException e) {
+            throw new BusFactoryException("Failed to create "+type, e);
+        }
+    }
+
+    private InVMDestination getDestination(JMSChannelConfiguration cfg) throws BusFactoryException {
+        boolean queue;
+        if (JMSChannelConfiguration.TOPIC.equals(cfg.getDestinationType())) {
+            queue = false;
+        } else if (JMSChannelConfiguration.QUEUE.equals(cfg.getDestinationType())) {
+            queue = true;
+        } else {
+            throw new BusFactoryException("Invalid configuration. Invalid JMS Destination type="+cfg.getDestinationType());
+        }
+        String key = cfg.getDestinationType()+":"+cfg.getDestinationName();
+        InVMDestination destination = destinations.get(key);
+        if (destination == null) {
+            destination = new InVMDestination(cfg.getDestinationName(), queue, mapper, roundTrip);
+            InVMDestination prev = destinations.putIfAbsent(key, destination);
+            if (prev != null) {
+                destination = prev;
+            }
+        }
+        return destination;
+    }
+
+    /**
+     * Returns the connection publishers and listeners of the configuration use, so
+     * noLocal listeners ignore the messages published through the same shared connection.
+     */
+    private Object getConnection(JMSChannelConfiguration cfg) {
+        if (!cfg.isSharedConnection()) {
+            return new Object();
+        }
+        Object cnn = sharedConnections.get(cfg.getSharedConnectionName());
+        if (cnn == null) {
+            cnn = new Object();
+            Object prev = sharedConnections.putIfAbsent(cfg.getSharedConnectionName(), cnn);
+            if (prev != null) {
+                cnn = prev;
+            }
+        }
+        return cnn;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * InVMDestination
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.invm;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+import com.topcoder.shared.messagebus.BusException;
+import com.topcoder.shared.messagebus.BusMessage;
+import com.topcoder.shared.util.logging.Logger;
+
+/**
+ * A topic or queue of the in-VM bus.<p>
+ *
+ * Topics hand each message to every listener subscribed when it is published. Queues hand
+ * each message to a single started listener, in turns. Queue messages published while no
+ * started listener accepts them wait until one does.
+ *
+ * @version $Id$
+ */
+class InVMDestination {
+    private final Logger log = Logger.getLogger(getClass());
+    private final String name;
+    private final boolean queue;
+    private final InVMMessageMapper mapper;
+    private final boolean roundTrip;
+    private final CopyOnWriteArrayList<InVMListener> listeners = new CopyOnWriteArrayList<InVMListener>();
+    private final ConcurrentLinkedQueue<Delivery> pending = new ConcurrentLinkedQueue<Delivery>();
+    private final AtomicInteger nextListener = new AtomicInteger(0);
+
+    /**
+     * @param name The name of the destination
+     * @param queue <code>true</code> for a queue, <code>false</code> for a topic
+     * @param mapper Maps messages when selectors must be evaluated or bodies round tripped
+     * @param roundTrip <code>true</code> if listeners must receive messages mapped back from
+     *                  their JMS form instead of copies of the published ones
+     */
+    public InVMDestination(String name, boolean queue, InVMMessageMapper mapper, boolean roundTrip) {
+        this.name = name;
+        this.queue = queue;
+        this.mapper = mapper;
+        this.roundTrip = roundTrip;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void subscribe(InVMListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unsubscribes the listener. Queue messages it didn't handle are handed to other listeners.
+     */
+    public void unsubscribe(InVMListener listener, Iterator<Delivery> unhandled) {
+        listeners.remove(listener);
+        if (!queue) {
+            return;
+        }
+        while (unhandled.hasNext()) {
+            dispatchToQueue(unhandled.next());
+        }
+    }
+
+    /**
+     * Hands the queue messages waiting for a listener to a listener just started.
+     */
+    public void started(InVMListener listener) {
+        if (!queue) {
+            return;
+        }
+        for (Iterator<Delivery> it = pending.iterator(); it.hasNext();) {
+            Delivery delivery = it.next();
+            if (accepts(listener, delivery) && pending.remove(delivery)) {
+                listener.deliver(delivery);
+            }
+        }
+    }
+
+    public void publish(BusMessage message, Object connection) throws BusException {
+        Message jmsMessage = null;
+        if (roundTrip || hasSelectors()) {
+            jmsMessage = mapper.toJMSMessage(message);
+        }
+        if (queue) {
+            BusMessage copy = newMessage(message, jmsMessage);
+            Delivery delivery = new Delivery(copy, jmsMessage, connection);
+            delivery.message = copy;
+            dispatchToQueue(delivery);
+        } else {
+            for (InVMListener listener : listeners) {
+                Delivery delivery = new Delivery(message, jmsMessage, connection);
+                if (accepts(listener, delivery)) {
+                    delivery.message = newMessage(message, jmsMessage);
+                    listener.deliver(delivery);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops all the listeners of the destination.
+     */
+    public void close() {
+        for (InVMListener listener : listeners) {
+            listener.stop();
+        }
+        pending.clear();
+    }
+
+    private void dispatchToQueue(Delivery delivery) {
+        if (deliverToQueueListener(delivery)) {
+            return;
+        }
+        pending.offer(delivery);
+        //A listener may have started after we looked for one, and before the message was pending
+        if (hasAcceptingListener(delivery) && pending.remove(delivery)) {
+            dispatchToQueue(delivery);
+        }
+    }
+
+    private boolean deliverToQueueListener(Delivery delivery) {
+        Object[] current = listeners.toArray();
+        int start = nextListener.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < current.length; i++) {
+            InVMListener listener = (InVMListener) current[(start + i) % current.length];
+            if (listener.isStarted() && accepts(listener, delivery)) {
+                listener.deliver(delivery);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasAcceptingListener(Delivery delivery) {
+        for (InVMListener listener : listeners) {
+            if (listener.isStarted() && accepts(listener, delivery)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasSelectors() {
+        for (InVMListener listener : listeners) {
+            if (listener.getSelector() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean accepts(InVMListener listener, Delivery delivery) {
+        if (listener.isNoLocal() && listener.getConnection() == delivery.connection) {
+            return false;
+        }
+        InVMMessageMapper.Selector selector = listener.getSelector();
+        if (selector == null) {
+            return true;
+        }
+        try {
+            if (delivery.jmsMessage == null) {
+                //The listener subscribed after the message was published
+                delivery.jmsMessage = mapper.toJMSMessage(delivery.source);
+            }
+            return selector.matches(delivery.jmsMessage);
+        } catch (BusException e) {
+            log.error("Could not map the message for the selector of "+listener, e);
+            return false;
+        } catch (JMSException e) {
+            log.error("Could not evaluate the selector of "+listener, e);
+            return false;
+        }
+    }
+
+    /**
+     * Creates the message a listener receives, so listeners never share headers with the publisher
+     * or with each other. Bodies are only copied when round tripping.
+     */
+    private BusMessage newMessage(BusMessage src, Message jmsMessage) throws BusException {
+        if (roundTrip) {
+            return mapper.fromJMSMessage(jmsMessage);
+        }
+        BusMessage message = new BusMessage();
+        message.setMessageVersion(src.getMessageVersion());
+        message.setMessageOriginVM(src.getMessageOriginVM());
+        message.setMessageOriginModule(src.getMessageOriginModule());
+        message.setMessageDate(src.getMessageDate());
+        message.setMessageType(src.getMessageType());
+        message.setMessageBodyType(src.getMessageBodyType());
+        message.setMessageBody(src.getMessageBody());
+        message.setMessageId(src.getMessageId());
+        message.setMessageCorrelationId(src.getMessageCorrelationId());
+        message.setMessageDeadline(src.getMessageDeadline());
+        return message;
+    }
+
+    public String toString() {
+        return getClass().getSimpleName()+"["+(queue ? "QUEUE:" : "TOPIC:")+name+"]";
+    }
+
+    /**
+     * A message on its way to a listener.
+     */
+    static class Delivery {
+        private BusMessage source;
+        private BusMessage message;
+        private Message jmsMessage;
+        private Object connection;
+
+        private Delivery(BusMessage source, Message jmsMessage, Object connection) {
+            this.source = source;
+            this.jmsMessage = jmsMessage;
+            this.connection = connection;
+        }
+
+        public BusMessage getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * InVMListener
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.invm;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.topcoder.shared.messagebus.BusException;
+import com.topcoder.shared.messagebus.BusListener;
+import com.topcoder.shared.util.logging.Logger;
+
+/**
+ * A listener of the in-VM bus.<p>
+ *
+ * Messages are queued in a lock free inbox as soon as the listener is created, and handed
+ * to the handler one at a time, in order, by a thread of its own once the listener is started,
+ * the same way a JMS session delivers them.
+ *
+ * @version $Id$
+ */
+class InVMListener implements BusListener, Runnable {
+    /**
+     * How long to wait for a handler to be set, in nanos.
+     */
+    private static final long HANDLER_WAIT = TimeUnit.MILLISECONDS.toNanos(100);
+    private final Logger log = Logger.getLogger(getClass());
+    private final InVMDestination destination;
+    private final InVMMessageMapper.Selector selector;
+    private final boolean noLocal;
+    private final Object connection;
+    private final ConcurrentLinkedQueue<InVMDestination.Delivery> inbox = new ConcurrentLinkedQueue<InVMDestination.Delivery>();
+    private volatile Handler handler;
+    private volatile Thread thread;
+    private volatile boolean stopped = false;
+
+    /**
+     * @param destination The destination the listener subscribes to
+     * @param selector Selector of the messages to receive, <code>null</code> to receive all
+     * @param noLocal <code>true</code> if messages published through the same connection must be ignored
+     * @param connection The connection of the listener
+     */
+    public InVMListener(InVMDestination destination, InVMMessageMapper.Selector selector, boolean noLocal, Object connection) {
+        this.destination = destination;
+        this.selector = selector;
+        this.noLocal = noLocal;
+        this.connection = connection;
+        destination.subscribe(this);
+    }
+
+    public void setHandler(Handler handler) throws BusException {
+        this.handler = handler;
+    }
+
+    public synchronized void start() throws BusException {
+        if (stopped) {
+            throw new BusException("The listener is stopped: "+this);
+        }
+        if (thread == null) {
+            thread = new Thread(this, "InVMListener-"+destination.getName());
+            thread.setDaemon(true);
+            thread.start();
+            destination.started(this);
+        }
+    }
+
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            t = thread;
+        }
+        if (t == null) {
+            destination.unsubscribe(this, inbox.iterator());
+        } else {
+            //The delivery thread returns the messages it didn't handle
+            LockSupport.unpark(t);
+        }
+    }
+
+    public void run() {
+        while (!stopped) {
+            Handler h = handler;
+            if (h == null) {
+                LockSupport.parkNanos(this, HANDLER_WAIT);
+                continue;
+            }
+            InVMDestination.Delivery delivery = inbox.poll();
+            if (delivery == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            try {
+                h.handle(delivery.getMessage());
+            } catch (Exception e) {
+                log.error("Exception thrown while handling incoming message: "+delivery.getMessage(), e);
+            }
+        }
+        destination.unsubscribe(this, inbox.iterator());
+    }
+
+    void deliver(InVMDestination.Delivery delivery) {
+        inbox.offer(delivery);
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    boolean isStarted() {
+        return thread != null && !stopped;
+    }
+
+    InVMMessageMapper.Selector getSelector() {
+        return selector;
+    }
+
+    boolean isNoLocal() {
+        return noLocal;
+    }
+
+    Object getConnection() {
+        return connection;
+    }
+
+    public String toString() {
+        return getClass().getSimpleName()+"["+System.identityHashCode(this)+"]";
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * InVMMessageMapper
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.invm;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.jms.BytesMessage;
+import javax.jms.InvalidSelectorException;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import javax.jms.StreamMessage;
+
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQMapMessage;
+import org.apache.activemq.command.ActiveMQMessage;
+import org.apache.activemq.command.ActiveMQObjectMessage;
+import org.apache.activemq.command.ActiveMQStreamMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.apache.activemq.filter.BooleanExpression;
+import org.apache.activemq.filter.MessageEvaluationContext;
+import org.apache.activemq.selector.SelectorParser;
+
+import com.topcoder.shared.messagebus.BusException;
+import com.topcoder.shared.messagebus.BusMessage;
+import com.topcoder.shared.messagebus.jms.mapper.MessageMapper;
+import com.topcoder.shared.messagebus.jms.mapper.MessageMapperProvider;
+
+/**
+ * Maps bus messages to JMS messages and back using the configured mappers, the same
+ * way JMS publishers and listeners do, but without a broker.<p>
+ *
+ * JMS messages are only needed to evaluate selectors and to check bodies survive
+ * serialization. They are created in memory, through a session that only supports
+ * message creation.
+ *
+ * @version $Id$
+ */
+class InVMMessageMapper {
+    private static final Session SESSION = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+            new Class[] {Session.class}, new MessageFactory());
+    private MessageMapperProvider mapperProvider;
+
+    public InVMMessageMapper(MessageMapperProvider mapperProvider) {
+        this.mapperProvider = mapperProvider;
+    }
+
+    /**
+     * Maps the message to a JMS message ready to be read.
+     */
+    public Message toJMSMessage(BusMessage message) throws BusException {
+        try {
+            MessageMapper mapper = mapperProvider.getMapper(message.getMessageType(), message.getMessageBodyType());
+            Message jmsMessage = mapper.toJMSMessage(message, SESSION);
+            jmsMessage.setJMSMessageID(message.getMessageId());
+            return jmsMessage;
+        } catch (Exception e) {
+            throw new BusException("Could not map message: "+message, e);
+        }
+    }
+
+    /**
+     * Maps a JMS message created by {@link #toJMSMessage(BusMessage)} to a new bus message.
+     * The JMS message can be mapped many times.
+     */
+    public BusMessage fromJMSMessage(Message jmsMessage) throws BusException {
+        try {
+            if (jmsMessage instanceof BytesMessage) {
+                ((BytesMessage) jmsMessage).reset();
+            } else if (jmsMessage instanceof StreamMessage) {
+                ((StreamMessage) jmsMessage).reset();
+            }
+            MessageMapper mapper = mapperProvider.getMapper(MessageMapper.getMessageType(jmsMessage),
+                    MessageMapper.getMessageBodyType(jmsMessage), MessageMapper.getMessageBodySerializationMethod(jmsMessage));
+            return mapper.fromJMSMessage(jmsMessage);
+        } catch (Exception e) {
+            throw new BusException("Could not map JMS message: "+jmsMessage, e);
+        }
+    }
+
+    /**
+     * Parses a JMS selector.
+     *
+     * @return The selector, or <code>null</code> if the string is empty
+     */
+    public static Selector parseSelector(String selectorString) throws InvalidSelectorException {
+        if (selectorString == null || selectorString.trim().length() == 0) {
+            return null;
+        }
+        return new Selector(new SelectorParser().parse(selectorString));
+    }
+
+    /**
+     * A JMS selector evaluated on in memory messages.
+     */
+    static class Selector {
+        private BooleanExpression expression;
+
+        private Selector(BooleanExpression expression) {
+            this.expression = expression;
+        }
+
+        public boolean matches(Message message) throws JMSException {
+            MessageEvaluationContext context = new MessageEvaluationContext();
+            context.setMessageReference((ActiveMQMessage) message);
+            return expression.matches(context);
+        }
+    }
+
+    private static class MessageFactory implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            Message message;
+            if (name.equals("createBytesMessage")) {
+                message = new ActiveMQBytesMessage();
+            } else if (name.equals("createTextMessage")) {
+                ActiveMQTextMessage text = new ActiveMQTextMessage();
+                if (args != null) {
+                    text.setText((String) args[0]);
+                }
+                message = text;
+            } else if (name.equals("createObjectMessage")) {
+                ActiveMQObjectMessage object = new ActiveMQObjectMessage();
+                if (args != null) {
+                    object.setObject((java.io.Serializable) args[0]);
+                }
+                message = object;
+            } else if (name.equals("createMapMessage")) {
+                message = new ActiveMQMapMessage();
+            } else if (name.equals("createStreamMessage")) {
+                message = new ActiveMQStreamMessage();
+            } else if (name.equals("createMessage")) {
+                message = new ActiveMQMessage();
+            } else if (name.equals("toString")) {
+                return "InVMSession";
+            } else if (name.equals("hashCode")) {
+                return new Integer(System.identityHashCode(proxy));
+            } else if (name.equals("equals")) {
+                return Boolean.valueOf(proxy == args[0]);
+            } else {
+                throw new UnsupportedOperationException("The in-VM session only creates messages: "+name);
+            }
+            return message;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * InVMPublisher
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.invm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.topcoder.shared.messagebus.BusException;
+import com.topcoder.shared.messagebus.BusMessage;
+import com.topcoder.shared.messagebus.BusPublisher;
+import com.topcoder.shared.util.logging.Logger;
+
+/**
+ * A publisher of the in-VM bus. Messages are handed to the listeners of the
+ * destination from the publishing thread.
+ *
+ * @version $Id$
+ */
+class InVMPublisher implements BusPublisher {
+    private static final AtomicLong lastId = new AtomicLong(0);
+    private final Logger log = Logger.getLogger(getClass());
+    private final InVMDestination destination;
+    private final Object connection;
+    private volatile boolean closed = false;
+
+    /**
+     * @param destination The destination to publish to
+     * @param connection The connection of the publisher
+     */
+    public InVMPublisher(InVMDestination destination, Object connection) {
+        this.destination = destination;
+        this.connection = connection;
+    }
+
+    public void publish(BusMessage message) throws BusException {
+        if (closed) {
+            throw new BusException("Could not publish message, the publisher is closed: "+this);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Sending : "+message);
+        }
+        //Formatted as producer ids and sequence, so they are kept by the in memory JMS messages
+        message.setMessageId("ID:InVM-1:1:1:"+lastId.incrementAndGet());
+        destination.publish(message, connection);
+    }
+
+    public void close() {
+        closed = true;
+    }
+
+    public String toString() {
+        return getClass().getSimpleName()+"["+System.identityHashCode(this)+"]";
+    }
+}
@@ -13,6 +13,7 @@ import com.topcoder.shared.exception.LocalizableException;
 import com.topcoder.shared.messagebus.BusException;
 import com.topcoder.shared.messagebus.BusMessage;
 import com.topcoder.shared.messagebus.BusRequestListener;
+import com.topcoder.shared.messagebus.metrics.BusMetrics;
 import com.topcoder.shared.util.logging.Logger;
 
 
@@ -55,7 +56,17 @@ public class BusRemoteInvocationListener {
         try {
             this.listener.setHandler(new BusRequestListener.Handler() {
                 public void handle(BusMessage requestMessage, BusRequestListener.ResponseMessageHolder responseMessageHolder) {
-                    processIncomingRequest(requestConverter.fromMessage(requestMessage), new ResponseConverterDecorator(responseMessageHolder));
+                    Request request = requestConverter.fromMessage(requestMessage);
+                    ResponseConverterDecorator responseHolder = new ResponseConverterDecorator(responseMessageHolder);
+                    if (!BusMetrics.isEnabled()) {
+                        processIncomingRequest(request, responseHolder);
+                        return;
+                    }
+                    //Requests are created right before they are sent
+                    long latency = requestMessage.getMessageDate() == null ? -1 : Math.max(0, System.currentTimeMillis() - requestMessage.getMessageDate().getTime());
+                    long start = System.nanoTime();
+                    boolean succeeded = processIncomingRequest(request, responseHolder);
+                    BusMetrics.getSink().handled(request.getNamespace()+":"+request.getActionName(), latency, System.nanoTime() - start, !succeeded);
                 }
             });
         } catch (BusException e) {
@@ -86,7 +97,10 @@ public class BusRemoteInvocationListener {
         actionProcessors.put(buidKey(namespace, action), actionProcessor);
     }
 
-    private Response processIncomingRequest(Request req, ResponseConverterDecorator responseHolder) {
+    /**
+     * @return <code>true</code> if the action was processed successfully
+     */
+    private boolean processIncomingRequest(Request req, ResponseConverterDecorator responseHolder) {
         String action = req.getActionName();
         String namespace = req.getNamespace();
         try {
@@ -104,13 +118,14 @@ public class BusRemoteInvocationListener {
                 }
                 responseHolder.setResponse(new Response(Response.SUCCESSFUL, result));
             }
+            return true;
         } catch (Exception e) {
             log.info("Exception executing action: ", e);
             if (req.getRequestType() != Request.REQUEST_ASYNC && req.getRequestType() != Request.REQUEST_ACK_RECEIVED) {
                 responseHolder.setResponse(new Response(Response.TARGET_EXCEPTION, ExceptionData.buildFrom(e)));
             }
+            return false;
         }
-        return null;
     }
 
     
@@ -16,6 +16,7 @@ import javax.jms.MessageProducer;
 import javax.jms.Session;
 import javax.jms.Topic;
 
+import com.topcoder.shared.messagebus.BatchingBusPublisher;
 import com.topcoder.shared.messagebus.BusException;
 import com.topcoder.shared.messagebus.BusFactory;
 import com.topcoder.shared.messagebus.BusFactoryException;
@@ -26,6 +27,7 @@ import com.topcoder.shared.messagebus.BusRequestListener;
 import com.topcoder.shared.messagebus.BusRequestListenerImpl;
 import com.topcoder.shared.messagebus.BusRequestPublisher;
 import com.topcoder.shared.messagebus.BusRequestPublisherImpl;
+import com.topcoder.shared.messagebus.OrderedDispatcher;
 import com.topcoder.shared.messagebus.jms.mapper.MessageMapperProvider;
 
 /**
@@ -36,9 +38,14 @@ import com.topcoder.shared.messagebus.jms.mapper.MessageMapperProvider;
  * @version $Id$
  */
 public abstract class AbstractJMSBusFactory extends BusFactory {
+    /**
+     * Number of batches batching publishers can buffer.
+     */
+    private static final int BATCH_BUFFER_FACTOR = 10;
     private Map<String, ConnectionFactory> factories = new HashMap<String, ConnectionFactory>();
     private Map<String, JMSConnection> connections = new HashMap<String, JMSConnection>();
     private Map<String, Object> connectionsLock = new HashMap<String, Object>();
+    private Map<String, JMSSessionPool> producerPools = new HashMap<String, JMSSessionPool>();
     private MessageMapperProvider mapperProvider;
     private JMSBusConfiguration configuration;
     
@@ -128,14 +135,7 @@ public abstract class AbstractJMSBusFactory extends BusFactory {
         try {
             JMSConnection cnn = getConnection(cfg);
             Session session = cnn.createSession(false, Session.AUTO_ACKNOWLEDGE);
-            Destination dest;
-            if (JMSChannelConfiguration.TOPIC.equals(cfg.getDestinationType())) {
-                dest = session.createTopic(cfg.getDestinationName());
-            } else if (JMSChannelConfiguration.QUEUE.equals(cfg.getDestinationType())) {
-                dest = session.createQueue(cfg.getDestinationName());
-            } else {
-                throw new BusFactoryException("Invalid configuration. Invalid JMS Destination type="+cfg.getDestinationType());
-            }
+            Destination dest = createDestination(session, cfg);
             MessageConsumer consumer;
             if (cfg.isDurableSubscriber()) {
                 consumer = session.createDurableSubscriber((Topic) dest, cfg.getDurableSubscriberName(), cfg.getSelectorString(), cfg.isNoLocal());
@@ -143,7 +143,13 @@ public abstract class AbstractJMSBusFactory extends BusFactory {
                 consumer = session.createConsumer(dest, cfg.getSelectorString(), cfg.isNoLocal());
             }
             if (listener) {
-                return new JMSListener(cnn, session, consumer, dest, cfg.isSharedConnection(), mapperProvider);
+                JMSListener jmsListener = new JMSListener(cnn, session, consumer, dest, cfg.isSharedConnection(), mapperProvider);
+                jmsListener.setChannelName(cfg.getDestinationName());
+                if (cfg.getDispatchWorkers() > 0) {
+                    jmsListener.setDispatcher(new OrderedDispatcher("JMSListener-"+cfg.getDestinationName(), 
+                            cfg.getDispatchWorkers(), cfg.getDispatchQueueSize()), cfg.getDispatchKeyProperty());
+                }
+                return jmsListener;
             } else {
                 return null;
             }
@@ -153,20 +159,16 @@ public abstract class AbstractJMSBusFactory extends BusFactory {
     }
 
     public JMSProducer createMessageProducerImpl(JMSChannelConfiguration cfg, boolean publisher) throws BusFactoryException {
+        if (cfg.getProducerPoolSize() > 0) {
+            return createPooledProducerImpl(cfg, publisher);
+        }
         try {
             JMSConnection cnn = getConnection(cfg);
             Session session = cnn.createSession(false, Session.AUTO_ACKNOWLEDGE);
-            Destination dest;
-            if (JMSChannelConfiguration.TOPIC.equals(cfg.getDestinationType())) {
-                dest = session.createTopic(cfg.getDestinationName());
-            } else if (JMSChannelConfiguration.QUEUE.equals(cfg.getDestinationType())) {
-                dest = session.createQueue(cfg.getDestinationName());
-            } else {
-                throw new BusFactoryException("Invalid configuration. Invalid JMS Destination type="+cfg.getDestinationType());
-            }
+            Destination dest = createDestination(session, cfg);
             MessageProducer producer = session.createProducer(dest);
             if (publisher) {
-                return new JMSPublisher(cnn, session, producer, dest, cfg.isSharedConnection(), mapperProvider);
+                return named(new JMSPublisher(cnn, session, producer, dest, cfg.isSharedConnection(), mapperProvider), cfg);
             } else {
                 return null;
             }
@@ -175,14 +177,90 @@ public abstract class AbstractJMSBusFactory extends BusFactory {
         }
     }
 
+    /**
+     * Creates a producer sending through a pool of sessions. Producers using a shared connection
+     * share the pool of their connection and destination, so creating them costs no session setup. 
+     */
+    private JMSProducer createPooledProducerImpl(JMSChannelConfiguration cfg, boolean publisher) throws BusFactoryException {
+        if (!publisher) {
+            return null;
+        }
+        try {
+            JMSConnection cnn = getConnection(cfg);
+            if (!cfg.isSharedConnection()) {
+                return named(new JMSPublisher(cnn, newProducerPool(cnn, cfg), false, false, mapperProvider), cfg);
+            }
+            String poolKey = cfg.getSharedConnectionName()+"|"+cfg.getDestinationType()+"|"+cfg.getDestinationName();
+            JMSSessionPool pool;
+            synchronized (producerPools) {
+                pool = producerPools.get(poolKey);
+                if (pool == null) {
+                    pool = newProducerPool(cnn, cfg);
+                    producerPools.put(poolKey, pool);
+                }
+            }
+            return named(new JMSPublisher(cnn, pool, true, true, mapperProvider), cfg);
+        } catch (JMSException e) {
+            throw new BusFactoryException("Could not create JMS producer", e);
+        }
+    }
+
+    /**
+     * Names the publisher after its destination, the name it reports its measures with.
+     */
+    private JMSPublisher named(JMSPublisher publisher, JMSChannelConfiguration cfg) {
+        publisher.setChannelName(cfg.getDestinationName());
+        return publisher;
+    }
+
+    private JMSSessionPool newProducerPool(JMSConnection cnn, JMSChannelConfiguration cfg) throws JMSException, BusFactoryException {
+        Session session = cnn.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        try {
+            return new JMSSessionPool(cnn, session, createDestination(session, cfg), cfg.getProducerPoolSize());
+        } catch (JMSException e) {
+            session.close();
+            throw e;
+        } catch (BusFactoryException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    private Destination createDestination(Session session, JMSChannelConfiguration cfg) throws JMSException, BusFactoryException {
+        if (JMSChannelConfiguration.TOPIC.equals(cfg.getDestinationType())) {
+            return session.createTopic(cfg.getDestinationName());
+        } else if (JMSChannelConfiguration.QUEUE.equals(cfg.getDestinationType())) {
+            return session.createQueue(cfg.getDestinationName());
+        } else {
+            throw new BusFactoryException("Invalid configuration. Invalid JMS Destination type="+cfg.getDestinationType());
+        }
+    }
+
     public BusPublisher createPublisher(String configurationKey, String moduleName) throws BusFactoryException {
-        JMSChannelConfiguration cfg;
+        JMSChannelConfiguration cfg = getPublisherConfiguration(configurationKey, moduleName);
+        JMSPublisher publisher = (JMSPublisher) createMessageProducerImpl(cfg, true);
+        if (cfg.getPublishBatchSize() > 1) {
+            return new BatchingBusPublisher("BatchingBusPublisher-"+cfg.getDestinationName(), publisher,
+                    cfg.getPublishBatchSize(), cfg.getPublishBatchDelay(), cfg.getPublishBatchSize() * BATCH_BUFFER_FACTOR);
+        }
+        return publisher;
+    }
+
+    /**
+     * Creates a publisher sending every message as soon as it is published, ignoring the batching
+     * settings of the channel. Requests and responses use it, their message id must be set
+     * when publish returns so responses can be correlated with them.
+     */
+    private BusPublisher createUnbatchedPublisher(String configurationKey, String moduleName) throws BusFactoryException {
+        return (BusPublisher) createMessageProducerImpl(getPublisherConfiguration(configurationKey, moduleName), true);
+    }
+
+    private JMSChannelConfiguration getPublisherConfiguration(String configurationKey, String moduleName) throws BusFactoryException {
         try {
-            cfg = resolvePublisherConfiguration(configurationKey, moduleName);
+            return resolvePublisherConfiguration(configurationKey, moduleName);
         } catch (ConfigurationNotFoundException e) {
             throw new BusFactoryException("Failed to create publisher", e);
         }
-        return (BusPublisher) createMessageProducerImpl(cfg, true);
     }
 
     public BusListener createListener(String configurationKey, String moduleName) throws BusFactoryException {
@@ -209,9 +287,15 @@ public abstract class AbstractJMSBusFactory extends BusFactory {
 
     public BusRequestPublisher createRequestPublisher(String configurationKey, String moduleName) throws BusFactoryException {
         BusListener listener = createListener(configurationKey, moduleName);
-        BusPublisher publisher = createPublisher(configurationKey, moduleName);
+        BusPublisher publisher = createUnbatchedPublisher(configurationKey, moduleName);
         try {
-            return new BusRequestPublisherImpl(publisher, listener);
+            BusRequestPublisherImpl requester = new BusRequestPublisherImpl(publisher, listener);
+            JMSChannelConfiguration cfg = resolvePublisherConfiguration(configurationKey, moduleName);
+            requester.setDefaultTimeout(cfg.getRequestTimeout());
+            requester.setChannelName(cfg.getDestinationName());
+            return requester;
+        } catch (ConfigurationNotFoundException e) {
+            throw new BusFactoryException("Could not create Request Publisher", e);
         } catch (BusException e) {
             throw new BusFactoryException("Could not create Request Publisher", e);
         }
@@ -219,7 +303,7 @@ public abstract class AbstractJMSBusFactory extends BusFactory {
     
     public BusRequestListener createRequestListener(String configurationKey, String moduleName) throws BusFactoryException {
         BusListener listener = createListener(configurationKey, moduleName);
-        BusPublisher publisher = createPublisher(configurationKey, moduleName);
+        BusPublisher publisher = createUnbatchedPublisher(configurationKey, moduleName);
         try {
             return new BusRequestListenerImpl(listener, publisher);
         } catch (BusException e) {
@@ -228,6 +312,12 @@ public abstract class AbstractJMSBusFactory extends BusFactory {
     }
 
     public void release() {
+        synchronized (producerPools) {
+            for (JMSSessionPool pool : producerPools.values()) {
+                pool.close();
+            }
+            producerPools.clear();
+        }
         synchronized (connections) {
             for (JMSConnection cnn : connections.values()) {
                 try {
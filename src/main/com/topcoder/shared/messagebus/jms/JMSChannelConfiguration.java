@@ -60,6 +60,42 @@ public class JMSChannelConfiguration {
      * The name to use for the durable subscription, this name must be unique along all subscribers
      */
     private String  durableSubscriberName;
+    /**
+     * Number of idle sessions to keep per connection and destination for publishers. When greater than 0
+     * publishers send through a pool of sessions, shared by all publishers of the same shared connection and destination, 
+     * instead of a session of their own.
+     */
+    private Integer producerPoolSize;
+    /**
+     * Number of workers handling the messages received by listeners. When greater than 0 listeners 
+     * hand messages to an {@link com.topcoder.shared.messagebus.OrderedDispatcher} instead of
+     * handling them on the JMS delivery thread.
+     */
+    private Integer dispatchWorkers;
+    /**
+     * Max number of received messages waiting for a worker. When reached, listeners stop consuming.
+     */
+    private Integer dispatchQueueSize;
+    /**
+     * Name of the JMS property with the key of the messages that must be handled in order, 
+     * JMSXGroupID by default.
+     */
+    private String dispatchKeyProperty;
+    /**
+     * Max number of messages publishers send in a single transaction. When greater than 1 
+     * publishers return as soon as the message is buffered, and a {@link com.topcoder.shared.messagebus.BatchingBusPublisher}
+     * sends the buffered messages in batches.
+     */
+    private Integer publishBatchSize;
+    /**
+     * Max time, in millis, a batch waits to be filled before it is sent.
+     */
+    private Integer publishBatchDelay;
+    /**
+     * Max time, in millis, request publishers wait for the response of a request. The deadline travels
+     * with the request, so it can be skipped once expired. 0, the default, means requests don't expire.
+     */
+    private Integer requestTimeout;
     
     public String getDestinationType() {
         return destinationType;
@@ -109,6 +145,48 @@ public class JMSChannelConfiguration {
     public void setDurableSubscriberName(String durableSubscriberName) {
         this.durableSubscriberName = durableSubscriberName;
     }
+    public int getProducerPoolSize() {
+        return producerPoolSize == null ? 0 : producerPoolSize.intValue();
+    }
+    public void setProducerPoolSize(int producerPoolSize) {
+        this.producerPoolSize = Integer.valueOf(producerPoolSize);
+    }
+    public int getDispatchWorkers() {
+        return dispatchWorkers == null ? 0 : dispatchWorkers.intValue();
+    }
+    public void setDispatchWorkers(int dispatchWorkers) {
+        this.dispatchWorkers = Integer.valueOf(dispatchWorkers);
+    }
+    public int getDispatchQueueSize() {
+        return dispatchQueueSize == null ? 1000 : dispatchQueueSize.intValue();
+    }
+    public void setDispatchQueueSize(int dispatchQueueSize) {
+        this.dispatchQueueSize = Integer.valueOf(dispatchQueueSize);
+    }
+    public String getDispatchKeyProperty() {
+        return dispatchKeyProperty == null ? "JMSXGroupID" : dispatchKeyProperty;
+    }
+    public void setDispatchKeyProperty(String dispatchKeyProperty) {
+        this.dispatchKeyProperty = dispatchKeyProperty;
+    }
+    public int getPublishBatchSize() {
+        return publishBatchSize == null ? 0 : publishBatchSize.intValue();
+    }
+    public void setPublishBatchSize(int publishBatchSize) {
+        this.publishBatchSize = Integer.valueOf(publishBatchSize);
+    }
+    public int getPublishBatchDelay() {
+        return publishBatchDelay == null ? 10 : publishBatchDelay.intValue();
+    }
+    public void setPublishBatchDelay(int publishBatchDelay) {
+        this.publishBatchDelay = Integer.valueOf(publishBatchDelay);
+    }
+    public int getRequestTimeout() {
+        return requestTimeout == null ? 0 : requestTimeout.intValue();
+    }
+    public void setRequestTimeout(int requestTimeout) {
+        this.requestTimeout = Integer.valueOf(requestTimeout);
+    }
     public String getExtendsConfig() {
         return extendsConfig;
     }
@@ -124,6 +202,13 @@ public class JMSChannelConfiguration {
         if (this.noLocal == null) this.noLocal = src.noLocal;
         if (this.durableSubscriber == null) this.durableSubscriber = src.durableSubscriber;
         if (this.durableSubscriberName == null) this.durableSubscriberName = src.durableSubscriberName;
+        if (this.producerPoolSize == null) this.producerPoolSize = src.producerPoolSize;
+        if (this.dispatchWorkers == null) this.dispatchWorkers = src.dispatchWorkers;
+        if (this.dispatchQueueSize == null) this.dispatchQueueSize = src.dispatchQueueSize;
+        if (this.dispatchKeyProperty == null) this.dispatchKeyProperty = src.dispatchKeyProperty;
+        if (this.publishBatchSize == null) this.publishBatchSize = src.publishBatchSize;
+        if (this.publishBatchDelay == null) this.publishBatchDelay = src.publishBatchDelay;
+        if (this.requestTimeout == null) this.requestTimeout = src.requestTimeout;
         HashMap<String, String> customProps = new HashMap<String, String>(src.properties);
         customProps.putAll(this.properties);
         this.properties = customProps;
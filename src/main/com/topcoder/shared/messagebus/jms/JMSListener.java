@@ -18,10 +18,12 @@ import javax.jms.Session;
 import com.topcoder.shared.messagebus.BusException;
 import com.topcoder.shared.messagebus.BusListener;
 import com.topcoder.shared.messagebus.BusMessage;
+import com.topcoder.shared.messagebus.OrderedDispatcher;
 import com.topcoder.shared.messagebus.jms.mapper.MapperNotFoundException;
 import com.topcoder.shared.messagebus.jms.mapper.MapperProviderException;
 import com.topcoder.shared.messagebus.jms.mapper.MessageMapper;
 import com.topcoder.shared.messagebus.jms.mapper.MessageMapperProvider;
+import com.topcoder.shared.messagebus.metrics.BusMetrics;
 import com.topcoder.shared.util.logging.Logger;
 
 /**
@@ -37,6 +39,9 @@ public class JMSListener implements BusListener {
     private Connection cnn;
     private MessageConsumer consumer;
     private Handler handler;
+    private OrderedDispatcher dispatcher;
+    private String dispatchKeyProperty;
+    private String channelName;
     
 
     public JMSListener(Connection cnn, Session session, MessageConsumer consumer, Destination destination, boolean sharedConnection, MessageMapperProvider mapperProvider) throws JMSException {
@@ -54,12 +59,50 @@ public class JMSListener implements BusListener {
             if (log.isDebugEnabled()) {
                 log.debug("JMS message Received: "+msg);
             }
-            handler.handle(convertFromJMS(msg));
+            long start = BusMetrics.isEnabled() ? System.nanoTime() : 0;
+            final BusMessage message = convertFromJMS(msg);
+            if (start != 0) {
+                BusMetrics.getSink().received(getChannelName(), System.nanoTime() - start);
+            }
+            final long timestamp = msg.getJMSTimestamp();
+            if (dispatcher == null) {
+                handle(handler, message, timestamp);
+            } else {
+                final Handler h = handler;
+                dispatcher.execute(msg.getObjectProperty(dispatchKeyProperty), new Runnable() {
+                    public void run() {
+                        try {
+                            handle(h, message, timestamp);
+                        } catch (Exception e) {
+                            log.error("Exception thrown while handling incoming message: "+message, e);
+                        }
+                    }
+                });
+            }
         } catch (Exception e) {
             log.error("Exception thrown while handling incoming message: "+msg, e);
         }
     }
 
+    /**
+     * Hands the message to the handler, measuring the time since it was published and the time the handler takes.
+     */
+    private void handle(Handler h, BusMessage message, long timestamp) {
+        if (!BusMetrics.isEnabled()) {
+            h.handle(message);
+            return;
+        }
+        long latency = timestamp == 0 ? -1 : Math.max(0, System.currentTimeMillis() - timestamp);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            h.handle(message);
+            failed = false;
+        } finally {
+            BusMetrics.getSink().handled(getChannelName(), latency, System.nanoTime() - start, failed);
+        }
+    }
+
     private BusMessage convertFromJMS(Message message) throws JMSException, IOException, MapperNotFoundException, MapperProviderException {
         String messageType = MessageMapper.getMessageType(message);
         String messageBodyType = MessageMapper.getMessageBodyType(message);
@@ -82,6 +125,9 @@ public class JMSListener implements BusListener {
     private void bareClose() {
         try { consumer.close(); } catch (Exception e) { log.debug(e, e); };
         try { session.close();  } catch (Exception e) { log.debug(e, e); };
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
         if (!sharedConnection) {
             try { cnn.close();  } catch (Exception e) { log.debug(e, e); };
         }
@@ -91,6 +137,30 @@ public class JMSListener implements BusListener {
         return getClass().getSimpleName()+"["+System.identityHashCode(this)+"]";
     }
 
+    /**
+     * Hands the incoming messages to the handler through a dispatcher instead of calling it 
+     * from the JMS delivery thread. Messages with the same value of the given JMS property are 
+     * handled in order, and the delivery thread blocks while the dispatcher is full.
+     * 
+     * @param dispatcher The dispatcher, shut down when this listener is closed
+     * @param keyProperty The name of the JMS property holding the ordering key, eg: JMSXGroupID 
+     */
+    public void setDispatcher(OrderedDispatcher dispatcher, String keyProperty) {
+        this.dispatcher = dispatcher;
+        this.dispatchKeyProperty = keyProperty;
+    }
+
+    /**
+     * Sets the name this listener reports its measures with, the destination name by default.
+     */
+    public void setChannelName(String channelName) {
+        this.channelName = channelName;
+    }
+
+    public String getChannelName() {
+        return channelName == null ? String.valueOf(destination) : channelName;
+    }
+
     public void setHandler(Handler handler) throws BusException {
         this.handler = handler;
         try {
@@ -6,6 +6,7 @@
 package com.topcoder.shared.messagebus.jms;
 
 import java.io.IOException;
+import java.util.List;
 
 import javax.jms.Destination;
 import javax.jms.JMSException;
@@ -18,6 +19,7 @@ import com.topcoder.shared.messagebus.jms.mapper.MapperNotFoundException;
 import com.topcoder.shared.messagebus.jms.mapper.MapperProviderException;
 import com.topcoder.shared.messagebus.jms.mapper.MessageMapper;
 import com.topcoder.shared.messagebus.jms.mapper.MessageMapperProvider;
+import com.topcoder.shared.messagebus.metrics.BusMetrics;
 import com.topcoder.shared.util.logging.Logger;
 
 /**
@@ -33,6 +35,12 @@ public class JMSProducer {
     private Destination destination;
     private boolean sharedConnection;
     private JMSConnection cnn;
+    private JMSSessionPool pool;
+    private boolean sharedPool;
+    private Object batchMutex = new Object();
+    private Session batchSession;
+    private MessageProducer batchProducer;
+    private String channelName;
 
     public JMSProducer(JMSConnection cnn, Session session, MessageProducer producer, Destination destination, boolean sharedConnection, MessageMapperProvider mapperProvider) {
         this.cnn = cnn;
@@ -44,25 +52,158 @@ public class JMSProducer {
         log.debug("Created "+this+" destination="+this.destination);
     }
 
+    /**
+     * Creates a producer sending through the sessions of a pool instead of a session of its own.
+     * 
+     * @param sharedPool <code>true</code> if the pool is used by other producers and must not be closed with this one
+     */
+    public JMSProducer(JMSConnection cnn, JMSSessionPool pool, boolean sharedPool, boolean sharedConnection, MessageMapperProvider mapperProvider) {
+        this.cnn = cnn;
+        this.pool = pool;
+        this.sharedPool = sharedPool;
+        this.destination = pool.getDestination();
+        this.sharedConnection = sharedConnection;
+        this.mapperProvider = mapperProvider;
+        log.debug("Created "+this+" destination="+this.destination+" pool="+pool);
+    }
+
     protected Message send(BusMessage message) throws JMSException, IOException, MapperNotFoundException, MapperProviderException {
         if (log.isDebugEnabled()) {
             log.debug("Sending : "+message);
         }
-        Message jmsMsg = convertToJMS(message);
+        if (pool != null) {
+            return sendPooled(message);
+        }
+        boolean measure = BusMetrics.isEnabled();
+        long start = measure ? System.nanoTime() : 0;
+        Message jmsMsg = convertToJMS(message, session);
+        long encoded = measure ? System.nanoTime() : 0;
         cnn.assertConnected();
         synchronized (sendMutex) {
-            producer.send(jmsMsg);
+            sendUntilDeadline(producer, jmsMsg, message);
+        }
+        if (measure) {
+            BusMetrics.getSink().published(getChannelName(), 1, encoded - start, System.nanoTime() - encoded);
         }
         message.setMessageId(jmsMsg.getJMSMessageID());
         return jmsMsg;
     }
 
-    private Message convertToJMS(BusMessage message) throws JMSException, IOException, MapperNotFoundException, MapperProviderException {
+    private Message sendPooled(BusMessage message) throws JMSException, IOException, MapperNotFoundException, MapperProviderException {
+        cnn.assertConnected();
+        JMSSessionPool.PooledProducer pooled = pool.checkout();
+        boolean sent = false;
+        try {
+            boolean measure = BusMetrics.isEnabled();
+            long start = measure ? System.nanoTime() : 0;
+            Message jmsMsg = convertToJMS(message, pooled.getSession());
+            long encoded = measure ? System.nanoTime() : 0;
+            sendUntilDeadline(pooled.getProducer(), jmsMsg, message);
+            sent = true;
+            if (measure) {
+                BusMetrics.getSink().published(getChannelName(), 1, encoded - start, System.nanoTime() - encoded);
+            }
+            message.setMessageId(jmsMsg.getJMSMessageID());
+            return jmsMsg;
+        } finally {
+            //A session that failed may not be usable anymore
+            if (sent) {
+                pool.checkin(pooled);
+            } else {
+                pool.discard(pooled);
+            }
+        }
+    }
+
+    /**
+     * Sends the JMS message, letting the broker discard it once the deadline of the message has passed.
+     */
+    private void sendUntilDeadline(MessageProducer sender, Message jmsMsg, BusMessage message) throws JMSException {
+        long deadline = message.getMessageDeadline();
+        if (deadline == 0) {
+            sender.send(jmsMsg);
+        } else {
+            long timeToLive = Math.max(1, deadline - System.currentTimeMillis());
+            sender.send(jmsMsg, sender.getDeliveryMode(), sender.getPriority(), timeToLive);
+        }
+    }
+
+    /**
+     * Sends the messages in a single transaction, either all of them are sent or none is.<p>
+     * 
+     * Batches are sent through a transacted session of their own, created on the first batch,
+     * so the broker syncs once per batch instead of once per message. 
+     */
+    protected void send(List<BusMessage> messages) throws JMSException, IOException, MapperNotFoundException, MapperProviderException {
+        if (log.isDebugEnabled()) {
+            log.debug("Sending batch of "+messages.size()+" messages");
+        }
+        cnn.assertConnected();
+        synchronized (batchMutex) {
+            if (batchSession == null) {
+                batchSession = cnn.createSession(true, Session.SESSION_TRANSACTED);
+                batchProducer = batchSession.createProducer(destination);
+            }
+            boolean committed = false;
+            boolean measure = BusMetrics.isEnabled();
+            long start = measure ? System.nanoTime() : 0;
+            long encodeTime = 0;
+            try {
+                Message[] jmsMsgs = new Message[messages.size()];
+                for (int i = 0; i < jmsMsgs.length; i++) {
+                    long encodeStart = measure ? System.nanoTime() : 0;
+                    jmsMsgs[i] = convertToJMS(messages.get(i), batchSession);
+                    if (measure) {
+                        encodeTime += System.nanoTime() - encodeStart;
+                    }
+                    sendUntilDeadline(batchProducer, jmsMsgs[i], messages.get(i));
+                }
+                batchSession.commit();
+                committed = true;
+                if (measure) {
+                    BusMetrics.getSink().published(getChannelName(), jmsMsgs.length, encodeTime, System.nanoTime() - start - encodeTime);
+                }
+                for (int i = 0; i < jmsMsgs.length; i++) {
+                    messages.get(i).setMessageId(jmsMsgs[i].getJMSMessageID());
+                }
+            } finally {
+                if (!committed) {
+                    //A session that failed may not be usable anymore, a new one is created for the next batch
+                    closeBatchSession();
+                }
+            }
+        }
+    }
+
+    private void closeBatchSession() {
+        if (batchSession != null) {
+            try { batchSession.rollback(); } catch (Exception e) { log.error(e, e); };
+            if (batchProducer != null) {
+                try { batchProducer.close(); } catch (Exception e) { log.error(e, e); };
+            }
+            try { batchSession.close(); } catch (Exception e) { log.error(e, e); };
+            batchSession = null;
+            batchProducer = null;
+        }
+    }
+
+    private Message convertToJMS(BusMessage message, Session session) throws JMSException, IOException, MapperNotFoundException, MapperProviderException {
         MessageMapper mapper = mapperProvider.getMapper(message.getMessageType(), message.getMessageBodyType());
         Message convertedMessage = mapper.toJMSMessage(message, session);
         return convertedMessage;
     }
 
+    /**
+     * Sets the name this producer reports its measures with, the destination name by default.
+     */
+    public void setChannelName(String channelName) {
+        this.channelName = channelName;
+    }
+
+    public String getChannelName() {
+        return channelName == null ? String.valueOf(destination) : channelName;
+    }
+
     protected void finalize() throws Throwable {
        bareClose();
     }
@@ -75,8 +216,17 @@ public class JMSProducer {
     }
 
     private void bareClose() {
-        try { producer.close(); } catch (Exception e) { log.error(e, e); };
-        try { session.close();  } catch (Exception e) { log.error(e, e); };
+        synchronized (batchMutex) {
+            closeBatchSession();
+        }
+        if (pool != null) {
+            if (!sharedPool) {
+                pool.close();
+            }
+        } else {
+            try { producer.close(); } catch (Exception e) { log.error(e, e); };
+            try { session.close();  } catch (Exception e) { log.error(e, e); };
+        }
         if (!sharedConnection) {
             try { cnn.close();  } catch (Exception e) { log.error(e, e); };
         }
@@ -5,6 +5,7 @@
  */
 package com.topcoder.shared.messagebus.jms;
 
+import java.util.List;
 
 import javax.jms.Destination;
 import javax.jms.MessageProducer;
@@ -12,18 +13,22 @@ import javax.jms.Session;
 
 import com.topcoder.shared.messagebus.BusException;
 import com.topcoder.shared.messagebus.BusMessage;
-import com.topcoder.shared.messagebus.BusPublisher;
+import com.topcoder.shared.messagebus.BusBatchPublisher;
 import com.topcoder.shared.messagebus.jms.mapper.MessageMapperProvider;
 
 /**
  * @author Diego Belfer (mural)
  * @version $Id$
  */
-public class JMSPublisher extends JMSProducer implements BusPublisher {
+public class JMSPublisher extends JMSProducer implements BusBatchPublisher {
     
     public JMSPublisher(JMSConnection cnn, Session session, MessageProducer producer, Destination destination, boolean sharedConnection, MessageMapperProvider mapperProvider) {
         super(cnn, session, producer, destination, sharedConnection, mapperProvider);
     }
+
+    public JMSPublisher(JMSConnection cnn, JMSSessionPool pool, boolean sharedPool, boolean sharedConnection, MessageMapperProvider mapperProvider) {
+        super(cnn, pool, sharedPool, sharedConnection, mapperProvider);
+    }
     
     public void publish(BusMessage message) throws BusException {
         try {
@@ -32,4 +37,12 @@ public class JMSPublisher extends JMSProducer implements BusPublisher {
             throw new BusException("Could not publish message: ", e);
         }
     }
+
+    public void publish(List<BusMessage> messages) throws BusException {
+        try {
+            send(messages);
+        } catch (Exception e) {
+            throw new BusException("Could not publish batch of messages: ", e);
+        }
+    }
 }
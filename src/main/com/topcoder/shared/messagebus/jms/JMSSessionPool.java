@@ -0,0 +1,119 @@
+/*
+ * JMSSessionPool
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.jms;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import com.topcoder.shared.util.IdlePool;
+import com.topcoder.shared.util.logging.Logger;
+
+/**
+ * A pool of sessions and producers for a connection and destination.<p>
+ * 
+ * Producers are checked out of an {@link IdlePool} for each send, so threads
+ * sending through the same pool don't wait on each other. A new session is
+ * created when none is idle, and at most <code>size</code> idle sessions are kept.
+ * A session that fails to send is discarded instead of returned to the pool.
+ * 
+ * @version $Id$
+ */
+class JMSSessionPool {
+    private Logger log = Logger.getLogger(getClass());
+    private JMSConnection cnn;
+    private Destination destination;
+    private IdlePool<PooledProducer> idle;
+
+    /**
+     * Creates the pool, putting the session used to create the destination into it.
+     * 
+     * @param cnn The connection to create sessions from
+     * @param session An open session, not transacted and auto acknowledged
+     * @param destination The destination of the producers
+     * @param size Max number of idle sessions to keep
+     */
+    public JMSSessionPool(JMSConnection cnn, Session session, Destination destination, int size) throws JMSException {
+        this.cnn = cnn;
+        this.destination = destination;
+        this.idle = new IdlePool<PooledProducer>(size) {
+            protected void destroy(PooledProducer producer) {
+                producer.close();
+            }
+        };
+        checkin(new PooledProducer(session, session.createProducer(destination)));
+    }
+
+    public Destination getDestination() {
+        return destination;
+    }
+
+    /**
+     * Takes an idle producer out of the pool, or creates a new one if none is idle.
+     */
+    public PooledProducer checkout() throws JMSException {
+        PooledProducer producer = idle.poll();
+        if (producer != null) {
+            return producer;
+        }
+        Session session = cnn.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        try {
+            return new PooledProducer(session, session.createProducer(destination));
+        } catch (JMSException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a producer to the pool, closing it if the pool is full or closed.
+     */
+    public void checkin(PooledProducer producer) {
+        idle.checkin(producer);
+    }
+
+    /**
+     * Closes a producer that failed, instead of returning it to the pool.
+     */
+    public void discard(PooledProducer producer) {
+        producer.close();
+    }
+
+    /**
+     * Closes all idle producers. Producers checked out are closed when checked in.
+     */
+    public void close() {
+        idle.close();
+    }
+
+    public String toString() {
+        return getClass().getSimpleName()+"["+System.identityHashCode(this)+"]";
+    }
+
+    public class PooledProducer {
+        private Session session;
+        private MessageProducer producer;
+
+        private PooledProducer(Session session, MessageProducer producer) {
+            this.session = session;
+            this.producer = producer;
+        }
+
+        public Session getSession() {
+            return session;
+        }
+
+        public MessageProducer getProducer() {
+            return producer;
+        }
+
+        private void close() {
+            try { producer.close(); } catch (Exception e) { log.error(e, e); };
+            try { session.close();  } catch (Exception e) { log.error(e, e); };
+        }
+    }
+}
@@ -50,6 +50,10 @@ public abstract class MessageMapper {
      * 
      */
     private static final String BM_VERSION = "BMVersion";
+    /**
+     * Only set on messages having a deadline
+     */
+    private static final String BM_DEADLINE = "BMDeadline";
 
     protected void fillMessage(BusMessage src, Message message) throws JMSException, IOException {
         message.setJMSCorrelationID(src.getMessageCorrelationId());
@@ -59,6 +63,9 @@ public abstract class MessageMapper {
         message.setLongProperty(BM_DATE, src.getMessageDate().getTime());
         message.setStringProperty(BM_TYPE, src.getMessageType());
         message.setStringProperty(BM_BODY_TYPE, src.getMessageBodyType());
+        if (src.getMessageDeadline() != 0) {
+            message.setLongProperty(BM_DEADLINE, src.getMessageDeadline());
+        }
         fillMessageBody(src, message);
     }
     
@@ -73,6 +80,9 @@ public abstract class MessageMapper {
         message.setMessageType(getMessageType(src));
         message.setMessageDate(new Date(src.getLongProperty(BM_DATE)));
         message.setMessageBodyType(getMessageBodyType(src));
+        if (src.propertyExists(BM_DEADLINE)) {
+            message.setMessageDeadline(src.getLongProperty(BM_DEADLINE));
+        }
         fillMessageBody(src, message);
     }
 
@@ -5,9 +5,9 @@
  */
 package com.topcoder.shared.messagebus.jms.mapper;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Diego Belfer (mural)
@@ -15,7 +15,7 @@ import java.util.Map;
  */
 public class MessageMapperProvider {
     private List<MessageMapperConfiguration> configs;
-    private Map<String, MessageMapperFactory> factoryCache = new HashMap<String, MessageMapperFactory>();
+    private Map<String, MessageMapperFactory> factoryCache = new ConcurrentHashMap<String, MessageMapperFactory>();
    
     public MessageMapperProvider(List<MessageMapperConfiguration> configs) {
         this.configs = configs;
@@ -0,0 +1,50 @@
+/*
+ * BinaryCSHandler
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.jms.mapper.binary;
+
+import java.io.IOException;
+
+import com.topcoder.shared.netCommon.CSHandler;
+import com.topcoder.shared.netCommon.CustomSerializable;
+
+/**
+ * CSHandler writing the id of the {@link BinaryTypeRegistry} instead of the class name
+ * for registered types.
+ * 
+ * @version $Id$
+ */
+class BinaryCSHandler extends CSHandler {
+    private BinaryTypeRegistry registry;
+
+    BinaryCSHandler(BinaryTypeRegistry registry) {
+        this.registry = registry;
+    }
+
+    protected boolean writeObjectOverride(Object object) throws IOException {
+        byte id = registry.getId(object.getClass());
+        if (id == 0) {
+            return false;
+        }
+        writeByte(id);
+        customWriteObject(object);
+        return true;
+    }
+
+    protected Object readObjectOverride(byte type) throws IOException {
+        Class clazz = registry.getType(type);
+        if (clazz == null) {
+            return super.readObjectOverride(type);
+        }
+        CustomSerializable object;
+        try {
+            object = (CustomSerializable) clazz.newInstance();
+        } catch (Exception e) {
+            throw (IOException) new IOException("Could not create instance of "+clazz.getName()).initCause(e);
+        }
+        object.customReadObject(this);
+        return object;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * BinaryMessageMapper
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.jms.mapper.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+import com.topcoder.io.serialization.basictype.BasicTypeDataOutput;
+import com.topcoder.io.serialization.basictype.impl.BasicTypeDataInputImpl;
+import com.topcoder.io.serialization.basictype.impl.BasicTypeDataOutputImpl;
+import com.topcoder.shared.messagebus.BusMessage;
+import com.topcoder.shared.messagebus.jms.mapper.MessageMapper;
+
+/**
+ * Mapper writing the body as binary custom serialization into a <code>BytesMessage</code>,
+ * built for throughput.<p>
+ * 
+ * Unlike the CustomSerializableMessageMapper, types registered in the {@link BinaryTypeRegistry} are 
+ * written as a one byte id instead of their class name, and nothing is allocated per message 
+ * but the JMS message and the body itself: each thread encodes and decodes with its own handler
+ * and buffers, reused for all the messages it maps. The mapper itself has no state, so it can 
+ * be used by any number of threads at the same time.
+ * 
+ * @version $Id$
+ */
+public class BinaryMessageMapper extends MessageMapper {
+    private static final String METHOD_NAME = "BINARY";
+    /**
+     * Buffers bigger than this are not kept after mapping a message, so a single big message 
+     * does not hold memory for the life of the thread
+     */
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final int INITIAL_BUFFER = 512;
+
+    private static final ThreadLocal<Codec> codecs = new ThreadLocal<Codec>() {
+        protected Codec initialValue() {
+            return new Codec(BinaryTypeRegistry.getInstance());
+        }
+    };
+
+    protected Message newJMSMessage(BusMessage src, Session session) throws JMSException {
+        return session.createBytesMessage();
+    }
+
+    protected void fillMessageBody(BusMessage src, Message message) throws JMSException, IOException {
+        MessageMapper.setMessageSerializationMethod(message, METHOD_NAME);
+        codecs.get().encode(src.getMessageBody(), (BytesMessage) message);
+    }
+
+    protected void fillMessageBody(Message src, BusMessage message) throws JMSException, IOException {
+        message.setMessageBody(codecs.get().decode((BytesMessage) src));
+    }
+
+    /**
+     * The handler and buffers of a thread.
+     */
+    private static class Codec {
+        private BinaryCSHandler handler;
+        private Buffer out;
+        private BasicTypeDataOutput dataOut;
+        private byte[] in;
+        private Input input = new Input();
+
+        private Codec(BinaryTypeRegistry registry) {
+            handler = new BinaryCSHandler(registry);
+            newOutput();
+            in = new byte[INITIAL_BUFFER];
+        }
+
+        private void encode(Object body, BytesMessage message) throws IOException, JMSException {
+            out.reset();
+            handler.setDataOutput(dataOut);
+            try {
+                handler.writeObject(body);
+            } finally {
+                handler.setDataOutput(null);
+            }
+            message.writeBytes(out.getBuffer(), 0, out.size());
+            if (out.getBuffer().length > MAX_RETAINED_BUFFER) {
+                newOutput();
+            }
+        }
+
+        private Object decode(BytesMessage message) throws IOException, JMSException {
+            int length = (int) message.getBodyLength();
+            byte[] buf = in.length >= length ? in : new byte[length];
+            int bytes = message.readBytes(buf, length);
+            if (bytes < 0) {
+                bytes = 0;
+            }
+            input.reset(buf, bytes);
+            handler.setDataInput(new BasicTypeDataInputImpl(input, bytes));
+            try {
+                return handler.readObject();
+            } finally {
+                handler.setDataInput(null);
+                input.reset(in, 0);
+                if (buf.length <= MAX_RETAINED_BUFFER) {
+                    in = buf;
+                }
+            }
+        }
+
+        private void newOutput() {
+            out = new Buffer();
+            dataOut = new BasicTypeDataOutputImpl(out);
+        }
+    }
+
+    /**
+     * Output stream giving access to its buffer, to avoid the copy of toByteArray.
+     */
+    private static class Buffer extends ByteArrayOutputStream {
+        private Buffer() {
+            super(INITIAL_BUFFER);
+        }
+
+        private byte[] getBuffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * Input stream that can be pointed to a new buffer.
+     */
+    private static class Input extends ByteArrayInputStream {
+        private Input() {
+            super(new byte[0]);
+        }
+
+        private void reset(byte[] buf, int length) {
+            this.buf = buf;
+            this.pos = 0;
+            this.count = length;
+            this.mark = 0;
+        }
+    }
+}
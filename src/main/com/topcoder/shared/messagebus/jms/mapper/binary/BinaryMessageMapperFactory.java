@@ -0,0 +1,23 @@
+/*
+ * BinaryMessageMapperFactory
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.jms.mapper.binary;
+
+import com.topcoder.shared.messagebus.jms.mapper.MessageMapper;
+import com.topcoder.shared.messagebus.jms.mapper.MessageMapperFactory;
+
+
+/**
+ * The binary mapper has no state, so all messages share the same instance.
+ * 
+ * @version $Id$
+ */
+public class BinaryMessageMapperFactory implements MessageMapperFactory {
+    private static final BinaryMessageMapper mapper = new BinaryMessageMapper();
+
+    public MessageMapper create() {
+        return mapper;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * BinaryTypeRegistry
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.jms.mapper.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.topcoder.shared.netCommon.CustomSerializable;
+import com.topcoder.shared.util.logging.Logger;
+
+/**
+ * Registry of the type ids the binary mapper writes instead of class names.<p>
+ * 
+ * Ids go from {@link #MIN_ID} to {@link #MAX_ID}, the same range custom handlers like the 
+ * ScreeningCSHandler use for their own types. Both sides of a channel must use the same ids, so
+ * they are read from the <code>binary-types.properties</code> resource next to this class, in the
+ * form <code>id=className</code>, and new types must be added there with a new id.
+ * Types not registered are still sent, with their class name.
+ * 
+ * @version $Id$
+ */
+public class BinaryTypeRegistry {
+    public static final int MIN_ID = 51;
+    public static final int MAX_ID = 127;
+    private static final String RESOURCE = "binary-types.properties";
+    private static final Logger log = Logger.getLogger(BinaryTypeRegistry.class);
+    private static final BinaryTypeRegistry instance = new BinaryTypeRegistry(RESOURCE);
+
+    private final Map<Class, Byte> ids = new ConcurrentHashMap<Class, Byte>();
+    private final Class[] types = new Class[MAX_ID + 1];
+
+    BinaryTypeRegistry() {
+    }
+
+    private BinaryTypeRegistry(String resource) {
+        InputStream is = BinaryTypeRegistry.class.getResourceAsStream(resource);
+        if (is == null) {
+            log.warn("Binary type registry "+resource+" not found, class names will be sent for all types");
+            return;
+        }
+        try {
+            Properties props = new Properties();
+            props.load(is);
+            for (Iterator it = props.entrySet().iterator(); it.hasNext();) {
+                Map.Entry entry = (Map.Entry) it.next();
+                String className = ((String) entry.getValue()).trim();
+                try {
+                    register(Integer.parseInt(((String) entry.getKey()).trim()), Class.forName(className));
+                } catch (Exception e) {
+                    log.error("Could not register binary type "+entry.getKey()+"="+className, e);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Could not read binary type registry "+resource, e);
+        } finally {
+            try { is.close(); } catch (IOException e) { };
+        }
+    }
+
+    public static BinaryTypeRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registers a type.
+     * 
+     * @param id The id, from {@link #MIN_ID} to {@link #MAX_ID}
+     * @param type A CustomSerializable class with a public no-arg constructor
+     * 
+     * @throws IllegalArgumentException If the id is out of range or taken, or the type is not CustomSerializable
+     */
+    public synchronized void register(int id, Class type) {
+        if (id < MIN_ID || id > MAX_ID) {
+            throw new IllegalArgumentException("Invalid binary type id "+id+" for "+type.getName());
+        }
+        if (!CustomSerializable.class.isAssignableFrom(type)) {
+            throw new IllegalArgumentException(type.getName()+" is not CustomSerializable");
+        }
+        if (types[id] != null && types[id] != type) {
+            throw new IllegalArgumentException("Binary type id "+id+" already taken by "+types[id].getName());
+        }
+        types[id] = type;
+        ids.put(type, Byte.valueOf((byte) id));
+    }
+
+    /**
+     * @return The id of the type, or 0 if it is not registered
+     */
+    public byte getId(Class type) {
+        Byte id = ids.get(type);
+        return id == null ? 0 : id.byteValue();
+    }
+
+    /**
+     * @return The type registered with the id, or <code>null</code>
+     */
+    public Class getType(byte id) {
+        return id < MIN_ID ? null : types[id];
+    }
+}
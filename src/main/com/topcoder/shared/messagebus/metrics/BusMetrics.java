@@ -0,0 +1,75 @@
+/*
+ * BusMetrics
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.metrics;
+
+import com.topcoder.shared.util.logging.Logger;
+
+/**
+ * Holds the {@link MetricsSink} the messaging classes report to.<p>
+ *
+ * No measures are taken until a sink is configured, either calling {@link #configureSink(MetricsSink)}
+ * or setting the class name of the sink in the system property {@value #SINK_PROPERTY}. Instrumented
+ * classes must check {@link #isEnabled()} before taking a measure, so they cost nothing while disabled.
+ *
+ * @version $Id$
+ */
+public final class BusMetrics {
+    /**
+     * System property with the class name of the sink to configure on startup.
+     */
+    public static final String SINK_PROPERTY = "com.topcoder.shared.messagebus.metrics.sink";
+    private static final MetricsSink NULL_SINK = new NullSink();
+    private static volatile MetricsSink sink = NULL_SINK;
+
+    static {
+        String className = System.getProperty(SINK_PROPERTY);
+        if (className != null && className.trim().length() > 0) {
+            try {
+                sink = (MetricsSink) Class.forName(className.trim()).newInstance();
+            } catch (Exception e) {
+                Logger.getLogger(BusMetrics.class).error("Could not create metrics sink: "+className, e);
+            }
+        }
+    }
+
+    private BusMetrics() {
+    }
+
+    public static MetricsSink getSink() {
+        return sink;
+    }
+
+    /**
+     * @param sink The sink to report to, <code>null</code> to stop taking measures
+     */
+    public static void configureSink(MetricsSink sink) {
+        BusMetrics.sink = sink == null ? NULL_SINK : sink;
+    }
+
+    /**
+     * @return <code>true</code> if a sink is configured
+     */
+    public static boolean isEnabled() {
+        return sink != NULL_SINK;
+    }
+
+    private static class NullSink implements MetricsSink {
+        public void published(String channel, int messages, long encodeNanos, long sendNanos) {
+        }
+
+        public void received(String channel, long decodeNanos) {
+        }
+
+        public void handled(String channel, long latencyMillis, long handleNanos, boolean failed) {
+        }
+
+        public void requestStarted(String channel) {
+        }
+
+        public void requestEnded(String channel, long elapsedNanos, boolean completed) {
+        }
+    }
+}
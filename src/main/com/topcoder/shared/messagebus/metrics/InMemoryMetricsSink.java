@@ -0,0 +1,217 @@
+/*
+ * InMemoryMetricsSink
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.metrics;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.topcoder.shared.util.Distribution;
+
+/**
+ * A sink keeping the measures of every channel in memory, as counters and distributions,
+ * so they can be queried or dumped at any time, eg: from a JMX bean or an admin page.<p>
+ *
+ * Times are kept as {@link Distribution}s, whose percentiles are approximated by the upper
+ * bound of a power of two bucket.
+ *
+ * @version $Id$
+ */
+public class InMemoryMetricsSink implements MetricsSink {
+    private final ConcurrentHashMap<String, ChannelMetrics> channels = new ConcurrentHashMap<String, ChannelMetrics>();
+
+    public void published(String channel, int messages, long encodeNanos, long sendNanos) {
+        ChannelMetrics metrics = channel(channel);
+        metrics.published.addAndGet(messages);
+        metrics.encode.add(encodeNanos);
+        metrics.send.add(sendNanos);
+    }
+
+    public void received(String channel, long decodeNanos) {
+        ChannelMetrics metrics = channel(channel);
+        metrics.received.incrementAndGet();
+        metrics.decode.add(decodeNanos);
+    }
+
+    public void handled(String channel, long latencyMillis, long handleNanos, boolean failed) {
+        ChannelMetrics metrics = channel(channel);
+        if (latencyMillis >= 0) {
+            metrics.latency.add(latencyMillis);
+        }
+        metrics.handle.add(handleNanos);
+        if (failed) {
+            metrics.failed.incrementAndGet();
+        }
+    }
+
+    public void requestStarted(String channel) {
+        channel(channel).inFlight.incrementAndGet();
+    }
+
+    public void requestEnded(String channel, long elapsedNanos, boolean completed) {
+        ChannelMetrics metrics = channel(channel);
+        if (metrics.inFlight.decrementAndGet() < 0) {
+            //Started before the last reset
+            metrics.inFlight.incrementAndGet();
+        }
+        if (completed) {
+            metrics.requests.add(elapsedNanos);
+        } else {
+            metrics.requestsFailed.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return The measures of the channel, <code>null</code> if nothing was reported for it
+     */
+    public ChannelMetrics getChannel(String channel) {
+        return channels.get(channel);
+    }
+
+    /**
+     * @return The measures of all channels, sorted by channel name
+     */
+    public Map<String, ChannelMetrics> getChannels() {
+        return new TreeMap<String, ChannelMetrics>(channels);
+    }
+
+    /**
+     * Discards all measures. Requests in flight are not counted anymore.
+     */
+    public void reset() {
+        channels.clear();
+    }
+
+    /**
+     * @return One line per channel with its main measures
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder(200);
+        for (Iterator<ChannelMetrics> it = getChannels().values().iterator(); it.hasNext();) {
+            sb.append(it.next()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private ChannelMetrics channel(String channel) {
+        ChannelMetrics metrics = channels.get(channel);
+        if (metrics == null) {
+            metrics = new ChannelMetrics(channel);
+            ChannelMetrics old = channels.putIfAbsent(channel, metrics);
+            if (old != null) {
+                metrics = old;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * The measures of a channel since the first measure was reported. Times are in nanos,
+     * except latencies, which are in millis since they are taken from message timestamps.
+     */
+    public static class ChannelMetrics {
+        private final String name;
+        private final long startTime = System.currentTimeMillis();
+        private final AtomicLong published = new AtomicLong(0);
+        private final AtomicLong received = new AtomicLong(0);
+        private final AtomicLong failed = new AtomicLong(0);
+        private final AtomicInteger inFlight = new AtomicInteger(0);
+        private final AtomicLong requestsFailed = new AtomicLong(0);
+        private final Distribution encode = new Distribution();
+        private final Distribution send = new Distribution();
+        private final Distribution decode = new Distribution();
+        private final Distribution latency = new Distribution();
+        private final Distribution handle = new Distribution();
+        private final Distribution requests = new Distribution();
+
+        private ChannelMetrics(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public long getPublishedCount() {
+            return published.get();
+        }
+
+        /**
+         * @return The number of messages published per second since the first measure
+         */
+        public double getPublishRate() {
+            long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+            return published.get() * 1000.0 / elapsed;
+        }
+
+        public long getReceivedCount() {
+            return received.get();
+        }
+
+        public long getFailedCount() {
+            return failed.get();
+        }
+
+        public int getRequestsInFlight() {
+            return inFlight.get();
+        }
+
+        public long getRequestsFailedCount() {
+            return requestsFailed.get();
+        }
+
+        public Distribution getEncodeTime() {
+            return encode;
+        }
+
+        public Distribution getSendTime() {
+            return send;
+        }
+
+        public Distribution getDecodeTime() {
+            return decode;
+        }
+
+        public Distribution getLatency() {
+            return latency;
+        }
+
+        public Distribution getHandleTime() {
+            return handle;
+        }
+
+        /**
+         * @return The time completed requests waited for their response
+         */
+        public Distribution getRequestTime() {
+            return requests;
+        }
+
+        public String toString() {
+            StringBuilder sb = new StringBuilder(300);
+            sb.append(name).append(": published=").append(published.get())
+                .append(" rate=").append(Math.round(getPublishRate())).append("/s")
+                .append(" encodeUs=").append(encode.getMean() / 1000)
+                .append(" sendUs=").append(send.getMean() / 1000)
+                .append(" received=").append(received.get())
+                .append(" decodeUs=").append(decode.getMean() / 1000)
+                .append(" latencyMs=").append(latency.getMean()).append("/p99:").append(latency.getPercentile(0.99))
+                .append(" handleUs=").append(handle.getMean() / 1000).append("/p99:").append(handle.getPercentile(0.99) / 1000)
+                .append(" failed=").append(failed.get())
+                .append(" inFlight=").append(inFlight.get())
+                .append(" requestMs=").append(requests.getMean() / 1000000).append("/p99:").append(requests.getPercentile(0.99) / 1000000)
+                .append(" requestsFailed=").append(requestsFailed.get());
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * MetricsSink
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.metrics;
+
+/**
+ * Receives the measures taken by bus publishers, listeners and requesters, and by the
+ * legacy messaging senders and receivers. Measures are reported per channel, channels are
+ * named after their destination.<p>
+ *
+ * Sinks are called from the publishing and delivery threads, so implementations must be
+ * thread safe and must not block.
+ *
+ * @version $Id$
+ */
+public interface MetricsSink {
+    /**
+     * Reports messages were published.
+     *
+     * @param channel The channel the messages were published to
+     * @param messages The number of messages, greater than 1 for batches
+     * @param encodeNanos The time taken to map the messages to JMS messages
+     * @param sendNanos The time taken to send the messages to the broker
+     */
+    void published(String channel, int messages, long encodeNanos, long sendNanos);
+
+    /**
+     * Reports a message was received.
+     *
+     * @param channel The channel the message was received from
+     * @param decodeNanos The time taken to map the JMS message to a bus message
+     */
+    void received(String channel, long decodeNanos);
+
+    /**
+     * Reports a message was handled.
+     *
+     * @param channel The channel the message was received from
+     * @param latencyMillis The time since the message was published, taken when the handler was called,
+     *                      -1 if unknown
+     * @param handleNanos The time taken by the handler
+     * @param failed <code>true</code> if the handler threw an exception
+     */
+    void handled(String channel, long latencyMillis, long handleNanos, boolean failed);
+
+    /**
+     * Reports a request was sent and is waiting for its response.
+     *
+     * @param channel The channel the request was sent to
+     */
+    void requestStarted(String channel);
+
+    /**
+     * Reports a request stopped waiting for its response.
+     *
+     * @param channel The channel the request was sent to
+     * @param elapsedNanos The time the request waited
+     * @param completed <code>true</code> if the response arrived, <code>false</code> if the request
+     *                  expired, was cancelled or failed
+     */
+    void requestEnded(String channel, long elapsedNanos, boolean completed);
+}
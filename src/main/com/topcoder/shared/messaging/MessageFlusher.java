@@ -0,0 +1,152 @@
+package com.topcoder.shared.messaging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.topcoder.shared.util.logging.Logger;
+
+/**
+ * Sends messages in the background.  Senders add messages to a bounded buffer,
+ * blocking while it is full, and this thread takes them out in batches of up to
+ * <code>batchSize</code> messages, each sent in a single transaction.
+ *
+ * @version $Revision$
+ */
+final class MessageFlusher extends Thread {
+    private static final Logger log = Logger.getLogger(MessageFlusher.class);
+
+    /**
+     * How long to wait for a message before checking whether we were closed, in millis.
+     */
+    private static final long POLL_TIME = 100;
+
+    /**
+     * Sends a batch of <code>ProducerPool.Pending</code> messages.
+     */
+    interface BatchSender {
+        boolean sendBatch(List messages);
+    }
+
+    private final BlockingQueue<ProducerPool.Pending> buffer;
+    private final int batchSize;
+    private final BatchSender sender;
+
+    private volatile boolean running = true;
+    private long pending = 0;
+    private long failed = 0;
+
+    MessageFlusher(String name, int bufferSize, int batchSize, BatchSender sender) {
+        super(name);
+        setDaemon(true);
+        this.buffer = new ArrayBlockingQueue<ProducerPool.Pending>(Math.max(1, bufferSize));
+        this.batchSize = Math.max(1, batchSize);
+        this.sender = sender;
+    }
+
+    /**
+     * Adds a message to the buffer, waiting for room if it is full.  The check for
+     * <code>close</code> and the enqueue are done holding the lock <code>close</code>
+     * takes, so a message accepted here is always sent or counted as failed.
+     *
+     * @return false if the flusher is closed or the thread was interrupted
+     */
+    synchronized boolean add(ProducerPool.Pending message) {
+        try {
+            while (running) {
+                if (buffer.offer(message)) {
+                    pending++;
+                    return true;
+                }
+                wait(POLL_TIME);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Waits until every message added so far has been sent, or dropped because it
+     * couldn't be.
+     */
+    synchronized void flush() throws InterruptedException {
+        while (pending > 0 && isAlive()) {
+            wait(POLL_TIME);
+        }
+    }
+
+    /**
+     * The number of messages dropped because they couldn't be sent.
+     */
+    synchronized long getFailedCount() {
+        return failed;
+    }
+
+    /**
+     * Stops taking messages, sends the ones in the buffer and ends the thread.
+     */
+    void close() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        try {
+            join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // the thread ended before sending them, it was never started or it failed
+        List left = new ArrayList();
+        buffer.drainTo(left);
+        if (!left.isEmpty()) {
+            log.error("Dropped " + left.size() + " messages, the flusher ended before sending them");
+            done(left.size(), false);
+        }
+    }
+
+    public void run() {
+        List batch = new ArrayList(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                ProducerPool.Pending first = buffer.poll(POLL_TIME, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                taken();
+                boolean sent = false;
+                try {
+                    sent = sender.sendBatch(batch);
+                } catch (RuntimeException e) {
+                    log.error("Could not send a batch of messages", e);
+                }
+                if (!sent) {
+                    log.error("Dropped " + batch.size() + " messages, they couldn't be sent");
+                }
+                done(batch.size(), sent);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // keep going until closed
+            }
+        }
+    }
+
+    /**
+     * Wakes up the senders waiting for room in the buffer.
+     */
+    private synchronized void taken() {
+        notifyAll();
+    }
+
+    private synchronized void done(int count, boolean sent) {
+        pending -= count;
+        if (!sent) {
+            failed += count;
+        }
+        notifyAll();
+    }
+}
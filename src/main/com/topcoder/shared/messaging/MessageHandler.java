@@ -0,0 +1,24 @@
+package com.topcoder.shared.messaging;
+
+import javax.jms.ObjectMessage;
+
+/**
+ * Handles the messages pushed by a <code>ReceiverController</code> or a
+ * <code>QueueMessageReceiver</code> that is listening to its queue.
+ *
+ * The handler is called from the threads of the JMS provider, one per consumer
+ * session, so it must be thread safe when there is more than one consumer.
+ *
+ * @version $Revision$
+ */
+public interface MessageHandler {
+
+    /**
+     * Handles a message.  In a transacted session the message is committed once
+     * this method returns, and rolled back if it throws.
+     *
+     * @param message the message
+     * @throws Exception if the message couldn't be handled
+     */
+    void handle(ObjectMessage message) throws Exception;
+}
@@ -0,0 +1,312 @@
+package com.topcoder.shared.messaging;
+
+import java.util.Hashtable;
+import java.util.List;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+import com.topcoder.shared.util.IdlePool;
+import com.topcoder.shared.messagebus.metrics.BusMetrics;
+import com.topcoder.shared.util.logging.Logger;
+
+/**
+ * A connection to a queue or a topic with a pool of sessions and producers, so
+ * that any number of threads can send at the same time.
+ *
+ * Sessions are checked out of an <code>IdlePool</code>.  When none is idle a new
+ * one is created, and at most <code>size</code> idle sessions of each kind, plain
+ * and transacted, are kept.  A failed send
+ * closes the connection and every session, the next send opens a new connection.
+ * A message that can't be built only closes the session building it.
+ *
+ * @version $Revision$
+ */
+final class ProducerPool {
+    private static final Logger log = Logger.getLogger(ProducerPool.class);
+
+    private Context ctx;
+    private final String factoryName;
+    private final String destinationName;
+    private final int size;
+
+    private volatile Resources resources = null;
+
+    /**
+     * Builds the message to send with the session of the producer sending it.
+     */
+    interface MessageBuilder {
+        Message build(Session session) throws JMSException;
+    }
+
+    /**
+     * A message waiting to be sent in a batch.
+     */
+    static final class Pending {
+        private final MessageBuilder builder;
+        private final int deliveryMode;
+        private final long timeToLive;
+
+        Pending(MessageBuilder builder, int deliveryMode, long timeToLive) {
+            this.builder = builder;
+            this.deliveryMode = deliveryMode;
+            this.timeToLive = timeToLive;
+        }
+    }
+
+    /**
+     * @param ctx             the context to look up the factory and the destination
+     * @param factoryName     the name of the connection factory
+     * @param destinationName the name of the queue or topic
+     * @param size            the number of idle sessions to keep
+     */
+    ProducerPool(Context ctx, String factoryName, String destinationName, int size) {
+        this.ctx = ctx;
+        this.factoryName = factoryName;
+        this.destinationName = destinationName;
+        this.size = Math.max(1, size);
+    }
+
+    /**
+     * Sends a message, opening a new connection and trying again once if the
+     * send fails.
+     *
+     * @return the JMS message id, or null if it couldn't be sent
+     */
+    String send(MessageBuilder builder, int deliveryMode, long timeToLive) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Resources r = getResources();
+            if (r == null) {
+                return null;
+            }
+            try {
+                Producer p = r.checkout(false);
+                boolean sent = false;
+                try {
+                    boolean measure = BusMetrics.isEnabled();
+                    long start = measure ? System.nanoTime() : 0;
+                    Message msg = builder.build(p.session);
+                    long built = measure ? System.nanoTime() : 0;
+                    p.producer.send(msg, deliveryMode, Message.DEFAULT_PRIORITY, timeToLive);
+                    sent = true;
+                    if (measure) {
+                        BusMetrics.getSink().published(destinationName, 1, built - start, System.nanoTime() - built);
+                    }
+                    return msg.getJMSMessageID();
+                } finally {
+                    release(r, p, sent);
+                }
+            } catch (JMSException e) {
+                log.error("Could not send message to " + destinationName, e);
+                invalidate(r);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sends a list of <code>Pending</code> messages in a single transaction,
+     * opening a new connection and trying again once if it fails.
+     *
+     * @return whether the messages were committed
+     */
+    boolean sendBatch(List messages) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Resources r = getResources();
+            if (r == null) {
+                return false;
+            }
+            try {
+                Producer p = r.checkout(true);
+                boolean committed = false;
+                try {
+                    boolean measure = BusMetrics.isEnabled();
+                    long start = measure ? System.nanoTime() : 0;
+                    long buildTime = 0;
+                    for (int i = 0; i < messages.size(); i++) {
+                        Pending m = (Pending) messages.get(i);
+                        long buildStart = measure ? System.nanoTime() : 0;
+                        Message msg = m.builder.build(p.session);
+                        if (measure) {
+                            buildTime += System.nanoTime() - buildStart;
+                        }
+                        p.producer.send(msg, m.deliveryMode, Message.DEFAULT_PRIORITY, m.timeToLive);
+                    }
+                    p.session.commit();
+                    committed = true;
+                    if (measure) {
+                        BusMetrics.getSink().published(destinationName, messages.size(), buildTime, System.nanoTime() - start - buildTime);
+                    }
+                    return true;
+                } finally {
+                    release(r, p, committed);
+                }
+            } catch (JMSException e) {
+                log.error("Could not send " + messages.size() + " messages to " + destinationName, e);
+                invalidate(r);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Closes the connection and every idle session.
+     */
+    synchronized void close() {
+        if (resources != null) {
+            resources.close();
+            resources = null;
+        }
+    }
+
+    private Resources getResources() {
+        Resources r = resources;
+        if (r != null) {
+            return r;
+        }
+        synchronized (this) {
+            if (resources == null) {
+                try {
+                    resources = open();
+                    log.info(destinationName + " has been restarted");
+                } catch (Exception e) {
+                    log.error("Could not initialize " + destinationName, e);
+                }
+            }
+            return resources;
+        }
+    }
+
+    /**
+     * Checks a producer back in after it sent its messages, or closes it, rolling
+     * back its transaction, if building or sending them failed.
+     */
+    private static void release(Resources r, Producer p, boolean sent) {
+        if (sent) {
+            r.checkin(p);
+        } else {
+            p.discard();
+        }
+    }
+
+    private synchronized void invalidate(Resources r) {
+        if (resources == r) {
+            resources = null;
+        }
+        r.close();
+    }
+
+    private Resources open() throws NamingException, JMSException {
+        ConnectionFactory factory;
+        try {
+            factory = (ConnectionFactory) ctx.lookup(factoryName);
+        } catch (NamingException e) {
+            log.error("Failed to get ConnectionFactory, attempting to reinitialize InitialContext", e);
+            Hashtable env = ctx.getEnvironment();
+            this.ctx = new InitialContext(env);
+            factory = (ConnectionFactory) ctx.lookup(factoryName);
+        }
+        Destination destination = (Destination) ctx.lookup(destinationName);
+        Connection connection = factory.createConnection();
+        try {
+            connection.start();
+        } catch (JMSException e) {
+            connection.close();
+            throw e;
+        }
+        return new Resources(connection, destination);
+    }
+
+    private static final class Producer {
+        private final Session session;
+        private final MessageProducer producer;
+        private final boolean transacted;
+
+        private Producer(Session session, MessageProducer producer, boolean transacted) {
+            this.session = session;
+            this.producer = producer;
+            this.transacted = transacted;
+        }
+
+        private void discard() {
+            if (transacted) {
+                try {
+                    session.rollback();
+                } catch (JMSException e) {
+                    log.debug("Error rolling back session: " + e.getMessage());
+                }
+            }
+            close();
+        }
+
+        private void close() {
+            try {
+                session.close();
+            } catch (JMSException e) {
+                log.debug("Error closing session: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A connection and its idle sessions, plain and transacted.
+     */
+    private final class Resources {
+        private final Connection connection;
+        private final Destination destination;
+        private final IdlePool<Producer> idle = new ProducerIdlePool(size);
+        private final IdlePool<Producer> idleTransacted = new ProducerIdlePool(size);
+
+        private Resources(Connection connection, Destination destination) {
+            this.connection = connection;
+            this.destination = destination;
+        }
+
+        private Producer checkout(boolean transacted) throws JMSException {
+            Producer p = (transacted ? idleTransacted : idle).poll();
+            if (p != null) {
+                return p;
+            }
+            Session session = connection.createSession(transacted,
+                    transacted ? Session.SESSION_TRANSACTED : Session.AUTO_ACKNOWLEDGE);
+            try {
+                return new Producer(session, session.createProducer(destination), transacted);
+            } catch (JMSException e) {
+                session.close();
+                throw e;
+            }
+        }
+
+        private void checkin(Producer p) {
+            (p.transacted ? idleTransacted : idle).checkin(p);
+        }
+
+        private void close() {
+            idle.close();
+            idleTransacted.close();
+            try {
+                connection.close();
+            } catch (JMSException e) {
+                log.debug("Error closing connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class ProducerIdlePool extends IdlePool<Producer> {
+        private ProducerIdlePool(int size) {
+            super(size);
+        }
+
+        protected void destroy(Producer p) {
+            p.close();
+        }
+    }
+}
@@ -42,6 +42,7 @@ public class QueueMessageReceiver {
     private int pollTime;
     private int errorTime;
     private int consoleMessageTime;
+    private int consumers;
 
     private ReceiverController controller;
     private ReceiverController controller_BKP;
@@ -144,6 +145,36 @@ public class QueueMessageReceiver {
         this.consoleMessageTime = in;
     }
 
+    /**
+     * Sets the number of consumer sessions per queue used by <code>startListening</code>.
+     *
+     * @param in
+     */
+    public synchronized void setConsumers(int in) {
+        this.consumers = in;
+    }
+
+    /**
+     * Has the messages pushed to <code>handler</code> as they arrive instead of polling
+     * for them with <code>getMessage</code>.  Each queue, the backup one too when fault
+     * tolerant, gets its own pool of consumer sessions, and each controller restores its
+     * consumers when its connection fails.  In a transacted receiver every message is
+     * committed once the handler returns and rolled back if it throws, so
+     * <code>autoCommit</code>, <code>commit</code> and <code>rollback</code> don't apply.
+     *
+     * The receiver keeps listening until it is closed.
+     *
+     * @param handler the handler for the messages, must be thread safe if there is more
+     *                than one consumer or the receiver is fault tolerant
+     */
+    public synchronized void startListening(MessageHandler handler) {
+        initIfNecessary();
+        controller.startListening(handler, consumers);
+        if (faultTolerant) {
+            controller_BKP.startListening(handler, consumers);
+        }
+    }
+
     /**
      *
      * @return
@@ -314,6 +345,7 @@ public class QueueMessageReceiver {
         this.pollTime = 0;
         this.errorTime = 0;
         this.consoleMessageTime = 0;
+        this.consumers = 1;
         this.selector = selector;
     }
 
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import javax.jms.DeliveryMode;
@@ -61,6 +62,13 @@ public class QueueMessageSender {
     boolean faultTolerant;
     Object messObject = null;
 
+    /**
+     * When set, messages are sent by a pool of sessions instead of the single one
+     */
+    volatile ProducerPool pool;
+    volatile ProducerPool pool_BKP;
+    volatile MessageFlusher flusher;
+
     private boolean ctxCreated = true;
 
     /**
@@ -119,6 +127,88 @@ public class QueueMessageSender {
         this.messObject = obj;
     }
 
+    /**
+     * Sends the messages with a pool of sessions and producers, keeping up to
+     * <code>size</code> idle sessions per queue, so that many threads can send at the
+     * same time.  The connections stay open until the sender is closed.  A size of 0,
+     * the default, goes back to sending one message at a time on a single session.
+     *
+     * @param size
+     */
+    public synchronized void setPoolSize(int size) {
+        closePools();
+        if (size > 0) {
+            this.pool = new ProducerPool(ctx, factoryName, queueName, size);
+            this.pool_BKP = new ProducerPool(ctx, factoryName_BKP, queueName_BKP, size);
+        }
+    }
+
+    /**
+     * Starts the async send mode.  <code>sendAsync</code> adds the messages to a buffer
+     * of up to <code>bufferSize</code> messages, and a background thread sends them in
+     * transactions of up to <code>batchSize</code> messages, failing over to the backup
+     * queue like any other send.  Starts a pool of one session if there's none.
+     *
+     * @param bufferSize
+     * @param batchSize
+     */
+    public synchronized void startAsync(int bufferSize, int batchSize) {
+        if (pool == null) {
+            setPoolSize(1);
+        }
+        stopAsync();
+        flusher = new MessageFlusher("QueueMessageSender.flusher." + queueName, bufferSize, batchSize,
+                new MessageFlusher.BatchSender() {
+                    public boolean sendBatch(List messages) {
+                        ProducerPool primary = pool;
+                        ProducerPool backup = pool_BKP;
+                        if (primary != null && primary.sendBatch(messages)) {
+                            return true;
+                        }
+                        log.debug("ERROR: Could not send messages on primary queue.");
+                        return faultTolerant && backup != null && backup.sendBatch(messages);
+                    }
+                });
+        flusher.start();
+    }
+
+    /**
+     * Queues a message to be sent in the background, waiting while the buffer is full.
+     * Sends it right away if the async mode wasn't started.
+     *
+     * @param props
+     * @param messObject
+     * @return whether the message was queued
+     */
+    public boolean sendAsync(HashMap props, Object messObject) {
+        MessageFlusher f = flusher;
+        if (f == null) {
+            return sendMessage(props, messObject);
+        }
+        // the message is built later, so keep the properties as they are now
+        return f.add(new ProducerPool.Pending(createBuilder(new HashMap(props), messObject), getDeliveryMode(),
+                DEFAULT_TIME_TO_LIVE.longValue()));
+    }
+
+    /**
+     * Waits until every message queued with <code>sendAsync</code> has been sent.
+     *
+     * @return false if some messages were dropped since the async mode started
+     *         because they couldn't be sent
+     */
+    public boolean flush() {
+        MessageFlusher f = flusher;
+        if (f == null) {
+            return true;
+        }
+        try {
+            f.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return f.getFailedCount() == 0;
+    }
+
     public boolean send(Object o) {
         return sendMessage(EMPTY_HASHMAP, o);
     }
@@ -146,7 +236,23 @@ public class QueueMessageSender {
         return sendMessageGetID(props, messObject, DEFAULT_TIME_TO_LIVE);
     }
     
-    public synchronized String sendMessageGetID(HashMap props, Object messObject, Long timeToLive) {
+    public String sendMessageGetID(HashMap props, Object messObject, Long timeToLive) {
+        ProducerPool primary = pool;
+        ProducerPool backup = pool_BKP;
+        if (primary == null) {
+            return sendMessageSerial(props, messObject, timeToLive);
+        }
+
+        ProducerPool.MessageBuilder builder = createBuilder(props, messObject);
+        String retVal = primary.send(builder, getDeliveryMode(), timeToLive.longValue());
+        if (retVal == null && faultTolerant) {
+            log.debug("ERROR: Could not send message on primary queue.");
+            retVal = backup.send(builder, getDeliveryMode(), timeToLive.longValue());
+        }
+        return retVal;
+    }
+
+    private synchronized String sendMessageSerial(HashMap props, Object messObject, Long timeToLive) {
         int activeQueue = PRIMARY;
         String retVal = null;
         boolean reInitPrimary = false;
@@ -228,7 +334,7 @@ public class QueueMessageSender {
 
         // Close the queue resources unless they are set to persist.
         if (!persistent) {
-            close();
+            closeSessions();
         }
 
         return retVal;
@@ -245,57 +351,8 @@ public class QueueMessageSender {
      */
     private String sendMessage(QueueSession qSess, QueueSender qSend, HashMap props, Object messObject, Long timeToLive) {
         try {
-            ObjectMessage msg = qSess.createObjectMessage();
-            //msg.setJMSDeliveryMode(DeliveryMode.PERSISTENT);
-            if (!props.isEmpty()) {
-                Set keys = props.keySet();
-                Iterator iter = keys.iterator();
-                while (iter.hasNext()) {
-                    String key = (String) iter.next();
-                    Object value = props.get(key);
-
-                    if (value instanceof String) {
-                        if(key.equals("JMSCorrelationID")){
-                            msg.setJMSCorrelationID((String)value);
-                        }else{
-                            msg.setStringProperty(key, (String) value);
-                        }
-                    } else if (value instanceof Integer) {
-                        Integer holder = (Integer) value;
-                        msg.setIntProperty(key, holder.intValue());
-                    } else if (value instanceof Boolean) {
-                        Boolean holder = (Boolean) value;
-                        msg.setBooleanProperty(key, holder.booleanValue());
-                    } else if (value instanceof Double) {
-                        Double holder = (Double) value;
-                        msg.setDoubleProperty(key, holder.doubleValue());
-                    } else if (value instanceof Long) {
-                        Long holder = (Long) value;
-                        msg.setLongProperty(key, holder.longValue());
-                    } else if (value instanceof Short) {
-                        Short holder = (Short) value;
-                        msg.setShortProperty(key, holder.shortValue());
-                    } else if (value instanceof Float) {
-                        Float holder = (Float) value;
-                        msg.setFloatProperty(key, holder.floatValue());
-                    } else if ("JMSReplyTo".equals(key) && value instanceof Destination) {
-                        msg.setJMSReplyTo((Destination) value);
-                    } 
-                }
-            }
-
-            if (!(messObject == null)) {
-                msg.setObject((Serializable) messObject);
-            }
-
-            int mode;
-            if (this.dbPersistent) {
-                mode = DeliveryMode.PERSISTENT;
-            } else {
-                mode = DeliveryMode.NON_PERSISTENT;
-            }
-
-            qSend.send(msg, mode, Message.DEFAULT_PRIORITY, timeToLive.longValue());
+            ObjectMessage msg = createMessage(qSess, props, messObject);
+            qSend.send(msg, getDeliveryMode(), Message.DEFAULT_PRIORITY, timeToLive.longValue());
             return msg.getJMSMessageID();
 
         } catch (JMSException e) {
@@ -308,6 +365,68 @@ public class QueueMessageSender {
 
     }
 
+    private ProducerPool.MessageBuilder createBuilder(final HashMap props, final Object messObject) {
+        return new ProducerPool.MessageBuilder() {
+            public Message build(Session session) throws JMSException {
+                return createMessage(session, props, messObject);
+            }
+        };
+    }
+
+    private int getDeliveryMode() {
+        if (this.dbPersistent) {
+            return DeliveryMode.PERSISTENT;
+        } else {
+            return DeliveryMode.NON_PERSISTENT;
+        }
+    }
+
+    private static ObjectMessage createMessage(Session session, HashMap props, Object messObject) throws JMSException {
+        ObjectMessage msg = session.createObjectMessage();
+        //msg.setJMSDeliveryMode(DeliveryMode.PERSISTENT);
+        if (!props.isEmpty()) {
+            Set keys = props.keySet();
+            Iterator iter = keys.iterator();
+            while (iter.hasNext()) {
+                String key = (String) iter.next();
+                Object value = props.get(key);
+
+                if (value instanceof String) {
+                    if(key.equals("JMSCorrelationID")){
+                        msg.setJMSCorrelationID((String)value);
+                    }else{
+                        msg.setStringProperty(key, (String) value);
+                    }
+                } else if (value instanceof Integer) {
+                    Integer holder = (Integer) value;
+                    msg.setIntProperty(key, holder.intValue());
+                } else if (value instanceof Boolean) {
+                    Boolean holder = (Boolean) value;
+                    msg.setBooleanProperty(key, holder.booleanValue());
+                } else if (value instanceof Double) {
+                    Double holder = (Double) value;
+                    msg.setDoubleProperty(key, holder.doubleValue());
+                } else if (value instanceof Long) {
+                    Long holder = (Long) value;
+                    msg.setLongProperty(key, holder.longValue());
+                } else if (value instanceof Short) {
+                    Short holder = (Short) value;
+                    msg.setShortProperty(key, holder.shortValue());
+                } else if (value instanceof Float) {
+                    Float holder = (Float) value;
+                    msg.setFloatProperty(key, holder.floatValue());
+                } else if ("JMSReplyTo".equals(key) && value instanceof Destination) {
+                    msg.setJMSReplyTo((Destination) value);
+                } 
+            }
+        }
+
+        if (!(messObject == null)) {
+            msg.setObject((Serializable) messObject);
+        }
+        return msg;
+    }
+
     /**
      *
      * @param factoryName
@@ -414,6 +533,28 @@ public class QueueMessageSender {
      *
      */
     public synchronized void close() {
+        stopAsync();
+        closePools();
+        closeSessions();
+    }
+
+    private synchronized void stopAsync() {
+        if (flusher != null) {
+            flusher.close();
+            flusher = null;
+        }
+    }
+
+    private synchronized void closePools() {
+        if (pool != null) {
+            pool.close();
+            pool_BKP.close();
+            pool = null;
+            pool_BKP = null;
+        }
+    }
+
+    private synchronized void closeSessions() {
         this.primaryReady = false;
         this.backupReady = false;
 
@@ -14,9 +14,10 @@ import java.io.Serializable;
  * and message B are dispathed in that order, but A takes a long time to come back.  The
  * response to B should be received without waiting for A to come back.
  *
- * When you create an instance of <code>QueueResponseManager</code> a thread is created
- * that polls the queue.  When it gets a message, it either puts it into a <code>ResponsePool</code>
- * or, if the response is old, it is thrown out as it is no longer relevant.
+ * When you create an instance of <code>QueueResponseManager</code> it starts listening to
+ * the queue.  Every response is put into a <code>ResponsePool</code> as soon as it arrives,
+ * where it is handed to the thread waiting for it, or thrown out after a while if nobody
+ * claims it.
  *
  *
  * User: dok
@@ -40,7 +41,7 @@ public class QueueResponseManager {
      * @param selector
      */
     public QueueResponseManager(String factoryName, String queueName, Context ctx, String selector) {
-        init(factoryName, queueName, ctx, selector, new ResponsePool(10));
+        init(factoryName, queueName, ctx, selector, new ResponsePool());
     }
 
     public QueueResponseManager(String factoryName, String queueName,
@@ -60,12 +61,11 @@ public class QueueResponseManager {
     protected synchronized void init(String factoryName, String queueName, Context ctx,
                                      String selector, ResponsePool responses) {
         if (!initialized) {
+            this.responses = responses;
             this.receiver = new ReceiverController(factoryName, queueName, false, ctx, selector);
+            this.receiver.startListening(new ResponseLoader(), 1);
             this.receiver.start();
-            ResponseLoaderThread t = new ResponseLoaderThread(100,100);
-            t.start();
             this.initialized=true;
-            this.responses = responses;
         }
     }
 
@@ -83,48 +83,13 @@ public class QueueResponseManager {
 
 
     /**
-     * A thread class that will check the temp storage for a response to a
-     * particular request.
+     * Puts the responses into the pool as they arrive.
      */
-    private class ResponseLoaderThread extends Thread {
-
-        private int blockTime=0;
-        private int sleepTime=0;
-
-        /**
-         *
-         * @param blockTime the length of time in millis to wait for a response
-         *        to appear on the queue
-         * @param sleepTime the length of time in millis to wait if there was
-         *        nothing on the queue the last time we checked.  this is just
-         *        intended to save some cycles...no need to beat up the queue
-         *        if nothing is going on.
-         */
-        private ResponseLoaderThread(int blockTime, int sleepTime) {
-            this.blockTime = blockTime;
-            this.sleepTime = sleepTime;
+    private class ResponseLoader implements MessageHandler {
+        public void handle(ObjectMessage response) throws JMSException {
+            log.debug("got a response " + response);
+            responses.put(response.getJMSCorrelationID(), response.getObject());
         }
-
-        public void run() {
-            while (true) {
-                try {
-                    //pull an item off the queue
-                    ObjectMessage response = receiver.getMessage(blockTime, true);
-                    if (response != null) {
-                        log.debug("got a response " + response);
-                        responses.put(response.getJMSCorrelationID(), response.getObject());
-                    } else {
-                        //log.debug("waitList size " + responses.getWaitCount());
-                        Thread.sleep(sleepTime);
-                    }
-                } catch (JMSException e) {
-                    e.printStackTrace();
-                } catch (InterruptedException e) {
-                    //ignoreing
-                }
-            }
-        }
-
     }
 
 }
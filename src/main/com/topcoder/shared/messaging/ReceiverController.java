@@ -1,8 +1,14 @@
 package com.topcoder.shared.messaging;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
 
+import javax.jms.ExceptionListener;
 import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
 import javax.jms.ObjectMessage;
 import javax.jms.Queue;
 import javax.jms.QueueConnection;
@@ -13,6 +19,7 @@ import javax.jms.Session;
 import javax.naming.Context;
 import javax.naming.NamingException;
 
+import com.topcoder.shared.messagebus.metrics.BusMetrics;
 import com.topcoder.shared.util.TCContext;
 import com.topcoder.shared.util.logging.Logger;
 
@@ -57,6 +64,14 @@ public class ReceiverController extends Thread {
     boolean initInProgress;
     boolean transacted;
 
+    /**
+     * When set, messages are pushed to this handler by <code>consumers</code>
+     * sessions instead of being pulled with <code>getMessage</code>
+     */
+    MessageHandler handler;
+    int consumers;
+    List consumerSessions = new ArrayList();
+
     private static Logger log = Logger.getLogger(ReceiverController.class);
 
     /**
@@ -108,14 +123,17 @@ public class ReceiverController extends Thread {
     public void run() {
         while (active) {
             //log.debug(this.queueName + " - Run looping.");
-            if (this.receiverReady || this.initInProgress) {
-                //log.debug(this.queueName + " - Everything seems fine.");
-                try {
-                    Thread.sleep(this.pollTime);
-                } catch (Exception e) {
-                    log.debug("exception putting the thread to sleep");
+            synchronized (this) {
+                if (this.receiverReady || this.initInProgress) {
+                    //log.debug(this.queueName + " - Everything seems fine.");
+                    try {
+                        // a connection failure wakes us up right away
+                        wait(this.pollTime);
+                    } catch (Exception e) {
+                        log.debug("exception putting the thread to sleep");
+                    }
+                    continue;
                 }
-                continue;
             }
 
             if (!this.receiverReady && !this.initInProgress) {
@@ -177,6 +195,27 @@ public class ReceiverController extends Thread {
         }
 
         this.active = false;
+        notifyAll();
+    }
+
+    /**
+     * Switches this controller to push mode: messages are delivered to the handler
+     * by <code>consumers</code> sessions, each one on its own thread, as soon as they
+     * arrive.  When the session is transacted each message is committed after the
+     * handler returns, and rolled back if it throws.  The sessions are recreated
+     * whenever the connection is.
+     *
+     * <code>getMessage</code> must not be used once listening.
+     *
+     * @param handler   the handler for the messages
+     * @param consumers the number of consumer sessions
+     * @return whether the consumers could be started, if not they will be when the
+     *         connection is restored
+     */
+    public synchronized boolean startListening(MessageHandler handler, int consumers) {
+        this.handler = handler;
+        this.consumers = Math.max(1, consumers);
+        return initJMS();
     }
 
     /**
@@ -322,13 +361,19 @@ public class ReceiverController extends Thread {
                 log.error("Error closing connection");
             }
             this.qcon = this.qconFactory.createQueueConnection();
+            this.qcon.setExceptionListener(new ConnectionMonitor());
             this.qsession = this.qcon.createQueueSession(this.transacted, Session.AUTO_ACKNOWLEDGE);
             this.queue = (Queue) ctx.lookup(this.queueName);
             log.info(queueName+" has been restarted");
-            if ((selector == null) || (selector.equals(""))) {
-                this.qreceiver = this.qsession.createReceiver(this.queue);
+            if (handler == null) {
+                this.qreceiver = createReceiver(this.qsession);
             } else {
-                this.qreceiver = this.qsession.createReceiver(this.queue, this.selector);
+                // an idle receiver would still get messages prefetched, so only the listeners consume
+                for (int i = 0; i < consumers; i++) {
+                    QueueSession session = this.qcon.createQueueSession(this.transacted, Session.AUTO_ACKNOWLEDGE);
+                    consumerSessions.add(session);
+                    createReceiver(session).setMessageListener(new Consumer(session));
+                }
             }
             this.qcon.start();
             retVal = true;
@@ -346,6 +391,14 @@ public class ReceiverController extends Thread {
 
     }
 
+    private QueueReceiver createReceiver(QueueSession session) throws JMSException {
+        if ((selector == null) || (selector.equals(""))) {
+            return session.createReceiver(this.queue);
+        } else {
+            return session.createReceiver(this.queue, this.selector);
+        }
+    }
+
     /**
      *
      */
@@ -353,6 +406,10 @@ public class ReceiverController extends Thread {
         this.receiverReady = false;
 
         try {
+            for (Iterator it = consumerSessions.iterator(); it.hasNext();) {
+                ((QueueSession) it.next()).close();
+            }
+            consumerSessions.clear();
             if (!(qreceiver == null)) {
                 qreceiver.close();
             }
@@ -373,4 +430,67 @@ public class ReceiverController extends Thread {
     public Queue getQueue() {
         return queue;
     }
+
+    /**
+     * Wakes up the controller to restore the connection as soon as it fails.
+     */
+    private class ConnectionMonitor implements ExceptionListener {
+        public void onException(JMSException e) {
+            log.error(queueName + " - Connection failed.", e);
+            synchronized (ReceiverController.this) {
+                receiverReady = false;
+                ReceiverController.this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Hands the messages of a consumer session to the handler.
+     */
+    private class Consumer implements MessageListener {
+        private final QueueSession session;
+
+        private Consumer(QueueSession session) {
+            this.session = session;
+        }
+
+        public void onMessage(Message message) {
+            boolean measure = BusMetrics.isEnabled();
+            long latency = measure ? getLatency(message) : -1;
+            long start = measure ? System.nanoTime() : 0;
+            boolean failed = true;
+            try {
+                handler.handle((ObjectMessage) message);
+                failed = false;
+                if (session.getTransacted()) {
+                    session.commit();
+                }
+            } catch (Exception e) {
+                log.error(queueName + " - Failed to handle a message.", e);
+                try {
+                    if (session.getTransacted()) {
+                        session.rollback();
+                    }
+                } catch (JMSException e1) {
+                    log.error(queueName + " - Failed to roll back the message.", e1);
+                }
+            } finally {
+                if (measure) {
+                    BusMetrics.getSink().handled(queueName, latency, System.nanoTime() - start, failed);
+                }
+            }
+        }
+
+        /**
+         * @return the millis since the message was sent, -1 if unknown
+         */
+        private long getLatency(Message message) {
+            try {
+                long timestamp = message.getJMSTimestamp();
+                return timestamp == 0 ? -1 : Math.max(0, System.currentTimeMillis() - timestamp);
+            } catch (JMSException e) {
+                return -1;
+            }
+        }
+    }
 }
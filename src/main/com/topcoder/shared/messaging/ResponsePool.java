@@ -1,16 +1,25 @@
 package com.topcoder.shared.messaging;
 
-import com.topcoder.shared.distCache.Cache;
 import com.topcoder.shared.util.logging.Logger;
 
 import java.io.Serializable;
-import java.util.HashSet;
+import java.lang.ref.WeakReference;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides a way to asynchronously receive messages from a queue including the ability
  * to wait for a specified period of time only, and then quit.
+ *
+ * Each correlation id has its own slot.  A response is handed directly to the slot of its
+ * correlation id, waking only the thread waiting for it, if any.  Responses nobody
+ * claims are removed after a while by a timer.
+ *
  * User: dok
  * Date: Dec 15, 2004
  * Time: 4:09:48 PM
@@ -19,28 +28,41 @@ public class ResponsePool {
 
     private final static Logger log = Logger.getLogger(ResponsePool.class);
 
-    private int DEFAULT_WAIT_TIME = 10;
     /**
-     * Contains a map of the responses that we have gotten off the queue
+     * How long a response nobody waits for is kept, in millis.
      */
-    protected Cache pool = new Cache();
+    private static final long UNCLAIMED_TIMEOUT = 5 * 60 * 1000;
+
+    /**
+     * How often responses nobody claimed are looked for, in millis.
+     */
+    private static final long REAP_INTERVAL = 60 * 1000;
+
     /**
-     * List of correlation id's for responses that someone is actually waiting for
+     * Runs the reaping of every pool.
      */
-    protected HashSet waitList = new HashSet();
-    protected int waitTime;
+    private static final Timer reaper = new Timer("ResponsePool.reaper", true);
+
+    /**
+     * The slots of the responses that have arrived or are being waited for, by correlation id
+     */
+    private final ConcurrentHashMap<String, Slot> slots = new ConcurrentHashMap<String, Slot>();
 
     public ResponsePool() {
-        this.waitTime = DEFAULT_WAIT_TIME;
+        reaper.schedule(new ReapTask(this), REAP_INTERVAL, REAP_INTERVAL);
     }
 
+    /**
+     * @param waitTime not used anymore, responses are handed to their waiter as they arrive
+     * @deprecated use <code>ResponsePool()</code>
+     */
     public ResponsePool(int waitTime) {
-        this.waitTime = waitTime;
+        this();
     }
 
     /**
-     * Polls the response pool for <code>timeoutLength</code> milliseconds for
-     * a message associated with the <cocde>correlationId</code>
+     * Waits up to <code>timeoutLength</code> milliseconds for
+     * a message associated with the <code>correlationId</code>
      *
      * If it is found, the response is removed from the pool and returned.
      * @param timeoutLength
@@ -48,53 +70,46 @@ public class ResponsePool {
      * @return
      * @throws TimeOutException
      */
-    public synchronized Serializable get(int timeoutLength, String correlationId) throws TimeOutException {
-        long startTime = System.currentTimeMillis();
-        long endTime = startTime + timeoutLength;
-        waitList.add(correlationId);
-        while (System.currentTimeMillis() < endTime) {
-            if (pool.exists(correlationId)) {
-                return get(correlationId);
-            } else {
+    public Serializable get(int timeoutLength, String correlationId) throws TimeOutException {
+        Slot slot = getSlot(correlationId);
+        slot.waiting = true;
+        long endTime = System.currentTimeMillis() + timeoutLength;
+        boolean interrupted = false;
+        try {
+            while (true) {
                 try {
-                    wait(waitTime);
+                    if (slot.latch.await(endTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
+                        return get(correlationId);
+                    }
+                    break;
                 } catch (InterruptedException e) {
-                    //ignore
+                    //keep waiting, but let the caller know about it
+                    interrupted = true;
                 }
             }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
-        //get it and ignore it (just in case it's now there) but we don't care cuz it's too late
-        get(correlationId);
+        //drop the slot, if the response shows up now nobody will claim it
+        slots.remove(correlationId, slot);
         throw new TimeOutException();
     }
 
     /**
      * Return the value for the specified key from this pool.
-     * This call removes the specified entry in the pool as well
-     * as from the list of responses that are being waited for
+     * This call removes the specified entry in the pool
      * @param correlationId
-     * @return
+     * @return the value, or null if there isn't any
      */
-    protected synchronized Serializable get(String correlationId) {
-/*
-        if (log.isDebugEnabled()) {
-            log.debug("get " + correlationId + " wait size: " + waitList.size() + " pool size: " + pool.size());
-            for (Iterator it = waitList.iterator(); it.hasNext();) {
-                log.debug("wait " + it.next().toString());
-            }
-            List l = pool.getKeys();
-            for (Iterator it = l.iterator(); it.hasNext();) {
-                String key = (String)it.next();
-                log.debug("pool " + pool.get(key));
-            }
+    protected Serializable get(String correlationId) {
+        Slot slot = slots.get(correlationId);
+        if (slot == null || slot.latch.getCount() > 0) {
+            return null;
         }
-*/
-        waitList.remove(correlationId);
-        //can't do a pool.remove and pick up the object because
-        //the dumb cache's remove method sets the cached value to null by reference
-        Serializable ret = (Serializable) pool.get(correlationId);
-        pool.remove(correlationId);
-        return ret;
+        slots.remove(correlationId, slot);
+        return (Serializable) slot.value;
     }
 
 
@@ -104,10 +119,78 @@ public class ResponsePool {
      * @param key
      * @param val
      */
-    public synchronized void put(String key, Object val) {
-        //have stuff time out after 5 minutes.
-        pool.update(key, val, 5*60*1000);
-        notifyAll();
+    public void put(String key, Object val) {
+        Slot slot = getSlot(key);
+        slot.value = val;
+        slot.putTime = System.currentTimeMillis();
+        slot.latch.countDown();
+    }
+
+    private Slot getSlot(String correlationId) {
+        Slot slot = slots.get(correlationId);
+        if (slot == null) {
+            slot = new Slot();
+            Slot prev = slots.putIfAbsent(correlationId, slot);
+            if (prev != null) {
+                slot = prev;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Removes the responses that have been in the pool longer than
+     * <code>UNCLAIMED_TIMEOUT</code> without anybody waiting for them.
+     */
+    void reap() {
+        long limit = System.currentTimeMillis() - UNCLAIMED_TIMEOUT;
+        int count = 0;
+        for (Iterator<Map.Entry<String, Slot>> it = slots.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Slot> e = it.next();
+            Slot slot = e.getValue();
+            if (!slot.waiting && slot.latch.getCount() == 0 && slot.putTime < limit) {
+                if (slots.remove(e.getKey(), slot)) {
+                    count++;
+                }
+            }
+        }
+        if (count > 0 && log.isDebugEnabled()) {
+            log.debug("removed " + count + " unclaimed responses");
+        }
+    }
+
+    /**
+     * The rendezvous between a response and the thread waiting for it.
+     */
+    private static final class Slot {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile Object value = null;
+        private volatile long putTime = 0;
+        private volatile boolean waiting = false;
+    }
+
+    /**
+     * Reaps a pool until it is garbage collected.
+     */
+    private static final class ReapTask extends TimerTask {
+        private final WeakReference<ResponsePool> pool;
+
+        private ReapTask(ResponsePool pool) {
+            this.pool = new WeakReference<ResponsePool>(pool);
+        }
+
+        public void run() {
+            ResponsePool p = pool.get();
+            if (p == null) {
+                cancel();
+            } else {
+                try {
+                    p.reap();
+                } catch (RuntimeException e) {
+                    log.error("Failed to reap the response pool", e);
+                }
+            }
+        }
     }
 
 }
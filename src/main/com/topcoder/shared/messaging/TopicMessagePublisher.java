@@ -42,6 +42,13 @@ public class TopicMessagePublisher {
     boolean backupReady;
     boolean faultTolerant;
 
+    /**
+     * When set, messages are published by a pool of sessions instead of the single one
+     */
+    volatile ProducerPool pool;
+    volatile ProducerPool pool_BKP;
+    volatile MessageFlusher flusher;
+
     /**
      *
      * @param factoryName
@@ -84,6 +91,88 @@ public class TopicMessagePublisher {
         this.faultTolerant = value;
     }
 
+    /**
+     * Publishes the messages with a pool of sessions and publishers, keeping up to
+     * <code>size</code> idle sessions per topic, so that many threads can publish at
+     * the same time.  The connections stay open until the publisher is closed.  A size
+     * of 0, the default, goes back to publishing one message at a time on a single session.
+     *
+     * @param size
+     */
+    public synchronized void setPoolSize(int size) {
+        closePools();
+        if (size > 0) {
+            this.pool = new ProducerPool(ctx, factoryName, topicName, size);
+            this.pool_BKP = new ProducerPool(ctx, factoryName_BKP, topicName_BKP, size);
+        }
+    }
+
+    /**
+     * Starts the async publish mode.  <code>pubMessageAsync</code> adds the messages to a
+     * buffer of up to <code>bufferSize</code> messages, and a background thread publishes
+     * them in transactions of up to <code>batchSize</code> messages, failing over to the
+     * backup topic like any other publish.  Starts a pool of one session if there's none.
+     *
+     * @param bufferSize
+     * @param batchSize
+     */
+    public synchronized void startAsync(int bufferSize, int batchSize) {
+        if (pool == null) {
+            setPoolSize(1);
+        }
+        stopAsync();
+        flusher = new MessageFlusher("TopicMessagePublisher.flusher." + topicName, bufferSize, batchSize,
+                new MessageFlusher.BatchSender() {
+                    public boolean sendBatch(List messages) {
+                        ProducerPool primary = pool;
+                        ProducerPool backup = pool_BKP;
+                        if (primary != null && primary.sendBatch(messages)) {
+                            return true;
+                        }
+                        log.error("Could not publish messages on primary topic.");
+                        return faultTolerant && backup != null && backup.sendBatch(messages);
+                    }
+                });
+        flusher.start();
+    }
+
+    /**
+     * Queues a message to be published in the background, waiting while the buffer is
+     * full.  Publishes it right away if the async mode wasn't started.
+     *
+     * @param props
+     * @param messObject
+     * @return whether the message was queued
+     */
+    public boolean pubMessageAsync(HashMap props, Object messObject) {
+        MessageFlusher f = flusher;
+        if (f == null) {
+            return pubMessage(props, messObject);
+        }
+        // the message is built later, so keep the properties as they are now
+        return f.add(new ProducerPool.Pending(createBuilder(new HashMap(props), messObject),
+                DeliveryMode.NON_PERSISTENT, Message.DEFAULT_TIME_TO_LIVE));
+    }
+
+    /**
+     * Waits until every message queued with <code>pubMessageAsync</code> has been published.
+     *
+     * @return false if some messages were dropped since the async mode started
+     *         because they couldn't be published
+     */
+    public boolean flush() {
+        MessageFlusher f = flusher;
+        if (f == null) {
+            return true;
+        }
+        try {
+            f.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return f.getFailedCount() == 0;
+    }
+
     /**
      *
      * @param props
@@ -100,7 +189,23 @@ public class TopicMessagePublisher {
      * @param messObject
      * @return
      */
-    public synchronized boolean pubMessage(HashMap props, Object messObject) {
+    public boolean pubMessage(HashMap props, Object messObject) {
+        ProducerPool primary = pool;
+        ProducerPool backup = pool_BKP;
+        if (primary == null) {
+            return pubMessageSerial(props, messObject);
+        }
+
+        ProducerPool.MessageBuilder builder = createBuilder(props, messObject);
+        boolean retVal = primary.send(builder, DeliveryMode.NON_PERSISTENT, Message.DEFAULT_TIME_TO_LIVE) != null;
+        if (!retVal && faultTolerant) {
+            log.error("Could not publish message on primary topic.");
+            retVal = backup.send(builder, DeliveryMode.NON_PERSISTENT, Message.DEFAULT_TIME_TO_LIVE) != null;
+        }
+        return retVal;
+    }
+
+    private synchronized boolean pubMessageSerial(HashMap props, Object messObject) {
         int activeTopic = PRIMARY;
         boolean retVal = false;
         boolean reInitPrimary = false;
@@ -186,7 +291,7 @@ public class TopicMessagePublisher {
 
         // Close the topic resources unless they are set to persist.
         if (!persistent) {
-            close();
+            closeSessions();
         }
 
         return retVal;
@@ -205,44 +310,7 @@ public class TopicMessagePublisher {
         boolean retVal = false;
         try {
 
-            ObjectMessage msg = tSess.createObjectMessage();
-            msg.setJMSDeliveryMode(DeliveryMode.NON_PERSISTENT);
-
-            if (!props.isEmpty()) {
-                Set keys = props.keySet();
-                Iterator iter = keys.iterator();
-                while (iter.hasNext()) {
-                    String key = (String) iter.next();
-                    Object value = props.get(key);
-
-                    if (value instanceof String) {
-                        msg.setStringProperty(key, (String) value);
-                    } else if (value instanceof Integer) {
-                        Integer holder = (Integer) value;
-                        msg.setIntProperty(key, holder.intValue());
-                    } else if (value instanceof Boolean) {
-                        Boolean holder = (Boolean) value;
-                        msg.setBooleanProperty(key, holder.booleanValue());
-                    } else if (value instanceof Double) {
-                        Double holder = (Double) value;
-                        msg.setDoubleProperty(key, holder.doubleValue());
-                    } else if (value instanceof Long) {
-                        Long holder = (Long) value;
-                        msg.setLongProperty(key, holder.longValue());
-                    } else if (value instanceof Short) {
-                        Short holder = (Short) value;
-                        msg.setShortProperty(key, holder.shortValue());
-                    } else if (value instanceof Float) {
-                        Float holder = (Float) value;
-                        msg.setFloatProperty(key, holder.floatValue());
-                    }
-                }
-            }
-
-            if (!(messObject == null)) {
-                msg.setObject((Serializable) messObject);
-            }
-            tPub.publish(msg);
+            tPub.publish(createMessage(tSess, props, messObject));
             retVal = true;
 
         } catch (JMSException e) {
@@ -254,6 +322,55 @@ public class TopicMessagePublisher {
 
     }
 
+    private ProducerPool.MessageBuilder createBuilder(final HashMap props, final Object messObject) {
+        return new ProducerPool.MessageBuilder() {
+            public Message build(Session session) throws JMSException {
+                return createMessage(session, props, messObject);
+            }
+        };
+    }
+
+    private static ObjectMessage createMessage(Session session, HashMap props, Object messObject) throws JMSException {
+        ObjectMessage msg = session.createObjectMessage();
+        msg.setJMSDeliveryMode(DeliveryMode.NON_PERSISTENT);
+
+        if (!props.isEmpty()) {
+            Set keys = props.keySet();
+            Iterator iter = keys.iterator();
+            while (iter.hasNext()) {
+                String key = (String) iter.next();
+                Object value = props.get(key);
+
+                if (value instanceof String) {
+                    msg.setStringProperty(key, (String) value);
+                } else if (value instanceof Integer) {
+                    Integer holder = (Integer) value;
+                    msg.setIntProperty(key, holder.intValue());
+                } else if (value instanceof Boolean) {
+                    Boolean holder = (Boolean) value;
+                    msg.setBooleanProperty(key, holder.booleanValue());
+                } else if (value instanceof Double) {
+                    Double holder = (Double) value;
+                    msg.setDoubleProperty(key, holder.doubleValue());
+                } else if (value instanceof Long) {
+                    Long holder = (Long) value;
+                    msg.setLongProperty(key, holder.longValue());
+                } else if (value instanceof Short) {
+                    Short holder = (Short) value;
+                    msg.setShortProperty(key, holder.shortValue());
+                } else if (value instanceof Float) {
+                    Float holder = (Float) value;
+                    msg.setFloatProperty(key, holder.floatValue());
+                }
+            }
+        }
+
+        if (!(messObject == null)) {
+            msg.setObject((Serializable) messObject);
+        }
+        return msg;
+    }
+
     /**
      *
      * @param factoryName
@@ -295,20 +412,30 @@ public class TopicMessagePublisher {
         }
 
         try {
-            this.tconFactory = (TopicConnectionFactory) ctx.lookup(factoryName);
-            this.tcon = this.tconFactory.createTopicConnection();
-            this.tsession = this.tcon.createTopicSession(false, Session.AUTO_ACKNOWLEDGE);
-            this.topic = (Topic) ctx.lookup(topicName);
-            this.tpub = this.tsession.createPublisher(this.topic);
-            this.tpub.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+            TopicConnectionFactory tconFactory = (TopicConnectionFactory) ctx.lookup(factoryName);
+            TopicConnection tcon = tconFactory.createTopicConnection();
+            TopicSession tsession = tcon.createTopicSession(false, Session.AUTO_ACKNOWLEDGE);
+            Topic topic = (Topic) ctx.lookup(topicName);
+            TopicPublisher tpub = tsession.createPublisher(topic);
+            tpub.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
             retVal = true;
             if (topicType == PRIMARY) {
+                this.tconFactory = tconFactory;
+                this.tcon = tcon;
+                this.tsession = tsession;
+                this.topic = topic;
+                this.tpub = tpub;
                 this.primaryReady = true;
             } else {
+                this.tconFactory_BKP = tconFactory;
+                this.tcon_BKP = tcon;
+                this.tsession_BKP = tsession;
+                this.topic_BKP = topic;
+                this.tpub_BKP = tpub;
                 this.backupReady = true;
             }
 
-            this.tcon.start();
+            tcon.start();
 
         } catch (Exception e) {
             if (topicType == PRIMARY) {
@@ -327,6 +454,28 @@ public class TopicMessagePublisher {
      */
     public synchronized void close() {
         log.info("close");
+        stopAsync();
+        closePools();
+        closeSessions();
+    }
+
+    private synchronized void stopAsync() {
+        if (flusher != null) {
+            flusher.close();
+            flusher = null;
+        }
+    }
+
+    private synchronized void closePools() {
+        if (pool != null) {
+            pool.close();
+            pool_BKP.close();
+            pool = null;
+            pool_BKP = null;
+        }
+    }
+
+    private synchronized void closeSessions() {
         this.primaryReady = false;
         this.backupReady = false;
 
@@ -33,4 +33,15 @@ public class RatingProcessFactory {
     public static RatingProcess getMarathonRatingProcess(int roundId, Connection conn) {
         return new MarathonRatingProcess(roundId, conn);
     }
+
+    /**
+     * Gets a marathon match rater that uses several threads
+     * @return the rating process object for this round
+     * @param conn DB connection to use
+     * @param roundId the round to rate
+     * @param threads the number of threads to compute the expected ranks on
+     */
+    public static RatingProcess getMarathonRatingProcess(int roundId, Connection conn, int threads) {
+        return new MarathonRatingProcess(roundId, conn, threads);
+    }
 }
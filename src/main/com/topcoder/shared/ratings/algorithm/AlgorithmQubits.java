@@ -13,6 +13,10 @@ import com.topcoder.shared.ratings.model.QubitsRatingData;
 import com.topcoder.shared.ratings.model.RatingData;
 import com.topcoder.shared.util.logging.Logger;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+
 /**
  * The Qubits rating algorithm
  *
@@ -21,12 +25,25 @@ import com.topcoder.shared.util.logging.Logger;
 public class AlgorithmQubits implements Algorithm {
     
     private QubitsRatingData[] data;
+    private ExecutorService pool = null;
+    private int threads = 1;
     private Logger log = Logger.getLogger(AlgorithmQubits.class);
     
     /** Creates a new instance of AlgorithmQubits */
     public AlgorithmQubits() {
     }
 
+    /**
+     * Creates a new instance of AlgorithmQubits that computes the expected ranks
+     * on a pool of threads.  The results are the same as with a single thread.
+     * @param pool the threads to use, the caller shuts it down
+     * @param threads the number of threads of the pool
+     */
+    public AlgorithmQubits(ExecutorService pool, int threads) {
+        this.pool = pool;
+        this.threads = threads;
+    }
+
     /**
      * Gives the algorithm list of rating data to use for this run
      * @param data Array of data to use for this rating run
@@ -86,40 +103,14 @@ public class AlgorithmQubits implements Algorithm {
         log.debug("Competition Factor is: " + matchStdDevEquals);
         
         /* COMPUTE EXPECTED RANKS */
+        double[] est = new ExpectedRankKernel(data).compute(pool, threads);
         for (int i = 0; i < data.length; i++) {
-            double est = 0.5;
-            double myskill = ((double)data[i].getRating() - INITIAL_SCORE) / ONE_STD_DEV_EQUALS;
-            double mystddev = ((double)data[i].getVolatility()) / ONE_STD_DEV_EQUALS;
-            for (int j = 0; j < data.length; j++) {
-                est += winprobability((double)data[j].getRating(), (double)data[i].getRating(),
-                        (double)data[j].getVolatility(), (double)data[i].getVolatility());
-            }
-            data[i].setExpectedRank(est);
-            data[i].setExpectedPerformance(-normsinv((est - .5) / data.length));
+            data[i].setExpectedRank(est[i]);
+            data[i].setExpectedPerformance(-normsinv((est[i] - .5) / data.length));
         }
         
         /* COMPUTE ACTUAL RANKS */
-        for (int i = 0; i < data.length;) {
-            double max = Double.NEGATIVE_INFINITY;
-            int count = 0;
-
-            for (int j = 0; j < data.length; j++) {
-                if (data[j].getScore() >= max && data[j].getActualRank() == 0) {
-                    if (data[j].getScore() == max)
-                        count++;
-                    else
-                        count = 1;
-                    max = data[j].getScore();
-                }
-            }
-            for (int j = 0; j < data.length; j++) {
-                if (data[j].getScore() == max) {
-                    data[j].setActualRank(i + 0.5 + count / 2.0);
-                    data[j].setActualPerformance(-normsinv((i + count / 2.0) / data.length));
-                }
-            }
-            i += count;
-        }
+        computeActualRanks(data);
         
         /* UPDATE RATINGS */
         for (int i = 0; i < data.length; i++) {
@@ -163,6 +154,55 @@ public class AlgorithmQubits implements Algorithm {
         }
     }
     
+    /**
+     * Ranks the coders by score, highest first.  Coders with the same score share
+     * the average of the ranks they span.
+     *
+     * The coders are sorted once and the tied groups are ranked in a single pass,
+     * instead of scanning all the coders for each distinct score.
+     * Scores are compared with == like before, so 0.0 and -0.0 tie.  NaN scores
+     * are ranked last, as a single group.
+     *
+     * @param data the rating data to rank
+     */
+    static void computeActualRanks(QubitsRatingData[] data) {
+        Integer[] order = new Integer[data.length];
+        final double[] scores = new double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            order[i] = new Integer(i);
+            scores[i] = data[i].getScore();
+        }
+        Arrays.sort(order, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                double s1 = scores[((Integer) o1).intValue()];
+                double s2 = scores[((Integer) o2).intValue()];
+                if (s1 > s2) return -1;
+                if (s1 < s2) return 1;
+                if (s1 == s2) return 0;
+                return Double.isNaN(s1) ? (Double.isNaN(s2) ? 0 : 1) : -1;
+            }
+        });
+        
+        for (int i = 0; i < data.length;) {
+            double score = scores[order[i].intValue()];
+            int count = 1;
+            while (i + count < data.length && sameScore(score, scores[order[i + count].intValue()])) {
+                count++;
+            }
+            double rank = i + 0.5 + count / 2.0;
+            double perf = -normsinv((i + count / 2.0) / data.length);
+            for (int j = i; j < i + count; j++) {
+                data[order[j].intValue()].setActualRank(rank);
+                data[order[j].intValue()].setActualPerformance(perf);
+            }
+            i += count;
+        }
+    }
+    
+    private static boolean sameScore(double s1, double s2) {
+        return s1 == s2 || (Double.isNaN(s1) && Double.isNaN(s2));
+    }
+    
     //constants
     private static final double INITIAL_SCORE = 1200.0;
     private static final double ONE_STD_DEV_EQUALS = 1200.0; /* rating points */
@@ -175,7 +215,7 @@ public class AlgorithmQubits implements Algorithm {
         return j * j;
     }
     
-    private double winprobability(double r1, double r2, double v1, double v2) {
+    static double winprobability(double r1, double r2, double v1, double v2) {
         return (erf((r1-r2)/Math.sqrt(2.0*(v1*v1+v2*v2)))+1.0)*.5;
     }
     
@@ -197,7 +237,7 @@ public class AlgorithmQubits implements Algorithm {
         else        return -ans;
     }
     
-    private static double normsinv(double p) {
+    static double normsinv(double p) {
     /* ********************************************
      * Original algorythm and Perl implementation can
      * be found at:
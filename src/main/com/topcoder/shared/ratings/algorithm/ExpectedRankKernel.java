@@ -0,0 +1,117 @@
+/*
+ * ExpectedRankKernel.java
+ *
+ * Created on October 19, 2026
+ */
+
+package com.topcoder.shared.ratings.algorithm;
+
+import com.topcoder.shared.ratings.model.QubitsRatingData;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Computes the expected ranks of the Qubits algorithm.
+ *
+ * The ratings and volatilities are copied into arrays, and the rows can be
+ * computed in blocks on a pool of threads.  Each expected rank is summed by a
+ * single thread in the same order as the serial loop, so the results are the
+ * same bit for bit however the rows are split.
+ *
+ * @version $Revision$
+ */
+final class ExpectedRankKernel {
+    /**
+     * Below this many coders the rows are computed in the calling thread.
+     */
+    static final int MIN_PARALLEL_ROWS = 256;
+    /**
+     * The rows are split in this many blocks per thread, so a slow thread doesn't hold up the others.
+     */
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    private final double[] ratings;
+    private final double[] volatilities;
+
+    /**
+     * Creates the kernel from the current ratings and volatilities
+     * @param data the rating data
+     */
+    ExpectedRankKernel(QubitsRatingData[] data) {
+        ratings = new double[data.length];
+        volatilities = new double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            ratings[i] = (double)data[i].getRating();
+            volatilities[i] = (double)data[i].getVolatility();
+        }
+    }
+
+    /**
+     * Computes the expected rank of every coder
+     * @param pool the threads to use, null to compute in the calling thread
+     * @param threads the number of threads of the pool
+     * @return the expected ranks, in the order of the rating data
+     */
+    double[] compute(ExecutorService pool, int threads) {
+        final double[] est = new double[ratings.length];
+        if (pool == null || threads < 2 || ratings.length < MIN_PARALLEL_ROWS) {
+            computeRows(0, ratings.length, est);
+            return est;
+        }
+
+        int blocks = Math.min(ratings.length, threads * BLOCKS_PER_THREAD);
+        List futures = new ArrayList(blocks);
+        for (int b = 0; b < blocks; b++) {
+            final int from = (int)((long)ratings.length * b / blocks);
+            final int to = (int)((long)ratings.length * (b + 1) / blocks);
+            futures.add(pool.submit(new Callable() {
+                public Object call() {
+                    computeRows(from, to, est);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Iterator it = futures.iterator(); it.hasNext();) {
+                ((Future)it.next()).get();
+            }
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing expected ranks");
+        } catch (ExecutionException e) {
+            cancel(futures);
+            throw new IllegalStateException("Failed to compute expected ranks", e.getCause());
+        }
+        return est;
+    }
+
+    /**
+     * Computes the expected ranks of the coders from <code>from</code> to <code>to</code> (exclusive).
+     */
+    void computeRows(int from, int to, double[] est) {
+        double[] r = ratings;
+        double[] v = volatilities;
+        for (int i = from; i < to; i++) {
+            double ri = r[i];
+            double vi = v[i];
+            double sum = 0.5;
+            for (int j = 0; j < r.length; j++) {
+                sum += AlgorithmQubits.winprobability(r[j], ri, v[j], vi);
+            }
+            est[i] = sum;
+        }
+    }
+
+    private static void cancel(List futures) {
+        for (Iterator it = futures.iterator(); it.hasNext();) {
+            ((Future)it.next()).cancel(true);
+        }
+    }
+}
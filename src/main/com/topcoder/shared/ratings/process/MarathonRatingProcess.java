@@ -17,6 +17,8 @@ import com.topcoder.shared.util.logging.Logger;
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Process helper object for rating a marathon round
@@ -26,6 +28,7 @@ public class MarathonRatingProcess extends RatingProcess {
     
     private int roundId;
     private Connection conn;
+    private ExecutorService pool = null;
     
     private Logger log = Logger.getLogger(MarathonRatingProcess.class);
     
@@ -42,10 +45,35 @@ public class MarathonRatingProcess extends RatingProcess {
         this.persistor = new MarathonDataPersistor(roundId, conn);
     }
 
+    /**
+     * Creates a new instance of MarathonRatingProcess that computes the expected
+     * ranks on several threads.  The ratings are the same as with a single thread.
+     * @param roundId the round to rate
+     * @param conn the db connection to use
+     * @param threads the number of threads to use
+     */
+    public MarathonRatingProcess(int roundId, Connection conn, int threads) {
+        this(roundId, conn);
+        if (threads > 1) {
+            this.pool = Executors.newFixedThreadPool(threads);
+            this.algo = new AlgorithmQubits(pool, threads);
+        }
+    }
+
     /**
      * Loads all data, rates the round, then saves data to the DB
      */
     public void runProcess() {
+        try {
+            rateRound();
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private void rateRound() {
         log.info("Starting run for round " + roundId);
         
         log.debug("Getting Data");
@@ -0,0 +1,82 @@
+package com.topcoder.shared.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A distribution of non negative values, such as latencies.
+ *
+ * It keeps count, total, max and a histogram of power of two buckets, without locking.
+ * Percentiles are approximated by the upper bound of their bucket, which is enough to tell
+ * a slow operation from a fast one at a constant memory cost.
+ *
+ * @version $Revision$
+ */
+public class Distribution {
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong total = new AtomicLong(0);
+    private final AtomicLong max = new AtomicLong(0);
+    /**
+     * Bucket i counts the values having i significant bits, ie: values up to 2^i - 1
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+    /**
+     * Adds a value, negative values are ignored.
+     */
+    public void add(long value) {
+        if (value < 0) {
+            return;
+        }
+        count.incrementAndGet();
+        total.addAndGet(value);
+        buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of the values, 0 if there are none
+     */
+    public long getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / n;
+    }
+
+    /**
+     * @param fraction the fraction of values, eg: 0.99
+     * @return a value greater or equal than the given fraction of the values, and at most twice the
+     *         exact percentile. 0 if there are no values.
+     */
+    public long getPercentile(double fraction) {
+        long n = 0;
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        long rank = (long) Math.ceil(fraction * n);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min((1L << i) - 1, max.get());
+            }
+        }
+        return 0;
+    }
+}
@@ -5,10 +5,15 @@ import com.topcoder.shared.util.logging.Logger;
 import javax.mail.*;
 import javax.mail.internet.MimeMessage;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The EmailEngine is responsible for sending email.
  *
+ * Messages are sent through a {@link SMTPTransportPool} per SMTP server, so connections are
+ * reused across messages.  The pool is configured in the 'EmailEngineConfig' resource file with
+ * <code>smtp_pool_size</code>, <code>smtp_pool_max_messages</code> and <code>smtp_pool_check_idle</code>.
+ *
  * @author   Eric Ellingson
  * @version  $Revision$
  *
@@ -27,9 +32,23 @@ public class EmailEngine {
      *
      */
     public static final int SMTP_HOST_PORT = 25;
+    /**
+     * Default max number of connections to a SMTP server.
+     */
+    public static final int SMTP_POOL_SIZE = 4;
+    /**
+     * Default number of messages sent through a connection before it is replaced.
+     */
+    public static final int SMTP_POOL_MAX_MESSAGES = 100;
+    /**
+     * Default idle time, in millis, after which a connection is checked before it is used.
+     */
+    public static final long SMTP_POOL_CHECK_IDLE = 30000;
 
     private static Logger log = Logger.getLogger(EmailEngine.class);
 
+    private static final Map pools = new ConcurrentHashMap();
+
     /**
      * Send an email message.
      *
@@ -113,21 +132,9 @@ public class EmailEngine {
     private static void send(boolean isHtml, String host, int port,
                              Address from, Address[] to, Address[] cc, Address[] bcc,
                              String subject, String data) throws SendFailedException, Exception {
-        Address[] ret = new Address[0];
-        javax.mail.Session eMailSession = null;
-        Transport eMailTransport = null;
-        javax.mail.internet.MimeMessage eMailMessage = null;
-        Properties props = new Properties();
-        props.put("mail.smtp.host", host);
-        props.put("mail.transport.protocol", SMTP_HOST_TYPE);
-        props.put("mail.host", host);
-        props.put("mail.from", from);
-
         try {
-            eMailSession = javax.mail.Session.getDefaultInstance(props, null);
-            eMailMessage = new MimeMessage(eMailSession);
-            eMailTransport = eMailSession.getTransport(SMTP_HOST_TYPE);
-            eMailTransport.connect(host, 25, "", "");
+            SMTPTransportPool pool = getPool(host, port);
+            MimeMessage eMailMessage = new MimeMessage(pool.getSession());
             eMailMessage.setRecipients(javax.mail.Message.RecipientType.TO, to);
             if (cc != null)
                 eMailMessage.setRecipients(javax.mail.Message.RecipientType.CC, cc);
@@ -143,21 +150,75 @@ public class EmailEngine {
             eMailMessage.setText(data, "utf-8");
             }
             eMailMessage.setHeader("Content-Transfer-Encoding", "8bit");
-            eMailTransport.send(eMailMessage);
+            pool.send(eMailMessage);
+        } catch (SendFailedException e) {
+            throw e;
         } catch (NoSuchProviderException e) {
             log.error("SMTP transport type not accepted", e);
             throw new Exception("Internal configuration error. SMTP transport not accepted.");
         } catch (MessagingException e) {
             log.error("Failed to contact SMTP server", e);
             throw new Exception("Possible configuration error. SMTP server is not responding.");
-        } finally {
-            if (eMailTransport != null) {
-                try {
-                    eMailTransport.close();
-                } catch (Exception ignore) {
+        }
+    }
+
+    /**
+     * Returns the pool of connections to a SMTP server, creating it on first use.
+     */
+    static SMTPTransportPool getPool(String host, int port) {
+        String key = host + ":" + port;
+        SMTPTransportPool pool = (SMTPTransportPool) pools.get(key);
+        if (pool == null) {
+            synchronized (pools) {
+                pool = (SMTPTransportPool) pools.get(key);
+                if (pool == null) {
+                    int size = SMTP_POOL_SIZE;
+                    int maxMessages = SMTP_POOL_MAX_MESSAGES;
+                    long checkIdle = SMTP_POOL_CHECK_IDLE;
+                    try {
+                        ResourceBundle resource = ResourceBundle.getBundle("EmailEngineConfig");
+                        size = Integer.parseInt(getString(resource, "smtp_pool_size", String.valueOf(size)));
+                        maxMessages = Integer.parseInt(getString(resource, "smtp_pool_max_messages", String.valueOf(maxMessages)));
+                        checkIdle = Long.parseLong(getString(resource, "smtp_pool_check_idle", String.valueOf(checkIdle)));
+                    } catch (Exception e) {
+                        log.warn("Failed to read the SMTP pool settings, using the defaults: " + e.getMessage());
+                    }
+                    pool = new SMTPTransportPool(host, port, size, maxMessages, checkIdle);
+                    pools.put(key, pool);
                 }
             }
         }
+        return pool;
     }
-}
 
+    private static String getString(ResourceBundle resource, String key, String defaultValue) {
+        try {
+            return resource.getString(key);
+        } catch (MissingResourceException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return the statistics of the pool of every SMTP server used, one per line
+     */
+    public static String getPoolStatistics() {
+        StringBuffer sb = new StringBuffer();
+        for (Iterator it = pools.values().iterator(); it.hasNext();) {
+            sb.append(it.next()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Closes the connections to every SMTP server.  New connections are opened on the next message.
+     */
+    public static void closePools() {
+        synchronized (pools) {
+            for (Iterator it = pools.values().iterator(); it.hasNext();) {
+                ((SMTPTransportPool) it.next()).close();
+                it.remove();
+            }
+        }
+    }
+}
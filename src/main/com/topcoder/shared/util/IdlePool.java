@@ -0,0 +1,78 @@
+package com.topcoder.shared.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock free pool of idle resources, such as JMS sessions and producers.<p>
+ *
+ * Threads take resources out with {@link #poll()} and create a new one when none is idle, so
+ * they never wait on each other. At most <code>size</code> idle resources are kept; resources
+ * returned to a full or closed pool are destroyed. Resources returned while the pool is being
+ * closed are destroyed too, by whichever thread sees them last.
+ *
+ * @version $Revision$
+ */
+public abstract class IdlePool<T> {
+    private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger idleCount = new AtomicInteger(0);
+    private final int size;
+    private volatile boolean closed = false;
+
+    /**
+     * @param size Max number of idle resources to keep
+     */
+    public IdlePool(int size) {
+        this.size = Math.max(1, size);
+    }
+
+    /**
+     * Releases a resource that is not kept in the pool.
+     */
+    protected abstract void destroy(T resource);
+
+    /**
+     * Takes an idle resource out of the pool.
+     *
+     * @return The resource, or null if none is idle
+     */
+    public T poll() {
+        T resource = idle.poll();
+        if (resource != null) {
+            idleCount.decrementAndGet();
+        }
+        return resource;
+    }
+
+    /**
+     * Returns a resource to the pool, destroying it if the pool is full or closed.
+     */
+    public void checkin(T resource) {
+        if (!closed && idleCount.incrementAndGet() <= size) {
+            idle.offer(resource);
+            if (closed) {
+                // lost a race with close, make sure it doesn't stay open
+                drain();
+            }
+        } else {
+            if (!closed) {
+                idleCount.decrementAndGet();
+            }
+            destroy(resource);
+        }
+    }
+
+    /**
+     * Destroys all idle resources. Resources checked out are destroyed when checked in.
+     */
+    public void close() {
+        closed = true;
+        drain();
+    }
+
+    private void drain() {
+        for (T resource; (resource = idle.poll()) != null;) {
+            destroy(resource);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.topcoder.shared.util;
+
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+import com.topcoder.shared.util.logging.Logger;
+
+/**
+ * A pool of connected SMTP transports to a single server.
+ *
+ * Up to <code>size</code> messages are sent at the same time, each through a connection of
+ * its own.  Connections are kept open between messages and closed after sending
+ * <code>maxMessages</code> messages, so long jobs spread over fresh connections.  A connection
+ * idle for more than <code>checkIdleTime</code> millis is checked with a NOOP before it is used,
+ * and a message that fails on a reused connection is sent again once on a new one, since the
+ * server may have dropped the connection while it was idle.
+ *
+ * Messages must be created with the session of the pool.
+ *
+ * @version  $Revision$
+ */
+public class SMTPTransportPool {
+    private static Logger log = Logger.getLogger(SMTPTransportPool.class);
+
+    private final String host;
+    private final int port;
+    private final int maxMessages;
+    private final long checkIdleTime;
+    private final Session session;
+    private final Semaphore permits;
+    private final BlockingQueue idle = new LinkedBlockingQueue();
+    private volatile boolean closed = false;
+
+    private final AtomicLong opened = new AtomicLong(0);
+    private final AtomicLong recycled = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong sent = new AtomicLong(0);
+    private final AtomicInteger active = new AtomicInteger(0);
+
+    /**
+     * @param host          the SMTP server
+     * @param port          the SMTP port
+     * @param size          the max number of connections
+     * @param maxMessages   the number of messages sent through a connection before it is replaced,
+     *                      0 to keep connections until they fail
+     * @param checkIdleTime the idle time, in millis, after which a connection is checked before it is used
+     */
+    public SMTPTransportPool(String host, int port, int size, int maxMessages, long checkIdleTime) {
+        this.host = host;
+        this.port = port;
+        this.maxMessages = maxMessages;
+        this.checkIdleTime = checkIdleTime;
+        this.permits = new Semaphore(Math.max(1, size), true);
+        Properties props = new Properties();
+        props.put("mail.transport.protocol", EmailEngine.SMTP_HOST_TYPE);
+        props.put("mail.host", host);
+        props.put("mail.smtp.host", host);
+        props.put("mail.smtp.port", String.valueOf(port));
+        props.put("mail.smtp.connectiontimeout", "60000");
+        props.put("mail.smtp.timeout", "60000");
+        this.session = Session.getInstance(props, null);
+    }
+
+    /**
+     * @return the session messages sent through this pool must be created with
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Sends the message to all its recipients, waiting for a connection if all of them are busy.
+     *
+     * @throws SendFailedException if some recipients were rejected, the connection is kept
+     * @throws MessagingException if the message could not be sent
+     */
+    public void send(MimeMessage message) throws MessagingException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for an SMTP connection");
+        }
+        active.incrementAndGet();
+        try {
+            if (closed) {
+                throw new MessagingException("The SMTP pool is closed");
+            }
+            message.saveChanges();
+            PooledTransport t = checkout();
+            try {
+                t.transport.sendMessage(message, message.getAllRecipients());
+            } catch (MessagingException e) {
+                if (isRejected(e)) {
+                    checkin(t);
+                    throw e;
+                }
+                discard(t);
+                if (t.sent == 0) {
+                    throw e;
+                }
+                log.warn("Failed to send through a reused SMTP connection, trying a new one: " + e.getMessage());
+                t = open();
+                try {
+                    t.transport.sendMessage(message, message.getAllRecipients());
+                } catch (MessagingException e1) {
+                    if (isRejected(e1)) {
+                        checkin(t);
+                    } else {
+                        discard(t);
+                    }
+                    throw e1;
+                }
+            }
+            sent.incrementAndGet();
+            t.sent++;
+            checkin(t);
+        } finally {
+            active.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes every idle connection.  Connections in use are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        PooledTransport t;
+        while ((t = (PooledTransport) idle.poll()) != null) {
+            closeQuietly(t);
+        }
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return the number of connections opened
+     */
+    public long getOpenedCount() {
+        return opened.get();
+    }
+
+    /**
+     * @return the number of connections closed after sending <code>maxMessages</code> messages
+     */
+    public long getRecycledCount() {
+        return recycled.get();
+    }
+
+    /**
+     * @return the number of connections dropped because they failed a check or a send
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return the number of messages sent
+     */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    /**
+     * @return the number of open connections waiting for a message
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return the number of messages being sent
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public String toString() {
+        return "SMTPTransportPool[" + host + ":" + port
+                + " sent=" + sent.get()
+                + " opened=" + opened.get()
+                + " recycled=" + recycled.get()
+                + " failed=" + failed.get()
+                + " idle=" + idle.size()
+                + " active=" + active.get() + "]";
+    }
+
+    private PooledTransport checkout() throws MessagingException {
+        PooledTransport t;
+        while ((t = (PooledTransport) idle.poll()) != null) {
+            if (System.currentTimeMillis() - t.lastUsed < checkIdleTime || t.transport.isConnected()) {
+                return t;
+            }
+            log.info("Dropping a stale SMTP connection to " + host + ":" + port);
+            discard(t);
+        }
+        return open();
+    }
+
+    private PooledTransport open() throws MessagingException {
+        Transport transport = session.getTransport(EmailEngine.SMTP_HOST_TYPE);
+        transport.connect(host, port, null, null);
+        opened.incrementAndGet();
+        return new PooledTransport(transport);
+    }
+
+    private void checkin(PooledTransport t) {
+        if (closed) {
+            closeQuietly(t);
+        } else if (maxMessages > 0 && t.sent >= maxMessages) {
+            recycled.incrementAndGet();
+            closeQuietly(t);
+        } else {
+            t.lastUsed = System.currentTimeMillis();
+            idle.offer(t);
+        }
+    }
+
+    /**
+     * The server answers rejected recipients with a SendFailedException listing them.  A dropped
+     * connection is reported as a SendFailedException too, but without invalid addresses.
+     */
+    private static boolean isRejected(MessagingException e) {
+        if (!(e instanceof SendFailedException)) {
+            return false;
+        }
+        Address[] invalid = ((SendFailedException) e).getInvalidAddresses();
+        return invalid != null && invalid.length > 0;
+    }
+
+    private void discard(PooledTransport t) {
+        failed.incrementAndGet();
+        closeQuietly(t);
+    }
+
+    private static void closeQuietly(PooledTransport t) {
+        try {
+            t.transport.close();
+        } catch (Exception ignore) {
+        }
+    }
+
+    /**
+     * A connected transport and the number of messages sent through it.
+     */
+    private static final class PooledTransport {
+        private final Transport transport;
+        private int sent = 0;
+        private long lastUsed = System.currentTimeMillis();
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+}
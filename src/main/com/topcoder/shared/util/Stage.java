@@ -0,0 +1,298 @@
+package com.topcoder.shared.util;
+
+import com.topcoder.shared.util.logging.Logger;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A named pool of worker threads with a bounded queue of tasks.
+ *
+ * Each stage is sized independently and has its own queue, so stages don't compete for a
+ * single lock.  When the queue is full, new tasks are handled by the rejection policy of the
+ * stage.  The stage keeps counters of the tasks it ran, the time they waited in the queue
+ * and the time they ran, and can be drained on shutdown.
+ *
+ * Replaces {@link StageQueue}.
+ *
+ * @version  $Revision$
+ */
+public class Stage {
+    private static Logger log = Logger.getLogger(Stage.class);
+
+    /**
+     * Tasks submitted to a full stage are rejected with a RejectedExecutionException.
+     */
+    public static final int REJECT_ABORT = 0;
+    /**
+     * Tasks submitted to a full stage are dropped, submit returns <code>false</code>.
+     */
+    public static final int REJECT_DISCARD = 1;
+    /**
+     * Tasks submitted to a full stage are run by the submitting thread.
+     */
+    public static final int REJECT_CALLER_RUNS = 2;
+
+    private final String name;
+    private final int rejectionPolicy;
+    private final ThreadPoolExecutor executor;
+    private final ArrayBlockingQueue queue;
+
+    // counted here, the executor counts the threads that are still starting as active
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final AtomicInteger running = new AtomicInteger(0);
+    private final AtomicLong submitted = new AtomicLong(0);
+    private final AtomicLong completed = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong totalWait = new AtomicLong(0);
+    private final AtomicLong maxWait = new AtomicLong(0);
+    private final AtomicLong totalRun = new AtomicLong(0);
+    private final AtomicLong maxRun = new AtomicLong(0);
+
+    /**
+     * Creates a stage and starts its threads.
+     *
+     * @param name            the name of the stage, used to name its threads
+     * @param threads         the number of worker threads
+     * @param queueCapacity   the number of tasks that can wait for a thread
+     * @param rejectionPolicy one of the REJECT_ constants
+     */
+    public Stage(final String name, int threads, int queueCapacity, int rejectionPolicy) {
+        if (rejectionPolicy < REJECT_ABORT || rejectionPolicy > REJECT_CALLER_RUNS) {
+            throw new IllegalArgumentException("Unknown rejection policy: " + rejectionPolicy);
+        }
+        this.name = name;
+        this.rejectionPolicy = rejectionPolicy;
+        this.queue = new ArrayBlockingQueue(Math.max(1, queueCapacity));
+        threads = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue,
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger(0);
+
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, name + "." + count.getAndIncrement());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                },
+                new RejectedExecutionHandler() {
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                        throw new RejectedExecutionException("Stage " + Stage.this.name + " is full or stopped");
+                    }
+                });
+        executor.prestartAllCoreThreads();
+    }
+
+    /**
+     * Queues a task to be run by a worker thread.
+     *
+     * @return <code>true</code> if the task was queued or run, <code>false</code> if it was
+     *         discarded because the stage is full
+     * @throws RejectedExecutionException if the stage is full and its policy is REJECT_ABORT,
+     *         or if the stage was shut down
+     */
+    public boolean submit(Runnable task) {
+        TimedTask timed = new TimedTask(task);
+        pending.incrementAndGet();
+        try {
+            executor.execute(timed);
+            submitted.incrementAndGet();
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            rejected.incrementAndGet();
+            if (executor.isShutdown() || rejectionPolicy == REJECT_ABORT) {
+                throw e;
+            }
+            if (rejectionPolicy == REJECT_DISCARD) {
+                log.warn("Stage " + name + " is full, discarding " + task);
+                return false;
+            }
+            submitted.incrementAndGet();
+            pending.incrementAndGet();
+            timed.run();
+            return true;
+        }
+    }
+
+    /**
+     * Returns the number of tasks that can be submitted right now without waiting, that is the
+     * idle threads less the tasks already waiting.  It is negative when tasks are waiting for a
+     * thread.
+     */
+    public int available() {
+        return executor.getCorePoolSize() - pending.get();
+    }
+
+    /**
+     * Changes the number of worker threads.  Running tasks are not affected.
+     */
+    public void setThreads(int threads) {
+        threads = Math.max(1, threads);
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+        executor.prestartAllCoreThreads();
+    }
+
+    /**
+     * Stops accepting tasks and waits for the queued and running ones to complete.  The tasks
+     * still running after <code>timeout</code> millis are interrupted, and the tasks that did
+     * not start are dropped.
+     *
+     * @return <code>true</code> if all the tasks completed
+     */
+    public boolean shutdown(long timeout) {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            List dropped = executor.shutdownNow();
+            log.warn("Stage " + name + " did not drain in " + timeout + " ms, interrupted the running tasks"
+                    + " and dropped " + dropped.size() + " queued tasks");
+            executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return executor.getCorePoolSize();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getActiveCount() {
+        return running.get();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /**
+     * @return the number of tasks that ran, including the ones that failed
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * @return the number of tasks that threw an exception
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return the number of tasks the stage could not queue, whatever the policy did with them
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the mean time, in millis, tasks waited in the queue
+     */
+    public long getMeanWaitTime() {
+        long n = completed.get();
+        return n == 0 ? 0 : totalWait.get() / n / 1000000;
+    }
+
+    public long getMaxWaitTime() {
+        return maxWait.get() / 1000000;
+    }
+
+    /**
+     * @return the mean time, in millis, tasks ran
+     */
+    public long getMeanRunTime() {
+        long n = completed.get();
+        return n == 0 ? 0 : totalRun.get() / n / 1000000;
+    }
+
+    public long getMaxRunTime() {
+        return maxRun.get() / 1000000;
+    }
+
+    public String toString() {
+        return "Stage[" + name
+                + " threads=" + getThreads()
+                + " active=" + getActiveCount()
+                + " queued=" + getQueueDepth()
+                + " completed=" + completed.get()
+                + " failed=" + failed.get()
+                + " rejected=" + rejected.get()
+                + " waitMs=" + getMeanWaitTime() + "/max:" + getMaxWaitTime()
+                + " runMs=" + getMeanRunTime() + "/max:" + getMaxRunTime() + "]";
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Measures the time a task waited and ran, and keeps its exceptions from killing the thread.
+     */
+    private final class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long queued = System.nanoTime();
+
+        private TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        public void run() {
+            long start = System.nanoTime();
+            long wait = start - queued;
+            totalWait.addAndGet(wait);
+            updateMax(maxWait, wait);
+            running.incrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                failed.incrementAndGet();
+                log.error("Error occured while running task in stage " + name + ":", t);
+            } finally {
+                long run = System.nanoTime() - start;
+                totalRun.addAndGet(run);
+                updateMax(maxRun, run);
+                completed.incrementAndGet();
+                running.decrementAndGet();
+                pending.decrementAndGet();
+            }
+        }
+
+        public String toString() {
+            return task.toString();
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.util.*;
 /**
  * @author unknown
  * @version  $Id$
+ * @deprecated use a {@link Stage}, which has its own threads, bounded queue and counters
  */
 public class StageQueue {
     private static Logger log = Logger.getLogger(StageQueue.class);
@@ -0,0 +1,94 @@
+package com.topcoder.shared.util;
+
+/**
+ * A token bucket rate limiter.
+ *
+ * The bucket fills up at <code>rate</code> tokens per second up to <code>burst</code> tokens,
+ * and each permit takes one token.  Callers of {@link #acquire()} reserve their token right away
+ * and then sleep until it is due, so waiting threads are served in the order they arrived and
+ * don't compete for tokens when they wake up.
+ *
+ * @version  $Revision$
+ */
+public class TokenBucket {
+    private double rate;
+    private double burst;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * @param rate  the number of permits per second
+     * @param burst the number of permits that can be taken at once after the bucket was idle
+     */
+    public TokenBucket(double rate, int burst) {
+        setRate(rate, burst);
+        this.tokens = this.burst;
+    }
+
+    /**
+     * Takes a permit, waiting until it is available.
+     *
+     * @throws InterruptedException if the thread was interrupted while waiting, the permit is lost
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            refill();
+            tokens -= 1;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens / rate * 1000000000L);
+        }
+        if (waitNanos > 0) {
+            Thread.sleep(waitNanos / 1000000, (int) (waitNanos % 1000000));
+        }
+    }
+
+    /**
+     * Takes a permit if one is available right away.
+     *
+     * @return <code>true</code> if the permit was taken
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Changes the rate of the bucket.  Permits already reserved are not affected.
+     *
+     * @param rate  the number of permits per second
+     * @param burst the number of permits that can be taken at once after the bucket was idle
+     */
+    public synchronized void setRate(double rate, int burst) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("rate must be positive: " + rate);
+        }
+        refill();
+        this.rate = rate;
+        this.burst = Math.max(1, burst);
+        this.tokens = Math.min(tokens, this.burst);
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    public synchronized int getBurst() {
+        return (int) burst;
+    }
+
+    public String toString() {
+        return "TokenBucket[rate=" + getRate() + "/s, burst=" + getBurst() + "]";
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (rate > 0) {
+            tokens = Math.min(burst, tokens + (now - lastRefill) * rate / 1000000000L);
+        }
+        lastRefill = now;
+    }
+}
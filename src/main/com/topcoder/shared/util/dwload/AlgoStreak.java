@@ -24,6 +24,10 @@ abstract class AlgoStreak {
         return flush(true);
     }
     public StreakRow add(int coderId, int roundId, int placed, int rating, int roundTypeId) {
+        return add(coderId, roundId, placed, rating, roundTypeId, 0);
+    }
+
+    public StreakRow add(int coderId, int roundId, int placed, int rating, int roundTypeId, int divisionId) {
         StreakRow sr = null;
 
         if (this.coderId != coderId) {
@@ -37,7 +41,7 @@ abstract class AlgoStreak {
             return sr;
         }
 
-        if (addToStreak(placed, rating)) {
+        if (addToStreak(placed, rating, divisionId)) {
             if (length == 0) {
                 startRoundId = roundId;
             }
@@ -60,6 +64,13 @@ abstract class AlgoStreak {
 
     protected abstract boolean addToStreak(int placed, int rating);
 
+    /**
+     * Streaks that depend on the division the coder competed in override this one.
+     */
+    protected boolean addToStreak(int placed, int rating, int divisionId) {
+        return addToStreak(placed, rating);
+    }
+
     protected void reset() {
     }
     
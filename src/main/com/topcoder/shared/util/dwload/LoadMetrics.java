@@ -0,0 +1,350 @@
+package com.topcoder.shared.util.dwload;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.topcoder.shared.util.Distribution;
+
+/**
+ * LoadMetrics collects the numbers of a single load run: the wall time and
+ * rows of every step, the rows and row rate of every table loaded, and the
+ * latency of the JDBC prepare, execute and fetch calls of every statement.
+ *
+ * At the end of the run the metrics can be written as one JSON object or as
+ * CSV rows, so that runs can be compared night after night.
+ *
+ * @version $Revision$
+ */
+public final class LoadMetrics {
+    private final String loadName;
+    private final long startTime = System.currentTimeMillis();
+    private long endTime = 0;
+    private boolean succeeded = false;
+
+    private final Map<String, Step> steps = new LinkedHashMap<String, Step>();
+    private final Map<String, TableProgress> tables = new LinkedHashMap<String, TableProgress>();
+    private final Map<String, StatementMetrics> statements = new LinkedHashMap<String, StatementMetrics>();
+
+    /**
+     * Creates the metrics of a load run.
+     *
+     * @param loadName the name of the load, usually its class name
+     */
+    public LoadMetrics(String loadName) {
+        this.loadName = loadName;
+    }
+
+    /**
+     * Starts timing a step.
+     */
+    public synchronized void startStep(String step) {
+        Step s = steps.get(step);
+        if (s == null) {
+            s = new Step();
+            steps.put(step, s);
+        }
+        s.start = System.currentTimeMillis();
+    }
+
+    /**
+     * Stops timing a step.  Steps that weren't started are ignored.
+     */
+    public synchronized void endStep(String step) {
+        Step s = steps.get(step);
+        if (s != null && s.start > 0) {
+            s.elapsed += System.currentTimeMillis() - s.start;
+            s.start = 0;
+        }
+    }
+
+    /**
+     * Records the number of rows loaded so far for a table.  A count lower than the
+     * previous one starts a new pass over the table, its rows add to the ones before.
+     *
+     * @return the progress of the table
+     */
+    public synchronized TableProgress rowsLoaded(String table, int count) {
+        TableProgress t = tables.get(table);
+        if (t == null) {
+            t = new TableProgress();
+            tables.put(table, t);
+        }
+        t.update(count);
+        for (Iterator<Step> it = steps.values().iterator(); it.hasNext();) {
+            Step s = it.next();
+            if (s.start > 0) {
+                s.tables.put(table, t);
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Records how long preparing a statement took.
+     */
+    public void prepared(String sql, long nanos) {
+        getStatement(sql).prepare.add(nanos / 1000);
+    }
+
+    /**
+     * Wraps a statement so that the time spent executing it and fetching its
+     * rows is recorded.
+     */
+    public PreparedStatement wrap(PreparedStatement ps, String sql) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class[]{PreparedStatement.class}, new StatementHandler(ps, getStatement(sql)));
+    }
+
+    /**
+     * Marks the end of the run.
+     */
+    public synchronized void finish(boolean succeeded) {
+        this.succeeded = succeeded;
+        endTime = System.currentTimeMillis();
+    }
+
+    private synchronized StatementMetrics getStatement(String sql) {
+        String key = normalize(sql);
+        StatementMetrics s = statements.get(key);
+        if (s == null) {
+            s = new StatementMetrics();
+            statements.put(key, s);
+        }
+        return s;
+    }
+
+    private static String normalize(String sql) {
+        return sql.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Writes the metrics as a single line JSON object.
+     */
+    public synchronized void writeJson(PrintWriter out) {
+        out.print("{\"load\":" + quote(loadName));
+        out.print(",\"start\":" + startTime);
+        out.print(",\"elapsedMillis\":" + (getEndTime() - startTime));
+        out.print(",\"succeeded\":" + succeeded);
+
+        out.print(",\"steps\":[");
+        for (Iterator<Map.Entry<String, Step>> it = steps.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Step> e = it.next();
+            Step s = e.getValue();
+            out.print("{\"step\":" + quote(e.getKey()) + ",\"elapsedMillis\":" + s.getElapsed() +
+                    ",\"rows\":" + s.getRows() + ",\"rowsPerSecond\":" + rate(s.getRows(), s.getElapsed()) + "}");
+            if (it.hasNext()) out.print(",");
+        }
+        out.print("]");
+
+        out.print(",\"tables\":[");
+        for (Iterator<Map.Entry<String, TableProgress>> it = tables.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, TableProgress> e = it.next();
+            TableProgress t = e.getValue();
+            out.print("{\"table\":" + quote(e.getKey()) + ",\"rows\":" + t.getRows() +
+                    ",\"elapsedMillis\":" + t.getElapsed() + ",\"rowsPerSecond\":" + t.getRate() + "}");
+            if (it.hasNext()) out.print(",");
+        }
+        out.print("]");
+
+        out.print(",\"statements\":[");
+        for (Iterator<Map.Entry<String, StatementMetrics>> it = statements.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, StatementMetrics> e = it.next();
+            StatementMetrics s = e.getValue();
+            out.print("{\"sql\":" + quote(e.getKey()));
+            out.print(",\"prepare\":" + toJson(s.prepare));
+            out.print(",\"execute\":" + toJson(s.execute));
+            out.print(",\"fetch\":" + toJson(s.fetch) + "}");
+            if (it.hasNext()) out.print(",");
+        }
+        out.println("]}");
+    }
+
+    /**
+     * The header of the CSV rows.
+     */
+    public static final String CSV_HEADER =
+            "load,start,kind,name,count,total_millis,rows_per_second,mean_micros,p50_micros,p95_micros,p99_micros,max_micros";
+
+    /**
+     * Writes the metrics as CSV rows, one per step, table and statement phase.
+     */
+    public synchronized void writeCsv(PrintWriter out) {
+        String prefix = csv(loadName) + "," + startTime + ",";
+        out.println(prefix + "load,," + (succeeded ? 1 : 0) + "," + (getEndTime() - startTime) + ",,,,,,");
+        for (Iterator<Map.Entry<String, Step>> it = steps.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Step> e = it.next();
+            Step s = e.getValue();
+            out.println(prefix + "step," + csv(e.getKey()) + "," + s.getRows() + "," + s.getElapsed() + "," +
+                    rate(s.getRows(), s.getElapsed()) + ",,,,,");
+        }
+        for (Iterator<Map.Entry<String, TableProgress>> it = tables.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, TableProgress> e = it.next();
+            TableProgress t = e.getValue();
+            out.println(prefix + "table," + csv(e.getKey()) + "," + t.getRows() + "," + t.getElapsed() + "," +
+                    t.getRate() + ",,,,,");
+        }
+        for (Iterator<Map.Entry<String, StatementMetrics>> it = statements.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, StatementMetrics> e = it.next();
+            StatementMetrics s = e.getValue();
+            writeCsv(out, prefix + "prepare," + csv(e.getKey()), s.prepare);
+            writeCsv(out, prefix + "execute," + csv(e.getKey()), s.execute);
+            writeCsv(out, prefix + "fetch," + csv(e.getKey()), s.fetch);
+        }
+    }
+
+    private static String toJson(Distribution d) {
+        return "{\"count\":" + d.getCount() + ",\"totalMillis\":" + (d.getTotal() / 1000) +
+                ",\"meanMicros\":" + d.getMean() +
+                ",\"p50Micros\":" + d.getPercentile(0.5) + ",\"p95Micros\":" + d.getPercentile(0.95) +
+                ",\"p99Micros\":" + d.getPercentile(0.99) + ",\"maxMicros\":" + d.getMax() + "}";
+    }
+
+    private static void writeCsv(PrintWriter out, String prefix, Distribution d) {
+        if (d.getCount() > 0) {
+            out.println(prefix + "," + d.getCount() + "," + (d.getTotal() / 1000) + ",," + d.getMean() + "," +
+                    d.getPercentile(0.5) + "," + d.getPercentile(0.95) + "," + d.getPercentile(0.99) + "," + d.getMax());
+        }
+    }
+
+    private long getEndTime() {
+        return endTime == 0 ? System.currentTimeMillis() : endTime;
+    }
+
+    private static long rate(long rows, long millis) {
+        return millis <= 0 ? 0 : rows * 1000 / millis;
+    }
+
+    private static String quote(String s) {
+        StringBuffer buf = new StringBuffer(s.length() + 2);
+        buf.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                buf.append('\\').append(c);
+            } else if (c < ' ') {
+                buf.append(' ');
+            } else {
+                buf.append(c);
+            }
+        }
+        return buf.append('"').toString();
+    }
+
+    private static String csv(String s) {
+        return "\"" + s.replaceAll("\"", "\"\"") + "\"";
+    }
+
+    private static final class Step {
+        private long start = 0;
+        private long elapsed = 0;
+        private final Map<String, TableProgress> tables = new LinkedHashMap<String, TableProgress>();
+
+        private long getElapsed() {
+            return start > 0 ? elapsed + System.currentTimeMillis() - start : elapsed;
+        }
+
+        private long getRows() {
+            long rows = 0;
+            for (Iterator<TableProgress> it = tables.values().iterator(); it.hasNext();) {
+                rows += it.next().getRows();
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * The rows loaded into a table and how fast they were loaded.
+     */
+    public static final class TableProgress {
+        private long rows = 0;
+        private int lastCount = 0;
+        private long firstTime = 0;
+        private long lastTime = 0;
+        private long lastLogTime = 0;
+
+        private void update(int count) {
+            long now = System.currentTimeMillis();
+            if (firstTime == 0) {
+                firstTime = now;
+                lastLogTime = now;
+            }
+            rows += count >= lastCount ? count - lastCount : count;
+            lastCount = count;
+            lastTime = now;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getElapsed() {
+            return lastTime - firstTime;
+        }
+
+        public long getRate() {
+            return rate(rows, getElapsed());
+        }
+
+        /**
+         * Tells whether progress should be logged, at most once every interval.
+         */
+        public synchronized boolean shouldLog(long intervalMillis) {
+            if (lastTime - lastLogTime >= intervalMillis) {
+                lastLogTime = lastTime;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The latencies of the calls of a statement, in microseconds.
+     */
+    private static final class StatementMetrics {
+        private final Distribution prepare = new Distribution();
+        private final Distribution execute = new Distribution();
+        private final Distribution fetch = new Distribution();
+    }
+
+    /**
+     * Times the execute calls of a statement, and the fetches of the result sets it returns.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+        private final Object target;
+        private final StatementMetrics metrics;
+
+        private StatementHandler(Object target, StatementMetrics metrics) {
+            this.target = target;
+            this.metrics = metrics;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            boolean timed = name.startsWith("execute") || name.equals("next");
+            long start = timed ? System.nanoTime() : 0;
+            Object ret;
+            try {
+                ret = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (timed) {
+                    (name.equals("next") ? metrics.fetch : metrics.execute).add((System.nanoTime() - start) / 1000);
+                }
+            }
+            if (ret instanceof ResultSet && target instanceof PreparedStatement) {
+                ret = Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class[]{ResultSet.class},
+                        new StatementHandler(ret, metrics));
+            }
+            return ret;
+        }
+    }
+}
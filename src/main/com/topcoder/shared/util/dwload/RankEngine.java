@@ -0,0 +1,215 @@
+package com.topcoder.shared.util.dwload;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * RankEngine computes every rating rank the rank loads need from a single
+ * list of ratings.
+ *
+ * The ratings are sorted once, by rating descending and then by their
+ * position in the list, which is the same order every stable sort of a
+ * filtered copy of the list would produce.  A single pass over that order
+ * then ranks every coder overall, by country, by state and by school, both
+ * among all the coders and among the active ones only.
+ *
+ * Ties, percentiles and rank_no_tie values are the same the row by row
+ * loads used to produce.  Each ranking comes out as a <code>RankRows</code>
+ * set ready to be batch inserted.
+ *
+ * @version $Revision$
+ */
+final class RankEngine {
+    /**
+     * Groupings
+     */
+    static final int OVERALL = 0;
+    static final int COUNTRY = 1;
+    static final int STATE = 2;
+    static final int SCHOOL = 3;
+
+    private static final int GROUPINGS = 4;
+
+    private final int[] order;
+    private final RankRows[] ranks = new RankRows[GROUPINGS * 2];
+
+    /**
+     * Creates the engine and computes all the rankings.  All the arrays are indexed
+     * by the position of the coder in the original list.
+     *
+     * @param coderIds     the coder ids
+     * @param ratings      the ratings
+     * @param active       whether each coder is active
+     * @param countryCodes the country codes, null is a country of its own
+     * @param stateCodes   the state codes, coders with a null or blank state aren't ranked by state
+     * @param schoolIds    the school ids, coders with no positive school id aren't ranked by school
+     */
+    RankEngine(long[] coderIds, int[] ratings, boolean[] active, String[] countryCodes, String[] stateCodes,
+               long[] schoolIds) {
+        int size = coderIds.length;
+
+        // sort once: rating descending, then position in the list
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = (-(long) ratings[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = (int) keys[i];
+        }
+
+        HashMap countries = new HashMap();
+        HashMap states = new HashMap();
+        HashMap schools = new HashMap();
+        int[][] groups = new int[GROUPINGS][size];
+        for (int i = 0; i < size; i++) {
+            groups[OVERALL][i] = 0;
+            groups[COUNTRY][i] = groupOf(countries, countryCodes[i]);
+            String state = stateCodes[i];
+            groups[STATE][i] = state == null || state.trim().equals("") ? -1 : groupOf(states, state);
+            groups[SCHOOL][i] = schoolIds[i] > 0 ? groupOf(schools, new Long(schoolIds[i])) : -1;
+        }
+        Object[][] keysByGroup = new Object[][]{
+                new Object[]{null}, toKeys(countries), toKeys(states), toKeys(schools)};
+
+        for (int g = 0; g < GROUPINGS; g++) {
+            int[] activeGroups = new int[size];
+            for (int i = 0; i < size; i++) {
+                activeGroups[i] = active[i] ? groups[g][i] : -1;
+            }
+            ranks[g * 2] = new RankRows(groups[g], keysByGroup[g]);
+            ranks[g * 2 + 1] = new RankRows(activeGroups, keysByGroup[g]);
+        }
+
+        // a single pass computes every ranking
+        for (int k = 0; k < size; k++) {
+            int i = order[k];
+            for (int r = 0; r < ranks.length; r++) {
+                ranks[r].add(i, coderIds[i], ratings[i]);
+            }
+        }
+    }
+
+    /**
+     * Gets the ranks for a grouping.
+     *
+     * @param grouping   one of <code>OVERALL</code>, <code>COUNTRY</code>, <code>STATE</code> or <code>SCHOOL</code>
+     * @param activeOnly whether just the active coders must be ranked
+     * @return the rows, in rating order
+     */
+    RankRows getRanks(int grouping, boolean activeOnly) {
+        return ranks[grouping * 2 + (activeOnly ? 1 : 0)];
+    }
+
+    /**
+     * Gets the positions of the coders in the original list, sorted by rating descending.
+     */
+    int[] getOrder() {
+        return order;
+    }
+
+    private static int groupOf(HashMap groups, Object key) {
+        Integer id = (Integer) groups.get(key);
+        if (id == null) {
+            id = new Integer(groups.size());
+            groups.put(key, id);
+        }
+        return id.intValue();
+    }
+
+    private static Object[] toKeys(HashMap groups) {
+        Object[] keys = new Object[groups.size()];
+        for (Iterator it = groups.entrySet().iterator(); it.hasNext();) {
+            Map.Entry e = (Map.Entry) it.next();
+            keys[((Integer) e.getValue()).intValue()] = e.getKey();
+        }
+        return keys;
+    }
+
+    /**
+     * The result of a single ranking.  Row i holds the coder id, the rank, the
+     * position within the group ignoring ties, the percentile and the group key:
+     * the country code, the state code or a Long school id.
+     */
+    static final class RankRows {
+        private final int[] groupOf;
+        private final Object[] groupKeys;
+        private final int[] groupSize;
+        private final int[] seen;
+        private final int[] lastRating;
+        private final int[] lastRank;
+
+        private final long[] coderIds;
+        private final int[] rank;
+        private final int[] rankNoTie;
+        private final int[] group;
+        private int rows = 0;
+
+        private RankRows(int[] groupOf, Object[] groupKeys) {
+            this.groupOf = groupOf;
+            this.groupKeys = groupKeys;
+            groupSize = new int[groupKeys.length];
+            seen = new int[groupKeys.length];
+            lastRating = new int[groupKeys.length];
+            lastRank = new int[groupKeys.length];
+
+            int size = 0;
+            for (int i = 0; i < groupOf.length; i++) {
+                if (groupOf[i] >= 0) {
+                    groupSize[groupOf[i]]++;
+                    size++;
+                }
+            }
+            coderIds = new long[size];
+            rank = new int[size];
+            rankNoTie = new int[size];
+            group = new int[size];
+        }
+
+        private void add(int i, long coderId, int rating) {
+            int g = groupOf[i];
+            if (g < 0) {
+                return;
+            }
+            seen[g]++;
+            // the rank loads always started from a rating of 0, keep it that way
+            if (rating != lastRating[g]) {
+                lastRating[g] = rating;
+                lastRank[g] = seen[g];
+            }
+            coderIds[rows] = coderId;
+            rank[rows] = lastRank[g];
+            rankNoTie[rows] = seen[g];
+            group[rows] = g;
+            rows++;
+        }
+
+        int size() {
+            return rows;
+        }
+
+        long getCoderId(int i) {
+            return coderIds[i];
+        }
+
+        int getRank(int i) {
+            return rank[i];
+        }
+
+        int getRankNoTie(int i) {
+            return rankNoTie[i];
+        }
+
+        float getPercentile(int i) {
+            int coderCount = groupSize[group[i]];
+            return (float) 100 * ((float) (coderCount - rank[i]) / coderCount);
+        }
+
+        Object getGroupKey(int i) {
+            return groupKeys[group[i]];
+        }
+    }
+}
@@ -66,9 +66,24 @@ public abstract class TCLoad {
 
     /**
      * How often do you want a printout of the number of rows loaded during the
-     * course of a given table load. This is in number of rows.
+     * course of a given table load. This is in milliseconds.
      */
-    private static final int LOAD_PRINT_INTERVAL = 25;
+    private static final long PROGRESS_LOG_INTERVAL = 10000;
+
+    /**
+     * The metrics of this load run.
+     */
+    private LoadMetrics fMetrics = new LoadMetrics(getClass().getName());
+
+    /**
+     * How many rows to add to a batch before sending it to the database.
+     */
+    protected static final int BATCH_SIZE = 1000;
+
+    /**
+     * How many rows a step loads between two high water marks.
+     */
+    protected static final int CHECKPOINT_INTERVAL = 1000;
 
     /**
      * Algorithm types
@@ -81,6 +96,15 @@ public abstract class TCLoad {
      * Round types
      */
     protected static final int ROUND_TYPE_MARATHON_TOURNAMENT = 19;
+
+    /**
+     * The job the checkpoints of this load are recorded for, null when the load
+     * doesn't use checkpoints.  The completed steps and the high water marks
+     * of the job are kept in memory as step name -> Boolean and step name -> Long.
+     */
+    private String fCheckpointJob = null;
+    private Hashtable fCompleteSteps = new Hashtable();
+    private Hashtable fHighWaterMarks = new Hashtable();
     
     // PUBLIC METHODS
 
@@ -103,6 +127,13 @@ public abstract class TCLoad {
      */
     public abstract boolean setParameters(Hashtable params);
 
+    /**
+     * Gets the metrics of this load run: step timings, row rates and statement latencies.
+     */
+    public LoadMetrics getMetrics() {
+        return fMetrics;
+    }
+
     /**
      * Call this method to retrieve the reason the load failed. This is set by
      * derived load classes.
@@ -256,12 +287,14 @@ public abstract class TCLoad {
             return null;
         PreparedStatement ps = null;
         try {
+            long start = System.nanoTime();
             ps = conn.prepareStatement(sqlStr);
+            fMetrics.prepared(sqlStr, System.nanoTime() - start);
         } catch (SQLException e) {
             log.error("Error for query: \n" + sqlStr);
             throw e;
         }
-        return ps;
+        return fMetrics.wrap(ps, sqlStr);
     }
 
     /**
@@ -337,9 +370,14 @@ public abstract class TCLoad {
         return b;
     }
 
+    /**
+     * Records the number of rows loaded so far for a table, and logs it at most
+     * once every PROGRESS_LOG_INTERVAL for each table.
+     */
     protected void printLoadProgress(int count, String table) {
-        if (count % LOAD_PRINT_INTERVAL == 0) {
-            log.info("Loaded " + count + " rows for " + table + "...");
+        LoadMetrics.TableProgress progress = fMetrics.rowsLoaded(table, count);
+        if (progress.shouldLog(PROGRESS_LOG_INTERVAL)) {
+            log.info("Loaded " + count + " rows for " + table + " (" + progress.getRate() + " rows/s)...");
         }
     }
 
@@ -499,6 +537,24 @@ public abstract class TCLoad {
         return rs;
     }
 
+    /**
+     * Executes the batch of a statement and returns the number of rows it
+     * changed.  Drivers that can't tell how many rows a statement changed
+     * count as one.
+     */
+    protected int executeBatch(PreparedStatement ps) throws SQLException {
+        int[] counts = ps.executeBatch();
+        int ret = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                ret++;
+            } else if (counts[i] > 0) {
+                ret += counts[i];
+            }
+        }
+        return ret;
+    }
+
     /**
      * Gets the type for this round (high school or regular).
      *
@@ -573,6 +629,192 @@ public abstract class TCLoad {
         }
     }
 
+    // CHECKPOINTS
+
+    /**
+     * Starts recording checkpoints for this load.  Checkpoints are kept in the
+     * load_checkpoint table of the target database:
+     *
+     * <pre>
+     * create table load_checkpoint (
+     *     job_name varchar(128) not null,
+     *     step_name varchar(64) not null,
+     *     complete_ind decimal(1,0) not null,
+     *     high_water_mark decimal(18,0),
+     *     modify_date datetime year to fraction default current year to fraction,
+     *     primary key (job_name, step_name)
+     * );
+     * </pre>
+     *
+     * A step is either complete or has a high water mark, the last key it has fully
+     * loaded.  When <code>resume</code> is set the checkpoints left by a previous run
+     * of the same job that failed are read so that the load can skip the work it
+     * already did, otherwise they are discarded.  If the table can't be used the load
+     * runs without checkpoints.
+     *
+     * @param job    identifies the job within the load class, like the round being loaded
+     * @param resume whether to resume from the checkpoints of a previous run
+     */
+    protected void startCheckpoints(String job, boolean resume) throws Exception {
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        fCheckpointJob = getClass().getName() + " " + job;
+        fCompleteSteps.clear();
+        fHighWaterMarks.clear();
+
+        try {
+            if (resume) {
+                ps = prepareStatement("SELECT step_name, complete_ind, high_water_mark FROM load_checkpoint " +
+                        "WHERE job_name = ?", TARGET_DB);
+                ps.setString(1, fCheckpointJob);
+                rs = ps.executeQuery();
+                while (rs.next()) {
+                    if (rs.getInt(2) == 1) {
+                        fCompleteSteps.put(rs.getString(1), Boolean.TRUE);
+                    } else if (rs.getString(3) != null) {
+                        fHighWaterMarks.put(rs.getString(1), new Long(rs.getLong(3)));
+                    }
+                }
+                if (!fCompleteSteps.isEmpty() || !fHighWaterMarks.isEmpty()) {
+                    log.info("Resuming " + fCheckpointJob + ": " + fCompleteSteps.size() + " steps complete, " +
+                            fHighWaterMarks.size() + " steps partially loaded");
+                }
+            } else {
+                clearCheckpoints();
+            }
+        } catch (SQLException sqle) {
+            DBMS.printSqlException(true, sqle);
+            log.warn("Unable to read the checkpoints of " + fCheckpointJob + ", running without them.");
+            fCheckpointJob = null;
+            fCompleteSteps.clear();
+            fHighWaterMarks.clear();
+        } finally {
+            close(rs);
+            close(ps);
+        }
+    }
+
+    /**
+     * Tells whether a previous run of this job already completed a step.
+     */
+    protected boolean isStepComplete(String step) {
+        if (fCheckpointJob != null && fCompleteSteps.containsKey(step)) {
+            log.info("Skipping " + step + ", it was completed by a previous run.");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records that a step of this job is starting, its time runs until
+     * {@link #completeStep(String)}.
+     */
+    protected void startStep(String step) {
+        fMetrics.startStep(step);
+    }
+
+    /**
+     * Records that a step of this job is complete.
+     */
+    protected void completeStep(String step) throws Exception {
+        fMetrics.endStep(step);
+        if (fCheckpointJob != null) {
+            saveCheckpoint(step, true, null);
+            fCompleteSteps.put(step, Boolean.TRUE);
+            fHighWaterMarks.remove(step);
+        }
+    }
+
+    /**
+     * Gets the last key a previous run of this job fully loaded for a step.
+     *
+     * @param step         the step
+     * @param defaultValue what to return if there is no high water mark for the step
+     */
+    protected long getHighWaterMark(String step, long defaultValue) {
+        Long mark = fCheckpointJob == null ? null : (Long) fHighWaterMarks.get(step);
+        if (mark == null) {
+            return defaultValue;
+        }
+        log.info("Resuming " + step + " after key " + mark);
+        return mark.longValue();
+    }
+
+    /**
+     * Records the last key fully loaded by a step.  All the rows up to that key
+     * must have been written before calling this.
+     */
+    protected void setHighWaterMark(String step, long mark) throws Exception {
+        if (fCheckpointJob != null) {
+            saveCheckpoint(step, false, new Long(mark));
+            fHighWaterMarks.put(step, new Long(mark));
+        }
+    }
+
+    /**
+     * Removes the checkpoints of this job, call it once the load has succeeded.
+     */
+    protected void finishCheckpoints() throws Exception {
+        if (fCheckpointJob != null) {
+            try {
+                clearCheckpoints();
+            } catch (SQLException sqle) {
+                DBMS.printSqlException(true, sqle);
+                throw new Exception("Failed to clear the checkpoints of " + fCheckpointJob + ".\n" +
+                        sqle.getMessage());
+            }
+            fCompleteSteps.clear();
+            fHighWaterMarks.clear();
+        }
+    }
+
+    private void clearCheckpoints() throws SQLException {
+        PreparedStatement ps = null;
+        try {
+            ps = prepareStatement("DELETE FROM load_checkpoint WHERE job_name = ?", TARGET_DB);
+            ps.setString(1, fCheckpointJob);
+            ps.executeUpdate();
+        } finally {
+            close(ps);
+        }
+    }
+
+    private void saveCheckpoint(String step, boolean complete, Long mark) throws Exception {
+        PreparedStatement ps = null;
+        try {
+            ps = prepareStatement("UPDATE load_checkpoint SET complete_ind = ?, high_water_mark = ?, " +
+                    "modify_date = current WHERE job_name = ? AND step_name = ?", TARGET_DB);
+            ps.setInt(1, complete ? 1 : 0);
+            if (mark == null) {
+                ps.setNull(2, java.sql.Types.DECIMAL);
+            } else {
+                ps.setLong(2, mark.longValue());
+            }
+            ps.setString(3, fCheckpointJob);
+            ps.setString(4, step);
+            if (ps.executeUpdate() == 0) {
+                close(ps);
+                ps = prepareStatement("INSERT INTO load_checkpoint (job_name, step_name, complete_ind, " +
+                        "high_water_mark) VALUES (?, ?, ?, ?)", TARGET_DB);
+                ps.setString(1, fCheckpointJob);
+                ps.setString(2, step);
+                ps.setInt(3, complete ? 1 : 0);
+                if (mark == null) {
+                    ps.setNull(4, java.sql.Types.DECIMAL);
+                } else {
+                    ps.setLong(4, mark.longValue());
+                }
+                ps.executeUpdate();
+            }
+        } catch (SQLException sqle) {
+            DBMS.printSqlException(true, sqle);
+            throw new Exception("Failed to save the checkpoint of " + step + " for " + fCheckpointJob + ".\n" +
+                    sqle.getMessage());
+        } finally {
+            close(ps);
+        }
+    }
+
     // PRIVATE METHODS
 
     /**
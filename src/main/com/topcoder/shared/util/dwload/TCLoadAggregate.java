@@ -61,6 +61,8 @@ public class TCLoadAggregate extends TCLoad {
 
     private boolean FULL_LOAD = false;//fullload
     private boolean ONLY_TEAM_ROUND = false;
+    private boolean INCREMENTAL = false;//incremental
+    private boolean RESUME = true;//resume
     private int algoType = 0; // 1 for regular, 2 for hs, 3 for marathon
 
     /**
@@ -81,7 +83,9 @@ public class TCLoadAggregate extends TCLoad {
                         "  [-passsystest number]    : Problem_status of passed system test  (150)\n" +
                         "  [-failsystest number]    : Problem_status of failed system test  (160)\n" +
                         "  [-fullload boolean] : true-clean round load, false-selective  (false)\n" +
-                        "  [-lnlyteamround boolean] : true: just loads the team_round table  (false)\n");
+                        "  [-lnlyteamround boolean] : true: just loads the team_round table  (false)\n" +
+                        "  [-incremental boolean] : true-only rebuild streaks of this round's coders  (false)\n" +
+                        "  [-resume boolean]      : true-resume a failed load of the round, false-start over  (true)\n");
     }
 
     /**
@@ -166,6 +170,18 @@ public class TCLoadAggregate extends TCLoad {
                 log.info("New fullload onlyteamround is " + ONLY_TEAM_ROUND);
             }
 
+            tmpBool = retrieveBooleanParam("incremental", params, true);
+            if (tmpBool != null) {
+                INCREMENTAL = tmpBool.booleanValue();
+                log.info("New incremental flag is " + INCREMENTAL);
+            }
+
+            tmpBool = retrieveBooleanParam("resume", params, true);
+            if (tmpBool != null) {
+                RESUME = tmpBool.booleanValue();
+                log.info("New resume flag is " + RESUME);
+            }
+
         } catch (Exception ex) {
             setReasonFailed(ex.getMessage());
             return false;
@@ -185,52 +201,136 @@ public class TCLoadAggregate extends TCLoad {
                 return;
             }
             algoType = getRoundType(fRoundId);
-            loadRoomResult2();
-            loadCoderDivision();
 
-            loadRoundDivision();
+            startCheckpoints("round " + fRoundId, RESUME);
+
+            if (!isStepComplete("loadRoomResult2")) {
+                startStep("loadRoomResult2");
+                loadRoomResult2();
+                completeStep("loadRoomResult2");
+            }
+
+            if (!isStepComplete("loadCoderDivision")) {
+                startStep("loadCoderDivision");
+                loadCoderDivision();
+                completeStep("loadCoderDivision");
+            }
+
+            if (!isStepComplete("loadRoundDivision")) {
+                startStep("loadRoundDivision");
+                loadRoundDivision();
+                completeStep("loadRoundDivision");
+            }
 
-            loadRoomResult3();
+            if (!isStepComplete("loadRoomResult3")) {
+                startStep("loadRoomResult3");
+                loadRoomResult3();
+                completeStep("loadRoomResult3");
+            }
 
-            loadCoderProblemSummary();
+            if (!isStepComplete("loadCoderProblemSummary")) {
+                startStep("loadCoderProblemSummary");
+                loadCoderProblemSummary();
+                completeStep("loadCoderProblemSummary");
+            }
 
-            loadCoderLevel();
+            if (!isStepComplete("loadCoderLevel")) {
+                startStep("loadCoderLevel");
+                loadCoderLevel();
+                completeStep("loadCoderLevel");
+            }
 
             if (algoType == TC_RATING_TYPE_ID) {
-                loadStreak();
+                // streaks can only be updated in place when nothing was loaded after this round
+                boolean incremental = INCREMENTAL && isMostRecentRound();
+                if (INCREMENTAL && !incremental) {
+                    log.info("Round " + fRoundId + " is not the most recent, streaks will be fully rebuilt.");
+                }
 
-                loadRatingIncreaseStreak(true);
+                if (!isStepComplete("loadStreak")) {
+                    startStep("loadStreak");
+                    loadStreak(incremental);
+                    completeStep("loadStreak");
+                }
 
-                loadRatingIncreaseStreak(false);
+                if (!isStepComplete("loadRatingIncreaseStreak srm")) {
+                    startStep("loadRatingIncreaseStreak srm");
+                    loadRatingIncreaseStreak(true, incremental);
+                    completeStep("loadRatingIncreaseStreak srm");
+                }
 
-                loadRatingDecreaseStreak(true);
+                if (!isStepComplete("loadRatingIncreaseStreak")) {
+                    startStep("loadRatingIncreaseStreak");
+                    loadRatingIncreaseStreak(false, incremental);
+                    completeStep("loadRatingIncreaseStreak");
+                }
 
-                loadRatingDecreaseStreak(false);
+                if (!isStepComplete("loadRatingDecreaseStreak srm")) {
+                    startStep("loadRatingDecreaseStreak srm");
+                    loadRatingDecreaseStreak(true, incremental);
+                    completeStep("loadRatingDecreaseStreak srm");
+                }
+
+                if (!isStepComplete("loadRatingDecreaseStreak")) {
+                    startStep("loadRatingDecreaseStreak");
+                    loadRatingDecreaseStreak(false, incremental);
+                    completeStep("loadRatingDecreaseStreak");
+                }
 
-                loadConsecutiveSRMAppearances();
+                if (!isStepComplete("loadConsecutiveSRMAppearances")) {
+                    startStep("loadConsecutiveSRMAppearances");
+                    loadConsecutiveSRMAppearances(incremental);
+                    completeStep("loadConsecutiveSRMAppearances");
+                }
             }
 
-            loadRoundProblem();
+            if (!isStepComplete("loadRoundProblem")) {
+                startStep("loadRoundProblem");
+                loadRoundProblem();
+                completeStep("loadRoundProblem");
+            }
 
-            loadProblemLanguage();
+            if (!isStepComplete("loadProblemLanguage")) {
+                startStep("loadProblemLanguage");
+                loadProblemLanguage();
+                completeStep("loadProblemLanguage");
+            }
 
-            loadCoderProblem();
+            if (!isStepComplete("loadCoderProblem")) {
+                startStep("loadCoderProblem");
+                loadCoderProblem();
+                completeStep("loadCoderProblem");
+            }
 
             if (algoType == HS_RATING_TYPE_ID) {
-                loadTeamRound();
-                loadSeasonRatingHistory();
+                if (!isStepComplete("loadTeamRound")) {
+                    startStep("loadTeamRound");
+                    loadTeamRound();
+                    completeStep("loadTeamRound");
+                }
+                if (!isStepComplete("loadSeasonRatingHistory")) {
+                    startStep("loadSeasonRatingHistory");
+                    loadSeasonRatingHistory();
+                    completeStep("loadSeasonRatingHistory");
+                }
             }
 
             //if running for an old round, the rating history load can not be run.
             //if historic ratings have changed, then
             if (isMostRecentRound()) {
-                loadRatingHistory();
+                if (!isStepComplete("loadRatingHistory")) {
+                    startStep("loadRatingHistory");
+                    loadRatingHistory();
+                    completeStep("loadRatingHistory");
+                }
             } else {
                 log.info("\n\n\n\n\n\nIMPORTANT MESSAGE");
                 log.info("You're running this load for a round that is not the most recent.  If the historic " +
                         "rating information has changed, then you'll need to update the algo_rating_history table " +
                         "by hand *BEFORE* you run the rank load.");
             }
+
+            finishCheckpoints();
             log.info("SUCCESS: Aggregate load ran successfully.");
         } catch (Exception ex) {
             setReasonFailed(ex.getMessage());
@@ -1157,169 +1257,45 @@ public class TCLoadAggregate extends TCLoad {
     }
 
     /**
-     * This method loads the 'streak' table
+     * This method loads the 'streak' table with consecutive room wins.
+     * Win streaks will include unrated rounds.
      */
-    private void loadStreak() throws Exception {
-        int retVal = 0;
-        int count = 0;
-        PreparedStatement psSel = null;
-        PreparedStatement psSel2 = null;
-        PreparedStatement psDel = null;
-        PreparedStatement psIns = null;
-        ResultSet rs = null;
-        ResultSet rs2 = null;
-        StringBuffer query = null;
-
-        try {
-            query = new StringBuffer(100);
-            query.append("SELECT rr.coder_id ");      // 1
-            query.append("       ,rr.round_id ");     // 2
-            query.append("       ,rm.division_id ");  // 3
-            query.append("       ,rr.room_placed ");  // 4
-            query.append("       ,r.calendar_id");
-            query.append("       ,r.round_id");
-            query.append("  FROM room_result rr ");
-            query.append("       ,room rm ");
-            query.append("       ,round r ");
-            query.append(" WHERE rr.room_id = rm.room_id ");
-            query.append("   AND r.round_type_id = " + SINGLE_ROUND_MATCH);
-            query.append("   AND r.round_id = rr.round_id ");
-            query.append(" ORDER BY rr.coder_id ");
-            query.append("          ,r.calendar_id asc ");
-            query.append("          ,r.round_id asc ");
-            psSel = prepareStatement(query.toString(), SOURCE_DB);
-
-            query = new StringBuffer(100);
-            query.append("INSERT INTO streak ");
-            query.append("      (coder_id ");         // 1
-            query.append("       ,streak_type_id ");  // 2
-            query.append("       ,start_round_id ");  // 3
-            query.append("       ,end_round_id ");    // 4
-            query.append("       ,length ");          // 5
-            query.append("       ,is_current) ");     // 6
-            query.append("VALUES (?,?,?,?,?,?)");  // 6 total values
-            psIns = prepareStatement(query.toString(), TARGET_DB);
-
-            query = new StringBuffer(100);
-            query.append("SELECT round_id FROM round ");
-            query.append("WHERE calendar_id=(SELECT max(r.calendar_id) ");
-            query.append("       FROM room_result rr ,round r ");
-            query.append("       WHERE rr.round_id = r.round_id ");
-            query.append(" AND r.round_type_id =" + SINGLE_ROUND_MATCH);
-            query.append("       AND rr.coder_id = ?)        ");
-            psSel2 = prepareStatement(query.toString(), TARGET_DB);
-
-            query = new StringBuffer(100);
-            query.append("DELETE FROM streak WHERE streak_type_id in (" + CONSEC_WINS_DIV1 + "," + CONSEC_WINS_DIV2 + ")");
-
-
-            psDel = prepareStatement(query.toString(), TARGET_DB);
-
-            // On to the load. First, we want to delete the whole table so
-            // we can reload it.
-            // Win streaks will include unrated rounds.
-            psDel.executeUpdate();
-
-            rs = psSel.executeQuery();
-
-            int cur_division_id = -1, cur_coder_id = -1;
-            int start_round_id = -1, end_round_id = -1;
-            int numWins = 0;
-
-            while (rs.next()) {
-                int coder_id = rs.getInt(1);
-                int round_id = rs.getInt(2);
-                int division_id = rs.getInt(3);
-                int room_placed = rs.getInt(4);
-
-                // The first thing we do is check to see if we are still with
-                // the same coder and in the same division. Only with those
-                // constraints can a win streak continue. And then, iff room
-                // placed is 1 do we continue the streak.
-                if ((cur_coder_id == -1 || coder_id == cur_coder_id) &&
-                        (cur_division_id == -1 || division_id == cur_division_id) &&
-                        room_placed == 1) {
-                    cur_coder_id = coder_id;
-                    cur_division_id = division_id;
-                    numWins++;
-                    if (start_round_id == -1)
-                        start_round_id = round_id;
-                    end_round_id = round_id;
-                } else if (numWins > 1) {  //we have a streak, load it up
-                    int streak_type_id = -1;
-                    if (cur_division_id == 1)
-                        streak_type_id = CONSEC_WINS_DIV1;
-                    else if (cur_division_id == 2)
-                        streak_type_id = CONSEC_WINS_DIV2;
-                    else
-                        throw new SQLException("Unknown division_id " + cur_division_id +
-                                ". Code for streak table needs to be " +
-                                "modified to accomodate new division.");
-
-                    // Get the most recent round_id information for the coder.
-                    // We compare this against the ending round id for a
-                    // streak. If they match, the streak is considered current.
-                    psSel2.setInt(1, coder_id);
-                    rs2 = psSel2.executeQuery();
-                    int latest_round_id = -1;
-                    if (rs2.next()) {
-                        latest_round_id = rs2.getInt(1);
-                    }
-                    close(rs2);
-
-
-                    psIns.clearParameters();
-                    psIns.setInt(1, cur_coder_id);
-                    psIns.setInt(2, streak_type_id);
-                    psIns.setInt(3, start_round_id);
-                    psIns.setInt(4, end_round_id);
-                    psIns.setInt(5, numWins);
-                    psIns.setInt(6, (end_round_id == latest_round_id ? 1 : 0));
+    private void loadStreak(boolean incremental) throws Exception {
+        AlgoStreak[] streaks = new AlgoStreak[]{
+                new WinStreak(CONSEC_WINS_DIV1, 1),
+                new WinStreak(CONSEC_WINS_DIV2, 2)};
+        loadStreaks(buildWinStreakQuery(false), buildWinStreakQuery(true), streaks,
+                CONSEC_WINS_DIV1 + "," + CONSEC_WINS_DIV2, "streak", incremental);
+    }
 
-                    retVal = psIns.executeUpdate();
-                    count += retVal;
-                    if (retVal != 1) {
-                        throw new SQLException("TCLoadAggregate: Insert for " +
-                                "coder_id " + coder_id +
-                                ", streak_type_id " + streak_type_id +
-                                " modified " + retVal + " rows, not one.");
-                    }
+    private String buildWinStreakQuery(boolean singleCoder) {
+        StringBuffer query = new StringBuffer(100);
+        query.append("SELECT rr.coder_id ");             // 1
+        query.append("       ,rr.round_id ");            // 2
+        query.append("       ,rr.room_placed AS placed "); // 3
+        query.append("       ,0 AS rating ");            // 4
+        query.append("       ,r.round_type_id ");        // 5
+        query.append("       ,rm.division_id ");         // 6
+        query.append("       ,r.calendar_id ");          // 7
+        query.append("  FROM room_result rr ");
+        query.append("       ,room rm ");
+        query.append("       ,round r ");
+        query.append(" WHERE rr.room_id = rm.room_id ");
+        query.append("   AND r.round_type_id = " + SINGLE_ROUND_MATCH);
+        query.append("   AND r.round_id = rr.round_id ");
+        appendStreakOrder(query, singleCoder);
+        return query.toString();
+    }
 
-                    printLoadProgress(count, "streak");
-
-                    // if this record is a first place, start a new streak
-                    if (room_placed == 1) {
-                        cur_coder_id = coder_id;
-                        cur_division_id = division_id;
-                        start_round_id = round_id;
-                        end_round_id = round_id;
-                        numWins = 1;
-                    } else {
-                        cur_coder_id = -1;
-                        cur_division_id = -1;
-                        start_round_id = -1;
-                        end_round_id = -1;
-                        numWins = 0;
-                    }
-                } else {
-                    cur_coder_id = -1;
-                    cur_division_id = -1;
-                    start_round_id = -1;
-                    end_round_id = -1;
-                    numWins = 0;
-                }
-            }
-            log.info("Records loaded for streak: " + count);
-        } catch (SQLException sqle) {
-            DBMS.printSqlException(true, sqle);
-            throw new Exception("Load of 'streak' table failed.\n" +
-                    sqle.getMessage());
-        } finally {
-            close(rs);
-            close(psSel);
-            close(psSel2);
-            close(psIns);
-        }
+    /**
+     * This method loads the 'streak' table
+     * Unrated rounds are not considered.  --csj
+     */
+    private void loadRatingIncreaseStreak(boolean srmOnly, boolean incremental) throws Exception {
+        int streakTypeId = srmOnly ? RATING_INCREASE_SRM_ONLY : RATING_INCREASE;
+        AlgoStreak[] streaks = new AlgoStreak[]{new RatingChangeStreak(streakTypeId, true)};
+        loadStreaks(buildRatingChangeQuery(srmOnly, true, false), buildRatingChangeQuery(srmOnly, true, true), streaks,
+                String.valueOf(streakTypeId), "rating increase " + (srmOnly ? "(srm only)" : "") + " streak", incremental);
     }
 
 
@@ -1327,315 +1303,141 @@ public class TCLoadAggregate extends TCLoad {
      * This method loads the 'streak' table
      * Unrated rounds are not considered.  --csj
      */
-    private void loadRatingIncreaseStreak(boolean srmOnly) throws Exception {
-        int retVal = 0;
-        int count = 0;
-        PreparedStatement psSel = null;
-        PreparedStatement psSel2 = null;
-        PreparedStatement psDel = null;
-        PreparedStatement psIns = null;
-        ResultSet rs = null;
-        ResultSet rs2 = null;
-        StringBuffer query = null;
+    private void loadRatingDecreaseStreak(boolean srmOnly, boolean incremental) throws Exception {
+        int streakTypeId = srmOnly ? RATING_DECREASE_SRM_ONLY : RATING_DECREASE;
+        AlgoStreak[] streaks = new AlgoStreak[]{new RatingChangeStreak(streakTypeId, false)};
+        loadStreaks(buildRatingChangeQuery(srmOnly, false, false), buildRatingChangeQuery(srmOnly, false, true), streaks,
+                String.valueOf(streakTypeId), "rating decrease " + (srmOnly ? "(srm only)" : "") + " streak", incremental);
+    }
 
-        try {
-            query = new StringBuffer(100);
-            query.append("SELECT rr.coder_id ");      // 1
-            query.append("       ,rr.round_id ");     // 2
-            query.append("       ,rr.old_rating");    // 3
-            query.append("       ,rr.new_rating");    // 4
-            query.append("       ,r.calendar_id");    // 5
-            query.append("       ,r.round_id");       // 6
-            query.append("  FROM room_result rr ");
-            query.append("       ,round r ");
-            if (srmOnly)
-                query.append(" WHERE r.round_type_id in (" + SINGLE_ROUND_MATCH + ")");
-            else
-                query.append(" WHERE r.round_type_id in (" + SINGLE_ROUND_MATCH + ", " + TOURNAMENT_ROUND + ", " + LONG_ROUND + ")");
-            query.append("   AND r.round_id = rr.round_id ");
-            query.append("   AND rr.rated_flag = 1 ");   // --csj
+    private String buildRatingChangeQuery(boolean srmOnly, boolean increase, boolean singleCoder) {
+        StringBuffer query = new StringBuffer(100);
+        query.append("SELECT rr.coder_id ");      // 1
+        query.append("       ,rr.round_id ");     // 2
+        query.append("       ,0 AS placed ");     // 3
+        query.append("       ,rr.new_rating - rr.old_rating AS rating "); // 4
+        query.append("       ,r.round_type_id "); // 5
+        query.append("       ,0 AS division_id "); // 6
+        query.append("       ,r.calendar_id ");   // 7
+        query.append("  FROM room_result rr ");
+        query.append("       ,round r ");
+        if (srmOnly)
+            query.append(" WHERE r.round_type_id in (" + SINGLE_ROUND_MATCH + ")");
+        else
+            query.append(" WHERE r.round_type_id in (" + SINGLE_ROUND_MATCH + ", " + TOURNAMENT_ROUND + ", " + LONG_ROUND + ")");
+        query.append("   AND r.round_id = rr.round_id ");
+        query.append("   AND rr.rated_flag = 1 ");   // --csj
+        if (increase) {
             query.append("   AND rr.old_rating > 0 ");   // avoid counting the first round as a rating increase.
-            query.append(" ORDER BY rr.coder_id ");
-            query.append("          ,r.calendar_id asc");
-            query.append("          ,r.round_id asc");
-            psSel = prepareStatement(query.toString(), SOURCE_DB);
-
-            query = new StringBuffer(100);
-            query.append("INSERT INTO streak ");
-            query.append("      (coder_id ");         // 1
-            query.append("       ,streak_type_id ");  // 2
-            query.append("       ,start_round_id ");  // 3
-            query.append("       ,end_round_id ");    // 4
-            query.append("       ,length ");          // 5
-            query.append("       ,is_current) ");     // 6
-            query.append("VALUES (?,?,?,?,?,?)");  // 6 total values
-            psIns = prepareStatement(query.toString(), TARGET_DB);
-
-
-            query = new StringBuffer(100);
-            query.append("SELECT round_id FROM round ");
-            query.append("WHERE calendar_id=(SELECT max(r.calendar_id) ");
-            query.append("       FROM room_result rr ,round r ");
-            query.append("       WHERE rr.round_id = r.round_id ");
-            if (srmOnly)
-                query.append(" AND r.round_type_id in (" + SINGLE_ROUND_MATCH + ")");
-            else
-                query.append(" AND r.round_type_id in (" + SINGLE_ROUND_MATCH + ", " + TOURNAMENT_ROUND + ", " + LONG_ROUND + ")");
-
-            query.append("       AND rr.coder_id = ?)        ");
-
-            psSel2 = prepareStatement(query.toString(), TARGET_DB);
-
-            query = new StringBuffer(100);
-            if (srmOnly)
-                query.append("DELETE FROM streak WHERE streak_type_id in (" + RATING_INCREASE_SRM_ONLY + ")");
-            else
-                query.append("DELETE FROM streak WHERE streak_type_id in (" + RATING_INCREASE + ")");
-
-            psDel = prepareStatement(query.toString(), TARGET_DB);
-
-            // On to the load. First, we want to delete the whole table so
-            // we can reload it.
-            psDel.executeUpdate();
-
-            rs = psSel.executeQuery();
-
-            int cur_coder_id = -1;
-            int start_round_id = -1, end_round_id = -1;
-            int numConsecutive = 0;
-
-            while (rs.next()) {
-                int coder_id = rs.getInt("coder_id");
-                int round_id = rs.getInt("round_id");
-                int oldRating = rs.getInt("old_rating");
-                int newRating = rs.getInt("new_rating");
-
-                // The first thing we do is check to see if we are still with
-                // the same coder and in the same division. Only with those
-                // constraints can a win streak continue. And then, iff new rating
-                // is greater than old rating do we continue the streak.
-                if ((cur_coder_id == -1 || coder_id == cur_coder_id) &&
-                        newRating > oldRating) {
-                    cur_coder_id = coder_id;
-                    numConsecutive++;
-                    if (start_round_id == -1)
-                        start_round_id = round_id;
-                    end_round_id = round_id;
-                } else if (numConsecutive > 1) {  //we have a streak, load it up
-                    int streak_type_id = -1;
-                    streak_type_id = srmOnly ? RATING_INCREASE_SRM_ONLY : RATING_INCREASE;
-
-                    // Get the most recent round_id information for the coder.
-                    // We compare this against the ending round id for a
-                    // streak. If they match, the streak is considered current.
-                    psSel2.setInt(1, coder_id);
-                    rs2 = psSel2.executeQuery();
-                    int latest_round_id = -1;
-                    if (rs2.next()) {
-                        latest_round_id = rs2.getInt(1);
-                    }
-                    close(rs2);
-
-                    psIns.clearParameters();
-                    psIns.setInt(1, cur_coder_id);
-                    psIns.setInt(2, streak_type_id);
-                    psIns.setInt(3, start_round_id);
-                    psIns.setInt(4, end_round_id);
-                    psIns.setInt(5, numConsecutive);
-                    psIns.setInt(6, (end_round_id == latest_round_id ? 1 : 0));
-
-                    retVal = psIns.executeUpdate();
-                    count += retVal;
-                    if (retVal != 1) {
-                        throw new SQLException("TCLoadAggregate: Insert for " +
-                                "coder_id " + coder_id +
-                                ", streak_type_id " + streak_type_id +
-                                " modified " + retVal + " rows, not one.");
-                    }
-
-                    printLoadProgress(count, "rating increase " + (srmOnly ? "(srm only)" : "") + " streak");
-
-                    // if this record is an increase, start a new streak
-                    if (newRating > oldRating) {
-                        cur_coder_id = coder_id;
-                        start_round_id = round_id;
-                        end_round_id = round_id;
-                        numConsecutive = 1;
-                    } else {
-                        cur_coder_id = -1;
-                        start_round_id = -1;
-                        end_round_id = -1;
-                        numConsecutive = 0;
-                    }
-                } else {
-                    cur_coder_id = -1;
-                    start_round_id = -1;
-                    end_round_id = -1;
-                    numConsecutive = 0;
-                }
-            }
-            log.info("Records loaded for rating increase " + (srmOnly ? "(srm only)" : "") + " streak: " + count);
-        } catch (SQLException sqle) {
-            DBMS.printSqlException(true, sqle);
-            throw new Exception("Load of 'streak' table failed.\n" +
-                    sqle.getMessage());
-        } finally {
-            close(rs);
-            close(psSel);
-            close(psSel2);
-            close(psIns);
         }
+        appendStreakOrder(query, singleCoder);
+        return query.toString();
     }
 
+    /**
+     * Appends the ordering every streak query needs.  Queries for a single coder
+     * read backwards from the most recent round so that only the tail of the
+     * coder's history has to be fetched.
+     */
+    private void appendStreakOrder(StringBuffer query, boolean singleCoder) {
+        if (singleCoder) {
+            query.append("   AND rr.coder_id = ? ");
+            query.append(" ORDER BY r.calendar_id desc ");
+            query.append("          ,r.round_id desc ");
+        } else {
+            query.append(" ORDER BY rr.coder_id ");
+            query.append("          ,r.calendar_id asc ");
+            query.append("          ,r.round_id asc ");
+        }
+    }
 
     /**
-     * This method loads the 'streak' table
-     * Unrated rounds are not considered.  --csj
+     * Loads the streaks found by the given state machines.  Both queries must return
+     * coder_id, round_id, placed, rating, round_type_id and division_id.
+     *
+     * On a full load every streak of the given types is deleted and rebuilt from the
+     * whole history.  On an incremental load only the coders that took part in this round
+     * are rebuilt: each of them is replayed from the start of their current streak, or from
+     * their previous round if they have none, which yields exactly what a full replay would.
+     *
+     * @param fullQuery   the query for all coders, ordered by coder and round date
+     * @param coderQuery  the query for a single coder, most recent round first
+     * @param streaks     the state machines to feed the rows to
+     * @param streakTypes comma separated list of the streak types the machines produce
+     * @param desc        the name of the load for logging purposes
+     * @param incremental whether only this round's coders must be rebuilt
      */
-    private void loadRatingDecreaseStreak(boolean srmOnly) throws Exception {
-        int retVal = 0;
+    private void loadStreaks(String fullQuery, String coderQuery, AlgoStreak[] streaks, String streakTypes,
+                             String desc, boolean incremental) throws Exception {
         int count = 0;
         PreparedStatement psSel = null;
-        PreparedStatement psSel2 = null;
         PreparedStatement psDel = null;
         PreparedStatement psIns = null;
         ResultSet rs = null;
-        ResultSet rs2 = null;
-        StringBuffer query = null;
 
         try {
-            query = new StringBuffer(100);
-            query.append("SELECT rr.coder_id ");      // 1
-            query.append("       ,rr.round_id ");     // 2
-            query.append("       ,rr.old_rating");    // 3
-            query.append("       ,rr.new_rating");    // 4
-            query.append("       ,r.calendar_id");    // 5
-            query.append("       ,r.round_id");       // 6
-            query.append("  FROM room_result rr ");
-            query.append("       ,round r ");
-            if (srmOnly)
-                query.append(" WHERE r.round_type_id in (" + SINGLE_ROUND_MATCH + ")");
-            else
-                query.append(" WHERE r.round_type_id in (" + SINGLE_ROUND_MATCH + ", " + TOURNAMENT_ROUND + ", " + LONG_ROUND + ")");
-            query.append("   AND r.round_id = rr.round_id ");
-            query.append("   AND rr.rated_flag = 1 ");  // --csj
-            query.append(" ORDER BY rr.coder_id ");
-            query.append("          ,r.calendar_id asc ");
-            query.append("          ,r.round_id asc ");
-            psSel = prepareStatement(query.toString(), SOURCE_DB);
-
-            query = new StringBuffer(100);
-            query.append("INSERT INTO streak ");
-            query.append("      (coder_id ");         // 1
-            query.append("       ,streak_type_id ");  // 2
-            query.append("       ,start_round_id ");  // 3
-            query.append("       ,end_round_id ");    // 4
-            query.append("       ,length ");          // 5
-            query.append("       ,is_current) ");     // 6
-            query.append("VALUES (?,?,?,?,?,?)");  // 6 total values
-            psIns = prepareStatement(query.toString(), TARGET_DB);
+            psIns = prepareStreakInsert();
 
-            query = new StringBuffer(100);
-            query.append("SELECT round_id FROM round ");
-            query.append("WHERE calendar_id=(SELECT max(r.calendar_id) ");
-            query.append("       FROM room_result rr ,round r ");
-            query.append("       WHERE rr.round_id = r.round_id ");
-            if (srmOnly)
-                query.append(" AND r.round_type_id in (" + SINGLE_ROUND_MATCH + ")");
-            else
-                query.append(" AND r.round_type_id in (" + SINGLE_ROUND_MATCH + ", " + TOURNAMENT_ROUND + ", " + LONG_ROUND + ")");
-            query.append("       AND rr.coder_id = ?)        ");
-            psSel2 = prepareStatement(query.toString(), TARGET_DB);
-
-            query = new StringBuffer(100);
-            if (srmOnly)
-                query.append("DELETE FROM streak WHERE streak_type_id in (" + RATING_DECREASE_SRM_ONLY + ")");
-            else
-                query.append("DELETE FROM streak WHERE streak_type_id in (" + RATING_DECREASE + ")");
+            if (!incremental) {
+                psSel = prepareStatement(fullQuery, SOURCE_DB);
+                psDel = prepareStatement("DELETE FROM streak WHERE streak_type_id in (" + streakTypes + ")", TARGET_DB);
 
-            psDel = prepareStatement(query.toString(), TARGET_DB);
-
-            // On to the load. First, we want to delete the whole table so
-            // we can reload it.
-            psDel.executeUpdate();
-
-            rs = psSel.executeQuery();
-
-            int cur_coder_id = -1;
-            int start_round_id = -1, end_round_id = -1;
-            int numConsecutive = 0;
+                // On to the load. First, we want to delete the whole table so
+                // we can reload it.
+                psDel.executeUpdate();
 
-            while (rs.next()) {
-                int coder_id = rs.getInt("coder_id");
-                int round_id = rs.getInt("round_id");
-                int oldRating = rs.getInt("old_rating");
-                int newRating = rs.getInt("new_rating");
-
-                // The first thing we do is check to see if we are still with
-                // the same coder and in the same division. Only with those
-                // constraints can a win streak continue. And then, iff room
-                // placed is 1 do we continue the streak.
-                if ((cur_coder_id == -1 || coder_id == cur_coder_id) &&
-                        newRating < oldRating) {
-                    cur_coder_id = coder_id;
-                    numConsecutive++;
-                    if (start_round_id == -1)
-                        start_round_id = round_id;
-                    end_round_id = round_id;
-                } else if (numConsecutive > 1) {  //we have a streak, load it up
-                    int streak_type_id = -1;
-                    streak_type_id = srmOnly ? RATING_DECREASE_SRM_ONLY : RATING_DECREASE;
-
-                    // Get the most recent round_id information for the coder.
-                    // We compare this against the ending round id for a
-                    // streak. If they match, the streak is considered current.
-                    psSel2.setInt(1, coder_id);
-                    rs2 = psSel2.executeQuery();
-                    int latest_round_id = -1;
-                    if (rs2.next()) {
-                        latest_round_id = rs2.getInt(1);
+                rs = psSel.executeQuery();
+                boolean hasNext = true;
+                while (hasNext) {
+                    hasNext = rs.next();
+                    for (int k = 0; k < streaks.length; k++) {
+                        AlgoStreak.StreakRow sr = hasNext ? streaks[k].add(rs.getInt("coder_id"), rs.getInt("round_id"),
+                                rs.getInt("placed"), rs.getInt("rating"), rs.getInt("round_type_id"), rs.getInt("division_id"))
+                                : streaks[k].flush();
+                        if (sr != null) {
+                            count += insertStreak(psIns, sr);
+                            printLoadProgress(count, desc);
+                        }
                     }
-                    close(rs2);
-
-                    psIns.clearParameters();
-                    psIns.setInt(1, cur_coder_id);
-                    psIns.setInt(2, streak_type_id);
-                    psIns.setInt(3, start_round_id);
-                    psIns.setInt(4, end_round_id);
-                    psIns.setInt(5, numConsecutive);
-                    psIns.setInt(6, (end_round_id == latest_round_id ? 1 : 0));
-
-                    retVal = psIns.executeUpdate();
-                    count += retVal;
-                    if (retVal != 1) {
-                        throw new SQLException("TCLoadAggregate: Insert for " +
-                                "coder_id " + coder_id +
-                                ", streak_type_id " + streak_type_id +
-                                " modified " + retVal + " rows, not one.");
+                }
+            } else {
+                Hashtable openStreaks = getCurrentStreakStarts(streakTypes);
+                ArrayList coders = getRoundCoders();
+
+                psSel = prepareStatement(coderQuery, SOURCE_DB);
+                psDel = prepareStatement("DELETE FROM streak WHERE coder_id = ? AND streak_type_id in (" + streakTypes + ")" +
+                        " AND is_current = 1", TARGET_DB);
+
+                for (int i = 0; i < coders.size(); i++) {
+                    int coderId = ((Integer) coders.get(i)).intValue();
+                    Integer start = (Integer) openStreaks.get(new Integer(coderId));
+
+                    psDel.clearParameters();
+                    psDel.setInt(1, coderId);
+                    psDel.executeUpdate();
+
+                    // the machines are shared by all the coders, a streak is emitted
+                    // when the next coder's first row arrives, just like in a full load
+                    ArrayList tail = readStreakTail(psSel, coderId, start == null ? TAIL_TO_PREVIOUS_ROUND : start.intValue());
+                    for (int j = 0; j < tail.size(); j++) {
+                        int[] row = (int[]) tail.get(j);
+                        for (int k = 0; k < streaks.length; k++) {
+                            AlgoStreak.StreakRow sr = streaks[k].add(row[0], row[1], row[2], row[3], row[4], row[5]);
+                            if (sr != null) {
+                                count += insertStreak(psIns, sr);
+                            }
+                        }
                     }
-
-                    printLoadProgress(count, "rating decrease " + (srmOnly ? "(srm only)" : "") + " streak");
-
-                    // if this record is an decrease, start a new streak
-                    if (newRating < oldRating) {
-                        cur_coder_id = coder_id;
-                        start_round_id = round_id;
-                        end_round_id = round_id;
-                        numConsecutive = 1;
-                    } else {
-                        cur_coder_id = -1;
-                        start_round_id = -1;
-                        end_round_id = -1;
-                        numConsecutive = 0;
+                }
+                for (int k = 0; k < streaks.length; k++) {
+                    AlgoStreak.StreakRow sr = streaks[k].flush();
+                    if (sr != null) {
+                        count += insertStreak(psIns, sr);
                     }
-                } else {
-                    cur_coder_id = -1;
-                    start_round_id = -1;
-                    end_round_id = -1;
-                    numConsecutive = 0;
                 }
+                log.info("Rebuilt " + desc + " for " + coders.size() + " coders");
             }
-            log.info("Records loaded for rating decrease " + (srmOnly ? "(srm only)" : "") + " streak: " + count);
+            log.info("Records loaded for " + desc + ": " + count);
         } catch (SQLException sqle) {
             DBMS.printSqlException(true, sqle);
             throw new Exception("Load of 'streak' table failed.\n" +
@@ -1643,7 +1445,7 @@ public class TCLoadAggregate extends TCLoad {
         } finally {
             close(rs);
             close(psSel);
-            close(psSel2);
+            close(psDel);
             close(psIns);
         }
     }
@@ -1653,13 +1455,13 @@ public class TCLoadAggregate extends TCLoad {
      * Unrated rounds are not considered.
      */
 
-    //todo consider changing this so that all matches that didn't "fail" count 
-    private void loadConsecutiveSRMAppearances() throws Exception {
-        int retVal = 0;
+    //todo consider changing this so that all matches that didn't "fail" count
+    private void loadConsecutiveSRMAppearances(boolean incremental) throws Exception {
         int count = 0;
         PreparedStatement psSel = null;
         PreparedStatement psSel2 = null;
         PreparedStatement psDel = null;
+        PreparedStatement psUpd = null;
         PreparedStatement psIns = null;
         ResultSet rs = null;
         StringBuffer query = null;
@@ -1669,30 +1471,18 @@ public class TCLoadAggregate extends TCLoad {
             query.append("SELECT rr.coder_id ");      // 1
             query.append("       ,rr.round_id ");     // 2
             query.append("       ,r.calendar_id");    // 3
-            query.append("       ,rr.division_id");
-            query.append("       ,rr.rated_flag");
+            query.append("       ,rr.division_id");   // 4
+            query.append("       ,rr.rated_flag");    // 5
             query.append("  FROM room_result rr ");
             query.append("       ,round r ");
             query.append(" WHERE r.round_type_id in (" + SINGLE_ROUND_MATCH + ")");
             query.append("   AND r.round_id = rr.round_id ");
             query.append("   AND rr.attended = 'Y' ");
             query.append("   AND r.rated_ind = 1 ");
-            query.append(" ORDER BY rr.coder_id ");
-            query.append("          ,r.calendar_id asc");
-            query.append("          ,r.round_id asc");
+            appendStreakOrder(query, incremental);
             psSel = prepareStatement(query.toString(), SOURCE_DB);
 
-            query = new StringBuffer(100);
-            query.append("INSERT INTO streak ");
-            query.append("      (coder_id ");         // 1
-            query.append("       ,streak_type_id ");  // 2
-            query.append("       ,start_round_id ");  // 3
-            query.append("       ,end_round_id ");    // 4
-            query.append("       ,length ");          // 5
-            query.append("       ,is_current) ");     // 6
-            query.append("VALUES (?,?,?,?,?,?)");  // 6 total values
-            psIns = prepareStatement(query.toString(), TARGET_DB);
-
+            psIns = prepareStreakInsert();
 
             query = new StringBuffer(100);
             query.append(" SELECT calendar_id, round_id FROM round r where round_type_id = " + SINGLE_ROUND_MATCH + " and rated_ind = 1");
@@ -1719,6 +1509,7 @@ public class TCLoadAggregate extends TCLoad {
                 div2Rounds.add(rs.getInt("calendar_id"));
                 div2LastRoundId = rs.getInt("round_id"); //  the last round will be stored...nasty trick ;)
             }
+            close(rs);
 
             TreeSet<Integer> tempAllRounds = new TreeSet<Integer>();
             tempAllRounds.addAll(div1Rounds);
@@ -1739,88 +1530,64 @@ public class TCLoadAggregate extends TCLoad {
 
             }
 
-            query = new StringBuffer(100);
-            query.append("DELETE FROM streak WHERE streak_type_id in (" + RATING_SRM_APPEARANCES + ")");
-
-            psDel = prepareStatement(query.toString(), TARGET_DB);
-            psDel.executeUpdate();
-
-            rs = psSel.executeQuery();
+            SRMAppearanceStreak streak = new SRMAppearanceStreak(RATING_SRM_APPEARANCES, allRounds,
+                    div1LastRoundId, div2LastRoundId);
 
-            int curCoderId = -1;
-            int curDivisionId = -1;
-            int startRoundId = -1;
-            int endRoundId = -1;
-            int numConsecutive = 0;
-            int roundIdx = -1;
-            boolean hasNext = true;
-
-            while (hasNext) {
-                hasNext = rs.next();
-                int coderId = -2;
-                int roundId = -2;
-                int calendarId = -2;
-                int divisionId = -2;
-                int ratedFlag = -2;
-
-                if (hasNext) {
-                    coderId = rs.getInt("coder_id");
-                    roundId = rs.getInt("round_id");
-                    calendarId = rs.getInt("calendar_id");
-                    divisionId = rs.getInt("division_id");
-                    ratedFlag = rs.getInt("rated_flag");
-                }
-
-                if (coderId == curCoderId && roundIdx >= 0 && allRounds.get(roundIdx) == calendarId) {
-                    if (ratedFlag == 1) {
-                        // if it's the same coder and he participated in the next round he is expected to, and he was rated, it's consecutive
-                        numConsecutive++;
-                        roundIdx++;
-                        endRoundId = roundId;
-                        curDivisionId = divisionId;
-                    } else {
-                        //if he wasn't rated, then it doesn't break his streak
-                        roundIdx++;
-                    }
-
-                } else {
-                    // it was not consecutive, so save the streak if needed and start a new one
-                    if (numConsecutive > 1) {
-                        psIns.clearParameters();
-                        psIns.setInt(1, curCoderId);
-                        psIns.setInt(2, RATING_SRM_APPEARANCES);
-                        psIns.setInt(3, startRoundId);
-                        psIns.setInt(4, endRoundId);
-                        psIns.setInt(5, numConsecutive);
-                        if (curDivisionId == 1) {
-                            psIns.setInt(6, endRoundId == div1LastRoundId ? 1 : 0);
-                        } else {
-                            psIns.setInt(6, endRoundId == div2LastRoundId ? 1 : 0);
-                        }
+            if (!incremental) {
+                psDel = prepareStatement("DELETE FROM streak WHERE streak_type_id in (" + RATING_SRM_APPEARANCES + ")", TARGET_DB);
+                psDel.executeUpdate();
 
-                        retVal = psIns.executeUpdate();
-                        count += retVal;
-                        if (retVal != 1) {
-                            throw new SQLException("TCLoadAggregate: Insert for coder_id " + coderId + ", streak_type_id " + RATING_SRM_APPEARANCES +
-                                    " modified " + retVal + " rows, not one.");
-                        }
+                rs = psSel.executeQuery();
+                boolean hasNext = true;
+                while (hasNext) {
+                    hasNext = rs.next();
+                    AlgoStreak.StreakRow sr = hasNext ? streak.add(rs.getInt("coder_id"), rs.getInt("round_id"),
+                            rs.getInt("calendar_id"), rs.getInt("division_id"), rs.getInt("rated_flag")) : streak.flush();
+                    if (sr != null) {
+                        count += insertStreak(psIns, sr);
                         printLoadProgress(count, "Consecutive SRM appeareance streak");
                     }
+                }
+            } else {
+                // A run of appearances may go on across unrated rounds after its last
+                // persisted round, so coders are replayed from the start of their latest
+                // streak, current or not.
+                ArrayList coders = getRoundCoders();
+                psDel = prepareStatement("DELETE FROM streak WHERE coder_id = ? AND streak_type_id = " +
+                        RATING_SRM_APPEARANCES + " AND start_round_id = ?", TARGET_DB);
+                for (int i = 0; i < coders.size(); i++) {
+                    int coderId = ((Integer) coders.get(i)).intValue();
+                    int start = getLatestStreakStart(coderId, RATING_SRM_APPEARANCES);
+                    if (start > 0) {
+                        psDel.clearParameters();
+                        psDel.setInt(1, coderId);
+                        psDel.setInt(2, start);
+                        psDel.executeUpdate();
+                    }
 
-                    if (hasNext) {
-                        roundIdx = Collections.binarySearch(allRounds, calendarId);
-                        if (roundIdx < 0) {
-                            throw new Exception("Round with calendar_id=" + calendarId + " not found!");
+                    ArrayList tail = readStreakTail(psSel, coderId, start > 0 ? start : TAIL_WHOLE_HISTORY);
+                    for (int j = 0; j < tail.size(); j++) {
+                        int[] row = (int[]) tail.get(j);
+                        AlgoStreak.StreakRow sr = streak.add(row[0], row[1], row[2], row[3], row[4]);
+                        if (sr != null) {
+                            count += insertStreak(psIns, sr);
                         }
-                        roundIdx++;
-                        curCoderId = coderId;
-                        curDivisionId = divisionId;
-                        startRoundId = roundId;
-                        endRoundId = roundId;
-                        numConsecutive = 1;
                     }
                 }
+                AlgoStreak.StreakRow sr = streak.flush();
+                if (sr != null) {
+                    count += insertStreak(psIns, sr);
+                }
 
+                // everybody who missed this round just lost their current streak
+                if (div1LastRoundId == fRoundId || div2LastRoundId == fRoundId) {
+                    psUpd = prepareStatement("UPDATE streak SET is_current = 0 WHERE streak_type_id = " +
+                            RATING_SRM_APPEARANCES + " AND is_current = 1 AND end_round_id NOT IN (?, ?)", TARGET_DB);
+                    psUpd.setLong(1, div1LastRoundId);
+                    psUpd.setLong(2, div2LastRoundId);
+                    psUpd.executeUpdate();
+                }
+                log.info("Rebuilt Consecutive SRM appeareance streak for " + coders.size() + " coders");
             }
             log.info("Records loaded for Consecutive SRM appeareance streak: " + count);
         } catch (SQLException sqle) {
@@ -1831,10 +1598,267 @@ public class TCLoadAggregate extends TCLoad {
             close(rs);
             close(psSel);
             close(psSel2);
+            close(psDel);
+            close(psUpd);
             close(psIns);
         }
     }
 
+    private PreparedStatement prepareStreakInsert() throws SQLException {
+        StringBuffer query = new StringBuffer(100);
+        query.append("INSERT INTO streak ");
+        query.append("      (coder_id ");         // 1
+        query.append("       ,streak_type_id ");  // 2
+        query.append("       ,start_round_id ");  // 3
+        query.append("       ,end_round_id ");    // 4
+        query.append("       ,length ");          // 5
+        query.append("       ,is_current) ");     // 6
+        query.append("VALUES (?,?,?,?,?,?)");  // 6 total values
+        return prepareStatement(query.toString(), TARGET_DB);
+    }
+
+    private int insertStreak(PreparedStatement psIns, AlgoStreak.StreakRow sr) throws SQLException {
+        psIns.clearParameters();
+        psIns.setInt(1, sr.getCoderId());
+        psIns.setInt(2, sr.getStreakType());
+        psIns.setInt(3, sr.getStartRoundId());
+        psIns.setInt(4, sr.getEndRoundId());
+        psIns.setInt(5, sr.getLength());
+        psIns.setInt(6, sr.isCurrent() ? 1 : 0);
+
+        int retVal = psIns.executeUpdate();
+        if (retVal != 1) {
+            throw new SQLException("TCLoadAggregate: Insert for " +
+                    "coder_id " + sr.getCoderId() +
+                    ", streak_type_id " + sr.getStreakType() +
+                    " modified " + retVal + " rows, not one.");
+        }
+        return retVal;
+    }
+
+    /**
+     * Replay the coder's rounds back to the previous one.
+     */
+    private static final int TAIL_TO_PREVIOUS_ROUND = 0;
+
+    /**
+     * Replay every round of the coder.
+     */
+    private static final int TAIL_WHOLE_HISTORY = -1;
+
+    /**
+     * Reads the most recent rows of a coder's history, the ones a streak replay has to go through.
+     *
+     * @param psSel       a streak query for a single coder, most recent round first
+     * @param coderId     the coder
+     * @param stopRoundId the oldest round to read, or one of <code>TAIL_TO_PREVIOUS_ROUND</code>
+     *                    and <code>TAIL_WHOLE_HISTORY</code>
+     * @return the rows as int arrays holding every selected column, oldest round first
+     */
+    private ArrayList readStreakTail(PreparedStatement psSel, int coderId, int stopRoundId) throws SQLException {
+        ArrayList tail = new ArrayList();
+        ResultSet rs = null;
+        try {
+            psSel.clearParameters();
+            psSel.setInt(1, coderId);
+            rs = psSel.executeQuery();
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                int[] row = new int[columns];
+                for (int i = 0; i < columns; i++) {
+                    row[i] = rs.getInt(i + 1);
+                }
+                tail.add(row);
+                int roundId = row[1];
+                if (stopRoundId > 0 ? roundId == stopRoundId : stopRoundId == TAIL_TO_PREVIOUS_ROUND && roundId != fRoundId) {
+                    break;
+                }
+            }
+        } finally {
+            close(rs);
+        }
+        Collections.reverse(tail);
+        return tail;
+    }
+
+    /**
+     * Gets the coders that took part in this round.
+     */
+    private ArrayList getRoundCoders() throws SQLException {
+        ArrayList coders = new ArrayList();
+        PreparedStatement psSel = null;
+        ResultSet rs = null;
+        try {
+            psSel = prepareStatement("SELECT coder_id FROM room_result WHERE round_id = ?", SOURCE_DB);
+            psSel.setInt(1, fRoundId);
+            rs = psSel.executeQuery();
+            while (rs.next()) {
+                coders.add(new Integer(rs.getInt("coder_id")));
+            }
+        } finally {
+            close(rs);
+            close(psSel);
+        }
+        return coders;
+    }
+
+    /**
+     * Gets the start round of the current streaks of this round's coders.
+     *
+     * @return a Hashtable of coder_id -> start_round_id
+     */
+    private Hashtable getCurrentStreakStarts(String streakTypes) throws SQLException {
+        Hashtable starts = new Hashtable();
+        PreparedStatement psSel = null;
+        ResultSet rs = null;
+        try {
+            StringBuffer query = new StringBuffer(100);
+            query.append("SELECT s.coder_id, s.start_round_id ");
+            query.append("  FROM streak s ");
+            query.append(" WHERE s.streak_type_id in (" + streakTypes + ")");
+            query.append("   AND s.is_current = 1 ");
+            query.append("   AND s.coder_id in (SELECT coder_id FROM room_result WHERE round_id = ?) ");
+            psSel = prepareStatement(query.toString(), TARGET_DB);
+            psSel.setInt(1, fRoundId);
+            rs = psSel.executeQuery();
+            while (rs.next()) {
+                starts.put(new Integer(rs.getInt("coder_id")), new Integer(rs.getInt("start_round_id")));
+            }
+        } finally {
+            close(rs);
+            close(psSel);
+        }
+        return starts;
+    }
+
+    /**
+     * Gets the start round of the coder's most recent streak of the given type.
+     *
+     * @return the start_round_id or -1 if the coder has no such streak
+     */
+    private int getLatestStreakStart(int coderId, int streakTypeId) throws SQLException {
+        PreparedStatement psSel = null;
+        ResultSet rs = null;
+        try {
+            StringBuffer query = new StringBuffer(100);
+            query.append("SELECT s.start_round_id ");
+            query.append("  FROM streak s ");
+            query.append("       ,round r ");
+            query.append(" WHERE s.coder_id = ? ");
+            query.append("   AND s.streak_type_id = ? ");
+            query.append("   AND r.round_id = s.end_round_id ");
+            query.append(" ORDER BY r.calendar_id desc ");
+            query.append("          ,r.round_id desc ");
+            psSel = prepareStatement(query.toString(), TARGET_DB);
+            psSel.setInt(1, coderId);
+            psSel.setInt(2, streakTypeId);
+            rs = psSel.executeQuery();
+            return rs.next() ? rs.getInt("start_round_id") : -1;
+        } finally {
+            close(rs);
+            close(psSel);
+        }
+    }
+
+    /**
+     * Streak of room wins in a single division.
+     */
+    private static class WinStreak extends AlgoStreak {
+        private int divisionId;
+
+        public WinStreak(int streakTypeId, int divisionId) {
+            super(streakTypeId);
+            this.divisionId = divisionId;
+        }
+
+        protected boolean addToStreak(int placed, int rating, int divisionId) {
+            return this.divisionId == divisionId && addToStreak(placed, rating);
+        }
+
+        protected boolean addToStreak(int placed, int rating) {
+            return placed == 1;
+        }
+    }
+
+    /**
+     * Streak of rating increases or decreases.  The rating fed to this streak is the
+     * rating change of the round.
+     */
+    private static class RatingChangeStreak extends AlgoStreak {
+        private boolean increase;
+
+        public RatingChangeStreak(int streakTypeId, boolean increase) {
+            super(streakTypeId);
+            this.increase = increase;
+        }
+
+        protected boolean addToStreak(int placed, int rating) {
+            return increase ? rating > 0 : rating < 0;
+        }
+    }
+
+    /**
+     * Streak of consecutive appearances in rated SRMs.  Attending a round unrated
+     * doesn't break the streak, but it doesn't count either.
+     */
+    private static class SRMAppearanceStreak {
+        private int streakTypeId;
+        private ArrayList<Integer> allRounds;
+        private long div1LastRoundId;
+        private long div2LastRoundId;
+
+        private int curCoderId = -1;
+        private int curDivisionId = -1;
+        private int startRoundId = -1;
+        private int endRoundId = -1;
+        private int numConsecutive = 0;
+        private int roundIdx = -1;
+
+        public SRMAppearanceStreak(int streakTypeId, ArrayList<Integer> allRounds, long div1LastRoundId, long div2LastRoundId) {
+            this.streakTypeId = streakTypeId;
+            this.allRounds = allRounds;
+            this.div1LastRoundId = div1LastRoundId;
+            this.div2LastRoundId = div2LastRoundId;
+        }
+
+        public AlgoStreak.StreakRow add(int coderId, int roundId, int calendarId, int divisionId, int ratedFlag) throws Exception {
+            if (coderId == curCoderId && roundIdx >= 0 && roundIdx < allRounds.size() && allRounds.get(roundIdx) == calendarId) {
+                if (ratedFlag == 1) {
+                    // if it's the same coder and he participated in the next round he is expected to, and he was rated, it's consecutive
+                    numConsecutive++;
+                    endRoundId = roundId;
+                    curDivisionId = divisionId;
+                }
+                //if he wasn't rated, then it doesn't break his streak
+                roundIdx++;
+                return null;
+            }
+
+            // it was not consecutive, so save the streak if needed and start a new one
+            AlgoStreak.StreakRow sr = flush();
+            roundIdx = Collections.binarySearch(allRounds, calendarId);
+            if (roundIdx < 0) {
+                throw new Exception("Round with calendar_id=" + calendarId + " not found!");
+            }
+            roundIdx++;
+            curCoderId = coderId;
+            curDivisionId = divisionId;
+            startRoundId = roundId;
+            endRoundId = roundId;
+            numConsecutive = 1;
+            return sr;
+        }
+
+        public AlgoStreak.StreakRow flush() {
+            if (numConsecutive <= 1) {
+                return null;
+            }
+            long lastRoundId = curDivisionId == 1 ? div1LastRoundId : div2LastRoundId;
+            return new AlgoStreak.StreakRow(curCoderId, streakTypeId, startRoundId, endRoundId, numConsecutive,
+                    endRoundId == lastRoundId);
+        }
+    }
+
 
     /**
      * This method loads the 'room_result' table with information we
@@ -2492,7 +2516,8 @@ public class TCLoadAggregate extends TCLoad {
 
     private static final String ROUNDS = "select round_id from round r, round_type_lu rt " +
             "where r.round_type_id = rt.round_type_id " +
-            "and rt.algo_rating_type_id in ( " + TC_RATING_TYPE_ID + ", " + HS_RATING_TYPE_ID + ")";
+            "and rt.algo_rating_type_id in ( " + TC_RATING_TYPE_ID + ", " + HS_RATING_TYPE_ID + ") " +
+            "order by round_id";
 
     private static final String DELETE = "update coder_problem set placed = null, language_placed = null where round_id = ? ";
 
@@ -2532,6 +2557,8 @@ public class TCLoadAggregate extends TCLoad {
             }
 
             long roundId;
+            // rounds up to the high water mark were ranked by a previous run
+            long lastRoundId = getHighWaterMark("loadCoderProblem", Long.MIN_VALUE);
 
             psSelProblem = prepareStatement(PROBLEM_QUERY, TARGET_DB);
             psSelPoint = prepareStatement(POINT_QUERY, TARGET_DB);
@@ -2544,6 +2571,9 @@ public class TCLoadAggregate extends TCLoad {
 
             for (Iterator roundIterator = rounds.iterator(); roundIterator.hasNext();) {
                 roundId = ((Long) roundIterator.next()).longValue();
+                if (roundId <= lastRoundId) {
+                    continue;
+                }
 
                 delete.clearParameters();
                 delete.setLong(1, roundId);
@@ -2642,6 +2672,10 @@ public class TCLoadAggregate extends TCLoad {
                         }
                     }
                 }
+
+                if (FULL_LOAD) {
+                    setHighWaterMark("loadCoderProblem", roundId);
+                }
             }
             log.info("coder_problem records copied = " + count);
         } catch (SQLException sqle) {
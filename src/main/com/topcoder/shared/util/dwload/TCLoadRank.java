@@ -47,6 +47,12 @@ public class TCLoadRank extends TCLoad {
 
     private static final int TC_RATING_TYPE_ID = 1;
     private static final int TC_HS_RATING_TYPE_ID = 2;
+
+    /**
+     * The rank engine for the last list of ratings ranked, and that list.
+     */
+    private RankEngine rankEngine = null;
+    private List rankedList = null;
 /*
     private static final int SRM_ROUNDTYPE = 1;
     private static final int TOURNAMENT_ROUND_TYPE = 2;
@@ -152,8 +158,6 @@ public class TCLoadRank extends TCLoad {
             if (seasonId >= 0) {
                 List ratings = getSeasonRatingsForRound(seasonId);
 
-                Collections.sort(ratings);
-
                 loadSeasonRatingRank(seasonId, ratings);
                 loadSeasonRatingRankHistory(seasonId, ratings);
 
@@ -230,11 +234,8 @@ public class TCLoadRank extends TCLoad {
         log.debug("loadRatingRank called...");
         StringBuffer query = null;
         PreparedStatement psDel = null;
-        PreparedStatement psSel = null;
         PreparedStatement psIns = null;
-        ResultSet rs = null;
         int count = 0;
-        int coderCount = 0;
 
         try {
 
@@ -254,43 +255,24 @@ public class TCLoadRank extends TCLoad {
             /* coder_rank table should be kept "up-to-date" so get the most recent stuff
              * from the rating table
              */
-            //ratings = getCurrentCoderRatings(rankType == ACTIVE_RATING_RANK_TYPE_ID);
-
-            ArrayList ratings = new ArrayList(list.size());
-            CoderRating cr = null;
-            for (int i = 0; i < list.size(); i++) {
-                cr = (CoderRating) list.get(i);
-                if ((rankType == ACTIVE_RATING_RANK_TYPE_ID && cr.isActive()) ||
-                        rankType != ACTIVE_RATING_RANK_TYPE_ID) {
-                    ratings.add(cr);
-                }
-            }
-            Collections.sort(ratings);
-            coderCount = ratings.size();
+            RankEngine.RankRows ranks = getRankEngine(list).getRanks(RankEngine.OVERALL,
+                    rankType == ACTIVE_RATING_RANK_TYPE_ID);
 
             // delete all the records for the overall rating rank type
             psDel.executeUpdate();
 
-            int i = 0;
-            int rating = 0;
-            int rank = 0;
-            int size = ratings.size();
-            int tempRating = 0;
-            long tempCoderId = 0;
+            int size = ranks.size();
             for (int j = 0; j < size; j++) {
-                i++;
-                tempRating = ((CoderRating) ratings.get(j)).getRating();
-                tempCoderId = ((CoderRating) ratings.get(j)).getCoderId();
-                if (tempRating != rating) {
-                    rating = tempRating;
-                    rank = i;
+                psIns.setLong(1, ranks.getCoderId(j));
+                psIns.setFloat(2, ranks.getPercentile(j));
+                psIns.setInt(3, ranks.getRank(j));
+                psIns.addBatch();
+                if ((j + 1) % BATCH_SIZE == 0) {
+                    count += executeBatch(psIns);
+                    printLoadProgress(count, "overall rating rank");
                 }
-                psIns.setLong(1, tempCoderId);
-                psIns.setFloat(2, (float) 100 * ((float) (coderCount - rank) / coderCount));
-                psIns.setInt(3, rank);
-                count += psIns.executeUpdate();
-                printLoadProgress(count, "overall rating rank");
             }
+            count += executeBatch(psIns);
             log.info("Records loaded for overall rating rank load: " + count);
 
         } catch (SQLException sqle) {
@@ -298,8 +280,6 @@ public class TCLoadRank extends TCLoad {
             throw new Exception("Load of 'coder_rank' table failed for overall rating rank.\n" +
                     sqle.getMessage());
         } finally {
-            close(rs);
-            close(psSel);
             close(psIns);
             close(psDel);
         }
@@ -537,11 +517,8 @@ public class TCLoadRank extends TCLoad {
         log.debug("loadSeasonRatingRank called...");
         StringBuffer query = null;
         PreparedStatement psDel = null;
-        PreparedStatement psSel = null;
         PreparedStatement psIns = null;
-        ResultSet rs = null;
         int count = 0;
-        int coderCount = 0;
 
         try {
 
@@ -558,32 +535,24 @@ public class TCLoadRank extends TCLoad {
             query.append(" VALUES (?, ?, ?, ?)");
             psIns = prepareStatement(query.toString(), TARGET_DB);
 
-            coderCount = ratings.size();
+            RankEngine.RankRows ranks = getRankEngine(ratings).getRanks(RankEngine.OVERALL, false);
 
             // delete all the records for the overall rating rank type
             psDel.executeUpdate();
 
-            int i = 0;
-            int rating = 0;
-            int rank = 0;
-            int size = ratings.size();
-            int tempRating = 0;
-            long tempCoderId = 0;
+            int size = ranks.size();
             for (int j = 0; j < size; j++) {
-                i++;
-                tempRating = ((CoderRating) ratings.get(j)).getRating();
-                tempCoderId = ((CoderRating) ratings.get(j)).getCoderId();
-                if (tempRating != rating) {
-                    rating = tempRating;
-                    rank = i;
-                }
-                psIns.setLong(1, tempCoderId);
+                psIns.setLong(1, ranks.getCoderId(j));
                 psIns.setInt(2, seasonId);
-                psIns.setInt(3, rank);
-                psIns.setFloat(4, (float) 100 * ((float) (coderCount - rank) / coderCount));
-                count += psIns.executeUpdate();
-                printLoadProgress(count, "season rating rank");
+                psIns.setInt(3, ranks.getRank(j));
+                psIns.setFloat(4, ranks.getPercentile(j));
+                psIns.addBatch();
+                if ((j + 1) % BATCH_SIZE == 0) {
+                    count += executeBatch(psIns);
+                    printLoadProgress(count, "season rating rank");
+                }
             }
+            count += executeBatch(psIns);
             log.info("Records loaded for season rating rank load: " + count);
 
         } catch (SQLException sqle) {
@@ -591,8 +560,6 @@ public class TCLoadRank extends TCLoad {
             throw new Exception("Load of 'season_rank' table failed.\n" +
                     sqle.getMessage());
         } finally {
-            close(rs);
-            close(psSel);
             close(psIns);
             close(psDel);
         }
@@ -743,11 +710,8 @@ public class TCLoadRank extends TCLoad {
         log.debug("loadSeasonRatingRankHistory called...");
         StringBuffer query = null;
         PreparedStatement psDel = null;
-        PreparedStatement psSel = null;
         PreparedStatement psIns = null;
-        ResultSet rs = null;
         int count = 0;
-        int coderCount = 0;
 
         try {
 
@@ -766,33 +730,25 @@ public class TCLoadRank extends TCLoad {
             query.append(" VALUES (?, ?, ?, ?, ?)");
             psIns = prepareStatement(query.toString(), TARGET_DB);
 
-            coderCount = ratings.size();
+            RankEngine.RankRows ranks = getRankEngine(ratings).getRanks(RankEngine.OVERALL, false);
 
             // delete all the records for the overall rating rank type
             psDel.executeUpdate();
 
-            int i = 0;
-            int rating = 0;
-            int rank = 0;
-            int size = ratings.size();
-            int tempRating = 0;
-            long tempCoderId = 0;
+            int size = ranks.size();
             for (int j = 0; j < size; j++) {
-                i++;
-                tempRating = ((CoderRating) ratings.get(j)).getRating();
-                tempCoderId = ((CoderRating) ratings.get(j)).getCoderId();
-                if (tempRating != rating) {
-                    rating = tempRating;
-                    rank = i;
-                }
-                psIns.setLong(1, tempCoderId);
+                psIns.setLong(1, ranks.getCoderId(j));
                 psIns.setInt(2, seasonId);
-                psIns.setInt(3, rank);
-                psIns.setFloat(4, (float) 100 * ((float) (coderCount - rank) / coderCount));
+                psIns.setInt(3, ranks.getRank(j));
+                psIns.setFloat(4, ranks.getPercentile(j));
                 psIns.setInt(5, roundId);
-                count += psIns.executeUpdate();
-                printLoadProgress(count, "season rating rank history");
+                psIns.addBatch();
+                if ((j + 1) % BATCH_SIZE == 0) {
+                    count += executeBatch(psIns);
+                    printLoadProgress(count, "season rating rank history");
+                }
             }
+            count += executeBatch(psIns);
             log.info("Records loaded for season rating rank history load: " + count);
 
         } catch (SQLException sqle) {
@@ -800,8 +756,6 @@ public class TCLoadRank extends TCLoad {
             throw new Exception("Load of 'season_rank_history' table failed.\n" +
                     sqle.getMessage());
         } finally {
-            close(rs);
-            close(psSel);
             close(psIns);
             close(psDel);
         }
@@ -813,12 +767,8 @@ public class TCLoadRank extends TCLoad {
         log.debug("loadRatingRankHistory called...");
         StringBuffer query = null;
         PreparedStatement psDel = null;
-        PreparedStatement psSel = null;
         PreparedStatement psIns = null;
-        ResultSet rs = null;
         int count = 0;
-        int coderCount = 0;
-        List ratings = null;
 
         try {
 
@@ -836,45 +786,25 @@ public class TCLoadRank extends TCLoad {
             query.append(" VALUES (?, ?, ?, ?, " + rankType + "," + ratingType + ")");
             psIns = prepareStatement(query.toString(), TARGET_DB);
 
-            if (rankType == ACTIVE_RATING_RANK_TYPE_ID) {
-                ratings = new ArrayList();
-                for (Iterator i = list.iterator(); i.hasNext();) {
-                    CoderRating rating = (CoderRating) i.next();
-                    if (rating.active) {
-                        ratings.add(rating);
-                    }
-                }
-            } else {
-                ratings = list;
-            }
-
-            coderCount = ratings.size();
-            Collections.sort(ratings);
+            RankEngine.RankRows ranks = getRankEngine(list).getRanks(RankEngine.OVERALL,
+                    rankType == ACTIVE_RATING_RANK_TYPE_ID);
 
             // delete all the recordsfor the rating rank type
             psDel.executeUpdate();
 
-            int i = 0;
-            int rating = 0;
-            int rank = 0;
-            int size = ratings.size();
-            int tempRating = 0;
-            long tempCoderId = 0;
+            int size = ranks.size();
             for (int j = 0; j < size; j++) {
-                i++;
-                tempRating = ((CoderRating) ratings.get(j)).getRating();
-                tempCoderId = ((CoderRating) ratings.get(j)).getCoderId();
-                if (tempRating != rating) {
-                    rating = tempRating;
-                    rank = i;
-                }
-                psIns.setLong(1, tempCoderId);
+                psIns.setLong(1, ranks.getCoderId(j));
                 psIns.setInt(2, roundId);
-                psIns.setFloat(3, (float) 100 * ((float) (coderCount - rank) / coderCount));
-                psIns.setInt(4, rank);
-                count += psIns.executeUpdate();
-                printLoadProgress(count, "rating rank history");
+                psIns.setFloat(3, ranks.getPercentile(j));
+                psIns.setInt(4, ranks.getRank(j));
+                psIns.addBatch();
+                if ((j + 1) % BATCH_SIZE == 0) {
+                    count += executeBatch(psIns);
+                    printLoadProgress(count, "rating rank history");
+                }
             }
+            count += executeBatch(psIns);
             log.info("Records loaded for rating rank history load: " + count);
 
         } catch (SQLException sqle) {
@@ -882,8 +812,6 @@ public class TCLoadRank extends TCLoad {
             throw new Exception("Load of 'coder_rank_history' table failed for rating rank.\n" +
                     sqle.getMessage());
         } finally {
-            close(rs);
-            close(psSel);
             close(psIns);
             close(psDel);
         }
@@ -898,99 +826,22 @@ public class TCLoadRank extends TCLoad {
     protected void loadCountryRatingRank(int rankType, int ratingType, List list) throws Exception {
         log.debug("loadCountryRatingRank called...");
         StringBuffer query = null;
-        PreparedStatement psDel = null;
-        //PreparedStatement psSel = null;
-        PreparedStatement psIns = null;
-        //ResultSet rs = null;
-        int count = 0;
-        int coderCount = 0;
-        List ratings = null;
-        CoderRating curr = null;
-
-        try {
-
-            query = new StringBuffer(100);
-            query.append(" DELETE");
-            query.append(" FROM country_coder_rank");
-            query.append(" WHERE coder_rank_type_id = " + rankType);
-            query.append(" AND algo_rating_type_id = " + ratingType);
-            psDel = prepareStatement(query.toString(), TARGET_DB);
-
-            query = new StringBuffer(100);
-            query.append(" INSERT");
-            query.append(" INTO country_coder_rank (coder_id, percentile, rank, rank_no_tie, ");
-            query.append("       country_code, coder_rank_type_id, algo_rating_type_id)");
-            query.append(" VALUES (?, ?, ?, ?, ?, ?, ?)");
-            psIns = prepareStatement(query.toString(), TARGET_DB);
-
-            // delete all the records from the country ranking table
-            psDel.executeUpdate();
-
-
-            HashMap countries = new HashMap();
-            String tempCode = null;
-            List tempList = null;
-            CoderRating temp = null;
-
-            for (int i = 0; i < list.size(); i++) {
-                temp = (CoderRating) list.get(i);
-                if ((rankType == ACTIVE_RATING_RANK_TYPE_ID && temp.isActive()) ||
-                        rankType != ACTIVE_RATING_RANK_TYPE_ID) {
-                    tempCode = temp.getCountryCode();
-                    if (countries.containsKey(tempCode)) {
-                        tempList = (List) countries.get(tempCode);
-                    } else {
-                        tempList = new ArrayList(100);
-                    }
-                    tempList.add(list.get(i));
-                    countries.put(tempCode, tempList);
-                    tempList = null;
-                }
-            }
-
-
-            for (Iterator it = countries.entrySet().iterator(); it.hasNext();) {
-                ratings = (List) ((Map.Entry) it.next()).getValue();
-                Collections.sort(ratings);
-                coderCount = ratings.size();
-
-                int i = 0;
-                int rating = 0;
-                int rank = 0;
-                int size = ratings.size();
-                int tempRating = 0;
-                long tempCoderId = 0;
-                for (int j = 0; j < size; j++) {
-                    i++;
-                    tempRating = ((CoderRating) ratings.get(j)).getRating();
-                    tempCoderId = ((CoderRating) ratings.get(j)).getCoderId();
-                    curr = (CoderRating) ratings.get(j);
-                    if (tempRating != rating) {
-                        rating = tempRating;
-                        rank = i;
-                    }
-                    psIns.setLong(1, tempCoderId);
-                    psIns.setFloat(2, (float) 100 * ((float) (coderCount - rank) / coderCount));
-                    psIns.setInt(3, rank);
-                    psIns.setInt(4, j + 1);
-                    psIns.setString(5, curr.getCountryCode());
-                    psIns.setInt(6, rankType);
-                    psIns.setInt(7, ratingType);
-                    count += psIns.executeUpdate();
-                    printLoadProgress(count, "country coder rating rank");
-                }
-            }
-            log.info("Records loaded for country coder rating rank load: " + count);
-
-        } catch (SQLException sqle) {
-            DBMS.printSqlException(true, sqle);
-            throw new Exception("Load of 'country_coder_rank' table failed for " + curr.toString() + ".\n" +
-                    sqle.getMessage());
-        } finally {
-            close(psIns);
-            close(psDel);
-        }
 
+        query = new StringBuffer(100);
+        query.append(" DELETE");
+        query.append(" FROM country_coder_rank");
+        query.append(" WHERE coder_rank_type_id = " + rankType);
+        query.append(" AND algo_rating_type_id = " + ratingType);
+        String delete = query.toString();
+
+        query = new StringBuffer(100);
+        query.append(" INSERT");
+        query.append(" INTO country_coder_rank (coder_id, percentile, rank, rank_no_tie, ");
+        query.append("       country_code, coder_rank_type_id, algo_rating_type_id)");
+        query.append(" VALUES (?, ?, ?, ?, ?, ?, ?)");
+
+        loadGroupRatingRank(RankEngine.COUNTRY, rankType, ratingType, list, delete, query.toString(),
+                "country_coder_rank", "country coder rating rank");
     }
 
 
@@ -1001,104 +852,21 @@ public class TCLoadRank extends TCLoad {
     protected void loadStateRatingRank(int rankType, int ratingType, List list) throws Exception {
         log.debug("loadStateRatingRank called...");
         StringBuffer query = null;
-        PreparedStatement psDel = null;
-        //PreparedStatement psSel = null;
-        PreparedStatement psIns = null;
-        //ResultSet rs = null;
-        int count = 0;
-        int coderCount = 0;
-        List ratings = null;
-        CoderRating curr = null;
 
-        try {
+        query = new StringBuffer(100);
+        query.append(" DELETE");
+        query.append(" FROM state_coder_rank");
+        query.append(" WHERE coder_rank_type_id = " + rankType);
+        query.append(" AND algo_rating_type_id = " + ratingType);
+        String delete = query.toString();
 
-            query = new StringBuffer(100);
-            query.append(" DELETE");
-            query.append(" FROM state_coder_rank");
-            query.append(" WHERE coder_rank_type_id = " + rankType);
-            query.append(" AND algo_rating_type_id = " + ratingType);
-            psDel = prepareStatement(query.toString(), TARGET_DB);
-
-            query = new StringBuffer(100);
-            query.append(" INSERT");
-            query.append(" INTO state_coder_rank (coder_id, percentile, rank, rank_no_tie, state_code, coder_rank_type_id, algo_rating_type_id)");
-            query.append(" VALUES (?, ?, ?, ?, ?, ?, ?)");
-            psIns = prepareStatement(query.toString(), TARGET_DB);
-
-            // delete all the records from the country ranking table
-            psDel.executeUpdate();
-
-
-            HashMap states = new HashMap();
-            String tempCode = null;
-            List tempList = null;
-            CoderRating temp = null;
-
-            for (int i = 0; i < list.size(); i++) {
-                temp = (CoderRating) list.get(i);
-                if ((rankType == ACTIVE_RATING_RANK_TYPE_ID && temp.isActive()) ||
-                        rankType != ACTIVE_RATING_RANK_TYPE_ID) {
-                    tempCode = temp.getStateCode();
-                    if (tempCode != null && !tempCode.trim().equals("")) {
-                        if (states.containsKey(tempCode)) {
-                            tempList = (List) states.get(tempCode);
-                        } else {
-                            tempList = new ArrayList(100);
-                        }
-                        tempList.add(list.get(i));
-                        states.put(tempCode, tempList);
-                        tempList = null;
-                    }
-                }
-            }
-
-
-            for (Iterator it = states.entrySet().iterator(); it.hasNext();) {
-                ratings = (List) ((Map.Entry) it.next()).getValue();
-                Collections.sort(ratings);
-                coderCount = ratings.size();
-
-                int i = 0;
-                int rating = 0;
-                int rank = 0;
-                int size = ratings.size();
-                int tempRating = 0;
-                long tempCoderId = 0;
-                for (int j = 0; j < size; j++) {
-                    i++;
-                    tempRating = ((CoderRating) ratings.get(j)).getRating();
-                    tempCoderId = ((CoderRating) ratings.get(j)).getCoderId();
-                    curr = ((CoderRating) ratings.get(j));
-                    if (tempRating != rating) {
-                        rating = tempRating;
-                        rank = i;
-                    }
-                    psIns.setLong(1, tempCoderId);
-                    psIns.setFloat(2, (float) 100 * ((float) (coderCount - rank) / coderCount));
-                    psIns.setInt(3, rank);
-                    psIns.setInt(4, j + 1);
-                    psIns.setString(5, curr.getStateCode());
-                    psIns.setInt(6, rankType);
-                    psIns.setInt(7, ratingType);
-                    count += psIns.executeUpdate();
-                    printLoadProgress(count, "state coder rating rank");
-                }
-            }
-            log.info("Records loaded for state coder rating rank load: " + count);
-
-        } catch (SQLException sqle) {
-            DBMS.printSqlException(true, sqle);
-            throw new Exception("Load of 'state_coder_rank' table failed for state coder rating rank for " + curr.toString() + ".\n" +
-                    sqle.getMessage());
-        } finally {
-/*
-            close(rs);
-            close(psSel);
-*/
-            close(psIns);
-            close(psDel);
-        }
+        query = new StringBuffer(100);
+        query.append(" INSERT");
+        query.append(" INTO state_coder_rank (coder_id, percentile, rank, rank_no_tie, state_code, coder_rank_type_id, algo_rating_type_id)");
+        query.append(" VALUES (?, ?, ?, ?, ?, ?, ?)");
 
+        loadGroupRatingRank(RankEngine.STATE, rankType, ratingType, list, delete, query.toString(),
+                "state_coder_rank", "state coder rating rank");
     }
 
 
@@ -1109,103 +877,105 @@ public class TCLoadRank extends TCLoad {
     protected void loadSchoolRatingRank(int rankType, int ratingType, List list) throws Exception {
         log.debug("loadSchoolRatingRank called...");
         StringBuffer query = null;
+
+        query = new StringBuffer(100);
+        query.append(" DELETE");
+        query.append(" FROM school_coder_rank");
+        query.append(" WHERE coder_rank_type_id = " + rankType);
+        query.append(" AND algo_rating_type_id = " + ratingType);
+        String delete = query.toString();
+
+        query = new StringBuffer(100);
+        query.append(" INSERT");
+        query.append(" INTO school_coder_rank (coder_id, percentile, rank, rank_no_tie, school_id, coder_rank_type_id, algo_rating_type_id)");
+        query.append(" VALUES (?, ?, ?, ?, ?, ?, ?)");
+
+        loadGroupRatingRank(RankEngine.SCHOOL, rankType, ratingType, list, delete, query.toString(),
+                "school_coder_rank", "school coder rating rank");
+    }
+
+
+    /**
+     * Loads one of the country, state or school coder rank tables.  The insert
+     * statement takes the coder id, percentile, rank, rank without ties, group
+     * key, rank type and rating type in that order.
+     */
+    private void loadGroupRatingRank(int grouping, int rankType, int ratingType, List list, String delete,
+                                     String insert, String table, String desc) throws Exception {
         PreparedStatement psDel = null;
-        //PreparedStatement psSel = null;
         PreparedStatement psIns = null;
-        //ResultSet rs = null;
         int count = 0;
-        int coderCount = 0;
-        List ratings = null;
-        CoderRating curr = null;
 
         try {
+            psDel = prepareStatement(delete, TARGET_DB);
+            psIns = prepareStatement(insert, TARGET_DB);
 
-            query = new StringBuffer(100);
-            query.append(" DELETE");
-            query.append(" FROM school_coder_rank");
-            query.append(" WHERE coder_rank_type_id = " + rankType);
-            query.append(" AND algo_rating_type_id = " + ratingType);
-            psDel = prepareStatement(query.toString(), TARGET_DB);
-
-            query = new StringBuffer(100);
-            query.append(" INSERT");
-            query.append(" INTO school_coder_rank (coder_id, percentile, rank, rank_no_tie, school_id, coder_rank_type_id, algo_rating_type_id)");
-            query.append(" VALUES (?, ?, ?, ?, ?, ?, ?)");
-            psIns = prepareStatement(query.toString(), TARGET_DB);
+            RankEngine.RankRows ranks = getRankEngine(list).getRanks(grouping,
+                    rankType == ACTIVE_RATING_RANK_TYPE_ID);
 
-            // delete all the records from the country ranking table
+            // delete all the records from the ranking table
             psDel.executeUpdate();
 
-
-            HashMap schools = new HashMap();
-            Long tempId = null;
-            List tempList = null;
-            CoderRating temp = null;
-
-            for (int i = 0; i < list.size(); i++) {
-                temp = (CoderRating) list.get(i);
-                if ((rankType == ACTIVE_RATING_RANK_TYPE_ID && temp.isActive()) ||
-                        rankType != ACTIVE_RATING_RANK_TYPE_ID) {
-                    if (temp.getSchoolId() > 0) {
-                        tempId = new Long(temp.getSchoolId());
-                        if (schools.containsKey(tempId)) {
-                            tempList = (List) schools.get(tempId);
-                        } else {
-                            tempList = new ArrayList(10);
-                        }
-                        tempList.add(list.get(i));
-                        schools.put(tempId, tempList);
-                        tempList = null;
-                    }
+            int size = ranks.size();
+            for (int j = 0; j < size; j++) {
+                psIns.setLong(1, ranks.getCoderId(j));
+                psIns.setFloat(2, ranks.getPercentile(j));
+                psIns.setInt(3, ranks.getRank(j));
+                psIns.setInt(4, ranks.getRankNoTie(j));
+                if (grouping == RankEngine.SCHOOL) {
+                    psIns.setLong(5, ((Long) ranks.getGroupKey(j)).longValue());
+                } else {
+                    psIns.setString(5, (String) ranks.getGroupKey(j));
                 }
-            }
-
-            for (Iterator it = schools.entrySet().iterator(); it.hasNext();) {
-                ratings = (List) ((Map.Entry) it.next()).getValue();
-                Collections.sort(ratings);
-                coderCount = ratings.size();
-
-                int i = 0;
-                int rating = 0;
-                int rank = 0;
-                int size = ratings.size();
-                int tempRating = 0;
-                long tempCoderId = 0;
-                for (int j = 0; j < size; j++) {
-                    i++;
-                    tempRating = ((CoderRating) ratings.get(j)).getRating();
-                    tempCoderId = ((CoderRating) ratings.get(j)).getCoderId();
-                    curr = (CoderRating) ratings.get(j);
-                    if (tempRating != rating) {
-                        rating = tempRating;
-                        rank = i;
-                    }
-                    psIns.setLong(1, tempCoderId);
-                    psIns.setFloat(2, (float) 100 * ((float) (coderCount - rank) / coderCount));
-                    psIns.setInt(3, rank);
-                    psIns.setInt(4, j + 1);
-                    psIns.setLong(5, curr.getSchoolId());
-                    psIns.setInt(6, rankType);
-                    psIns.setInt(7, ratingType);
-                    count += psIns.executeUpdate();
-                    printLoadProgress(count, "school coder rating rank");
+                psIns.setInt(6, rankType);
+                psIns.setInt(7, ratingType);
+                psIns.addBatch();
+                if ((j + 1) % BATCH_SIZE == 0) {
+                    count += executeBatch(psIns);
+                    printLoadProgress(count, desc);
                 }
             }
-            log.info("Records loaded for school coder rating rank load: " + count);
+            count += executeBatch(psIns);
+            log.info("Records loaded for " + desc + " load: " + count);
 
         } catch (SQLException sqle) {
             DBMS.printSqlException(true, sqle);
-            throw new Exception("Load of 'school_coder_rank' table failed for " + curr.toString() + ".\n" +
+            throw new Exception("Load of '" + table + "' table failed for " + desc + ".\n" +
                     sqle.getMessage());
         } finally {
-/*
-            close(rs);
-            close(psSel);
-*/
             close(psIns);
             close(psDel);
         }
+    }
 
+    /**
+     * Gets the rank engine for a list of CoderRating objects.  The engine
+     * of the last list is kept, as every rank load for a round uses the same one.
+     */
+    protected RankEngine getRankEngine(List list) {
+        if (rankedList != list) {
+            int size = list.size();
+            long[] coderIds = new long[size];
+            int[] ratings = new int[size];
+            boolean[] active = new boolean[size];
+            String[] countryCodes = new String[size];
+            String[] stateCodes = new String[size];
+            long[] schoolIds = new long[size];
+            for (int i = 0; i < size; i++) {
+                CoderRating cr = (CoderRating) list.get(i);
+                coderIds[i] = cr.getCoderId();
+                ratings[i] = cr.getRating();
+                active[i] = cr.isActive();
+                countryCodes[i] = cr.getCountryCode();
+                stateCodes[i] = cr.getStateCode();
+                schoolIds[i] = cr.getSchoolId();
+            }
+            long start = System.currentTimeMillis();
+            rankEngine = new RankEngine(coderIds, ratings, active, countryCodes, stateCodes, schoolIds);
+            rankedList = list;
+            log.info("ranked " + size + " coders in " + (System.currentTimeMillis() - start) + " milliseconds");
+        }
+        return rankEngine;
     }
 
 
@@ -1446,22 +1216,17 @@ public class TCLoadRank extends TCLoad {
      * @return a list of CountryRank with the country's ranking
      */
     private List calculateCountryRank(List list) {
-        ArrayList ratings = new ArrayList(list.size());
+        int[] order = getRankEngine(list).getOrder();
         CoderRating cr = null;
-        for (int i = 0; i < list.size(); i++) {
-            cr = (CoderRating) list.get(i);
-            if (cr.isActive()) {
-                ratings.add(cr);
-            }
-        }
-        Collections.sort(ratings);
 
-        int size = ratings.size();
+        int size = order.length;
         Map countryRating = new HashMap();
 
-        // Add all the coders to their country's rating
+        // Add all the active coders to their country's rating, best rated first
         for (int i = 0; i < size; i++) {
-            cr = (CoderRating) ratings.get(i);
+            cr = (CoderRating) list.get(order[i]);
+            if (!cr.isActive()) continue;
+
             String cc = cr.getCountryCode();
 
             if (cc == null || (cc.trim().length() == 0)) continue;
@@ -20,13 +20,20 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 public class TCLoadRequests extends TCLoad {
     private static Logger log = Logger.getLogger(TCLoadRequests.class);
@@ -45,20 +52,38 @@ public class TCLoadRequests extends TCLoad {
     private HashMap sessionMap = new HashMap();
     private HashMap calendarMap = new HashMap();
     private PreparedStatement getUrlPs = null;
-    private PreparedStatement getNamePs = null;
     private PreparedStatement addSiteHitPs = null;
     private PreparedStatement createUrlPs = null;
     long nextSessionID = 0;
 
+    /**
+     * The highest url_id in the url dictionary, urls created after it are
+     * looked up by id.
+     */
+    private long maxUrlId = 0;
+
+    /**
+     * How many requests can be waiting between the source read and the target write.
+     */
+    private static final int REQUEST_QUEUE_SIZE = 10 * BATCH_SIZE;
+
     private final static String GET_URL =
             " select url_id" +
             " from url" +
             " where url = ?";
 
-    private final static String GET_NAME =
-            " select page_name" +
-            " from url " +
-            " where url = ?";
+    private final static String URL_LIST =
+            " select url_id" +
+            " , url" +
+            " from url" +
+            " order by url_id";
+
+    private final static String NEW_URL_LIST =
+            " select url_id" +
+            " , url" +
+            " from url" +
+            " where url_id > ?" +
+            " order by url_id";
 
     private final static String REQUEST_LIST =
             " select user_id" +
@@ -123,7 +148,6 @@ public class TCLoadRequests extends TCLoad {
 
             //creating this one ahead of time so that we can reuse it.
             getUrlPs = prepareStatement(GET_URL, TARGET_DB);
-            getNamePs = prepareStatement(GET_NAME, TARGET_DB);
             addSiteHitPs = prepareStatement(ADD_SITE_HIT, TARGET_DB);
             createUrlPs = prepareStatement(CREATE_URL, TARGET_DB);
 
@@ -140,7 +164,6 @@ public class TCLoadRequests extends TCLoad {
             close(getUrlPs);
             close(addSiteHitPs);
             close(createUrlPs);
-            close(getNamePs);
         }
     }
 
@@ -179,6 +202,11 @@ public class TCLoadRequests extends TCLoad {
     }
 
 
+    /**
+     * Loads the requests into site_hit.  The requests are read from the source on their own
+     * thread and handed through a bounded queue to this one, which writes them to the target
+     * in batches: first the urls that aren't in the url dictionary yet, then the hits.
+     */
     private void loadWebRequests() throws Exception {
         //log.debug("called loadWebRequests()");
         PreparedStatement psSel = null;
@@ -187,10 +215,12 @@ public class TCLoadRequests extends TCLoad {
 
         ResultSet rs = null;
         int count = 0;
-        int retVal = 0;
+        RequestReader reader = null;
+        Thread readerThread = null;
 
         try {
             nextSessionID = getNextSessionID();
+            loadUrls();
 
             psClean = prepareStatement(CLEAN, TARGET_DB);
             psClean.setTimestamp(1, fLastWebLogTime);
@@ -202,40 +232,28 @@ public class TCLoadRequests extends TCLoad {
             psSel.setTimestamp(2, fStartTime);
 
             rs = psSel.executeQuery();
-            URL url = null;
-
-            long urlId;
-            Timestamp time;
-            while (rs.next()) {
-                url = new URL(rs.getString("url"));
-                time = rs.getTimestamp("timestamp");
-                urlId = getUrlId(url);
-                if (urlId < 0) {
-                    //create the url in the db
-                    createUrl(url);
-                    urlId = getUrlId(url);
+
+            reader = new RequestReader(rs);
+            readerThread = new Thread(reader, "TCLoadRequests.reader");
+            readerThread.start();
+
+            List batch = new ArrayList(BATCH_SIZE);
+            boolean done = false;
+            while (!done) {
+                batch.add(reader.take());
+                reader.drainTo(batch, BATCH_SIZE - 1);
+                if (batch.get(batch.size() - 1) == Request.END) {
+                    batch.remove(batch.size() - 1);
+                    done = true;
                 }
-                addSiteHitPs.clearParameters();
-                if (rs.getString("user_id") == null)
-                    addSiteHitPs.setNull(1, Types.DECIMAL);
-                else
-                    addSiteHitPs.setLong(1, rs.getLong("user_id"));
-                addSiteHitPs.setLong(2, urlId);
-                addSiteHitPs.setTimestamp(3, time);
-                addSiteHitPs.setLong(4, getSessionId(rs.getString("session_id")));
-                addSiteHitPs.setLong(5, getCalendarId(time));
-
-                retVal = addSiteHitPs.executeUpdate();
-
-                count += retVal;
-                if (retVal != 1) {
-                    log.info("TCLoadRequests:site_hit Insert for " +
-                            "url_id  " + urlId + " user id " + rs.getString("user_id") + " time " + time +
-                            " session " + rs.getString("session_id") + " modified " + retVal + " rows, not one.");
+                if (!batch.isEmpty()) {
+                    count += addSiteHits(batch);
+                    batch.clear();
+                    printLoadProgress(count, "site_hit");
                 }
-
-                printLoadProgress(count, "site_hit");
             }
+            reader.checkError();
+
             log.info("deleting transactional records.");
             psDel = prepareStatement(DELETE, SOURCE_DB);
             psDel.setTimestamp(1, fStartTime);
@@ -247,62 +265,165 @@ public class TCLoadRequests extends TCLoad {
             throw new Exception("Load of 'site_hit' table failed.\n" +
                     sqle.getMessage());
         } finally {
+            if (readerThread != null) {
+                reader.stop();
+                readerThread.join();
+            }
             close(rs);
             close(psSel);
             close(psClean);
+            close(psDel);
+        }
+    }
+
+    /**
+     * Writes a batch of requests to site_hit, creating the urls that aren't in the dictionary.
+     *
+     * @return the number of rows inserted
+     */
+    private int addSiteHits(List requests) throws Exception {
+        URL[] urls = new URL[requests.size()];
+        Map newUrls = new LinkedHashMap();
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = new URL(((Request) requests.get(i)).url);
+            if (!urlMap.containsKey(urls[i].getUrl()) && !newUrls.containsKey(urls[i].getUrl())) {
+                newUrls.put(urls[i].getUrl(), urls[i]);
+            }
+        }
+        if (!newUrls.isEmpty()) {
+            createUrls(newUrls.values());
+        }
+
+        for (int i = 0; i < urls.length; i++) {
+            Request r = (Request) requests.get(i);
+            long urlId = getUrlId(urls[i]);
+            if (urlId < 0) {
+                throw new Exception("Load of 'site_hit' table failed.\nurl " + urls[i] + " was not created.");
+            }
+            if (r.userId == null)
+                addSiteHitPs.setNull(1, Types.DECIMAL);
+            else
+                addSiteHitPs.setLong(1, r.userId.longValue());
+            addSiteHitPs.setLong(2, urlId);
+            addSiteHitPs.setTimestamp(3, r.time);
+            addSiteHitPs.setLong(4, getSessionId(r.sessionId));
+            addSiteHitPs.setLong(5, getCalendarId(r.time));
+            addSiteHitPs.addBatch();
+        }
+        int ret = executeBatch(addSiteHitPs);
+        if (ret != urls.length) {
+            log.info("TCLoadRequests:site_hit Insert of " + urls.length + " requests modified " + ret +
+                    " rows, not " + urls.length + ".");
+        }
+        return ret;
+    }
+
+    /**
+     * Loads the url dictionary with every url in the url table.
+     */
+    private void loadUrls() throws Exception {
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = prepareStatement(URL_LIST, TARGET_DB);
+            rs = ps.executeQuery();
+            addUrls(rs);
+            log.info("loaded " + urlMap.size() + " urls");
+        } catch (SQLException sqle) {
+            DBMS.printSqlException(true, sqle);
+            throw new Exception("Load of 'url' table failed.\n" +
+                    sqle.getMessage());
+        } finally {
+            close(rs);
+            close(ps);
+        }
+    }
+
+    /**
+     * Adds url_id, url rows to the url dictionary.  They must come in url_id order,
+     * so that if a url is in the table more than once its first id is used.
+     */
+    private void addUrls(ResultSet rs) throws SQLException {
+        while (rs.next()) {
+            long urlId = rs.getLong(1);
+            String url = rs.getString(2);
+            if (urlMap.containsKey(url)) {
+                log.error("There was more than 1 entry for url " + url + " so I chose the first " + urlMap.get(url));
+            } else {
+                urlMap.put(url, new Long(urlId));
+            }
+            if (urlId > maxUrlId) {
+                maxUrlId = urlId;
+            }
         }
     }
 
 
     /**
+     * Creates urls in a batch and adds them to the url dictionary.
      *
-     * @param url
+     * @param urls the URLs to create
      */
-    private void createUrl(URL url) throws Exception {
-        //log.debug("called createUrl " + url.getUrl());
+    private void createUrls(Collection urls) throws Exception {
+        //log.debug("called createUrls " + urls.size());
+        URL url = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
 
         try {
 
-            createUrlPs.clearParameters();
-            createUrlPs.setString(1, url.getUrl());
-            if (url.hasCoderId()) {
-                long coderId = url.getCoderId();
-                if (coderId>0) {
-                    createUrlPs.setLong(2, coderId);
+            for (Iterator it = urls.iterator(); it.hasNext();) {
+                url = (URL) it.next();
+                createUrlPs.setString(1, url.getUrl());
+                if (url.hasCoderId()) {
+                    long coderId = url.getCoderId();
+                    if (coderId>0) {
+                        createUrlPs.setLong(2, coderId);
+                    } else {
+                        createUrlPs.setNull(2, Types.DECIMAL);
+                    }
                 } else {
                     createUrlPs.setNull(2, Types.DECIMAL);
                 }
-            } else {
-                createUrlPs.setNull(2, Types.DECIMAL);
-            }
-            if (url.hasRoundId()) {
-                long roundId = url.getRoundId();
-                if (roundId>0) {
-                    createUrlPs.setLong(3, roundId);
+                if (url.hasRoundId()) {
+                    long roundId = url.getRoundId();
+                    if (roundId>0) {
+                        createUrlPs.setLong(3, roundId);
+                    } else {
+                        createUrlPs.setLong(3, roundId);
+                    }
                 } else {
-                    createUrlPs.setLong(3, roundId);
+                    createUrlPs.setNull(3, Types.DECIMAL);
                 }
-            } else {
-                createUrlPs.setNull(3, Types.DECIMAL);
+                createUrlPs.setString(4, url.getPageName());
+                createUrlPs.addBatch();
             }
-            createUrlPs.setString(4, url.getPageName());
+            url = null;
 
-            int ret = createUrlPs.executeUpdate();
+            int ret = executeBatch(createUrlPs);
 
-            if (ret != 1)
-                log.info("TCLoadRequests: Insert for " +
-                        "url " + url.getUrl() + " coderId " + url.getCoderId() + " roundId " + url.getRoundId() +
-                        " pageName " + url.getPageName() + " modified "
-                        + ret + " rows, not one.");
+            if (ret != urls.size())
+                log.info("TCLoadRequests: Insert of " + urls.size() + " urls modified "
+                        + ret + " rows, not " + urls.size() + ".");
 
+            // pick up the ids of the urls just created
+            ps = prepareStatement(NEW_URL_LIST, TARGET_DB);
+            ps.setLong(1, maxUrlId);
+            rs = ps.executeQuery();
+            addUrls(rs);
 
         } catch (SQLException sqle) {
-            log.error("TCLoadRequests: Insert for " +
+            if (url != null) {
+                log.error("TCLoadRequests: Insert for " +
                         "url " + url.getUrl() + " coderId " + url.getCoderId() + " roundId " + url.getRoundId() +
                         " pageName " + url.getPageName());
+            }
             DBMS.printSqlException(true, sqle);
             throw new Exception("Load of 'url' table failed.\n" +
                     sqle.getMessage());
+        } finally {
+            close(rs);
+            close(ps);
         }
     }
 
@@ -682,27 +803,8 @@ public class TCLoadRequests extends TCLoad {
                         found = true;
                     }
                 }
-                if (!found) {
-                    //perhaps we've seen this before and it's got a name in the database
-                    ResultSet rs = null;
-
-                    try {
-                        getNamePs.clearParameters();
-                        getNamePs.setString(1, url);
-                        rs = getNamePs.executeQuery();
-                        if (rs.next()) {
-                            ret = rs.getString("page_name");
-                            otherPageNameMap.put(url, ret);
-                        }
-
-                    } catch (SQLException sqle) {
-                        DBMS.printSqlException(true, sqle);
-                        //ignore otherwise...we'll just have to use our default page name
-                    } finally {
-                        close(rs);
-                    }
-
-                }
+                // every url in the url table is in the dictionary, so the urls being
+                // created have no page name to look up
             }
             return ret;
         }
@@ -713,4 +815,87 @@ public class TCLoadRequests extends TCLoad {
 
     }
 
+
+    /**
+     * A row of the request table.
+     */
+    private static final class Request {
+        /**
+         * Marks the end of the requests.
+         */
+        private static final Request END = new Request(null, null, null, null);
+
+        private final Long userId;
+        private final String url;
+        private final String sessionId;
+        private final Timestamp time;
+
+        private Request(Long userId, String url, String sessionId, Timestamp time) {
+            this.userId = userId;
+            this.url = url;
+            this.sessionId = sessionId;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Reads the requests from the source into a bounded queue, followed by <code>Request.END</code>.
+     */
+    private static final class RequestReader implements Runnable {
+        private final ResultSet rs;
+        private final BlockingQueue queue = new ArrayBlockingQueue(REQUEST_QUEUE_SIZE);
+        private volatile boolean stopped = false;
+        private volatile Exception error = null;
+
+        private RequestReader(ResultSet rs) {
+            this.rs = rs;
+        }
+
+        public void run() {
+            try {
+                while (!stopped && rs.next()) {
+                    Long userId = rs.getString("user_id") == null ? null : new Long(rs.getLong("user_id"));
+                    put(new Request(userId, rs.getString("url"), rs.getString("session_id"),
+                            rs.getTimestamp("timestamp")));
+                }
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                put(Request.END);
+            }
+        }
+
+        private void put(Request r) {
+            try {
+                while (!stopped && !queue.offer(r, 1, TimeUnit.SECONDS)) ;
+            } catch (InterruptedException e) {
+                stopped = true;
+            }
+        }
+
+        private Request take() throws InterruptedException {
+            return (Request) queue.take();
+        }
+
+        private void drainTo(List l, int max) {
+            queue.drainTo(l, max);
+        }
+
+        /**
+         * Stops reading, the requests not read yet are left in the result set.
+         */
+        private void stop() {
+            stopped = true;
+        }
+
+        /**
+         * Rethrows the error that stopped the reader, if there was one.
+         */
+        private void checkError() throws Exception {
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
 }
@@ -56,6 +56,7 @@ public class TCLoadRound extends TCLoad {
     private int ROUND_LOG_TYPE = 1;    // roundlogtype
     private int CHALLENGE_NULLIFIED = 92;   // challengenullified
     private boolean FULL_LOAD = false;//fullload
+    private boolean RESUME = true;//resume
 
     private static int PROBLEM_WRITER_USER_TYPE_ID = 5;
     private static int PROBLEM_TESTER_USER_TYPE_ID = 6;
@@ -82,7 +83,8 @@ public class TCLoadRound extends TCLoad {
                 "  [-contestroom number] : Type id for contest rooms             (2)\n" +
                 "  [-roundlogtype number] : Log type id for this load            (1)\n" +
                 "  [-challengenullified number] : id for nullified challenges    (2)\n" +
-                "  [-fullload boolean] : true-clean round load, false-selective  (false)\n";
+                "  [-fullload boolean] : true-clean round load, false-selective  (false)\n" +
+                "  [-resume boolean]   : true-resume a failed load of the round, false-start over  (true)\n";
     }
 
     /**
@@ -154,6 +156,12 @@ public class TCLoadRound extends TCLoad {
                 log.info("New fullload flag is " + FULL_LOAD);
             }
 
+            tmpBool = retrieveBooleanParam("resume", params, true);
+            if (tmpBool != null) {
+                RESUME = tmpBool.booleanValue();
+                log.info("New resume flag is " + RESUME);
+            }
+
 
         } catch (Exception ex) {
             setReasonFailed(ex.getMessage());
@@ -170,43 +178,118 @@ public class TCLoadRound extends TCLoad {
         try {
             log.info("Loading round: " + fRoundId);
 
-            fStartTime = new java.sql.Timestamp(System.currentTimeMillis());
+            startCheckpoints("round " + fRoundId, RESUME);
+
+            // a resumed load keeps the start time of the run that failed, so that the
+            // changes made since then are picked up by the next load
+            fStartTime = new java.sql.Timestamp(getHighWaterMark("start", System.currentTimeMillis()));
+            setHighWaterMark("start", fStartTime.getTime());
 
             getLastUpdateTime();
 
-            clearRound();
+            if (!isStepComplete("clearRound")) {
+                startStep("clearRound");
+                clearRound();
+                completeStep("clearRound");
+            }
+
+            if (!isStepComplete("loadSeasons")) {
+                startStep("loadSeasons");
+                loadSeasons();
+                completeStep("loadSeasons");
+            }
 
-            loadSeasons();
+            if (!isStepComplete("loadContest")) {
+                startStep("loadContest");
+                loadContest();
+                completeStep("loadContest");
+            }
 
-            loadContest();
+            if (!isStepComplete("loadRound")) {
+                startStep("loadRound");
+                loadRound();
+                completeStep("loadRound");
+            }
 
-            loadRound();
+            if (!isStepComplete("loadProblem")) {
+                startStep("loadProblem");
+                loadProblem();
+                completeStep("loadProblem");
+            }
 
-            loadProblem();
+            if (!isStepComplete("loadProblemCategory")) {
+                startStep("loadProblemCategory");
+                loadProblemCategory();
+                completeStep("loadProblemCategory");
+            }
 
-            loadProblemCategory();
+            if (!isStepComplete("loadProblemSubmission")) {
+                startStep("loadProblemSubmission");
+                loadProblemSubmission();
+                completeStep("loadProblemSubmission");
+            }
 
-            loadProblemSubmission();
+            if (!isStepComplete("loadSystemTestCase")) {
+                startStep("loadSystemTestCase");
+                loadSystemTestCase();
+                completeStep("loadSystemTestCase");
+            }
 
-            loadSystemTestCase();
+            if (!isStepComplete("loadSystemTestResult")) {
+                startStep("loadSystemTestResult");
+                loadSystemTestResult();
+                completeStep("loadSystemTestResult");
+            }
 
-            loadSystemTestResult();
+            if (!isStepComplete("loadRoom")) {
+                startStep("loadRoom");
+                loadRoom();
+                completeStep("loadRoom");
+            }
 
-            loadRoom();
+            if (!isStepComplete("loadRoomResult")) {
+                startStep("loadRoomResult");
+                loadRoomResult();
+                completeStep("loadRoomResult");
+            }
 
-            loadRoomResult();
+            if (!isStepComplete("loadRating")) {
+                startStep("loadRating");
+                loadRating();
+                completeStep("loadRating");
+            }
 
-            loadRating();
+            if (!isStepComplete("loadSeasonRating")) {
+                startStep("loadSeasonRating");
+                loadSeasonRating();
+                completeStep("loadSeasonRating");
+            }
 
-            loadSeasonRating();
+            if (!isStepComplete("loadCoderProblem")) {
+                startStep("loadCoderProblem");
+                loadCoderProblem();
+                completeStep("loadCoderProblem");
+            }
 
-            loadCoderProblem();
+            if (!isStepComplete("loadChallenge")) {
+                startStep("loadChallenge");
+                loadChallenge();
+                completeStep("loadChallenge");
+            }
 
-            loadChallenge();
+            if (!isStepComplete("loadProblemAuthors")) {
+                startStep("loadProblemAuthors");
+                loadProblemAuthors();
+                completeStep("loadProblemAuthors");
+            }
 
-            loadProblemAuthors();
+            if (!isStepComplete("setLastUpdateTime")) {
+                startStep("setLastUpdateTime");
+                setLastUpdateTime();
+                completeStep("setLastUpdateTime");
+            }
 
-            setLastUpdateTime();
+            finishCheckpoints();
 
             log.info("SUCCESS: Round " + fRoundId +
                     " load ran successfully.");
@@ -1944,6 +2027,8 @@ public class TCLoadRound extends TCLoad {
         int division_id = 0;
         int problem_id = 0;
         int component_id = 0;
+        int lastCoderId = 0;
+        int marked = 0;
 
         try {
             query = new StringBuffer(100);
@@ -2021,6 +2106,8 @@ public class TCLoadRound extends TCLoad {
             query.append("          FROM group_user gu ");
             query.append("         WHERE gu.user_id = cs.coder_id ");
             query.append("           AND gu.group_id = 13)");
+            query.append("   AND cs.coder_id > ?");
+            query.append(" ORDER BY cs.coder_id");
 
 
             psSel = prepareStatement(query.toString(), SOURCE_DB);
@@ -2083,6 +2170,7 @@ public class TCLoadRound extends TCLoad {
 
             // On to the load
             psSel.setInt(1, fRoundId);
+            psSel.setLong(2, getHighWaterMark("loadCoderProblem", 0));
             rs = psSel.executeQuery();
 
 
@@ -2092,6 +2180,13 @@ public class TCLoadRound extends TCLoad {
                 division_id = rs.getInt(3);
                 problem_id = rs.getInt(4);
                 component_id = rs.getInt("component_id");
+
+                // every coder before this one has been fully loaded
+                if (coder_id != lastCoderId && count - marked >= CHECKPOINT_INTERVAL) {
+                    setHighWaterMark("loadCoderProblem", lastCoderId);
+                    marked = count;
+                }
+                lastCoderId = coder_id;
                 // if they didn't submit, use the difference between open time and the end of the coding phase
                 // otherwise use the difference between open time and submit time
                 if (coder_id == 20525058) {
@@ -23,7 +23,12 @@ import org.w3c.dom.NodeList;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -43,6 +48,12 @@ public class TCLoadUtility {
      */
     private static String sDriverName = "com.informix.jdbc.IfxDriver";
 
+    /**
+     * The file the metrics of every load are appended to, null if they
+     * are just logged.
+     */
+    private static String sMetricsFile = null;
+
     /**
      * The main method parses the command line options (or XML file when we
      * decide to go that route), determines the class name of the load to run,
@@ -240,6 +251,9 @@ public class TCLoadUtility {
         }
 
         setDatabases(load, params);
+        if (params.get("metricsfile") != null) {
+            sMetricsFile = (String) params.get("metricsfile");
+        }
         try {
             doLoad(load);
         } catch (Exception e) {
@@ -270,10 +284,12 @@ public class TCLoadUtility {
         } catch (Exception e) {
             sErrorMsg.setLength(0);
             sErrorMsg.append(tcload.getReasonFailed());
+            reportMetrics(tcload, false);
             closeLoad(tcload);
             throw e;
 
         }
+        reportMetrics(tcload, true);
         closeLoad(tcload);
     }
 
@@ -307,10 +323,12 @@ public class TCLoadUtility {
         } catch (Exception e) {
             sErrorMsg.setLength(0);
             sErrorMsg.append(tcload.getReasonFailed());
+            reportMetrics(tcload, false);
             closeLoad(tcload);
             throw e;
 
         }
+        reportMetrics(tcload, true);
         closeLoad(tcload);
     }
 
@@ -354,6 +372,43 @@ public class TCLoadUtility {
         }
     }
 
+    /**
+     * Logs the metrics of a load as JSON and appends them to the metrics file, if
+     * there is one.  The file gets CSV rows if its name ends in .csv, and a line of
+     * JSON per load otherwise.
+     */
+    protected static void reportMetrics(TCLoad tcload, boolean succeeded) {
+        LoadMetrics metrics = tcload.getMetrics();
+        metrics.finish(succeeded);
+
+        StringWriter json = new StringWriter();
+        metrics.writeJson(new PrintWriter(json));
+        log.info("Load metrics: " + json.toString().trim());
+
+        if (sMetricsFile != null) {
+            boolean csv = sMetricsFile.toLowerCase().endsWith(".csv");
+            boolean exists = new File(sMetricsFile).exists();
+            PrintWriter out = null;
+            try {
+                out = new PrintWriter(new FileWriter(sMetricsFile, true));
+                if (csv) {
+                    if (!exists) {
+                        out.println(LoadMetrics.CSV_HEADER);
+                    }
+                    metrics.writeCsv(out);
+                } else {
+                    metrics.writeJson(out);
+                }
+            } catch (IOException e) {
+                log.error("Unable to write the load metrics to " + sMetricsFile, e);
+            } finally {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+    }
+
     protected static void setUsageError(String msg) {
         sErrorMsg.setLength(0);
         sErrorMsg.append(msg);
@@ -361,6 +416,8 @@ public class TCLoadUtility {
         sErrorMsg.append("   -load class   : Classname of load to run.\n");
         sErrorMsg.append("   -sourcedb URL : URL of source database.\n");
         sErrorMsg.append("   -targetdb URL : URL of target database.\n");
+        sErrorMsg.append("   [-metricsfile file] : File the load metrics are appended to,\n");
+        sErrorMsg.append("                         as CSV if it ends in .csv, JSON lines otherwise.\n");
         fatal_error();
     }
 
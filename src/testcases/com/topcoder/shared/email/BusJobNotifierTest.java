@@ -0,0 +1,58 @@
+package com.topcoder.shared.email;
+
+import com.topcoder.shared.messagebus.BusFactory;
+import com.topcoder.shared.messagebus.invm.InVMBusFactory;
+import com.topcoder.shared.messagebus.jms.JMSConfigurationParser;
+import junit.framework.TestCase;
+
+import java.util.Date;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends notifications through the in-VM bus with the shipped bus configuration,
+ * serializing them with its mappers.
+ */
+public final class BusJobNotifierTest extends TestCase {
+    private final BlockingQueue received = new LinkedBlockingQueue();
+    private BusJobNotifier notifier;
+    private final JobNotifier.Listener listener = new JobNotifier.Listener() {
+        public void jobScheduled(int jobId, long startAfter) {
+            received.add(new long[]{jobId, startAfter});
+        }
+    };
+
+    protected void setUp() throws Exception {
+        System.setProperty("VM_INSTANCE_ID", "testVM");
+        BusFactory.configureFactory(new InVMBusFactory(new JMSConfigurationParser().getConfiguration(
+                JMSConfigurationParser.class.getResourceAsStream("busconfig.xml")), true));
+        notifier = new BusJobNotifier();
+        JobNotifier.configure(notifier);
+    }
+
+    protected void tearDown() throws Exception {
+        notifier.removeListener(listener);
+        JobNotifier.configure(null);
+        BusFactory.getFactory().release();
+    }
+
+    public void testRoundTrip() throws Exception {
+        notifier.addListener(listener);
+        JobNotifier.notifyJob(10, new Date(1234));
+        JobNotifier.notifyJob(11, null);
+        long[] first = (long[]) received.poll(2, TimeUnit.SECONDS);
+        long[] second = (long[]) received.poll(2, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertEquals(10, first[0]);
+        assertEquals(1234, first[1]);
+        assertEquals(11, second[0]);
+        assertEquals(0, second[1]);
+    }
+
+    public void testPublishWithoutListeners() throws Exception {
+        // fails if the bus configuration has no channel or mapper for the notifications
+        notifier.publish(10, 1234);
+    }
+}
@@ -0,0 +1,80 @@
+package com.topcoder.shared.email;
+
+import com.topcoder.shared.util.TCSEmailMessage;
+import junit.framework.TestCase;
+
+public final class EmailRendererTest extends TestCase {
+    private static final String TEMPLATE =
+            "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:output method=\"text\"/>"
+            + "<xsl:template match=\"/\">Hello <xsl:value-of select=\"member/handle\"/>!</xsl:template>"
+            + "</xsl:stylesheet>";
+
+    protected void setUp() throws Exception {
+        EmailRenderer.clear();
+    }
+
+    public void testRender() throws Exception {
+        TCSEmailMessage message = new TCSEmailMessage();
+        EmailRenderer.render(message, 1, TEMPLATE, member("tomek", "tomek@topcoder.com"));
+        assertEquals("Hello tomek!", message.getBody());
+        assertEquals("tomek@topcoder.com", message.getToAddress(TCSEmailMessage.TO)[0].toString());
+    }
+
+    public void testCompilesOnce() throws Exception {
+        long compiled = EmailRenderer.getCompileCount();
+        TCSEmailMessage message = new TCSEmailMessage();
+        for (int i = 0; i < 100; i++) {
+            EmailRenderer.render(message, 1, TEMPLATE, member("user" + i, "user" + i + "@topcoder.com"));
+            assertEquals("Hello user" + i + "!", message.getBody());
+            assertEquals("user" + i + "@topcoder.com", message.getToAddress(TCSEmailMessage.TO)[0].toString());
+        }
+        assertEquals(compiled + 1, EmailRenderer.getCompileCount());
+    }
+
+    public void testRecompilesChangedTemplate() throws Exception {
+        long compiled = EmailRenderer.getCompileCount();
+        TCSEmailMessage message = new TCSEmailMessage();
+        EmailRenderer.render(message, 1, TEMPLATE, member("tomek", "tomek@topcoder.com"));
+        String changed = TEMPLATE.replaceAll("Hello", "Bye");
+        EmailRenderer.render(message, 1, changed, member("tomek", "tomek@topcoder.com"));
+        assertEquals("Bye tomek!", message.getBody());
+        EmailRenderer.render(message, 1, changed, member("tomek", "tomek@topcoder.com"));
+        assertEquals(compiled + 2, EmailRenderer.getCompileCount());
+    }
+
+    public void testMissingAddress() throws Exception {
+        try {
+            EmailRenderer.render(new TCSEmailMessage(), 1, TEMPLATE, "<member><handle>tomek</handle></member>");
+            fail("The member has no address");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().startsWith("Failed to parse TO address"));
+        }
+        // the thread can still render after a failure
+        TCSEmailMessage message = new TCSEmailMessage();
+        EmailRenderer.render(message, 1, TEMPLATE, member("tomek", "tomek@topcoder.com"));
+        assertEquals("Hello tomek!", message.getBody());
+    }
+
+    public void testGetRecipient() throws Exception {
+        assertEquals("tomek@topcoder.com", EmailRenderer.getRecipient(member("tomek", "tomek@topcoder.com")));
+        assertEquals("a&b@topcoder.com", EmailRenderer.getRecipient(member("tomek", "a&amp;b@topcoder.com")));
+        assertNull(EmailRenderer.getRecipient("<member><handle>tomek</handle></member>"));
+        assertNull(EmailRenderer.getRecipient("<report><email_address>x@topcoder.com</email_address></report>"));
+        try {
+            EmailRenderer.getRecipient("<member>");
+            fail("The data is not well formed");
+        } catch (Exception e) {
+            // expected
+        }
+        assertEquals("tomek@topcoder.com", EmailRenderer.getRecipient(member("tomek", "tomek@topcoder.com")));
+    }
+
+    public void testRenderData() throws Exception {
+        assertEquals("Hello tomek!", EmailRenderer.render(2, TEMPLATE, member("tomek", "tomek@topcoder.com")));
+    }
+
+    private static String member(String handle, String address) {
+        return "<member><handle>" + handle + "</handle><email_address>" + address + "</email_address></member>";
+    }
+}
@@ -0,0 +1,70 @@
+package com.topcoder.shared.email;
+
+import com.topcoder.shared.ejb.EmailServices.EmailJob;
+import com.topcoder.shared.ejb.EmailServices.EmailJobDetail;
+import junit.framework.TestCase;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class JobDetailReaderTest extends TestCase {
+    private int calls;
+
+    public void testReadsAllRecords() throws Exception {
+        JobDetailReader reader = new JobDetailReader(job(1050), 7, 500);
+        int expected = 1;
+        while (reader.hasNext()) {
+            EmailJobDetail detail = reader.next();
+            assertEquals(expected, detail.getDetailId());
+            assertEquals("data" + expected, detail.getData());
+            expected++;
+        }
+        assertEquals(1051, expected);
+        assertEquals(3, calls);
+    }
+
+    public void testExactPages() throws Exception {
+        JobDetailReader reader = new JobDetailReader(job(1000), 7, 500);
+        int count = 0;
+        while (reader.hasNext()) {
+            reader.next();
+            count++;
+        }
+        assertFalse(reader.hasNext());
+        assertEquals(1000, count);
+        assertEquals(3, calls);
+    }
+
+    public void testEmptyJob() throws Exception {
+        JobDetailReader reader = new JobDetailReader(job(0), 7, 500);
+        assertFalse(reader.hasNext());
+        assertFalse(reader.hasNext());
+        assertEquals(1, calls);
+    }
+
+    /**
+     * A job with records 1 to count, only implementing getJobDetailRecords.
+     */
+    private EmailJob job(final int count) {
+        return (EmailJob) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {EmailJob.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (!method.getName().equals("getJobDetailRecords")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        calls++;
+                        assertEquals(new Integer(7), args[0]);
+                        int after = ((Integer) args[1]).intValue();
+                        int max = ((Integer) args[2]).intValue();
+                        List page = new ArrayList();
+                        for (int id = after + 1; id <= count && page.size() < max; id++) {
+                            page.add(new EmailJobDetail(id, 0, "data" + id, null));
+                        }
+                        return page;
+                    }
+                });
+    }
+}
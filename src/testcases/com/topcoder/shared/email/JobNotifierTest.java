@@ -0,0 +1,94 @@
+package com.topcoder.shared.email;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public final class JobNotifierTest extends TestCase {
+    private InProcessJobNotifier notifier;
+    private EmailJobScheduler scheduler;
+    private final List received = new ArrayList();
+
+    protected void setUp() throws Exception {
+        notifier = new InProcessJobNotifier();
+        JobNotifier.configure(notifier);
+    }
+
+    protected void tearDown() throws Exception {
+        if (scheduler != null) {
+            scheduler.release();
+        }
+        JobNotifier.configure(null);
+    }
+
+    public void testListeners() throws Exception {
+        JobNotifier.Listener failing = new JobNotifier.Listener() {
+            public void jobScheduled(int jobId, long startAfter) {
+                throw new IllegalStateException("Listener failure");
+            }
+        };
+        JobNotifier.Listener listener = new JobNotifier.Listener() {
+            public void jobScheduled(int jobId, long startAfter) {
+                received.add(new long[]{jobId, startAfter});
+            }
+        };
+        notifier.addListener(failing);
+        notifier.addListener(listener);
+        JobNotifier.notifyJob(10, new Date(1234));
+        JobNotifier.notifyJob(11, null);
+        assertEquals(2, received.size());
+        assertEquals(10, ((long[]) received.get(0))[0]);
+        assertEquals(1234, ((long[]) received.get(0))[1]);
+        assertEquals(0, ((long[]) received.get(1))[1]);
+
+        notifier.removeListener(listener);
+        JobNotifier.notifyJob(12, null);
+        assertEquals(2, received.size());
+    }
+
+    public void testNoNotifier() throws Exception {
+        JobNotifier.configure(null);
+        assertNull(JobNotifier.getNotifier());
+        // jobs are found by polling
+        JobNotifier.notifyJob(10, null);
+    }
+
+    public void testSchedulerWakesOnNotification() throws Exception {
+        scheduler = new EmailJobScheduler();
+        scheduler.startup();
+        Thread publisher = new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                JobNotifier.notifyJob(10, null);
+            }
+        };
+        long start = System.currentTimeMillis();
+        publisher.start();
+        scheduler.pause();
+        long elapsed = System.currentTimeMillis() - start;
+        // without the notification it would wait for the fallback poll
+        assertTrue("Took " + elapsed, elapsed >= 150 && elapsed < 2000);
+    }
+
+    public void testSchedulerWakesAtStartDate() throws Exception {
+        scheduler = new EmailJobScheduler();
+        scheduler.startup();
+        long start = System.currentTimeMillis();
+        JobNotifier.notifyJob(10, new Date(start + 500));
+        scheduler.pause();
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("Took " + elapsed, elapsed >= 450 && elapsed < 2000);
+
+        // a job that can already start wakes the scheduler right away
+        JobNotifier.notifyJob(11, new Date(start));
+        start = System.currentTimeMillis();
+        scheduler.pause();
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+}
@@ -0,0 +1,100 @@
+package com.topcoder.shared.email;
+
+import com.topcoder.shared.util.TokenBucket;
+import junit.framework.TestCase;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class JobSenderTest extends TestCase {
+    private ExecutorService pool;
+    private final AtomicInteger sent = new AtomicInteger(0);
+    private final AtomicInteger running = new AtomicInteger(0);
+    private final AtomicInteger maxRunning = new AtomicInteger(0);
+
+    protected void setUp() throws Exception {
+        pool = Executors.newFixedThreadPool(20);
+    }
+
+    protected void tearDown() throws Exception {
+        pool.shutdownNow();
+    }
+
+    public void testParallelSends() throws Exception {
+        JobSender sender = new JobSender(pool, 10, new TokenBucket(200, 1), null);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            sender.submit(slowSend(50));
+        }
+        sender.awaitIdle();
+        long elapsed = System.currentTimeMillis() - start;
+        assertEquals(100, sent.get());
+        assertEquals(0, sender.getInFlight());
+        assertTrue("Max running " + maxRunning.get(), maxRunning.get() <= 10 && maxRunning.get() > 1);
+        // 100 sends at 200 per second, one at a time it would take 5 seconds
+        assertTrue("Took " + elapsed, elapsed >= 450 && elapsed < 2000);
+    }
+
+    public void testSharedRelayLimit() throws Exception {
+        TokenBucket relay = new TokenBucket(200, 1);
+        final JobSender first = new JobSender(pool, 5, new TokenBucket(1000, 1), relay);
+        final JobSender second = new JobSender(pool, 5, new TokenBucket(1000, 1), relay);
+        long start = System.currentTimeMillis();
+        Thread other = new Thread() {
+            public void run() {
+                try {
+                    for (int i = 0; i < 100; i++) {
+                        second.submit(slowSend(1));
+                    }
+                } catch (InterruptedException e) {
+                    // the test fails on the count
+                }
+            }
+        };
+        other.start();
+        for (int i = 0; i < 100; i++) {
+            first.submit(slowSend(1));
+        }
+        other.join();
+        first.awaitIdle();
+        second.awaitIdle();
+        long elapsed = System.currentTimeMillis() - start;
+        assertEquals(200, sent.get());
+        // 200 sends at 200 per second for both jobs
+        assertTrue("Took " + elapsed, elapsed >= 900 && elapsed < 3000);
+    }
+
+    public void testRejectedSendRunsInCaller() throws Exception {
+        pool.shutdown();
+        JobSender sender = new JobSender(pool, 2, new TokenBucket(1000, 10), null);
+        final Thread caller = Thread.currentThread();
+        final boolean[] inCaller = new boolean[1];
+        sender.submit(new Runnable() {
+            public void run() {
+                inCaller[0] = Thread.currentThread() == caller;
+            }
+        });
+        assertTrue(inCaller[0]);
+        assertEquals(0, sender.getInFlight());
+    }
+
+    private Runnable slowSend(final long millis) {
+        return new Runnable() {
+            public void run() {
+                int now = running.incrementAndGet();
+                int max = maxRunning.get();
+                while (now > max && !maxRunning.compareAndSet(max, now)) {
+                    max = maxRunning.get();
+                }
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                sent.incrementAndGet();
+            }
+        };
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * BatchingBusPublisherTest
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * @version $Id$
+ */
+public class BatchingBusPublisherTest extends TestCase {
+    private RecordingPublisher target;
+
+    protected void setUp() throws Exception {
+        target = new RecordingPublisher();
+    }
+
+    public void testBatchSize() throws Exception {
+        BatchingBusPublisher publisher = new BatchingBusPublisher("test", target, 100, 1000, 1000);
+        for (int i = 0; i < 1000; i++) {
+            publisher.publish(newMessage(i));
+        }
+        publisher.flush();
+        assertEquals(1000, target.messages.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(String.valueOf(i), target.messages.get(i).getMessageId());
+        }
+        for (Integer size : target.batchSizes) {
+            assertTrue(size.intValue() <= 100);
+        }
+        // full batches don't wait for the delay
+        assertTrue(target.batchSizes.size() < 1000);
+        publisher.close();
+        assertTrue(target.closed);
+    }
+
+    public void testDelay() throws Exception {
+        BatchingBusPublisher publisher = new BatchingBusPublisher("test", target, 100, 200, 1000);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            publisher.publish(newMessage(i));
+        }
+        publisher.flush();
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(Collections.singletonList(new Integer(3)), target.batchSizes);
+        publisher.close();
+    }
+
+    public void testRetry() throws Exception {
+        target.failures = 1;
+        BatchingBusPublisher publisher = new BatchingBusPublisher("test", target, 10, 0, 1000);
+        publisher.publish(newMessage(1));
+        publisher.flush();
+        assertEquals(1, target.messages.size());
+        assertEquals(0, publisher.getFailedCount());
+        publisher.close();
+    }
+
+    public void testFailure() throws Exception {
+        target.failures = 2;
+        BatchingBusPublisher publisher = new BatchingBusPublisher("test", target, 10, 0, 1000);
+        publisher.publish(newMessage(1));
+        try {
+            publisher.flush();
+            fail("The message was dropped");
+        } catch (BusException e) {
+            // expected
+        }
+        assertEquals(1, publisher.getFailedCount());
+        publisher.publish(newMessage(2));
+        publisher.flush();
+        assertEquals(1, target.messages.size());
+        publisher.close();
+        try {
+            publisher.publish(newMessage(3));
+            fail("The publisher is closed");
+        } catch (BusException e) {
+            // expected
+        }
+    }
+
+    public void testNoMessageLostOnClose() throws Exception {
+        for (int run = 0; run < 50; run++) {
+            target.messages.clear();
+            final BatchingBusPublisher publisher = new BatchingBusPublisher("test", target, 5, 0, 4);
+            final AtomicInteger accepted = new AtomicInteger(0);
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread() {
+                    public void run() {
+                        try {
+                            for (int j = 0; ; j++) {
+                                publisher.publish(newMessage(j));
+                                accepted.incrementAndGet();
+                            }
+                        } catch (BusException e) {
+                            // closed
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            Thread.sleep(5);
+            publisher.close();
+            for (int i = 0; i < threads.length; i++) {
+                threads[i].join(1000);
+                assertFalse(threads[i].isAlive());
+            }
+            publisher.flush();
+            assertEquals(accepted.get(), target.messages.size());
+        }
+    }
+
+    private static BusMessage newMessage(int i) {
+        BusMessage message = new BusMessage();
+        message.setMessageId(String.valueOf(i));
+        return message;
+    }
+
+    private static class RecordingPublisher implements BusBatchPublisher {
+        private List<BusMessage> messages = Collections.synchronizedList(new ArrayList<BusMessage>());
+        private List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        private volatile int failures = 0;
+        private volatile boolean closed = false;
+
+        public void publish(List<BusMessage> batch) throws BusException {
+            if (failures > 0) {
+                failures--;
+                throw new BusException("Failed");
+            }
+            batchSizes.add(new Integer(batch.size()));
+            messages.addAll(batch);
+        }
+
+        public void publish(BusMessage message) throws BusException {
+            publish(Collections.singletonList(message));
+        }
+
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * BusRequestPublisherImplTest
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.topcoder.shared.messagebus.invm.InVMBusFactory;
+import com.topcoder.shared.messagebus.jms.JMSConfigurationParser;
+import com.topcoder.shared.messagebus.jms.activemq.ActiveMQBusFactory;
+import com.topcoder.shared.round.events.RoundCreatedEvent;
+import com.topcoder.shared.round.events.RoundDeletedEvent;
+import com.topcoder.shared.round.events.RoundEvent;
+import com.topcoder.shared.round.events.bus.RoundEventMessageMapper;
+
+/**
+ * @version $Id$
+ */
+public class BusRequestPublisherImplTest extends TestCase {
+    private RoundEventMessageMapper mapper = new RoundEventMessageMapper("test-mod", "RoundEvent");
+    private InVMBusFactory factory;
+    private BusRequestPublisherImpl requester;
+    private BusRequestListenerImpl responder;
+    private AtomicInteger handled = new AtomicInteger(0);
+    private volatile long handleTime = 0;
+
+    protected void setUp() throws Exception {
+        System.setProperty("VM_INSTANCE_ID", "testVM");
+        factory = new InVMBusFactory(new JMSConfigurationParser().getConfiguration(
+                InVMBusFactory.class.getResourceAsStream("invm-config.xml")));
+        requester = (BusRequestPublisherImpl) factory.createRequestPublisher("requests", "test-mod");
+    }
+
+    protected void tearDown() throws Exception {
+        requester.close();
+        if (responder != null) {
+            responder.stop();
+        }
+        factory.release();
+    }
+
+    public void testResponseBeforeDeadline() throws Exception {
+        startResponder();
+        BusMessage request = request(1);
+        Future<BusMessage> future = requester.request(request, 5000);
+        assertTrue(request.getMessageDeadline() > System.currentTimeMillis());
+        assertEquals(-1, ((RoundEvent) future.get(2, TimeUnit.SECONDS).getMessageBody()).getRoundId());
+        assertEquals(0, requester.getPendingCount());
+        assertEquals(0, requester.getExpiredCount());
+    }
+
+    public void testExpiredRequestIsReaped() throws Exception {
+        Future<BusMessage> future = requester.request(request(1), 200);
+        assertEquals(1, requester.getPendingCount());
+        assertTimedOut(future);
+        assertEquals(0, requester.getPendingCount());
+        assertEquals(1, requester.getExpiredCount());
+    }
+
+    public void testDefaultTimeoutFromConfiguration() throws Exception {
+        requester.close();
+        requester = (BusRequestPublisherImpl) factory.createRequestPublisher("timed-requests", "test-mod");
+        BusMessage request = request(1);
+        Future<BusMessage> future = requester.request(request);
+        assertTrue(request.getMessageDeadline() != 0);
+        assertTimedOut(future);
+        assertEquals(0, requester.getPendingCount());
+    }
+
+    public void testRequestsWithoutTimeoutAreGivenUp() throws Exception {
+        requester.setMaxPendingTime(200);
+        List<Future<BusMessage>> futures = new ArrayList<Future<BusMessage>>();
+        for (int i = 0; i < 1000; i++) {
+            BusMessage request = request(i);
+            futures.add(requester.request(request));
+            assertEquals(0, request.getMessageDeadline());
+        }
+        for (Future<BusMessage> future : futures) {
+            assertTimedOut(future);
+        }
+        assertEquals(0, requester.getPendingCount());
+        assertEquals(1000, requester.getExpiredCount());
+    }
+
+    public void testCancelledRequestDropsLateResponse() throws Exception {
+        handleTime = 200;
+        startResponder();
+        Future<BusMessage> future = requester.request(request(1), 5000);
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        assertEquals(0, requester.getPendingCount());
+        waitForCounts(1, 0);
+        assertEquals(1, handled.get());
+        assertFalse(future.cancel(false));
+    }
+
+    public void testListenerSkipsExpiredRequests() throws Exception {
+        handleTime = 400;
+        startResponder();
+        List<Future<BusMessage>> futures = new ArrayList<Future<BusMessage>>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(requester.request(request(i), 200));
+        }
+        for (Future<BusMessage> future : futures) {
+            assertTimedOut(future);
+        }
+        //The first request was handled late, and its response dropped. The others expired while waiting
+        waitForCounts(1, 4);
+        assertEquals(1, handled.get());
+        assertEquals(0, requester.getPendingCount());
+    }
+
+    public void testRequestOnBatchingChannel() throws Exception {
+        BusFactory jmsFactory = new ActiveMQBusFactory(new JMSConfigurationParser().getConfiguration(
+                BusRequestPublisherImplTest.class.getResourceAsStream("batch-requests-config.xml")));
+        BusRequestPublisherImpl batchRequester = null;
+        try {
+            //Requests and responses are sent right away even though the channels batch their messages
+            BusPublisher batching = jmsFactory.createPublisher("requests", "test-mod");
+            assertTrue(batching instanceof BatchingBusPublisher);
+            batching.close();
+            batchRequester = (BusRequestPublisherImpl) jmsFactory.createRequestPublisher("requests", "test-mod");
+            startResponder(jmsFactory);
+            for (int i = 1; i <= 3; i++) {
+                BusMessage request = request(i);
+                Future<BusMessage> future = batchRequester.request(request, 5000);
+                assertNotNull(request.getMessageId());
+                assertEquals(-i, ((RoundEvent) future.get(2, TimeUnit.SECONDS).getMessageBody()).getRoundId());
+            }
+            assertEquals(0, batchRequester.getPendingCount());
+        } finally {
+            if (batchRequester != null) {
+                batchRequester.close();
+            }
+            if (responder != null) {
+                responder.stop();
+                responder = null;
+            }
+            jmsFactory.release();
+        }
+    }
+
+    private void startResponder() throws Exception {
+        startResponder(factory);
+    }
+
+    private void startResponder(BusFactory factory) throws Exception {
+        responder = (BusRequestListenerImpl) factory.createRequestListener("requests-handler", "test-mod");
+        responder.setHandler(new BusRequestListener.Handler() {
+            public void handle(BusMessage message, BusRequestListener.ResponseMessageHolder holder) {
+                handled.incrementAndGet();
+                try {
+                    Thread.sleep(handleTime);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                int roundId = ((RoundEvent) message.getMessageBody()).getRoundId();
+                holder.setResponse(mapper.toMessage(new RoundDeletedEvent(-roundId)));
+            }
+        });
+        responder.start();
+    }
+
+    private BusMessage request(int roundId) {
+        return mapper.toMessage(new RoundCreatedEvent(roundId, new Integer(1)));
+    }
+
+    private void assertTimedOut(Future<BusMessage> future) throws Exception {
+        try {
+            future.get(2, TimeUnit.SECONDS);
+            fail("The request must expire");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+    }
+
+    private void waitForCounts(long dropped, long skipped) throws InterruptedException {
+        long limit = System.currentTimeMillis() + 5000;
+        while ((requester.getDroppedResponseCount() < dropped || responder.getSkippedCount() < skipped)
+                && System.currentTimeMillis() < limit) {
+            Thread.sleep(10);
+        }
+        assertEquals(dropped, requester.getDroppedResponseCount());
+        assertEquals(skipped, responder.getSkippedCount());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * OrderedDispatcherTest
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * @version $Id$
+ */
+public class OrderedDispatcherTest extends TestCase {
+    private OrderedDispatcher dispatcher;
+
+    protected void tearDown() throws Exception {
+        dispatcher.shutdown();
+    }
+
+    public void testOrderPerKey() throws Exception {
+        dispatcher = new OrderedDispatcher("test", 4, 50);
+        final int keys = 10;
+        final int perKey = 500;
+        final List<List<Integer>> handled = new ArrayList<List<Integer>>();
+        for (int k = 0; k < keys; k++) {
+            handled.add(new ArrayList<Integer>());
+        }
+        final CountDownLatch done = new CountDownLatch(keys * perKey);
+        for (int i = 0; i < perKey; i++) {
+            for (int k = 0; k < keys; k++) {
+                final List<Integer> list = handled.get(k);
+                final int value = i;
+                dispatcher.execute("key"+k, new Runnable() {
+                    public void run() {
+                        synchronized (list) {
+                            list.add(value);
+                        }
+                        done.countDown();
+                    }
+                });
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (List<Integer> list : handled) {
+            assertEquals(perKey, list.size());
+            for (int i = 0; i < perKey; i++) {
+                assertEquals(i, list.get(i).intValue());
+            }
+        }
+    }
+
+    public void testBackpressure() throws Exception {
+        dispatcher = new OrderedDispatcher("test", 2, 3);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger ran = new AtomicInteger(0);
+        Runnable blocked = new Runnable() {
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                }
+                ran.incrementAndGet();
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            dispatcher.execute(null, blocked);
+        }
+        assertEquals(3, dispatcher.getPendingCount());
+
+        final CountDownLatch submitted = new CountDownLatch(1);
+        Thread producer = new Thread() {
+            public void run() {
+                dispatcher.execute(null, new Runnable() {
+                    public void run() {
+                        ran.incrementAndGet();
+                    }
+                });
+                submitted.countDown();
+            }
+        };
+        producer.start();
+        assertFalse("execute must block while the dispatcher is full", submitted.await(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(submitted.await(5, TimeUnit.SECONDS));
+        producer.join();
+        long end = System.currentTimeMillis() + 5000;
+        while (ran.get() < 4 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(4, ran.get());
+    }
+}
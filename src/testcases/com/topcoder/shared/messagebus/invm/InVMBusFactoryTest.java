@@ -0,0 +1,163 @@
+/*
+ * InVMBusFactoryTest
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.invm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.topcoder.shared.messagebus.BusException;
+import com.topcoder.shared.messagebus.BusListener;
+import com.topcoder.shared.messagebus.BusMessage;
+import com.topcoder.shared.messagebus.BusPublisher;
+import com.topcoder.shared.messagebus.jms.JMSBusConfiguration;
+import com.topcoder.shared.messagebus.jms.JMSConfigurationParser;
+import com.topcoder.shared.round.events.RoundCreatedEvent;
+import com.topcoder.shared.round.events.RoundDeletedEvent;
+import com.topcoder.shared.round.events.RoundEvent;
+import com.topcoder.shared.round.events.bus.RoundEventMessageMapper;
+
+/**
+ * @version $Id$
+ */
+public class InVMBusFactoryTest extends TestCase {
+    private RoundEventMessageMapper mapper = new RoundEventMessageMapper("test-mod", "RoundEvent");
+    private JMSBusConfiguration configuration;
+    private InVMBusFactory factory;
+
+    protected void setUp() throws Exception {
+        System.setProperty("VM_INSTANCE_ID", "testVM");
+        configuration = new JMSConfigurationParser().getConfiguration(InVMBusFactoryTest.class.getResourceAsStream("invm-config.xml"));
+        factory = new InVMBusFactory(configuration);
+    }
+
+    protected void tearDown() throws Exception {
+        factory.release();
+    }
+
+    public void testTopicFanOut() throws Exception {
+        Recorder first = listen("events");
+        Recorder second = listen("events");
+        BusPublisher publisher = factory.createPublisher("events", "test-mod");
+        publish(publisher, 0, 100);
+        first.waitFor(100);
+        second.waitFor(100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, first.roundIds.get(i).intValue());
+            assertEquals(i, second.roundIds.get(i).intValue());
+        }
+        // each listener gets its own message
+        assertNotSame(first.messages.get(0), second.messages.get(0));
+        assertSame(first.messages.get(0).getMessageBody(), second.messages.get(0).getMessageBody());
+    }
+
+    public void testQueueLoadBalancing() throws Exception {
+        Recorder[] recorders = {listen("work"), listen("work"), listen("work")};
+        BusPublisher publisher = factory.createPublisher("work", "test-mod");
+        publish(publisher, 0, 300);
+        Set<Integer> all = new HashSet<Integer>();
+        long limit = System.currentTimeMillis() + 5000;
+        while (count(recorders) < 300 && System.currentTimeMillis() < limit) {
+            Thread.sleep(10);
+        }
+        assertEquals(300, count(recorders));
+        for (Recorder recorder : recorders) {
+            assertTrue(recorder.roundIds.size() > 0);
+            all.addAll(recorder.roundIds);
+        }
+        assertEquals(300, all.size());
+    }
+
+    public void testQueueKeepsMessagesUntilStarted() throws Exception {
+        BusPublisher publisher = factory.createPublisher("work", "test-mod");
+        publish(publisher, 0, 10);
+        Recorder recorder = listen("work");
+        recorder.waitFor(10);
+        publish(publisher, 10, 10);
+        recorder.waitFor(20);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, recorder.roundIds.get(i).intValue());
+        }
+    }
+
+    public void testSelector() throws Exception {
+        Recorder all = listen("events");
+        Recorder created = listen("created-events");
+        BusPublisher publisher = factory.createPublisher("events", "test-mod");
+        publisher.publish(mapper.toMessage(new RoundDeletedEvent(1)));
+        publisher.publish(mapper.toMessage(new RoundCreatedEvent(2, new Integer(1))));
+        all.waitFor(2);
+        created.waitFor(1);
+        Thread.sleep(100);
+        assertEquals(Collections.singletonList(new Integer(2)), created.roundIds);
+    }
+
+    public void testRoundTrip() throws Exception {
+        factory.release();
+        factory = new InVMBusFactory(configuration, true);
+        Recorder recorder = listen("events");
+        BusPublisher publisher = factory.createPublisher("events", "test-mod");
+        BusMessage message = mapper.toMessage(new RoundCreatedEvent(5, new Integer(1)));
+        publisher.publish(message);
+        recorder.waitFor(1);
+        BusMessage received = recorder.messages.get(0);
+        assertNotSame(message.getMessageBody(), received.getMessageBody());
+        assertEquals(message.getMessageBody().toString(), received.getMessageBody().toString());
+        assertEquals(message.getMessageId(), received.getMessageId());
+
+        message.setMessageBodyType("unknown:Type");
+        try {
+            publisher.publish(message);
+            fail("There is no mapper for the message");
+        } catch (BusException e) {
+            // expected
+        }
+    }
+
+    private Recorder listen(String key) throws Exception {
+        Recorder recorder = new Recorder();
+        BusListener listener = factory.createListener(key, "test-mod");
+        listener.setHandler(recorder);
+        listener.start();
+        return recorder;
+    }
+
+    private void publish(BusPublisher publisher, int first, int count) throws Exception {
+        for (int i = first; i < first + count; i++) {
+            publisher.publish(mapper.toMessage(new RoundCreatedEvent(i, new Integer(1))));
+        }
+    }
+
+    private static int count(Recorder[] recorders) {
+        int count = 0;
+        for (Recorder recorder : recorders) {
+            count += recorder.roundIds.size();
+        }
+        return count;
+    }
+
+    private static class Recorder implements BusListener.Handler {
+        private List<BusMessage> messages = Collections.synchronizedList(new ArrayList<BusMessage>());
+        private List<Integer> roundIds = Collections.synchronizedList(new ArrayList<Integer>());
+
+        public void handle(BusMessage message) {
+            messages.add(message);
+            roundIds.add(new Integer(((RoundEvent) message.getMessageBody()).getRoundId()));
+        }
+
+        private void waitFor(int count) throws InterruptedException {
+            long limit = System.currentTimeMillis() + 5000;
+            while (roundIds.size() < count && System.currentTimeMillis() < limit) {
+                Thread.sleep(10);
+            }
+            assertEquals(count, roundIds.size());
+        }
+    }
+}
@@ -19,6 +19,7 @@ import junit.framework.TestCase;
 import com.topcoder.shared.exception.BaseLocalizableException;
 import com.topcoder.shared.i18n.Message;
 import com.topcoder.shared.messagebus.BusFactory;
+import com.topcoder.shared.messagebus.jms.JMSBusConfiguration;
 import com.topcoder.shared.messagebus.jms.JMSConfigurationParser;
 import com.topcoder.shared.messagebus.jms.activemq.ActiveMQBusFactory;
 
@@ -34,7 +35,7 @@ public class BusRemoteInvokerTest extends TestCase {
 
     protected void setUp() throws Exception {
         System.setProperty("VM_INSTANCE_ID", "testVM");
-        BusFactory.configureFactory(new ActiveMQBusFactory(new JMSConfigurationParser().getConfiguration(BusRemoteInvokerTest.class.getResourceAsStream("test-config.xml"))));
+        BusFactory.configureFactory(createFactory(new JMSConfigurationParser().getConfiguration(BusRemoteInvokerTest.class.getResourceAsStream("test-config.xml"))));
         invoker = new BusRemoteInvoker("test-mod", "test", BusFactory.getFactory().createRequestPublisher("test-cfg-req", "test-mod"));
         listener = new BusRemoteInvocationListener("test-mod", "test", BusFactory.getFactory().createRequestListener("test-cfg-res", "test-mod"));
         messages = Collections.synchronizedList(new LinkedList());
@@ -63,6 +64,10 @@ public class BusRemoteInvokerTest extends TestCase {
         });
     }
     
+    protected BusFactory createFactory(JMSBusConfiguration configuration) {
+        return new ActiveMQBusFactory(configuration);
+    }
+    
     protected void tearDown() throws Exception {
         listener.stop();
         invoker.release();
@@ -0,0 +1,21 @@
+/*
+ * InVMBusRemoteInvokerTest
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.invoker;
+
+import com.topcoder.shared.messagebus.BusFactory;
+import com.topcoder.shared.messagebus.invm.InVMBusFactory;
+import com.topcoder.shared.messagebus.jms.JMSBusConfiguration;
+
+/**
+ * Runs the remote invoker tests on the in-VM bus, mapping messages as the JMS bus does.
+ * 
+ * @version $Id$
+ */
+public class InVMBusRemoteInvokerTest extends BusRemoteInvokerTest {
+    protected BusFactory createFactory(JMSBusConfiguration configuration) {
+        return new InVMBusFactory(configuration, true);
+    }
+}
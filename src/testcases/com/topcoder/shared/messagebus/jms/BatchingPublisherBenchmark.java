@@ -0,0 +1,59 @@
+/*
+ * BatchingPublisherBenchmark
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.jms;
+
+import com.topcoder.shared.messagebus.BusPublisher;
+import com.topcoder.shared.util.logging.Logger;
+
+/**
+ * Compares the throughput of a batching publisher against a plain publisher, on an 
+ * embedded broker over tcp. It is run by hand, not with the tests.
+ *
+ * @version $Id$
+ */
+public class BatchingPublisherBenchmark {
+    private static final Logger log = Logger.getLogger(BatchingPublisherBenchmark.class);
+    private static final int MESSAGES = 20000;
+
+    public static void main(String[] args) throws Exception {
+        EmbeddedBatchBroker broker = new EmbeddedBatchBroker();
+        broker.start();
+        try {
+            long plain = run(broker, "test-cfg");
+            long batched = run(broker, "test-cfg-batched");
+            log.info("Publisher: "+MESSAGES+" messages in "+plain+" ms, batching publisher: "+batched+" ms");
+        } finally {
+            broker.stop();
+        }
+    }
+
+    /**
+     * Publishes the messages after a warm up and waits for the listener to receive them.
+     * 
+     * @return The time taken, in millis
+     */
+    private static long run(EmbeddedBatchBroker broker, String configurationKey) throws Exception {
+        BusPublisher publisher = broker.createPublisher(configurationKey);
+        try {
+            // warm up
+            broker.publish(publisher, MESSAGES / 4);
+            receive(broker, MESSAGES / 4);
+            long start = System.currentTimeMillis();
+            broker.publish(publisher, MESSAGES);
+            receive(broker, MESSAGES);
+            return System.currentTimeMillis() - start;
+        } finally {
+            publisher.close();
+        }
+    }
+
+    private static void receive(EmbeddedBatchBroker broker, int count) throws InterruptedException {
+        if (!broker.waitFor(count)) {
+            throw new IllegalStateException("Received "+broker.getReceived().size()+" of "+count+" messages");
+        }
+        broker.getReceived().clear();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * EmbeddedBatchBroker
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.jms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.activemq.broker.BrokerService;
+
+import com.topcoder.shared.messagebus.BusFactory;
+import com.topcoder.shared.messagebus.BusListener;
+import com.topcoder.shared.messagebus.BusMessage;
+import com.topcoder.shared.messagebus.BusPublisher;
+import com.topcoder.shared.messagebus.jms.activemq.ActiveMQBusFactory;
+import com.topcoder.shared.round.events.RoundCreatedEvent;
+import com.topcoder.shared.round.events.RoundEvent;
+import com.topcoder.shared.round.events.bus.RoundEventMessageMapper;
+
+/**
+ * An embedded broker listening on tcp, with the bus configured from batch-config.xml
+ * and a listener collecting the round ids of the messages it receives.
+ *
+ * @version $Id$
+ */
+class EmbeddedBatchBroker {
+    private RoundEventMessageMapper mapper = new RoundEventMessageMapper("test-mod", "RoundEvent");
+    private List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+    private BrokerService broker;
+    private BusListener listener;
+
+    public void start() throws Exception {
+        System.setProperty("VM_INSTANCE_ID", "testVM");
+        broker = new BrokerService();
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.addConnector("tcp://localhost:61617");
+        broker.start();
+        BusFactory.configureFactory(new ActiveMQBusFactory(new JMSConfigurationParser().getConfiguration(
+                EmbeddedBatchBroker.class.getResourceAsStream("batch-config.xml"))));
+        listener = BusFactory.getFactory().createListener("test-cfg", "test-mod");
+        listener.setHandler(new BusListener.Handler() {
+            public void handle(BusMessage message) {
+                received.add(new Integer(((RoundEvent) message.getMessageBody()).getRoundId()));
+            }
+        });
+        listener.start();
+    }
+
+    public void stop() throws Exception {
+        listener.stop();
+        BusFactory.getFactory().release();
+        broker.stop();
+    }
+
+    public BusPublisher createPublisher(String configurationKey) throws Exception {
+        return BusFactory.getFactory().createPublisher(configurationKey, "test-mod");
+    }
+
+    /**
+     * Publishes round events with ids 0 to count-1.
+     */
+    public void publish(BusPublisher publisher, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            publisher.publish(mapper.toMessage(new RoundCreatedEvent(i, new Integer(1))));
+        }
+    }
+
+    /**
+     * Waits up to a minute for the listener to receive <code>count</code> messages.
+     *
+     * @return whether they were received
+     */
+    public boolean waitFor(int count) throws InterruptedException {
+        long limit = System.currentTimeMillis() + 60000;
+        while (received.size() < count && System.currentTimeMillis() < limit) {
+            Thread.sleep(10);
+        }
+        return received.size() == count;
+    }
+
+    /**
+     * @return The round ids received, in order
+     */
+    public List<Integer> getReceived() {
+        return received;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * JMSBatchingPublisherTest
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.jms;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.topcoder.shared.messagebus.BatchingBusPublisher;
+import com.topcoder.shared.messagebus.BusPublisher;
+
+/**
+ * Checks listeners receive the messages of a batching publisher one by one and in order,
+ * on an embedded broker over tcp.
+ *
+ * @version $Id$
+ */
+public class JMSBatchingPublisherTest extends TestCase {
+    private EmbeddedBatchBroker broker;
+
+    protected void setUp() throws Exception {
+        broker = new EmbeddedBatchBroker();
+        broker.start();
+    }
+
+    protected void tearDown() throws Exception {
+        broker.stop();
+    }
+
+    public void testMessagesReceivedInOrder() throws Exception {
+        BusPublisher publisher = broker.createPublisher("test-cfg-batched");
+        assertTrue(publisher instanceof BatchingBusPublisher);
+        broker.publish(publisher, 1000);
+        ((BatchingBusPublisher) publisher).flush();
+        assertTrue(broker.waitFor(1000));
+        publisher.close();
+        List<Integer> received = broker.getReceived();
+        assertEquals(1000, received.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, received.get(i).intValue());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * ArenaMessages
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.jms.mapper;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jms.BytesMessage;
+import javax.jms.Message;
+import javax.jms.Session;
+
+import com.topcoder.shared.messagebus.BusMessage;
+import com.topcoder.shared.messagebus.invoker.Request;
+import com.topcoder.shared.round.events.RoundCreatedEvent;
+import com.topcoder.shared.round.events.RoundModifiedEvent;
+
+/**
+ * Bus messages carrying the events the arena publishes, to map with the message mappers.
+ * 
+ * @version $Id$
+ */
+final class ArenaMessages {
+    private ArenaMessages() {
+    }
+
+    static BusMessage roundTrip(MessageMapper mapper, Session session, BusMessage message) throws Exception {
+        Message msg = mapper.toJMSMessage(message, session);
+        if (msg instanceof BytesMessage) {
+            ((BytesMessage) msg).reset();
+        }
+        return mapper.fromJMSMessage(msg);
+    }
+
+    static BusMessage newMessage(Object body) {
+        BusMessage message = new BusMessage();
+        message.setMessageOriginVM("testVM");
+        message.setMessageOriginModule("test");
+        message.setMessageType("RoundEvent");
+        message.setMessageBodyType("roundevents:"+body.getClass().getSimpleName());
+        message.setMessageDate(new Date());
+        message.setMessageBody(body);
+        return message;
+    }
+
+    /**
+     * Events the arena publishes: round creation, registration changes and a remote invocation.
+     */
+    static List<Object> payloads() {
+        List<Object> payloads = new ArrayList<Object>();
+        payloads.add(new RoundCreatedEvent(12345, new Integer(1)));
+        RoundModifiedEvent schedule = new RoundModifiedEvent(12345, new Integer(1));
+        schedule.addModification(new RoundModifiedEvent.ScheduleModification());
+        schedule.addModification(new RoundModifiedEvent.ProblemSetModification());
+        payloads.add(schedule);
+        int[] added = new int[50];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = 22000000 + i * 7;
+        }
+        RoundModifiedEvent registration = new RoundModifiedEvent(12346);
+        registration.addModification(new RoundModifiedEvent.RegistrationModification(added, new int[]{22000001}));
+        payloads.add(registration);
+        Map<String, Object> args = new HashMap<String, Object>();
+        args.put("roundId", new Integer(12345));
+        args.put("coderId", new Integer(22000001));
+        args.put("handle", "tourist");
+        payloads.add(new Request(Request.REQUEST_GET_RESULT, "arena", "registerCoder", args));
+        return payloads;
+    }
+}
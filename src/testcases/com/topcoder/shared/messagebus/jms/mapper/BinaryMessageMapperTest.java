@@ -0,0 +1,101 @@
+/*
+ * BinaryMessageMapperTest
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.jms.mapper;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jms.Connection;
+import javax.jms.Session;
+
+import junit.framework.TestCase;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+
+import com.topcoder.shared.messagebus.BusMessage;
+import com.topcoder.shared.messagebus.invoker.Request;
+import com.topcoder.shared.messagebus.jms.mapper.binary.BinaryMessageMapper;
+import com.topcoder.shared.round.events.RoundEvent;
+import com.topcoder.shared.round.events.RoundModifiedEvent;
+
+/**
+ * Checks the binary mapper round trips arena events, under concurrent threads too.
+ * 
+ * @version $Id$
+ */
+public class BinaryMessageMapperTest extends TestCase {
+    private static final int THREADS = 4;
+    private Connection cnn;
+    private Session session;
+
+    protected void setUp() throws Exception {
+        cnn = new ActiveMQConnectionFactory("vm://localhost?broker.persistent=false").createConnection();
+        session = cnn.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    }
+
+    protected void tearDown() throws Exception {
+        cnn.close();
+    }
+
+    public void testRoundTrip() throws Exception {
+        BinaryMessageMapper mapper = new BinaryMessageMapper();
+        for (Object body : ArenaMessages.payloads()) {
+            BusMessage result = ArenaMessages.roundTrip(mapper, session, ArenaMessages.newMessage(body));
+            assertEquals(describe(body), describe(result.getMessageBody()));
+            assertEquals("RoundEvent", result.getMessageType());
+        }
+    }
+
+    public void testConcurrentRoundTrip() throws Exception {
+        final BinaryMessageMapper mapper = new BinaryMessageMapper();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < threads.length; t++) {
+            final Session threadSession = cnn.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        List<Object> payloads = ArenaMessages.payloads();
+                        for (int i = 0; i < 2000; i++) {
+                            Object body = payloads.get(i % payloads.size());
+                            BusMessage result = ArenaMessages.roundTrip(mapper, threadSession, ArenaMessages.newMessage(body));
+                            assertEquals(describe(body), describe(result.getMessageBody()));
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new Exception("Concurrent round trip failed", failure.get());
+        }
+    }
+
+    private static String describe(Object body) {
+        StringBuilder sb = new StringBuilder(body.getClass().getName());
+        if (body instanceof RoundEvent) {
+            sb.append(body);
+        }
+        if (body instanceof RoundModifiedEvent) {
+            for (RoundModifiedEvent.RoundModification mod : ((RoundModifiedEvent) body).getModifications()) {
+                sb.append(",").append(mod.getClass().getSimpleName());
+                if (mod instanceof RoundModifiedEvent.RegistrationModification) {
+                    RoundModifiedEvent.RegistrationModification reg = (RoundModifiedEvent.RegistrationModification) mod;
+                    sb.append(java.util.Arrays.toString(reg.getAddedCoders())).append(java.util.Arrays.toString(reg.getRemovedCoders()));
+                }
+            }
+        } else if (body instanceof Request) {
+            Request r = (Request) body;
+            sb.append(r.getRequestType()).append(r.getNamespace()).append(r.getActionName()).append(new java.util.TreeMap(r.getNamedArguments()));
+        }
+        return sb.toString();
+    }
+}
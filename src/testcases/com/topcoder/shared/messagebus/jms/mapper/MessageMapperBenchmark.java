@@ -0,0 +1,68 @@
+/*
+ * MessageMapperBenchmark
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.jms.mapper;
+
+import java.util.List;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.Message;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+
+import com.topcoder.shared.messagebus.jms.mapper.binary.BinaryMessageMapper;
+import com.topcoder.shared.messagebus.jms.mapper.custom.CustomSerializableMessageMapper;
+import com.topcoder.shared.messagebus.jms.mapper.xstream.XStreamMapper;
+import com.topcoder.shared.util.logging.Logger;
+
+/**
+ * Compares the time and size of the three mappers on the events of {@link ArenaMessages}.
+ * It is run by hand, not with the tests.
+ * 
+ * @version $Id$
+ */
+public class MessageMapperBenchmark {
+    private static final Logger log = Logger.getLogger(MessageMapperBenchmark.class);
+    private static final int MESSAGES = 20000;
+
+    public static void main(String[] args) throws Exception {
+        Connection cnn = new ActiveMQConnectionFactory("vm://localhost?broker.persistent=false").createConnection();
+        try {
+            Session session = cnn.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageMapper[] mappers = {new XStreamMapper(), new CustomSerializableMessageMapper(), new BinaryMessageMapper()};
+            List<Object> payloads = ArenaMessages.payloads();
+            for (MessageMapper mapper : mappers) {
+                long size = 0;
+                for (Object body : payloads) {
+                    Message msg = mapper.toJMSMessage(ArenaMessages.newMessage(body), session);
+                    if (msg instanceof BytesMessage) {
+                        ((BytesMessage) msg).reset();
+                        size += ((BytesMessage) msg).getBodyLength();
+                    } else {
+                        size += ((TextMessage) msg).getText().length();
+                    }
+                }
+                // warm up
+                run(mapper, session, payloads, MESSAGES / 4);
+                long start = System.currentTimeMillis();
+                run(mapper, session, payloads, MESSAGES);
+                long elapsed = System.currentTimeMillis() - start;
+                log.info(mapper.getClass().getSimpleName()+": "+MESSAGES+" round trips in "+elapsed+" ms, "+
+                        (size / payloads.size())+" body bytes per message");
+            }
+        } finally {
+            cnn.close();
+        }
+    }
+
+    private static void run(MessageMapper mapper, Session session, List<Object> payloads, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            ArenaMessages.roundTrip(mapper, session, ArenaMessages.newMessage(payloads.get(i % payloads.size())));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * InMemoryMetricsSinkTest
+ * 
+ * Created Oct 19, 2026
+ */
+package com.topcoder.shared.messagebus.metrics;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.topcoder.shared.messagebus.BusFactory;
+import com.topcoder.shared.messagebus.BusListener;
+import com.topcoder.shared.messagebus.BusMessage;
+import com.topcoder.shared.messagebus.BusPublisher;
+import com.topcoder.shared.messagebus.BusRequestPublisher;
+import com.topcoder.shared.messagebus.invm.InVMBusFactory;
+import com.topcoder.shared.messagebus.jms.JMSConfigurationParser;
+import com.topcoder.shared.messagebus.jms.activemq.ActiveMQBusFactory;
+import com.topcoder.shared.round.events.RoundCreatedEvent;
+import com.topcoder.shared.round.events.bus.RoundEventMessageMapper;
+
+/**
+ * @version $Id$
+ */
+public class InMemoryMetricsSinkTest extends TestCase {
+    private RoundEventMessageMapper mapper = new RoundEventMessageMapper("test-mod", "RoundEvent");
+    private InMemoryMetricsSink sink = new InMemoryMetricsSink();
+
+    protected void setUp() throws Exception {
+        System.setProperty("VM_INSTANCE_ID", "testVM");
+        BusMetrics.configureSink(sink);
+    }
+
+    protected void tearDown() throws Exception {
+        BusMetrics.configureSink(null);
+    }
+
+    public void testDisabled() throws Exception {
+        assertTrue(BusMetrics.isEnabled());
+        BusMetrics.configureSink(null);
+        assertFalse(BusMetrics.isEnabled());
+        assertNotNull(BusMetrics.getSink());
+    }
+
+    public void testRequestsInFlight() throws Exception {
+        InVMBusFactory factory = new InVMBusFactory(new JMSConfigurationParser().getConfiguration(
+                InVMBusFactory.class.getResourceAsStream("invm-config.xml")));
+        try {
+            BusRequestPublisher requester = factory.createRequestPublisher("requests", "test-mod");
+            Future<BusMessage> first = requester.request(mapper.toMessage(new RoundCreatedEvent(1, new Integer(1))));
+            requester.request(mapper.toMessage(new RoundCreatedEvent(2, new Integer(1))));
+            InMemoryMetricsSink.ChannelMetrics metrics = sink.getChannel("REQUESTS");
+            assertEquals(2, metrics.getRequestsInFlight());
+            first.cancel(false);
+            assertEquals(1, metrics.getRequestsInFlight());
+            assertEquals(1, metrics.getRequestsFailedCount());
+            requester.close();
+            assertEquals(0, metrics.getRequestsInFlight());
+            assertEquals(2, metrics.getRequestsFailedCount());
+        } finally {
+            factory.release();
+        }
+    }
+
+    public void testPublishAndHandle() throws Exception {
+        BusFactory factory = new ActiveMQBusFactory(new JMSConfigurationParser().getConfiguration(
+                InMemoryMetricsSinkTest.class.getResourceAsStream("metrics-config.xml")));
+        final AtomicInteger handled = new AtomicInteger(0);
+        try {
+            BusListener listener = factory.createListener("test-cfg", "test-mod");
+            listener.setHandler(new BusListener.Handler() {
+                public void handle(BusMessage message) {
+                    if (handled.incrementAndGet() % 2 == 0) {
+                        throw new IllegalStateException("Handler failure");
+                    }
+                }
+            });
+            listener.start();
+            BusPublisher publisher = factory.createPublisher("test-cfg", "test-mod");
+            for (int i = 0; i < 100; i++) {
+                publisher.publish(mapper.toMessage(new RoundCreatedEvent(i, new Integer(1))));
+            }
+            long limit = System.currentTimeMillis() + 5000;
+            InMemoryMetricsSink.ChannelMetrics metrics = sink.getChannel("METRICS_CHANNEL");
+            while (metrics.getHandleTime().getCount() < 100 && System.currentTimeMillis() < limit) {
+                Thread.sleep(10);
+            }
+            assertEquals(100, metrics.getPublishedCount());
+            assertEquals(100, metrics.getEncodeTime().getCount());
+            assertEquals(100, metrics.getSendTime().getCount());
+            assertEquals(100, metrics.getReceivedCount());
+            assertEquals(100, metrics.getDecodeTime().getCount());
+            assertEquals(100, metrics.getHandleTime().getCount());
+            assertEquals(100, metrics.getLatency().getCount());
+            assertEquals(50, metrics.getFailedCount());
+            assertTrue(metrics.getPublishRate() > 0);
+            assertTrue(sink.toString().startsWith("METRICS_CHANNEL: published=100"));
+            publisher.close();
+            listener.stop();
+        } finally {
+            factory.release();
+        }
+    }
+}
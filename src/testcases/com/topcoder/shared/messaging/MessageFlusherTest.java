@@ -0,0 +1,119 @@
+package com.topcoder.shared.messaging;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class MessageFlusherTest extends TestCase {
+    private final AtomicInteger sent = new AtomicInteger(0);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch sending = new CountDownLatch(1);
+
+    protected void tearDown() throws Exception {
+        release.countDown();
+    }
+
+    public void testCloseWakesBlockedSender() throws Exception {
+        final MessageFlusher flusher = new MessageFlusher("test", 1, 1, blockingSender());
+        flusher.start();
+        assertTrue(flusher.add(message()));
+        assertTrue(sending.await(1, TimeUnit.SECONDS));
+        // fills the buffer while the first message is being sent
+        assertTrue(flusher.add(message()));
+
+        final boolean[] added = {true};
+        Thread blocked = new Thread() {
+            public void run() {
+                added[0] = flusher.add(message());
+            }
+        };
+        blocked.start();
+        Thread.sleep(200);
+        assertTrue(blocked.isAlive());
+
+        Thread closer = new Thread() {
+            public void run() {
+                flusher.close();
+            }
+        };
+        closer.start();
+        blocked.join(1000);
+        assertFalse(blocked.isAlive());
+        assertFalse(added[0]);
+
+        release.countDown();
+        closer.join(1000);
+        assertFalse(closer.isAlive());
+        assertEquals(2, sent.get());
+        assertEquals(0, flusher.getFailedCount());
+        assertFalse(flusher.add(message()));
+    }
+
+    public void testMessagesLeftAreCountedAsFailed() throws Exception {
+        MessageFlusher flusher = new MessageFlusher("test", 10, 5, countingSender());
+        // never started, nothing sends the messages
+        assertTrue(flusher.add(message()));
+        assertTrue(flusher.add(message()));
+        flusher.close();
+        assertEquals(0, sent.get());
+        assertEquals(2, flusher.getFailedCount());
+    }
+
+    public void testNoMessageLostOnClose() throws Exception {
+        for (int run = 0; run < 20; run++) {
+            sent.set(0);
+            final MessageFlusher flusher = new MessageFlusher("test", 4, 2, countingSender());
+            flusher.start();
+            final AtomicInteger accepted = new AtomicInteger(0);
+            Thread[] senders = new Thread[4];
+            for (int i = 0; i < senders.length; i++) {
+                senders[i] = new Thread() {
+                    public void run() {
+                        while (flusher.add(message())) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                };
+                senders[i].start();
+            }
+            Thread.sleep(20);
+            flusher.close();
+            for (int i = 0; i < senders.length; i++) {
+                senders[i].join(1000);
+                assertFalse(senders[i].isAlive());
+            }
+            assertEquals(accepted.get(), sent.get() + flusher.getFailedCount());
+        }
+    }
+
+    private MessageFlusher.BatchSender countingSender() {
+        return new MessageFlusher.BatchSender() {
+            public boolean sendBatch(List messages) {
+                sent.addAndGet(messages.size());
+                return true;
+            }
+        };
+    }
+
+    private MessageFlusher.BatchSender blockingSender() {
+        return new MessageFlusher.BatchSender() {
+            public boolean sendBatch(List messages) {
+                sending.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    return false;
+                }
+                sent.addAndGet(messages.size());
+                return true;
+            }
+        };
+    }
+
+    private static ProducerPool.Pending message() {
+        return new ProducerPool.Pending(null, 0, 0);
+    }
+}
@@ -0,0 +1,100 @@
+package com.topcoder.shared.messaging;
+
+import junit.framework.TestCase;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import java.util.Arrays;
+import java.util.Hashtable;
+
+public final class ProducerPoolTest extends TestCase {
+    private Context ctx;
+    private ProducerPool pool;
+    private Connection connection;
+    private MessageConsumer consumer;
+    private Session built;
+
+    protected void setUp() throws Exception {
+        Hashtable env = new Hashtable();
+        env.put(Context.INITIAL_CONTEXT_FACTORY, "org.apache.activemq.jndi.ActiveMQInitialContextFactory");
+        env.put(Context.PROVIDER_URL, "vm://producerpool?broker.persistent=false&broker.useJmx=false");
+        env.put("queue.testQueue", "test.queue");
+        ctx = new InitialContext(env);
+        connection = ((ConnectionFactory) ctx.lookup("ConnectionFactory")).createConnection();
+        connection.start();
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        consumer = session.createConsumer((Queue) ctx.lookup("testQueue"));
+        pool = new ProducerPool(ctx, "ConnectionFactory", "testQueue", 2);
+    }
+
+    protected void tearDown() throws Exception {
+        pool.close();
+        connection.close();
+    }
+
+    public void testSessionClosedWhenBuildFails() throws Exception {
+        try {
+            pool.send(failingBuilder(), DeliveryMode.NON_PERSISTENT, 0);
+            fail("The message couldn't be built");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertClosed(built);
+
+        assertNotNull(pool.send(textBuilder("sent"), DeliveryMode.NON_PERSISTENT, 0));
+        assertEquals("sent", ((TextMessage) consumer.receive(2000)).getText());
+    }
+
+    public void testBatchRolledBackWhenBuildFails() throws Exception {
+        try {
+            pool.sendBatch(Arrays.asList(new Object[]{pending(textBuilder("rolled back")), pending(failingBuilder())}));
+            fail("The message couldn't be built");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertClosed(built);
+
+        assertTrue(pool.sendBatch(Arrays.asList(new Object[]{pending(textBuilder("committed"))})));
+        assertEquals("committed", ((TextMessage) consumer.receive(2000)).getText());
+        assertNull(consumer.receive(200));
+    }
+
+    private static void assertClosed(Session session) {
+        try {
+            session.getTransacted();
+            fail("The session was left open");
+        } catch (JMSException e) {
+            // expected
+        }
+    }
+
+    private ProducerPool.MessageBuilder textBuilder(final String text) {
+        return new ProducerPool.MessageBuilder() {
+            public Message build(Session session) throws JMSException {
+                return session.createTextMessage(text);
+            }
+        };
+    }
+
+    private ProducerPool.MessageBuilder failingBuilder() {
+        return new ProducerPool.MessageBuilder() {
+            public Message build(Session session) {
+                built = session;
+                throw new IllegalArgumentException("Not serializable");
+            }
+        };
+    }
+
+    private static ProducerPool.Pending pending(ProducerPool.MessageBuilder builder) {
+        return new ProducerPool.Pending(builder, DeliveryMode.NON_PERSISTENT, 0);
+    }
+}
@@ -0,0 +1,89 @@
+package com.topcoder.shared.ratings.algorithm;
+
+import com.topcoder.shared.ratings.model.QubitsRatingData;
+import com.topcoder.shared.util.logging.Logger;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compares the times of the sorted ranking and the expected rank kernel against
+ * the loops they replaced, on the data of {@link QubitsRatings}.  It is run
+ * by hand, not with the tests.
+ *
+ * @version $Revision$
+ */
+public final class AlgorithmQubitsBenchmark {
+    private static final Logger log = Logger.getLogger(AlgorithmQubitsBenchmark.class);
+    // the scan is quadratic, it takes minutes for 100000 coders
+    private static final int MAX_SCAN_SIZE = 10000;
+
+    public static void main(String[] args) throws Exception {
+        actualRanks();
+        expectedRanks();
+    }
+
+    private static void actualRanks() {
+        int[] sizes = {10000, 100000};
+        for (int i = 0; i < sizes.length; i++) {
+            QubitsRatingData[] data = QubitsRatings.newData(new Random(sizes[i]), sizes[i], sizes[i]);
+            // warm up
+            AlgorithmQubits.computeActualRanks(QubitsRatings.copy(data));
+
+            QubitsRatingData[] sorted = QubitsRatings.copy(data);
+            long start = System.currentTimeMillis();
+            AlgorithmQubits.computeActualRanks(sorted);
+            long sortTime = System.currentTimeMillis() - start;
+
+            if (sizes[i] > MAX_SCAN_SIZE) {
+                log.info("Actual ranks of " + sizes[i] + " coders: sort " + sortTime + " ms");
+                continue;
+            }
+            QubitsRatingData[] scanned = QubitsRatings.copy(data);
+            start = System.currentTimeMillis();
+            QubitsRatings.scanActualRanks(scanned);
+            long scanTime = System.currentTimeMillis() - start;
+
+            int different = QubitsRatings.firstDifferentRank(scanned, sorted);
+            if (different >= 0) {
+                throw new IllegalStateException("The sort computed a different actual rank of " + different);
+            }
+            log.info("Actual ranks of " + sizes[i] + " coders: sort " + sortTime + " ms, scan " + scanTime + " ms");
+        }
+    }
+
+    private static void expectedRanks() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            QubitsRatingData[] data = QubitsRatings.newRatedData(new Random(5000), 5000);
+            // warm up
+            QubitsRatings.loopExpectedRanks(QubitsRatings.newRatedData(new Random(1), 1000));
+            new ExpectedRankKernel(data).compute(pool, threads);
+
+            long start = System.currentTimeMillis();
+            double[] expected = QubitsRatings.loopExpectedRanks(data);
+            long loopTime = System.currentTimeMillis() - start;
+
+            start = System.currentTimeMillis();
+            double[] serial = new ExpectedRankKernel(data).compute(null, 1);
+            long serialTime = System.currentTimeMillis() - start;
+
+            start = System.currentTimeMillis();
+            double[] parallel = new ExpectedRankKernel(data).compute(pool, threads);
+            long parallelTime = System.currentTimeMillis() - start;
+
+            for (int i = 0; i < data.length; i++) {
+                if (Double.doubleToLongBits(expected[i]) != Double.doubleToLongBits(serial[i])
+                        || Double.doubleToLongBits(expected[i]) != Double.doubleToLongBits(parallel[i])) {
+                    throw new IllegalStateException("The kernel computed a different expected rank of " + i);
+                }
+            }
+            log.info("Expected ranks of " + data.length + " coders: loop " + loopTime + " ms, kernel "
+                    + serialTime + " ms, kernel on " + threads + " threads " + parallelTime + " ms");
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
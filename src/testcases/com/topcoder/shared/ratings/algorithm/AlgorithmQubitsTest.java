@@ -0,0 +1,131 @@
+package com.topcoder.shared.ratings.algorithm;
+
+import com.topcoder.shared.ratings.model.QubitsRatingData;
+import junit.framework.TestCase;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Checks the sorted ranking and the expected rank kernel give the same results,
+ * bit for bit, as the loops they replaced.  {@link AlgorithmQubitsBenchmark}
+ * compares their times.
+ *
+ * @version $Revision$
+ */
+public final class AlgorithmQubitsTest extends TestCase {
+    private static final int[] THREADS = {1, 2, 3, 8};
+    private ExecutorService pool;
+
+    protected void setUp() throws Exception {
+        pool = Executors.newFixedThreadPool(8);
+    }
+
+    protected void tearDown() throws Exception {
+        pool.shutdownNow();
+    }
+
+    public void testSameRanksAsScan() throws Exception {
+        Random random = new Random(20070104);
+        for (int run = 0; run < 300; run++) {
+            int n = 1 + random.nextInt(run < 100 ? 10 : 1000);
+            int distinct = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(n);
+            QubitsRatingData[] data = QubitsRatings.newData(random, n, distinct);
+            QubitsRatingData[] expected = QubitsRatings.copy(data);
+            QubitsRatings.scanActualRanks(expected);
+            AlgorithmQubits.computeActualRanks(data);
+            assertSameRanks(expected, data);
+        }
+    }
+
+    public void testRunRatings() throws Exception {
+        QubitsRatingData[] data = QubitsRatings.newData(new Random(1), 200, 50);
+        QubitsRatingData[] expected = QubitsRatings.copy(data);
+        QubitsRatings.scanActualRanks(expected);
+        AlgorithmQubits algorithm = new AlgorithmQubits();
+        algorithm.setRatingData(data);
+        algorithm.runRatings();
+        assertSameRanks(expected, (QubitsRatingData[]) algorithm.getRatingData());
+    }
+
+    public void testTies() throws Exception {
+        QubitsRatingData[] data = new QubitsRatingData[5];
+        double[] scores = {10, 20, 10, 0.0, -0.0};
+        for (int i = 0; i < data.length; i++) {
+            data[i] = QubitsRatings.newData(i, scores[i]);
+        }
+        AlgorithmQubits.computeActualRanks(data);
+        assertEquals(1.0, data[1].getActualRank(), 0);
+        assertEquals(2.5, data[0].getActualRank(), 0);
+        assertEquals(2.5, data[2].getActualRank(), 0);
+        assertEquals(4.5, data[3].getActualRank(), 0);
+        assertEquals(4.5, data[4].getActualRank(), 0);
+        assertEquals(data[0].getActualPerformance(), data[2].getActualPerformance(), 0);
+        assertTrue(data[1].getActualPerformance() > data[0].getActualPerformance());
+    }
+
+    public void testNaNRankedLast() throws Exception {
+        QubitsRatingData[] data = new QubitsRatingData[4];
+        double[] scores = {Double.NaN, 5, Double.NaN, Double.NEGATIVE_INFINITY};
+        for (int i = 0; i < data.length; i++) {
+            data[i] = QubitsRatings.newData(i, scores[i]);
+        }
+        AlgorithmQubits.computeActualRanks(data);
+        assertEquals(1.0, data[1].getActualRank(), 0);
+        assertEquals(2.0, data[3].getActualRank(), 0);
+        assertEquals(3.5, data[0].getActualRank(), 0);
+        assertEquals(3.5, data[2].getActualRank(), 0);
+    }
+
+    public void testSameExpectedRanksAsLoop() throws Exception {
+        Random random = new Random(515);
+        for (int run = 0; run < 20; run++) {
+            int n = 1 + random.nextInt(run < 10 ? ExpectedRankKernel.MIN_PARALLEL_ROWS : 1500);
+            QubitsRatingData[] data = QubitsRatings.newRatedData(random, n);
+            double[] expected = QubitsRatings.loopExpectedRanks(data);
+            for (int t = 0; t < THREADS.length; t++) {
+                double[] est = new ExpectedRankKernel(data).compute(pool, THREADS[t]);
+                for (int i = 0; i < n; i++) {
+                    assertEquals("expected rank of " + i + " on " + THREADS[t] + " threads",
+                            Double.doubleToLongBits(expected[i]), Double.doubleToLongBits(est[i]));
+                }
+            }
+        }
+    }
+
+    public void testParallelRunRatings() throws Exception {
+        Random random = new Random(385);
+        QubitsRatingData[] data = QubitsRatings.newRatedData(random, 1000);
+        for (int i = 0; i < data.length; i++) {
+            data[i].setScore(random.nextInt(300));
+        }
+        AlgorithmQubits serial = new AlgorithmQubits();
+        serial.setRatingData(data);
+        serial.runRatings();
+        AlgorithmQubits parallel = new AlgorithmQubits(pool, 8);
+        parallel.setRatingData(data);
+        parallel.runRatings();
+
+        QubitsRatingData[] expected = (QubitsRatingData[]) serial.getRatingData();
+        QubitsRatingData[] actual = (QubitsRatingData[]) parallel.getRatingData();
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(Double.doubleToLongBits(expected[i].getExpectedRank()),
+                    Double.doubleToLongBits(actual[i].getExpectedRank()));
+            assertEquals(Double.doubleToLongBits(expected[i].getExpectedPerformance()),
+                    Double.doubleToLongBits(actual[i].getExpectedPerformance()));
+            assertEquals(expected[i].getRating(), actual[i].getRating());
+            assertEquals(expected[i].getVolatility(), actual[i].getVolatility());
+        }
+    }
+
+    private static void assertSameRanks(QubitsRatingData[] expected, QubitsRatingData[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("rank of " + i, Double.doubleToLongBits(expected[i].getActualRank()),
+                    Double.doubleToLongBits(actual[i].getActualRank()));
+            assertEquals("performance of " + i, Double.doubleToLongBits(expected[i].getActualPerformance()),
+                    Double.doubleToLongBits(actual[i].getActualPerformance()));
+        }
+    }
+}
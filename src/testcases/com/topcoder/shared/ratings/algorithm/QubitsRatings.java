@@ -0,0 +1,123 @@
+package com.topcoder.shared.ratings.algorithm;
+
+import com.topcoder.shared.ratings.model.QubitsRatingData;
+import com.topcoder.shared.ratings.model.RatingData;
+
+import java.util.Random;
+
+/**
+ * Coder data for {@link AlgorithmQubitsTest} and {@link AlgorithmQubitsBenchmark},
+ * and the ranking and expected rank loops AlgorithmQubits used before, as the reference.
+ *
+ * @version $Revision$
+ */
+final class QubitsRatings {
+    private static final double[] SPECIAL_SCORES = {0.0, -0.0, -1.0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+
+    private QubitsRatings() {
+    }
+
+    /**
+     * The ranking loop AlgorithmQubits used before, as the reference.
+     */
+    static void scanActualRanks(QubitsRatingData[] data) {
+        for (int i = 0; i < data.length;) {
+            double max = Double.NEGATIVE_INFINITY;
+            int count = 0;
+
+            for (int j = 0; j < data.length; j++) {
+                if (data[j].getScore() >= max && data[j].getActualRank() == 0) {
+                    if (data[j].getScore() == max)
+                        count++;
+                    else
+                        count = 1;
+                    max = data[j].getScore();
+                }
+            }
+            for (int j = 0; j < data.length; j++) {
+                if (data[j].getScore() == max) {
+                    data[j].setActualRank(i + 0.5 + count / 2.0);
+                    data[j].setActualPerformance(-AlgorithmQubits.normsinv((i + count / 2.0) / data.length));
+                }
+            }
+            i += count;
+        }
+    }
+
+    /**
+     * The expected rank loop AlgorithmQubits used before, as the reference.
+     */
+    static double[] loopExpectedRanks(QubitsRatingData[] data) {
+        double[] ret = new double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            double est = 0.5;
+            for (int j = 0; j < data.length; j++) {
+                est += AlgorithmQubits.winprobability((double)data[j].getRating(), (double)data[i].getRating(),
+                        (double)data[j].getVolatility(), (double)data[i].getVolatility());
+            }
+            ret[i] = est;
+        }
+        return ret;
+    }
+
+    /**
+     * @return the first coder whose rank or performance differs in any bit, or -1 if none does
+     */
+    static int firstDifferentRank(QubitsRatingData[] expected, QubitsRatingData[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            if (Double.doubleToLongBits(expected[i].getActualRank()) != Double.doubleToLongBits(actual[i].getActualRank())
+                    || Double.doubleToLongBits(expected[i].getActualPerformance())
+                    != Double.doubleToLongBits(actual[i].getActualPerformance())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param distinct the number of distinct scores, 0 to mix in zeros, negative zeros and infinities
+     */
+    static QubitsRatingData[] newData(Random random, int n, int distinct) {
+        QubitsRatingData[] data = new QubitsRatingData[n];
+        for (int i = 0; i < n; i++) {
+            double score;
+            if (distinct == 0) {
+                score = SPECIAL_SCORES[random.nextInt(SPECIAL_SCORES.length)];
+            } else if (distinct == n) {
+                score = random.nextDouble() * 1000000;
+            } else {
+                score = random.nextInt(distinct) * 0.25;
+            }
+            data[i] = newData(i, score);
+        }
+        return data;
+    }
+
+    static QubitsRatingData[] newRatedData(Random random, int n) {
+        QubitsRatingData[] data = new QubitsRatingData[n];
+        for (int i = 0; i < n; i++) {
+            data[i] = newData(i, 0);
+            data[i].setRating(1 + random.nextInt(3500));
+            data[i].setVolatility(100 + random.nextInt(500));
+            data[i].setNumRatings(random.nextInt(20));
+        }
+        return data;
+    }
+
+    static QubitsRatingData newData(int coderId, double score) {
+        RatingData base = new RatingData();
+        base.setCoderID(coderId);
+        base.setRating(1200);
+        base.setVolatility(515);
+        base.setScore(score);
+        return new QubitsRatingData(base);
+    }
+
+    static QubitsRatingData[] copy(QubitsRatingData[] data) {
+        QubitsRatingData[] ret = new QubitsRatingData[data.length];
+        for (int i = 0; i < data.length; i++) {
+            ret[i] = new QubitsRatingData(data[i]);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,21 @@
+package com.topcoder.shared.util;
+
+import junit.framework.TestCase;
+
+public final class DistributionTest extends TestCase {
+
+    public void testPercentiles() throws Exception {
+        Distribution distribution = new Distribution();
+        assertEquals(0, distribution.getPercentile(0.99));
+        for (int i = 1; i <= 1000; i++) {
+            distribution.add(i);
+        }
+        distribution.add(-1);
+        assertEquals(1000, distribution.getCount());
+        assertEquals(500, distribution.getMean());
+        assertEquals(1000, distribution.getMax());
+        long median = distribution.getPercentile(0.5);
+        assertTrue(median >= 500 && median < 1000);
+        assertEquals(1000, distribution.getPercentile(0.99));
+    }
+}
@@ -0,0 +1,72 @@
+package com.topcoder.shared.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * @version $Revision$
+ */
+public class IdlePoolTest extends TestCase {
+    private final AtomicInteger created = new AtomicInteger(0);
+    private final AtomicInteger destroyed = new AtomicInteger(0);
+    private final IdlePool<Object> pool = new IdlePool<Object>(2) {
+        protected void destroy(Object resource) {
+            destroyed.incrementAndGet();
+        }
+    };
+
+    public void testKeepsUpToSizeIdle() throws Exception {
+        Object a = new Object();
+        Object b = new Object();
+        Object c = new Object();
+        pool.checkin(a);
+        pool.checkin(b);
+        pool.checkin(c);
+        assertEquals(1, destroyed.get());
+        assertSame(a, pool.poll());
+        assertSame(b, pool.poll());
+        assertNull(pool.poll());
+
+        pool.checkin(c);
+        assertSame(c, pool.poll());
+        assertEquals(1, destroyed.get());
+    }
+
+    public void testCloseDestroysIdleAndReturned() throws Exception {
+        pool.checkin(new Object());
+        Object out = new Object();
+        pool.close();
+        assertEquals(1, destroyed.get());
+        assertNull(pool.poll());
+        pool.checkin(out);
+        assertEquals(2, destroyed.get());
+        assertNull(pool.poll());
+    }
+
+    public void testNothingLeftOpenAfterClose() throws Exception {
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 20000; j++) {
+                        Object resource = pool.poll();
+                        if (resource == null) {
+                            created.incrementAndGet();
+                            resource = new Object();
+                        }
+                        pool.checkin(resource);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        Thread.sleep(10);
+        pool.close();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        assertNull(pool.poll());
+        assertEquals(created.get(), destroyed.get());
+    }
+}
@@ -0,0 +1,232 @@
+package com.topcoder.shared.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.io.OutputStreamWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.Message;
+import javax.mail.SendFailedException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import junit.framework.TestCase;
+
+public final class SMTPTransportPoolTest extends TestCase {
+    private SMTPStub stub;
+    private SMTPTransportPool pool;
+
+    protected void setUp() throws Exception {
+        stub = new SMTPStub();
+    }
+
+    protected void tearDown() throws Exception {
+        if (pool != null) {
+            pool.close();
+        }
+        stub.close();
+    }
+
+    public void testReusesConnections() throws Exception {
+        pool = new SMTPTransportPool("localhost", stub.getPort(), 2, 0, 30000);
+        for (int i = 0; i < 50; i++) {
+            pool.send(message("user" + i + "@topcoder.com"));
+        }
+        assertEquals(50, stub.messages.get());
+        assertEquals(1, stub.connections.get());
+        assertEquals(50, pool.getSentCount());
+        assertEquals(1, pool.getOpenedCount());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    public void testRecyclesConnections() throws Exception {
+        pool = new SMTPTransportPool("localhost", stub.getPort(), 2, 20, 30000);
+        for (int i = 0; i < 50; i++) {
+            pool.send(message("user" + i + "@topcoder.com"));
+        }
+        assertEquals(50, stub.messages.get());
+        assertEquals(3, stub.connections.get());
+        assertEquals(3, pool.getOpenedCount());
+        assertEquals(2, pool.getRecycledCount());
+    }
+
+    public void testReconnectsDroppedConnection() throws Exception {
+        pool = new SMTPTransportPool("localhost", stub.getPort(), 2, 0, 30000);
+        pool.send(message("first@topcoder.com"));
+        stub.dropConnections();
+        pool.send(message("second@topcoder.com"));
+        assertEquals(2, stub.messages.get());
+        assertEquals(2, pool.getOpenedCount());
+        assertEquals(1, pool.getFailedCount());
+    }
+
+    public void testChecksIdleConnections() throws Exception {
+        pool = new SMTPTransportPool("localhost", stub.getPort(), 2, 0, 0);
+        pool.send(message("first@topcoder.com"));
+        pool.send(message("second@topcoder.com"));
+        assertEquals(1, stub.connections.get());
+        assertTrue(stub.noops.get() > 0);
+        stub.dropConnections();
+        pool.send(message("third@topcoder.com"));
+        assertEquals(3, stub.messages.get());
+        assertEquals(2, pool.getOpenedCount());
+        assertEquals(1, pool.getFailedCount());
+    }
+
+    public void testRejectedRecipientKeepsConnection() throws Exception {
+        pool = new SMTPTransportPool("localhost", stub.getPort(), 2, 0, 30000);
+        try {
+            pool.send(message("reject@topcoder.com"));
+            fail("The recipient must be rejected");
+        } catch (SendFailedException e) {
+            // expected
+        }
+        pool.send(message("user@topcoder.com"));
+        assertEquals(1, stub.messages.get());
+        assertEquals(1, pool.getOpenedCount());
+        assertEquals(0, pool.getFailedCount());
+    }
+
+    public void testConcurrentSends() throws Exception {
+        pool = new SMTPTransportPool("localhost", stub.getPort(), 3, 0, 30000);
+        final List errors = Collections.synchronizedList(new ArrayList());
+        Thread[] threads = new Thread[10];
+        for (int i = 0; i < threads.length; i++) {
+            final int thread = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 20; j++) {
+                            pool.send(message("user" + thread + "_" + j + "@topcoder.com"));
+                        }
+                    } catch (Exception e) {
+                        errors.add(e);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        assertEquals(Collections.EMPTY_LIST, errors);
+        assertEquals(200, stub.messages.get());
+        assertTrue(stub.connections.get() <= 3);
+        assertEquals(stub.connections.get(), pool.getOpenedCount());
+    }
+
+    private MimeMessage message(String to) throws Exception {
+        MimeMessage message = new MimeMessage(pool.getSession());
+        message.setFrom(new InternetAddress("service@topcoder.com"));
+        message.setRecipients(Message.RecipientType.TO, new InternetAddress[] {new InternetAddress(to)});
+        message.setSubject("Test", "utf-8");
+        message.setText("Hello " + to, "utf-8");
+        return message;
+    }
+
+    /**
+     * A SMTP server accepting every message, except those for reject@..., without storing them.
+     */
+    private static final class SMTPStub implements Runnable {
+        private final ServerSocket server = new ServerSocket(0);
+        private final List sockets = Collections.synchronizedList(new ArrayList());
+        private final AtomicInteger connections = new AtomicInteger(0);
+        private final AtomicInteger messages = new AtomicInteger(0);
+        private final AtomicInteger noops = new AtomicInteger(0);
+
+        private SMTPStub() throws IOException {
+            Thread t = new Thread(this, "SMTPStub");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        private int getPort() {
+            return server.getLocalPort();
+        }
+
+        public void run() {
+            while (!server.isClosed()) {
+                try {
+                    final Socket socket = server.accept();
+                    connections.incrementAndGet();
+                    sockets.add(socket);
+                    Thread t = new Thread("SMTPStub-session") {
+                        public void run() {
+                            serve(socket);
+                        }
+                    };
+                    t.setDaemon(true);
+                    t.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket socket) {
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+                Writer out = new OutputStreamWriter(socket.getOutputStream(), "ISO-8859-1");
+                reply(out, "220 stub ready");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.toUpperCase();
+                    if (command.startsWith("EHLO")) {
+                        reply(out, "250-stub\r\n250 OK");
+                    } else if (command.startsWith("RCPT") && command.indexOf("REJECT@") >= 0) {
+                        reply(out, "550 rejected");
+                    } else if (command.startsWith("DATA")) {
+                        reply(out, "354 go ahead");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // the message is discarded
+                        }
+                        messages.incrementAndGet();
+                        reply(out, "250 OK");
+                    } else if (command.startsWith("NOOP")) {
+                        noops.incrementAndGet();
+                        reply(out, "250 OK");
+                    } else if (command.startsWith("QUIT")) {
+                        reply(out, "221 bye");
+                        break;
+                    } else {
+                        reply(out, "250 OK");
+                    }
+                }
+            } catch (IOException e) {
+                // dropped
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+
+        private void reply(Writer out, String line) throws IOException {
+            out.write(line + "\r\n");
+            out.flush();
+        }
+
+        private void dropConnections() throws Exception {
+            synchronized (sockets) {
+                for (int i = 0; i < sockets.size(); i++) {
+                    ((Socket) sockets.get(i)).close();
+                }
+                sockets.clear();
+            }
+        }
+
+        private void close() throws Exception {
+            server.close();
+            dropConnections();
+        }
+    }
+}
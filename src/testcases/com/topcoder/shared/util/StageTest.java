@@ -0,0 +1,174 @@
+package com.topcoder.shared.util;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class StageTest extends TestCase {
+    private Stage stage;
+    private final AtomicInteger ran = new AtomicInteger(0);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    protected void tearDown() throws Exception {
+        release.countDown();
+        if (stage != null) {
+            stage.shutdown(1000);
+        }
+    }
+
+    public void testRunsTasks() throws Exception {
+        stage = new Stage("test", 4, 100, Stage.REJECT_ABORT);
+        for (int i = 0; i < 100; i++) {
+            stage.submit(count());
+        }
+        assertTrue(stage.shutdown(5000));
+        assertEquals(100, ran.get());
+        assertEquals(100, stage.getSubmittedCount());
+        assertEquals(100, stage.getCompletedCount());
+        assertEquals(0, stage.getFailedCount());
+        assertTrue(stage.toString().startsWith("Stage[test threads=4"));
+    }
+
+    public void testAvailable() throws Exception {
+        stage = new Stage("test", 2, 10, Stage.REJECT_ABORT);
+        assertEquals(2, stage.available());
+        stage.submit(block());
+        stage.submit(block());
+        stage.submit(block());
+        waitForActive(2);
+        assertEquals(1, stage.getQueueDepth());
+        assertEquals(-1, stage.available());
+        release.countDown();
+        assertTrue(stage.shutdown(5000));
+        assertEquals(3, ran.get());
+        assertTrue(stage.getMaxWaitTime() > 0);
+    }
+
+    public void testAbortPolicy() throws Exception {
+        stage = new Stage("test", 1, 1, Stage.REJECT_ABORT);
+        stage.submit(block());
+        waitForActive(1);
+        stage.submit(block());
+        try {
+            stage.submit(block());
+            fail("The stage is full");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertEquals(1, stage.getRejectedCount());
+    }
+
+    public void testDiscardPolicy() throws Exception {
+        stage = new Stage("test", 1, 1, Stage.REJECT_DISCARD);
+        assertTrue(stage.submit(block()));
+        waitForActive(1);
+        assertTrue(stage.submit(block()));
+        assertFalse(stage.submit(count()));
+        assertEquals(1, stage.getRejectedCount());
+        release.countDown();
+        assertTrue(stage.shutdown(5000));
+        assertEquals(2, ran.get());
+    }
+
+    public void testCallerRunsPolicy() throws Exception {
+        stage = new Stage("test", 1, 1, Stage.REJECT_CALLER_RUNS);
+        stage.submit(block());
+        waitForActive(1);
+        stage.submit(block());
+        final Thread caller = Thread.currentThread();
+        final boolean[] inCaller = new boolean[1];
+        assertTrue(stage.submit(new Runnable() {
+            public void run() {
+                inCaller[0] = Thread.currentThread() == caller;
+            }
+        }));
+        assertTrue(inCaller[0]);
+        assertEquals(1, stage.getRejectedCount());
+    }
+
+    public void testFailingTask() throws Exception {
+        stage = new Stage("test", 1, 10, Stage.REJECT_ABORT);
+        stage.submit(new Runnable() {
+            public void run() {
+                throw new IllegalStateException("Task failure");
+            }
+        });
+        stage.submit(count());
+        assertTrue(stage.shutdown(5000));
+        assertEquals(1, ran.get());
+        assertEquals(1, stage.getFailedCount());
+        assertEquals(2, stage.getCompletedCount());
+    }
+
+    public void testDrainTimeout() throws Exception {
+        stage = new Stage("test", 1, 10, Stage.REJECT_ABORT);
+        final AtomicInteger interrupted = new AtomicInteger(0);
+        stage.submit(new Runnable() {
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    interrupted.incrementAndGet();
+                }
+            }
+        });
+        stage.submit(count());
+        waitForActive(1);
+        assertFalse(stage.shutdown(200));
+        assertEquals(1, interrupted.get());
+        assertEquals(0, ran.get());
+        try {
+            stage.submit(count());
+            fail("The stage is shut down");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+
+    public void testSetThreads() throws Exception {
+        stage = new Stage("test", 1, 10, Stage.REJECT_ABORT);
+        stage.setThreads(3);
+        assertEquals(3, stage.getThreads());
+        for (int i = 0; i < 3; i++) {
+            stage.submit(block());
+        }
+        waitForActive(3);
+        stage.setThreads(2);
+        assertEquals(2, stage.getThreads());
+        release.countDown();
+        assertTrue(stage.shutdown(5000));
+        assertEquals(3, ran.get());
+    }
+
+    private void waitForActive(int count) throws Exception {
+        long limit = System.currentTimeMillis() + 5000;
+        while (stage.getActiveCount() < count && System.currentTimeMillis() < limit) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, stage.getActiveCount());
+    }
+
+    private Runnable count() {
+        return new Runnable() {
+            public void run() {
+                ran.incrementAndGet();
+            }
+        };
+    }
+
+    private Runnable block() {
+        return new Runnable() {
+            public void run() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ran.incrementAndGet();
+            }
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package com.topcoder.shared.util;
+
+import junit.framework.TestCase;
+
+public final class TokenBucketTest extends TestCase {
+
+    public void testBurst() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 5);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire());
+        }
+        assertFalse(bucket.tryAcquire());
+    }
+
+    public void testRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 10);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 60; i++) {
+            bucket.acquire();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        // 10 permits right away, 50 more at 100 per second
+        assertTrue("Took " + elapsed, elapsed >= 450 && elapsed < 1500);
+    }
+
+    public void testSharedRate() throws Exception {
+        final TokenBucket bucket = new TokenBucket(200, 1);
+        Thread[] threads = new Thread[4];
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 25; j++) {
+                            bucket.acquire();
+                        }
+                    } catch (InterruptedException e) {
+                        // the test fails on the elapsed time
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("Took " + elapsed, elapsed >= 450 && elapsed < 1500);
+    }
+
+    public void testSetRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 1);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        bucket.setRate(1000, 1);
+        Thread.sleep(20);
+        assertTrue(bucket.tryAcquire());
+        try {
+            bucket.setRate(0, 1);
+            fail("The rate must be positive");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.topcoder.shared.util.dwload;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Random coders to rank, and the ranking the rank load used to do with a
+ * sorted list per group, used as the reference for the RankEngine.
+ */
+final class RankCoders {
+    private static final String[] COUNTRIES = {null, "USA", "RUS", "POL", "CHN", "ARG"};
+    private static final String[] STATES = {null, "", " ", "CT", "NY", "CA"};
+
+    final long[] coderIds;
+    final int[] ratings;
+    final boolean[] active;
+    final String[] countryCodes;
+    final String[] stateCodes;
+    final long[] schoolIds;
+
+    RankCoders(Random r, int size, int schools) {
+        coderIds = new long[size];
+        ratings = new int[size];
+        active = new boolean[size];
+        countryCodes = new String[size];
+        stateCodes = new String[size];
+        schoolIds = new long[size];
+        for (int i = 0; i < size; i++) {
+            coderIds[i] = 1000 + i;
+            // few distinct ratings so there are plenty of ties, including 0
+            ratings[i] = r.nextInt(10) == 0 ? 0 : 1200 + r.nextInt(size / 4 + 5) * 5;
+            active[i] = r.nextBoolean();
+            countryCodes[i] = COUNTRIES[r.nextInt(COUNTRIES.length)];
+            stateCodes[i] = STATES[r.nextInt(STATES.length)];
+            schoolIds[i] = r.nextInt(schools + 1) - 1;
+        }
+    }
+
+    RankEngine newEngine() {
+        return new RankEngine(coderIds, ratings, active, countryCodes, stateCodes, schoolIds);
+    }
+
+    /**
+     * Ranks the coders by grouping them in lists and sorting each list.
+     */
+    Map rank(int grouping, boolean activeOnly) {
+        Map groups = new HashMap();
+        for (int i = 0; i < coderIds.length; i++) {
+            if (activeOnly && !active[i]) {
+                continue;
+            }
+            Object key = null;
+            if (grouping == RankEngine.COUNTRY) {
+                key = countryCodes[i];
+            } else if (grouping == RankEngine.STATE) {
+                if (stateCodes[i] == null || stateCodes[i].trim().equals("")) {
+                    continue;
+                }
+                key = stateCodes[i];
+            } else if (grouping == RankEngine.SCHOOL) {
+                if (schoolIds[i] <= 0) {
+                    continue;
+                }
+                key = new Long(schoolIds[i]);
+            }
+            List l = (List) groups.get(key);
+            if (l == null) {
+                l = new ArrayList();
+                groups.put(key, l);
+            }
+            l.add(new Integer(i));
+        }
+
+        Map ret = new HashMap();
+        for (Iterator it = groups.entrySet().iterator(); it.hasNext();) {
+            Map.Entry e = (Map.Entry) it.next();
+            List l = (List) e.getValue();
+            Collections.sort(l, new Comparator() {
+                public int compare(Object o1, Object o2) {
+                    return ratings[((Integer) o2).intValue()] - ratings[((Integer) o1).intValue()];
+                }
+            });
+            int coderCount = l.size();
+            int rating = 0;
+            int rank = 0;
+            for (int j = 0; j < coderCount; j++) {
+                int i = ((Integer) l.get(j)).intValue();
+                if (ratings[i] != rating) {
+                    rating = ratings[i];
+                    rank = j + 1;
+                }
+                float percentile = (float) 100 * ((float) (coderCount - rank) / coderCount);
+                ret.put(new Long(coderIds[i]), rank + "/" + (j + 1) + "/" + percentile + "/" + e.getKey());
+            }
+        }
+        return ret;
+    }
+}
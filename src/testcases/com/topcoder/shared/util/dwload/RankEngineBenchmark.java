@@ -0,0 +1,38 @@
+package com.topcoder.shared.util.dwload;
+
+import com.topcoder.shared.util.logging.Logger;
+
+import java.util.Random;
+
+/**
+ * Ranks 200,000 coders with the engine and with a sort per ranking, the
+ * way the rank load used to.  It is run by hand, not with the tests.
+ */
+public final class RankEngineBenchmark {
+    private static final Logger log = Logger.getLogger(RankEngineBenchmark.class);
+
+    public static void main(String[] args) {
+        RankCoders coders = new RankCoders(new Random(200000), 200000, 5000);
+
+        long start = System.currentTimeMillis();
+        RankEngine engine = coders.newEngine();
+        int rows = 0;
+        for (int g = RankEngine.OVERALL; g <= RankEngine.SCHOOL; g++) {
+            rows += engine.getRanks(g, false).size() + engine.getRanks(g, true).size();
+        }
+        long engineTime = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        int sortRows = 0;
+        for (int g = RankEngine.OVERALL; g <= RankEngine.SCHOOL; g++) {
+            sortRows += coders.rank(g, false).size() + coders.rank(g, true).size();
+        }
+        long sortTime = System.currentTimeMillis() - start;
+
+        if (sortRows != rows) {
+            throw new IllegalStateException("The engine ranked " + rows + " rows, the sorted lists " + sortRows);
+        }
+        log.info("RankEngine: " + rows + " rows in " + engineTime + " ms, sorted lists: " +
+                sortTime + " ms");
+    }
+}
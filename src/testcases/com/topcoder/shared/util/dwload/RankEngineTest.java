@@ -0,0 +1,65 @@
+package com.topcoder.shared.util.dwload;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public final class RankEngineTest extends TestCase {
+
+    public RankEngineTest(String name) {
+        super(name);
+    }
+
+    public void testSameRanksAsSortedLists() {
+        Random r = new Random(20061019);
+        for (int run = 0; run < 50; run++) {
+            RankCoders coders = new RankCoders(r, 1 + r.nextInt(500), 1 + r.nextInt(40));
+            RankEngine engine = coders.newEngine();
+            for (int g = RankEngine.OVERALL; g <= RankEngine.SCHOOL; g++) {
+                assertEquals(coders.rank(g, false), toMap(engine.getRanks(g, false)));
+                assertEquals(coders.rank(g, true), toMap(engine.getRanks(g, true)));
+            }
+        }
+    }
+
+    public void testOrder() {
+        RankCoders coders = new RankCoders(new Random(1), 1000, 100);
+        int[] ratings = coders.ratings;
+        int[] order = coders.newEngine().getOrder();
+        assertEquals(1000, order.length);
+        for (int i = 1; i < order.length; i++) {
+            int prev = order[i - 1];
+            int curr = order[i];
+            assertTrue(ratings[prev] > ratings[curr] || (ratings[prev] == ratings[curr] && prev < curr));
+        }
+    }
+
+    public void testTies() {
+        long[] coderIds = {1, 2, 3, 4, 5};
+        int[] ratings = {1500, 2000, 1500, 0, 1200};
+        boolean[] active = {true, true, true, true, true};
+        RankEngine.RankRows rows = new RankEngine(coderIds, ratings, active, new String[5], new String[5], new long[5])
+                .getRanks(RankEngine.OVERALL, false);
+        assertEquals(5, rows.size());
+        int[] ranks = {1, 2, 2, 4, 5};
+        for (int i = 0; i < ranks.length; i++) {
+            assertEquals(ranks[i], rows.getRank(i));
+            assertEquals(i + 1, rows.getRankNoTie(i));
+        }
+        assertEquals(2, rows.getCoderId(0));
+        assertEquals(1, rows.getCoderId(1));
+        assertEquals(3, rows.getCoderId(2));
+        assertEquals(80f, rows.getPercentile(0), 0f);
+    }
+
+    private static Map toMap(RankEngine.RankRows rows) {
+        Map ret = new HashMap();
+        for (int i = 0; i < rows.size(); i++) {
+            ret.put(new Long(rows.getCoderId(i)), rows.getRank(i) + "/" + rows.getRankNoTie(i) + "/" +
+                    rows.getPercentile(i) + "/" + rows.getGroupKey(i));
+        }
+        return ret;
+    }
+}